@@ -0,0 +1,192 @@
+package Controller;
+
+import Repository.IEnrollmentRepository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Enrollment analytics : fill rate of every course, load of every teacher, the distribution of the
+ * student credits, the oversubscribed and the empty courses.
+ * Built in one pass over the enrollments joined with their course. The accumulators are primitive arrays
+ * sized by the number of courses, and the credits of a student are summed while his rows go by,
+ * so the memory does not grow with the number of enrollments or students.
+ */
+public class EnrollmentReport {
+    private final List<CourseLoad> courses;
+    private final List<TeacherLoad> teachers;
+    private final SortedMap<Integer, Long> creditDistribution;
+
+
+    /**
+     * Students enrolled to a course
+     */
+    public record CourseLoad(long courseId, long teacherId, int students, int maxEnrollment) {
+        /**
+         * @return the part of the places taken (more than 1 if the course is oversubscribed)
+         */
+        public double fillRate() {
+            return maxEnrollment == 0 ? (students == 0 ? 0 : Double.POSITIVE_INFINITY) : (double) students / maxEnrollment;
+        }
+    }
+
+
+    /**
+     * Courses taught by a teacher and the students enrolled to them
+     */
+    public record TeacherLoad(long teacherId, int courses, long students) {
+    }
+
+
+    private EnrollmentReport(List<CourseLoad> courses, List<TeacherLoad> teachers, SortedMap<Integer, Long> creditDistribution) {
+        this.courses = courses;
+        this.teachers = teachers;
+        this.creditDistribution = creditDistribution;
+    }
+
+
+    /**
+     * Accumulates the rows of IEnrollmentRepository.forEachEnrollment
+     */
+    private static class Accumulator implements IEnrollmentRepository.EnrollmentHandler {
+        private final Map<Long, Integer> slots = new HashMap<>();
+        private long[] courseIds = new long[16];
+        private long[] teacherIds = new long[16];
+        private int[] maxEnrollments = new int[16];
+        private int[] students = new int[16];
+        private int nrCourses;
+
+        // number of students by total credits
+        private long[] credits = new long[32];
+        private long studentsSeen;
+        private long currentStudent = IEnrollmentRepository.NO_STUDENT;
+        private int currentCredits;
+
+        @Override
+        public void accept(long courseId, long teacherId, int maxEnrollment, int courseCredits, long studentId) {
+            int slot = slots.computeIfAbsent(courseId, id -> {
+                if (nrCourses == courseIds.length) {
+                    courseIds = Arrays.copyOf(courseIds, nrCourses * 2);
+                    teacherIds = Arrays.copyOf(teacherIds, nrCourses * 2);
+                    maxEnrollments = Arrays.copyOf(maxEnrollments, nrCourses * 2);
+                    students = Arrays.copyOf(students, nrCourses * 2);
+                }
+                courseIds[nrCourses] = courseId;
+                teacherIds[nrCourses] = teacherId;
+                maxEnrollments[nrCourses] = maxEnrollment;
+                return nrCourses++;
+            });
+            if (studentId == IEnrollmentRepository.NO_STUDENT) {
+                return;
+            }
+            students[slot]++;
+            if (studentId != currentStudent) {
+                finishStudent();
+                currentStudent = studentId;
+            }
+            currentCredits += courseCredits;
+        }
+
+        private void finishStudent() {
+            if (currentStudent == IEnrollmentRepository.NO_STUDENT) {
+                return;
+            }
+            if (currentCredits >= credits.length) {
+                credits = Arrays.copyOf(credits, Math.max(currentCredits + 1, credits.length * 2));
+            }
+            credits[currentCredits]++;
+            studentsSeen++;
+            currentCredits = 0;
+        }
+
+        EnrollmentReport finish(long nrStudents) {
+            finishStudent();
+            credits[0] += Math.max(0, nrStudents - studentsSeen);
+
+            List<CourseLoad> courseLoads = new ArrayList<>(nrCourses);
+            Map<Long, long[]> teacherTotals = new TreeMap<>();
+            for (int slot = 0; slot < nrCourses; slot++) {
+                courseLoads.add(new CourseLoad(courseIds[slot], teacherIds[slot], students[slot], maxEnrollments[slot]));
+                long[] totals = teacherTotals.computeIfAbsent(teacherIds[slot], id -> new long[2]);
+                totals[0]++;
+                totals[1] += students[slot];
+            }
+            courseLoads.sort((first, second) -> Long.compare(first.courseId(), second.courseId()));
+
+            List<TeacherLoad> teacherLoads = new ArrayList<>(teacherTotals.size());
+            for (Map.Entry<Long, long[]> teacher : teacherTotals.entrySet()) {
+                teacherLoads.add(new TeacherLoad(teacher.getKey(), (int) teacher.getValue()[0], teacher.getValue()[1]));
+            }
+
+            SortedMap<Integer, Long> distribution = new TreeMap<>();
+            for (int total = 0; total < credits.length; total++) {
+                if (credits[total] > 0) {
+                    distribution.put(total, credits[total]);
+                }
+            }
+            return new EnrollmentReport(Collections.unmodifiableList(courseLoads), Collections.unmodifiableList(teacherLoads),
+                    Collections.unmodifiableSortedMap(distribution));
+        }
+    }
+
+
+    /**
+     * Builds the report in one pass over the enrollments
+     * @param enrollmentRepo enrollment repository
+     * @param nrStudents number of students, those without any enrollment have 0 credits
+     * @return the report
+     * @throws SQLException if a query is incorrect
+     */
+    static EnrollmentReport build(IEnrollmentRepository enrollmentRepo, long nrStudents) throws SQLException {
+        Accumulator accumulator = new Accumulator();
+        enrollmentRepo.forEachEnrollment(accumulator);
+        return accumulator.finish(nrStudents);
+    }
+
+
+    /**
+     * @return the load of every course, ascending by course id
+     */
+    public List<CourseLoad> getCourses() {
+        return courses;
+    }
+
+
+    /**
+     * @return the load of every teacher teaching at least a course, ascending by teacher id
+     */
+    public List<TeacherLoad> getTeachers() {
+        return teachers;
+    }
+
+
+    /**
+     * @return the number of students by their total credits, ascending by credits
+     */
+    public SortedMap<Integer, Long> getCreditDistribution() {
+        return creditDistribution;
+    }
+
+
+    /**
+     * @return the courses with more students than places
+     */
+    public List<CourseLoad> getOversubscribedCourses() {
+        return courses.stream().filter(course -> course.students() > course.maxEnrollment()).toList();
+    }
+
+
+    /**
+     * @return the courses nobody is enrolled to
+     */
+    public List<CourseLoad> getEmptyCourses() {
+        return courses.stream().filter(course -> course.students() == 0).toList();
+    }
+}
@@ -1,35 +1,189 @@
 package Controller;
 
+import Events.EventBus;
+import Events.RegistrationEvent;
 import Exceptions.*;
+import Index.CourseNameIndex;
+import Index.EnrollmentIndex;
+import Index.FreePlacesView;
+import Index.NameSearchIndex;
+import Index.Timetable;
 import Model.Course;
+import Model.CourseSummary;
 import Model.Student;
+import Model.StudentSummary;
 import Model.Teacher;
+import Model.TeacherSummary;
+import Model.TimeSlot;
+import Repository.ConnectionRouter;
+import Repository.FetchMode;
 import Repository.ICrudRepository;
+import Repository.ISummaryRepository;
+import Repository.IEnrollmentRepository;
 import Repository.JDBCCourseRepository;
+import Repository.JDBCEnrollmentRepository;
 import Repository.JDBCStudentRepository;
 import Repository.JDBCTeacherRepository;
+import Repository.SchemaMigrator;
+import Repository.ShardMap;
+import Repository.ShardedEnrollmentRepository;
+import Repository.ShardedRepository;
+import Repository.Shards;
+import Repository.SlowQueryLog;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 /**
  * Registration system
  */
 public class RegistrationSystem {
+    // most credits a student can have
+    private static final int MAX_CREDITS = 30;
+
     private ICrudRepository<Course> courseRepo;
     private ICrudRepository<Student> studentRepo;
     private ICrudRepository<Teacher> teacherRepo;
+    private IEnrollmentRepository enrollmentRepo;
+    // route the reads of the JDBC repositories to the replicas, one per shard, none for other repositories
+    private List<ConnectionRouter> routers = List.of();
+
+    // serializes the writes, so that the checks of a write and its changes to the database and the indexes are atomic
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile EnrollmentIndex enrollmentIndex;
+    private volatile CourseNameIndex courseNameIndex;
+    private volatile NavigableSet<Long> studentIdIndex;
+    private volatile NameSearchIndex studentSearchIndex;
+    private volatile NameSearchIndex teacherSearchIndex;
+    private volatile NameSearchIndex courseSearchIndex;
+    private volatile FreePlacesView freePlacesView;
+    private volatile Timetable timetable;
+
+    // time limit of the statements of an operation (JDBC repositories), 0 for no limit
+    private volatile long operationBudgetMillis;
+    // runs the writes again that the database rolled back because of contention (deadlocks, lock wait timeouts)
+    private volatile RetryPolicy retryPolicy = new RetryPolicy();
+
+    // pool of the parallel reports, null to run them sequentially
+    private volatile ForkJoinPool reportPool;
+    // warm-up started by the constructor, null if there is none
+    private volatile CompletableFuture<WarmUpReport> startupWarmUp;
+
+    // every change is published after it was written, in the order of the writes
+    private final EventBus eventBus = new EventBus(4096);
+    // events claimed on the bus under the write lock by the current thread, published once it released the lock
+    private final ThreadLocal<List<PendingEvent>> pendingEvents = ThreadLocal.withInitial(ArrayList::new);
+    // number of changes made, for clients to tell cheaply whether their copy of the data is still current
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Constructor, brings the database schema to the current version before using it
+     * @throws SQLException if the schema could not be migrated
+     */
+    public RegistrationSystem(String url, String user, String pass) throws SQLException {
+        this(new ConnectionRouter(url, user, pass));
+    }
+
+
+    /**
+     * Constructor for a primary database with read replicas : the writes and their checks go to the primary,
+     * the other reads to the replicas (see ConnectionRouter). The schema of the primary is migrated
+     * @param router opens the connections of the repositories
+     * @throws SQLException if the schema could not be migrated
+     */
+    public RegistrationSystem(ConnectionRouter router) throws SQLException {
+        new SchemaMigrator(router).migrate();
+
+        // the checks of a write must not read a replica lagging behind
+        router.setPrimaryCondition(writeLock::isHeldByCurrentThread);
+        this.routers = List.of(router);
+        studentRepo = new JDBCStudentRepository(router);
+        teacherRepo = new JDBCTeacherRepository(router);
+        courseRepo = new JDBCCourseRepository(router);
+        enrollmentRepo = new JDBCEnrollmentRepository(router);
+    }
+
 
     /**
-     * Constructor
+     * Constructor for a primary database with read replicas, optionally warming up the indexes in the background
+     * (see startWarmUp) : the registration system can be used right away, in degraded mode until the warm-up is done
+     * @param router opens the connections of the repositories
+     * @param warmUp true to start the warm-up
+     * @throws SQLException if the schema could not be migrated
      */
-    public RegistrationSystem(String url, String user, String pass){
-        studentRepo = new JDBCStudentRepository(url, user, pass);
-        teacherRepo = new JDBCTeacherRepository(url, user, pass);
-        courseRepo = new JDBCCourseRepository(url, user, pass);
+    public RegistrationSystem(ConnectionRouter router, boolean warmUp) throws SQLException {
+        this(router);
+        if (warmUp) {
+            startupWarmUp = startWarmUp();
+        }
+    }
+
+
+    /**
+     * Constructor for a registration system on several shard databases (e.g. one per faculty or campus) :
+     * every element is stored on the shard of its id, the listings are gathered from all the shards in parallel.
+     * A course, its teacher and its students must be on the same shard, a registration to a course of another
+     * shard fails. The schema of every shard is migrated
+     * @param shardMap tells the shard of an element
+     * @param shardRouters open the connections of every shard, in the order of the shard numbers
+     * @throws SQLException if a schema could not be migrated
+     */
+    public RegistrationSystem(ShardMap shardMap, List<ConnectionRouter> shardRouters) throws SQLException {
+        Shards shards = new Shards(shardMap, shardRouters);
+        List<JDBCStudentRepository> students = new ArrayList<>();
+        List<JDBCTeacherRepository> teachers = new ArrayList<>();
+        List<JDBCCourseRepository> courses = new ArrayList<>();
+        List<JDBCEnrollmentRepository> enrollments = new ArrayList<>();
+        for (ConnectionRouter router : shardRouters) {
+            new SchemaMigrator(router).migrate();
+            router.setPrimaryCondition(writeLock::isHeldByCurrentThread);
+            students.add(new JDBCStudentRepository(router));
+            teachers.add(new JDBCTeacherRepository(router));
+            courses.add(new JDBCCourseRepository(router));
+            enrollments.add(new JDBCEnrollmentRepository(router));
+        }
+        this.routers = List.copyOf(shardRouters);
+        studentRepo = new ShardedRepository<>(shards, students, Student::getStudentId, StudentSummary::studentId);
+        teacherRepo = new ShardedRepository<>(shards, teachers, Teacher::getTeacherId, TeacherSummary::teacherId);
+        courseRepo = new ShardedRepository<>(shards, courses, Course::getCourseId, CourseSummary::courseId);
+        enrollmentRepo = new ShardedEnrollmentRepository(shards, enrollments);
+    }
+
+
+    /**
+     * Constructor for a registration system on other repositories (e.g. a FileDatabase)
+     * @param courseRepo course repository
+     * @param studentRepo student repository
+     * @param teacherRepo teacher repository
+     * @param enrollmentRepo enrollment repository
+     */
+    public RegistrationSystem(ICrudRepository<Course> courseRepo, ICrudRepository<Student> studentRepo,
+                              ICrudRepository<Teacher> teacherRepo, IEnrollmentRepository enrollmentRepo) {
+        this.courseRepo = courseRepo;
+        this.studentRepo = studentRepo;
+        this.teacherRepo = teacherRepo;
+        this.enrollmentRepo = enrollmentRepo;
     }
 
 
@@ -41,48 +195,230 @@ public class RegistrationSystem {
      * @throws MaxCreditsSurpassedException if the students will have more than 30 credits
      * @throws MaxEnrollmentSurpassedException if the course is full
      * @throws AlreadyExistsException if the student is already registered to this course
+     * @throws ScheduleConflictException if the course meets at the same time as a course of the student
+     */
+    public void register(long courseId, long studentId) throws ElementDoesNotExistException, MaxCreditsSurpassedException, MaxEnrollmentSurpassedException, AlreadyExistsException, ScheduleConflictException, SQLException {
+        this.<ElementDoesNotExistException, MaxCreditsSurpassedException, MaxEnrollmentSurpassedException, AlreadyExistsException, ScheduleConflictException>retrying(
+                () -> registerOnce(courseId, studentId));
+    }
+
+
+    /**
+     * one attempt of register, run again by the retry policy if the database rolled it back
+     */
+    private void registerOnce(long courseId, long studentId) throws ElementDoesNotExistException, MaxCreditsSurpassedException, MaxEnrollmentSurpassedException, AlreadyExistsException, ScheduleConflictException, SQLException {
+        writeLock.lock();
+        try {
+            Course course = courseRepo.findById(courseId);
+            Student student = studentRepo.findById(studentId);
+
+            if ((course == null) || (student == null)){
+                throw new ElementDoesNotExistException("The Course or the Student could not be found !");
+            }
+
+            EnrollmentIndex enrollments = enrollments();
+            if (enrollments.isEnrolled(courseId, studentId)){
+                throw new AlreadyExistsException("Student was already registered to this course !");
+            }
+
+            // the credits of the courses of the student come from the cached courses, not from a lookup per course
+            if (freePlaces().credits(enrollments.coursesOf(studentId)) + course.getCredits() > MAX_CREDITS){
+                throw new MaxCreditsSurpassedException("The credits will be over 30 by adding this course !");
+            }
+
+            if (enrollments.countStudents(courseId) >= course.getMaxEnrollment()) {
+                throw new MaxEnrollmentSurpassedException("The course is full !");
+            }
+
+            // a course without time slots cannot overlap, the timetable is only needed for the others
+            if (!course.getTimeSlots().isEmpty()) {
+                List<Long> conflicts = timetable().conflicts(course.getTimeSlots(), studentId);
+                if (!conflicts.isEmpty()) {
+                    throw new ScheduleConflictException("The course overlaps the courses " + conflicts + " of the student !");
+                }
+            }
+
+            // the checks above use the indexes of this registration system, the storage checks again in the
+            // same write in case another registration system on the same database enrolled in between
+            switch (enrollmentRepo.enroll(courseId, studentId)) {
+                case ALREADY_ENROLLED -> throw new AlreadyExistsException("Student was already registered to this course !");
+                case COURSE_FULL -> throw new MaxEnrollmentSurpassedException("The course is full !");
+                case ENROLLED -> {
+                }
+            }
+            enrollments.enroll(courseId, studentId);
+            if (freePlacesView != null) {
+                freePlacesView.enroll(courseId);
+            }
+            if (timetable != null) {
+                timetable.enroll(courseId, studentId);
+            }
+            publish(new RegistrationEvent.Enrolled(courseId, studentId));
+        } finally {
+            unlock();
+        }
+    }
+
+
+    /**
+     * Unregisters a student from a course. The enrollment is removed with a single keyed delete,
+     * the number of students of the course and the credits of the student are derived from it.
+     * @param courseId id of the course
+     * @param studentId id of the student
+     * @throws ElementDoesNotExistException if the student is not registered to this course
+     * @throws SQLException if a query is incorrect
+     */
+    public void unregister(long courseId, long studentId) throws ElementDoesNotExistException, SQLException {
+        retrying(() -> unregisterOnce(courseId, studentId));
+    }
+
+
+    /**
+     * one attempt of unregister, run again by the retry policy if the database rolled it back
+     */
+    private void unregisterOnce(long courseId, long studentId) throws ElementDoesNotExistException, SQLException {
+        writeLock.lock();
+        try {
+            if (!enrollmentRepo.unenroll(courseId, studentId)) {
+                throw new ElementDoesNotExistException("The Student is not registered to this course !");
+            }
+            if (enrollmentIndex != null) {
+                enrollmentIndex.unenroll(courseId, studentId);
+            }
+            if (freePlacesView != null) {
+                freePlacesView.unenroll(courseId);
+            }
+            if (timetable != null) {
+                timetable.unenroll(courseId, studentId);
+            }
+            publish(new RegistrationEvent.Unenrolled(courseId, studentId));
+        } finally {
+            unlock();
+        }
+    }
+
+
+    /**
+     * Unregisters many students from a course in one batch
+     * @param courseId id of the course
+     * @param studentIds ids of the students
+     * @return the ids of the students that were registered and are now removed from the course
+     * @throws SQLException if a query is incorrect
+     */
+    public List<Long> unregisterAll(long courseId, List<Long> studentIds) throws SQLException {
+        return retrying(() -> unregisterAllOnce(courseId, studentIds));
+    }
+
+
+    /**
+     * one attempt of unregisterAll, run again by the retry policy if the database rolled it back
      */
-    public void register(long courseId, long studentId) throws ElementDoesNotExistException, MaxCreditsSurpassedException, MaxEnrollmentSurpassedException, AlreadyExistsException, SQLException {
-        int studentIndex = -1;
-        for (int idx = 0; idx < studentRepo.getAll().size(); idx++){
-            if (studentRepo.getAll().get(idx).getStudentId() == studentId) {
-                studentIndex = idx;
-                break;
+    private List<Long> unregisterAllOnce(long courseId, List<Long> studentIds) throws SQLException {
+        writeLock.lock();
+        try {
+            List<Long> removed = enrollmentRepo.unenrollAll(courseId, studentIds);
+            for (long studentId : removed) {
+                if (enrollmentIndex != null) {
+                    enrollmentIndex.unenroll(courseId, studentId);
+                }
+                if (freePlacesView != null) {
+                    freePlacesView.unenroll(courseId);
+                }
+                if (timetable != null) {
+                    timetable.unenroll(courseId, studentId);
+                }
+                publish(new RegistrationEvent.Unenrolled(courseId, studentId));
             }
+            return removed;
+        } finally {
+            unlock();
         }
+    }
 
-        int courseIndex = -1;
-        for (int idx = 0; idx < courseRepo.getAll().size(); idx++){
-            if (courseRepo.getAll().get(idx).getCourseId() == courseId) {
-                courseIndex = idx;
-                break;
+
+    /**
+     * Returns the enrollment index, loading it from the course rosters on first use.
+     * The registration system must be the only writer of the enrollments for the index to stay exact.
+     * @return the enrollment index
+     * @throws SQLException if a query is incorrect
+     */
+    private EnrollmentIndex enrollments() throws SQLException {
+        EnrollmentIndex index = enrollmentIndex;
+        if (index != null) {
+            return index;
+        }
+        writeLock.lock();
+        try {
+            if (enrollmentIndex == null) {
+                enrollmentIndex = enrollmentIndexOf(courseRepo.getAll(FetchMode.EAGER));
             }
+            return enrollmentIndex;
+        } finally {
+            unlock();
         }
+    }
 
-        if ((courseIndex == -1) || (studentIndex == -1)){
-            throw new ElementDoesNotExistException("The Course or the Student could not be found !");
+
+    /**
+     * Checks if a student is registered to a course
+     * @param courseId id of the course
+     * @param studentId id of the student
+     * @return true if the student is registered to the course
+     * @throws SQLException if a query is incorrect
+     */
+    public boolean isRegistered(long courseId, long studentId) throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return enrollments().isEnrolled(courseId, studentId);
         }
+    }
 
-        Course course = courseRepo.getAll().get(courseIndex);
-        Student student = studentRepo.getAll().get(studentIndex);
 
-        if (course.getStudentsEnrolled().contains(studentId)){
-            throw new AlreadyExistsException("Student was already registered to this course !");
+    /**
+     * Counts the students registered to a course
+     * @param courseId id of the course
+     * @return number of students registered to the course
+     * @throws SQLException if a query is incorrect
+     */
+    public int countStudentsEnrolled(long courseId) throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return enrollments().countStudents(courseId);
         }
+    }
 
-        if (calculateStudentCredits(student) + course.getCredits() > 30){
-            throw new MaxCreditsSurpassedException("The credits will be over 30 by adding this course !");
+
+    /**
+     * Retrieves the students registered to both courses
+     * @param firstCourseId id of the first course
+     * @param secondCourseId id of the second course
+     * @return the students registered to both courses, ascending by id
+     * @throws SQLException if a query is incorrect
+     */
+    public List<Student> retrieveStudentsEnrolledForBothCourses(long firstCourseId, long secondCourseId) throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return findStudents(enrollments().studentsInBoth(firstCourseId, secondCourseId));
         }
+    }
+
 
-        if (course.getNumberOfStudents() >= course.getMaxEnrollment()) {
-            throw new MaxEnrollmentSurpassedException("The course is full !");
+    /**
+     * Counts the students registered to both courses
+     * @param firstCourseId id of the first course
+     * @param secondCourseId id of the second course
+     * @return number of students registered to both courses
+     * @throws SQLException if a query is incorrect
+     */
+    public long countStudentsEnrolledForBothCourses(long firstCourseId, long secondCourseId) throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return enrollments().countStudentsInBoth(firstCourseId, secondCourseId);
         }
+    }
 
-        course.addStudent(studentId);
-        student.addCourse(courseId);
 
-        courseRepo.update(course);
-        studentRepo.update(student);
+    /**
+     * loads students with one lookup of the repository, in the order of the ids
+     */
+    private List<Student> findStudents(long[] studentIds) throws SQLException {
+        return studentRepo.findAllById(Arrays.stream(studentIds).boxed().toList());
     }
 
 
@@ -91,13 +427,151 @@ public class RegistrationSystem {
      * @return a list of courses with free places
      */
     public List<Course> retrieveCoursesWithFreePlaces() throws SQLException {
-        List<Course> freePlacesCourses = new LinkedList<>();
-        for (Course course : courseRepo.getAll()){
-            if (course.getMaxEnrollment() > course.getNumberOfStudents()){
+        try (ConnectionRouter.Budget budget = budget()) {
+            EnrollmentIndex enrollments = enrollments();
+            List<Course> freePlacesCourses = new LinkedList<>();
+            for (FreePlacesView.OpenCourse open : freePlaces().openCourses(FreePlacesView.Order.COURSE_ID)) {
+                List<Long> students = new LinkedList<>();
+                for (long studentId : enrollments.studentsOf(open.courseId())) {
+                    students.add(studentId);
+                }
+                Course course = new Course(open.name(), open.teacherId(), open.maxEnrollment(), open.credits(), open.courseId(), students);
+                course.setTimeSlots(open.timeSlots());
                 freePlacesCourses.add(course);
             }
+            return freePlacesCourses;
+        }
+    }
+
+
+    /**
+     * Retrieves the courses with free places from the maintained view, without reading the database.
+     * Repeated calls without changes in between return the same snapshot
+     * @param order ordering of the courses (by id, most remaining seats first or by name)
+     * @return immutable list of the courses with free places and their seat counts
+     * @throws SQLException if the view has to be loaded and a query is incorrect
+     */
+    public List<FreePlacesView.OpenCourse> retrieveCoursesWithFreePlaces(FreePlacesView.Order order) throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return freePlaces().openCourses(order);
+        }
+    }
+
+
+    /**
+     * Retrieves the courses a student can still register to : not registered yet, with free places, within the
+     * credits the student has left (30 minus the credits of the student) and not overlapping the time slots of
+     * the courses of the student.
+     * The candidates come from a range query on the credits order of the free places view, the credits of the
+     * student are summed from the view and the enrollment index, so no course is read from the database
+     * @param studentId id of the student
+     * @return the eligible courses, by credits ascending then most remaining seats first
+     * @throws ElementDoesNotExistException if the student does not exist
+     * @throws SQLException if the indexes have to be loaded and a query is incorrect
+     */
+    public List<FreePlacesView.OpenCourse> retrieveEligibleCourses(long studentId) throws ElementDoesNotExistException, SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            if (!studentIds().contains(studentId)) {
+                throw new ElementDoesNotExistException("The Student could not be found !");
+            }
+            EnrollmentIndex enrollments = enrollments();
+            FreePlacesView view = freePlaces();
+            Timetable courseTimes = timetable();
+
+            int remainingCredits = MAX_CREDITS - view.credits(enrollments.coursesOf(studentId));
+            List<FreePlacesView.OpenCourse> eligible = new ArrayList<>();
+            for (FreePlacesView.OpenCourse course : view.openCoursesUpTo(remainingCredits)) {
+                if (!enrollments.isEnrolled(course.courseId(), studentId)
+                        && courseTimes.conflicts(courseTimes.slotsOf(course.courseId()), studentId).isEmpty()) {
+                    eligible.add(course);
+                }
+            }
+            return eligible;
+        }
+    }
+
+
+    /**
+     * Returns the view of the courses with free places, loading it on first use
+     * @return the free places view
+     * @throws SQLException if a query is incorrect
+     */
+    private FreePlacesView freePlaces() throws SQLException {
+        FreePlacesView view = freePlacesView;
+        if (view != null) {
+            return view;
+        }
+        writeLock.lock();
+        try {
+            if (freePlacesView == null) {
+                freePlacesView = freePlacesViewOf(courseRepo.getAll(FetchMode.EAGER));
+            }
+            return freePlacesView;
+        } finally {
+            unlock();
+        }
+    }
+
+
+    /**
+     * Returns the timetable of the students, loading it on first use
+     * @return the timetable
+     * @throws SQLException if a query is incorrect
+     */
+    private Timetable timetable() throws SQLException {
+        Timetable loaded = timetable;
+        if (loaded != null) {
+            return loaded;
+        }
+        writeLock.lock();
+        try {
+            if (timetable == null) {
+                timetable = timetableOf(courseRepo.getAll(FetchMode.EAGER));
+            }
+            return timetable;
+        } finally {
+            unlock();
+        }
+    }
+
+
+    /**
+     * Changes the number of places of a course
+     * @param courseId course id
+     * @param maxEnrollment new maximum number of students
+     * @throws ElementDoesNotExistException if the course does not exist
+     * @throws MaxEnrollmentSurpassedException if more students are already enrolled
+     * @throws SQLException if a query is incorrect
+     */
+    public void changeMaxEnrollment(long courseId, int maxEnrollment) throws ElementDoesNotExistException, MaxEnrollmentSurpassedException, SQLException {
+        this.<ElementDoesNotExistException, MaxEnrollmentSurpassedException, RuntimeException, RuntimeException, RuntimeException>retrying(
+                () -> changeMaxEnrollmentOnce(courseId, maxEnrollment));
+    }
+
+
+    /**
+     * one attempt of changeMaxEnrollment, run again by the retry policy if the database rolled it back
+     */
+    private void changeMaxEnrollmentOnce(long courseId, int maxEnrollment) throws ElementDoesNotExistException, MaxEnrollmentSurpassedException, SQLException {
+        writeLock.lock();
+        try {
+            Course course = courseRepo.findById(courseId);
+            if (course == null) {
+                throw new ElementDoesNotExistException("The Course could not be found !");
+            }
+            if (course.getNumberOfStudents() > maxEnrollment) {
+                throw new MaxEnrollmentSurpassedException("More students are already enrolled to the course !");
+            }
+
+            course.setMaxEnrollment(maxEnrollment);
+            courseRepo.update(course);
+            if (freePlacesView != null) {
+                freePlacesView.changeMaxEnrollment(courseId, maxEnrollment);
+            }
+            publish(new RegistrationEvent.CourseCapacityChanged(courseId, maxEnrollment));
+        } finally {
+            unlock();
         }
-        return freePlacesCourses;
     }
 
 
@@ -107,13 +581,9 @@ public class RegistrationSystem {
      * @return a list of students enrolled for this course
      */
     public List<Student> retrieveStudentsEnrolledForACourse(long courseId) throws SQLException {
-        List<Student> studentsEnrolledForTheCourse = new LinkedList<>();
-        for (Student student : studentRepo.getAll()){
-            if (student.getEnrolledCourses().contains(courseId)){
-                studentsEnrolledForTheCourse.add(student);
-            }
+        try (ConnectionRouter.Budget budget = budget()) {
+            return findStudents(enrollments().studentsOf(courseId));
         }
-        return studentsEnrolledForTheCourse;
     }
 
 
@@ -122,7 +592,9 @@ public class RegistrationSystem {
      * @return a list containing all available courses
      */
     public List<Course> getAllCourses() throws SQLException {
-        return courseRepo.getAll();
+        try (ConnectionRouter.Budget budget = budget()) {
+            return courseRepo.getAll();
+        }
     }
 
 
@@ -134,45 +606,112 @@ public class RegistrationSystem {
      * @throws NotTeachingTheCourseException if the specified teacher is not teaching this course
      */
     public void deleteTeacherCourse(long courseId, long teacherId) throws ElementDoesNotExistException, NotTeachingTheCourseException, SQLException {
-        int teacherIndex = -1;
-        for (int idx = 0; idx < teacherRepo.getAll().size(); idx++){
-            if (teacherRepo.getAll().get(idx).getTeacherId() == teacherId) {
-                teacherIndex = idx;
-                break;
+        this.<ElementDoesNotExistException, NotTeachingTheCourseException, RuntimeException, RuntimeException, RuntimeException>retrying(
+                () -> deleteTeacherCourseOnce(courseId, teacherId));
+    }
+
+
+    /**
+     * one attempt of deleteTeacherCourse, run again by the retry policy if the database rolled it back
+     */
+    private void deleteTeacherCourseOnce(long courseId, long teacherId) throws ElementDoesNotExistException, NotTeachingTheCourseException, SQLException {
+        writeLock.lock();
+        try {
+            Course course = courseRepo.findById(courseId);
+            Teacher teacher = teacherRepo.findById(teacherId);
+
+            if ((course == null) || (teacher == null)){
+                throw new ElementDoesNotExistException("The Course or the Teacher could not be found !");
             }
-        }
 
-        int courseIndex = -1;
-        for (int idx = 0; idx < courseRepo.getAll().size(); idx++){
-            if (courseRepo.getAll().get(idx).getCourseId() == courseId) {
-                courseIndex = idx;
-                break;
+            if (course.getTeacher() != teacherId) {
+                throw new NotTeachingTheCourseException("Course is not taught by this teacher !");
             }
-        }
 
-        if ((courseIndex == -1) || (teacherIndex == -1)){
-            throw new ElementDoesNotExistException("The Course or the Teacher could not be found !");
+            // the roster of the index under the lock, before it is removed with the course
+            long[] roster = enrollments().studentsOf(courseId);
+            // the enrollments and the course are removed together, the students' course lists are derived from them
+            courseRepo.delete(course);
+            courseDeleted(course, roster);
+        } finally {
+            unlock();
         }
+    }
 
-        Course course = courseRepo.getAll().get(courseIndex);
-        Teacher teacher = teacherRepo.getAll().get(teacherIndex);
 
-        if (course.getTeacher() != teacherId) {
-            throw new NotTeachingTheCourseException("Course is not taught by this teacher !");
-        }
+    /**
+     * Deletes a teacher with all the courses he is teaching and their enrollments
+     * @param teacherId teacher id
+     * @throws ElementDoesNotExistException if the teacher does not exist
+     * @throws SQLException if a query is incorrect
+     */
+    public void deleteTeacher(long teacherId) throws ElementDoesNotExistException, SQLException {
+        retrying(() -> deleteTeacherOnce(teacherId));
+    }
+
 
+    /**
+     * one attempt of deleteTeacher, run again by the retry policy if the database rolled it back
+     */
+    private void deleteTeacherOnce(long teacherId) throws ElementDoesNotExistException, SQLException {
+        writeLock.lock();
+        try {
+            Teacher teacher = teacherRepo.findById(teacherId);
+            if (teacher == null) {
+                throw new ElementDoesNotExistException("The Teacher could not be found !");
+            }
 
-        for (long studentId : course.getStudentsEnrolled()){
-            for (Student student : studentRepo.getAll()){
-                if (student.getStudentId() == studentId) {
-                    student.deleteCourse(courseId);
-                    studentRepo.update(student);
+            List<Course> courses = new ArrayList<>();
+            List<long[]> rosters = new ArrayList<>();
+            EnrollmentIndex enrollments = enrollments();
+            for (long courseId : teacher.getCourses()) {
+                Course course = courseRepo.findById(courseId);
+                if (course != null) {
+                    courses.add(course);
+                    rosters.add(enrollments.studentsOf(courseId));
                 }
             }
+
+            // the repository deletes the enrollments, the courses and the teacher
+            teacherRepo.delete(teacher);
+            List<Long> courseIds = new ArrayList<>();
+            for (int idx = 0; idx < courses.size(); idx++) {
+                courseDeleted(courses.get(idx), rosters.get(idx));
+                courseIds.add(courses.get(idx).getCourseId());
+            }
+            if (teacherSearchIndex != null) {
+                teacherSearchIndex.remove(teacherId);
+            }
+            publish(new RegistrationEvent.TeacherDeleted(teacherId, courseIds));
+        } finally {
+            unlock();
         }
+    }
 
-        courseRepo.delete(course);
 
+    /**
+     * Removes a deleted course from the indexes and publishes it, with its enrollments
+     * @param course the deleted course
+     * @param roster the students that were enrolled, read from the enrollment index under the write lock
+     */
+    private void courseDeleted(Course course, long[] roster) {
+        long courseId = course.getCourseId();
+        if (enrollmentIndex != null) {
+            enrollmentIndex.removeCourse(courseId);
+        }
+        if (courseNameIndex != null) {
+            courseNameIndex.remove(courseId);
+        }
+        if (courseSearchIndex != null) {
+            courseSearchIndex.remove(courseId);
+        }
+        if (freePlacesView != null) {
+            freePlacesView.removeCourse(courseId);
+        }
+        if (timetable != null) {
+            timetable.removeCourse(courseId, roster);
+        }
+        publish(new RegistrationEvent.CourseDeleted(courseId, course.getTeacher(), Arrays.stream(roster).boxed().toList()));
     }
 
 
@@ -185,12 +724,27 @@ public class RegistrationSystem {
      * @throws SQLException if a query is incorrect
      */
     public void addTeacher(String firstName, String lastName, long teacherId) throws AlreadyExistsException, SQLException {
-        for (Teacher teacher : teacherRepo.getAll()){
-            if (teacher.getTeacherId() == teacherId){
+        retrying(() -> addTeacherOnce(firstName, lastName, teacherId));
+    }
+
+
+    /**
+     * one attempt of addTeacher, run again by the retry policy if the database rolled it back
+     */
+    private void addTeacherOnce(String firstName, String lastName, long teacherId) throws AlreadyExistsException, SQLException {
+        writeLock.lock();
+        try {
+            if (teacherRepo.findById(teacherId) != null){
                 throw new AlreadyExistsException("Teacher already exists !");
             }
+            teacherRepo.create(new Teacher(firstName, lastName, new LinkedList<>(), teacherId));
+            if (teacherSearchIndex != null) {
+                teacherSearchIndex.add(teacherId, firstName, lastName);
+            }
+            publish(new RegistrationEvent.TeacherAdded(teacherId, firstName, lastName));
+        } finally {
+            unlock();
         }
-        teacherRepo.create(new Teacher(firstName, lastName, new LinkedList<>(), teacherId));
     }
 
 
@@ -203,12 +757,30 @@ public class RegistrationSystem {
      * @throws SQLException if a query is incorrect
      */
     public void addStudent(String firstName, String lastName, long studentId) throws AlreadyExistsException, SQLException {
-        for (Student student : studentRepo.getAll()){
-            if (student.getStudentId() == studentId){
+        retrying(() -> addStudentOnce(firstName, lastName, studentId));
+    }
+
+
+    /**
+     * one attempt of addStudent, run again by the retry policy if the database rolled it back
+     */
+    private void addStudentOnce(String firstName, String lastName, long studentId) throws AlreadyExistsException, SQLException {
+        writeLock.lock();
+        try {
+            if (studentRepo.findById(studentId) != null){
                 throw new AlreadyExistsException("Student already exists !");
             }
+            studentRepo.create(new Student(firstName, lastName, new LinkedList<>(), studentId));
+            if (studentIdIndex != null) {
+                studentIdIndex.add(studentId);
+            }
+            if (studentSearchIndex != null) {
+                studentSearchIndex.add(studentId, firstName, lastName);
+            }
+            publish(new RegistrationEvent.StudentAdded(studentId, firstName, lastName));
+        } finally {
+            unlock();
         }
-        studentRepo.create(new Student(firstName, lastName, new LinkedList<>(), studentId));
     }
 
 
@@ -224,43 +796,73 @@ public class RegistrationSystem {
      * @throws SQLException if a query is incorrect
      */
     public void addCourse(String name, long teacherId, int maxEnrollment, int credits, long courseId) throws AlreadyExistsException, ElementDoesNotExistException, SQLException {
-        for (Course course : courseRepo.getAll()) {
-            if (course.getCourseId() == courseId) {
+        addCourse(name, teacherId, maxEnrollment, credits, courseId, List.of());
+    }
+
+
+    /**
+     * Adds a course that meets at weekly time slots to the database
+     * @param name course name
+     * @param teacherId id of the teacher teaching the course
+     * @param maxEnrollment maximum number of students who can join the course
+     * @param credits number of credits
+     * @param courseId course id
+     * @param timeSlots weekly meeting times of the course
+     * @throws AlreadyExistsException if the course already exists
+     * @throws ElementDoesNotExistException if the teacher does not exist
+     * @throws SQLException if a query is incorrect
+     */
+    public void addCourse(String name, long teacherId, int maxEnrollment, int credits, long courseId, List<TimeSlot> timeSlots) throws AlreadyExistsException, ElementDoesNotExistException, SQLException {
+        this.<AlreadyExistsException, ElementDoesNotExistException, RuntimeException, RuntimeException, RuntimeException>retrying(
+                () -> addCourseOnce(name, teacherId, maxEnrollment, credits, courseId, timeSlots));
+    }
+
+
+    /**
+     * one attempt of addCourse, run again by the retry policy if the database rolled it back
+     */
+    private void addCourseOnce(String name, long teacherId, int maxEnrollment, int credits, long courseId, List<TimeSlot> timeSlots) throws AlreadyExistsException, ElementDoesNotExistException, SQLException {
+        writeLock.lock();
+        try {
+            if (courseRepo.findById(courseId) != null) {
                 throw new AlreadyExistsException("Course already exists !");
             }
-        }
 
-        int teacherIndex = -1;
-        for (int idx = 0; idx < teacherRepo.getAll().size(); idx++){
-            if (teacherRepo.getAll().get(idx).getTeacherId() == teacherId) {
-                teacherIndex = idx;
-                break;
+            if (teacherRepo.findById(teacherId) == null) {
+                throw new ElementDoesNotExistException("The specified Teacher does not exist !");
             }
-        }
 
-        if (teacherIndex == -1) {
-            throw new ElementDoesNotExistException("The specified Teacher does not exist !");
+            Course course = new Course(name, teacherId, maxEnrollment, credits, courseId, new LinkedList<>());
+            course.setTimeSlots(timeSlots);
+            courseRepo.create(course);
+            if (courseNameIndex != null) {
+                courseNameIndex.add(courseId, name);
+            }
+            if (courseSearchIndex != null) {
+                courseSearchIndex.add(courseId, name);
+            }
+            if (freePlacesView != null) {
+                freePlacesView.addCourse(courseId, name, teacherId, credits, maxEnrollment, 0, timeSlots);
+            }
+            if (timetable != null) {
+                timetable.addCourse(courseId, timeSlots);
+            }
+            publish(new RegistrationEvent.CourseAdded(courseId, name, teacherId, maxEnrollment, credits));
+        } finally {
+            unlock();
         }
-
-        courseRepo.create(new Course(name, teacherId, maxEnrollment, credits, courseId, new LinkedList<>()));
     }
 
 
     /**
-     * Calculates the number of credits for a specified student
+     * Calculates the number of credits for a specified student, from the cached credits of the courses
      * @param student a student
      * @return his number of credits
      */
     public int calculateStudentCredits(Student student) throws SQLException {
-        int nrCredits = 0;
-        for (long courseId : student.getEnrolledCourses()){
-            for (Course course : courseRepo.getAll()) {
-                if (course.getCourseId() == courseId) {
-                    nrCredits += course.getCredits();
-                }
-            }
+        try (ConnectionRouter.Budget budget = budget()) {
+            return freePlaces().credits(student.getEnrolledCourses().stream().mapToLong(Long::longValue).toArray());
         }
-        return nrCredits;
     }
 
 
@@ -269,7 +871,9 @@ public class RegistrationSystem {
      * @return list of all students
      */
     public List<Student> retrieveAllStudents() throws SQLException {
-        return studentRepo.getAll();
+        try (ConnectionRouter.Budget budget = budget()) {
+            return studentRepo.getAll();
+        }
     }
 
 
@@ -278,49 +882,835 @@ public class RegistrationSystem {
      * @return list of all teachers
      */
     public List<Teacher> retrieveAllTeachers() throws SQLException {
-        return teacherRepo.getAll();
+        try (ConnectionRouter.Budget budget = budget()) {
+            return teacherRepo.getAll();
+        }
     }
 
 
     /**
-     * Sorts all students ascending by id
-     * @return a list with all students sorted ascending by their id
+     * Retrieves the ids and names of all students, without building the students
+     * @return list of student summaries, ascending by id
+     * @throws SQLException if a query is incorrect
      */
-    public List<Student> sortStudentsById() throws SQLException {
-        List<Student> students = studentRepo.getAll();
-        Comparator<Student> studentComparator = Comparator.comparing(Student::getStudentId);
-        return students.stream().sorted(studentComparator).toList();
+    public List<StudentSummary> retrieveStudentSummaries() throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return summaries(studentRepo, student -> new StudentSummary(student.getStudentId(), student.getFirstName(), student.getLastName()),
+                    Comparator.comparingLong(StudentSummary::studentId));
+        }
     }
 
 
     /**
-     * Sorts all courses alphabetically by name
-     * @return a list of courses sorted alphabetically by their name
+     * Retrieves the ids and names of all teachers, without building the teachers
+     * @return list of teacher summaries, ascending by id
+     * @throws SQLException if a query is incorrect
      */
-    public List<Course> sortCoursesByName() throws SQLException {
-        List<Course> courses = courseRepo.getAll();
-        Comparator<Course> courseComparator = Comparator.comparing(Course::getName);
-        return courses.stream().sorted(courseComparator).toList();
+    public List<TeacherSummary> retrieveTeacherSummaries() throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return summaries(teacherRepo, teacher -> new TeacherSummary(teacher.getTeacherId(), teacher.getFirstName(), teacher.getLastName()),
+                    Comparator.comparingLong(TeacherSummary::teacherId));
+        }
     }
 
 
     /**
-     * Filters the students enrolled to at least a course
-     * @return the list of students enrolled to one or more courses
+     * Retrieves the ids, names, teachers, credits and free places of all courses, without building the courses
+     * @return list of course summaries, ascending by id
+     * @throws SQLException if a query is incorrect
      */
-    public List<Student> filterStudentsEnrolled() throws SQLException {
-        List<Student> students = studentRepo.getAll();
-        return students.stream().filter(stud -> stud.getNumberOfCourses() > 0).toList();
+    public List<CourseSummary> retrieveCourseSummaries() throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return summaries(courseRepo, course -> new CourseSummary(course.getCourseId(), course.getName(), course.getTeacher(),
+                    course.getCredits(), course.getMaxEnrollment() - course.getNumberOfStudents()), Comparator.comparingLong(CourseSummary::courseId));
+        }
     }
 
 
     /**
-     * Filters the courses with at least a student enrolled for
+     * Retrieves the summaries of all courses sorted alphabetically by name (then by id)
+     * @return list of course summaries
+     * @throws SQLException if a query is incorrect
+     */
+    public List<CourseSummary> retrieveCourseSummariesByName() throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            List<CourseSummary> courses = new ArrayList<>(retrieveCourseSummaries());
+            courses.sort(Comparator.comparing(CourseSummary::name).thenComparingLong(CourseSummary::courseId));
+            return courses;
+        }
+    }
+
+
+    /**
+     * lists the summaries with the narrow query of the repository, or built from its elements if it has none
+     */
+    @SuppressWarnings("unchecked")
+    private static <T, S> List<S> summaries(ICrudRepository<T> repository, Function<T, S> summary, Comparator<S> byId) throws SQLException {
+        if (repository instanceof ISummaryRepository<?> summaryRepository) {
+            return ((ISummaryRepository<S>) summaryRepository).getSummaries();
+        }
+        List<S> summaries = new ArrayList<>();
+        for (T element : repository.getAll()) {
+            summaries.add(summary.apply(element));
+        }
+        summaries.sort(byId);
+        return summaries;
+    }
+
+
+    /**
+     * Returns the ordered index of the student ids, loading it on first use
+     * @return the student ids, ascending
+     * @throws SQLException if a query is incorrect
+     */
+    private NavigableSet<Long> studentIds() throws SQLException {
+        NavigableSet<Long> index = studentIdIndex;
+        if (index != null) {
+            return index;
+        }
+        writeLock.lock();
+        try {
+            if (studentIdIndex == null) {
+                studentIdIndex = studentIdsOf(studentRepo.getAll());
+            }
+            return studentIdIndex;
+        } finally {
+            unlock();
+        }
+    }
+
+
+    /**
+     * Returns the index of the courses ordered by name, loading it on first use
+     * @return the course name index
+     * @throws SQLException if a query is incorrect
+     */
+    private CourseNameIndex courseNames() throws SQLException {
+        CourseNameIndex index = courseNameIndex;
+        if (index != null) {
+            return index;
+        }
+        writeLock.lock();
+        try {
+            if (courseNameIndex == null) {
+                courseNameIndex = courseNameIndexOf(courseRepo.getAll());
+            }
+            return courseNameIndex;
+        } finally {
+            unlock();
+        }
+    }
+
+
+    /**
+     * Sorts all students ascending by id (the order the repositories return them in)
+     * @return a list with all students sorted ascending by their id
+     */
+    public List<Student> sortStudentsById() throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return studentRepo.getAll();
+        }
+    }
+
+
+    /**
+     * Retrieves the students with an id in a range
+     * @param fromId lowest id, inclusive
+     * @param toId highest id, inclusive
+     * @return the students in the range, ascending by id
+     * @throws SQLException if a query is incorrect
+     */
+    public List<Student> retrieveStudentsByIdRange(long fromId, long toId) throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            if (fromId > toId) {
+                return new ArrayList<>();
+            }
+            return studentRepo.findAllById(new ArrayList<>(studentIds().subSet(fromId, true, toId, true)));
+        }
+    }
+
+
+    /**
+     * Sorts all courses alphabetically by name, in the order of the course name index
+     * @return a list of courses sorted alphabetically by their name
+     */
+    public List<Course> sortCoursesByName() throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return courseRepo.findAllById(courseNames().ids());
+        }
+    }
+
+
+    /**
+     * A page of a listing
+     * @param elements the elements of the page, in the order of the listing
+     * @param total the number of elements of the whole listing
+     */
+    public record Page<T>(List<T> elements, int total) {
+    }
+
+
+    /**
+     * Retrieves a page of the students ascending by id : the ids of the page are taken from the id index,
+     * only the students of the page are loaded
+     * @param offset number of students skipped
+     * @param limit maximum number of students
+     * @return the students of the page and the number of all students
+     * @throws SQLException if a query is incorrect
+     */
+    public Page<Student> retrieveStudentsPage(int offset, int limit) throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            NavigableSet<Long> ids = studentIds();
+            List<Long> pageIds = new ArrayList<>();
+            int total = 0;
+            for (long studentId : ids) {
+                if (total >= offset && pageIds.size() < limit) {
+                    pageIds.add(studentId);
+                }
+                total++;
+            }
+            return new Page<>(studentRepo.findAllById(pageIds), total);
+        }
+    }
+
+
+    /**
+     * Retrieves a page of the courses, ascending by id or alphabetically by name : the ids of the page are taken
+     * from the course name index, only the courses of the page are loaded
+     * @param offset number of courses skipped
+     * @param limit maximum number of courses
+     * @param byName true to order by name, false by id
+     * @return the courses of the page and the number of all courses
+     * @throws SQLException if a query is incorrect
+     */
+    public Page<Course> retrieveCoursesPage(int offset, int limit, boolean byName) throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            List<Long> ids = courseNames().ids();
+            if (!byName) {
+                ids.sort(null);
+            }
+            int from = Math.min(offset, ids.size());
+            int to = from + Math.min(limit, ids.size() - from);
+            return new Page<>(courseRepo.findAllById(ids.subList(from, to)), ids.size());
+        }
+    }
+
+
+    /**
+     * Retrieves the courses with a name in a range, e.g. the courses from "M" to "P"
+     * @param fromName lowest name, inclusive
+     * @param toName highest name, exclusive
+     * @return the courses in the range, alphabetically by name
+     * @throws SQLException if a query is incorrect
+     */
+    public List<Course> retrieveCoursesByNameRange(String fromName, String toName) throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return courseRepo.findAllById(courseNames().between(fromName, toName));
+        }
+    }
+
+
+    /**
+     * Retrieves the first courses alphabetically
+     * @param limit maximum number of courses
+     * @return the first courses by name
+     * @throws SQLException if a query is incorrect
+     */
+    public List<Course> retrieveFirstCoursesByName(int limit) throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return courseRepo.findAllById(courseNames().first(limit));
+        }
+    }
+
+
+    /**
+     * Searches the students by (partial or misspelled) first and last name, ignoring case and accents
+     * @param query one or more words of the name, e.g. "ali gog"
+     * @param limit maximum number of students
+     * @return the best matching students, exact matches first
+     * @throws SQLException if a query is incorrect
+     */
+    public List<Student> searchStudents(String query, int limit) throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            NameSearchIndex index = studentSearchIndex;
+            if (index == null) {
+                writeLock.lock();
+                try {
+                    if (studentSearchIndex == null) {
+                        studentSearchIndex = studentSearchIndexOf(studentRepo.getAll());
+                    }
+                    index = studentSearchIndex;
+                } finally {
+                    unlock();
+                }
+            }
+            return studentRepo.findAllById(index.search(query, limit));
+        }
+    }
+
+
+    /**
+     * Searches the teachers by (partial or misspelled) first and last name, ignoring case and accents
+     * @param query one or more words of the name
+     * @param limit maximum number of teachers
+     * @return the best matching teachers, exact matches first
+     * @throws SQLException if a query is incorrect
+     */
+    public List<Teacher> searchTeachers(String query, int limit) throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            NameSearchIndex index = teacherSearchIndex;
+            if (index == null) {
+                writeLock.lock();
+                try {
+                    if (teacherSearchIndex == null) {
+                        teacherSearchIndex = teacherSearchIndexOf(teacherRepo.getAll());
+                    }
+                    index = teacherSearchIndex;
+                } finally {
+                    unlock();
+                }
+            }
+            return teacherRepo.findAllById(index.search(query, limit));
+        }
+    }
+
+
+    /**
+     * Searches the courses by (partial or misspelled) name, ignoring case and accents
+     * @param query one or more words of the name
+     * @param limit maximum number of courses
+     * @return the best matching courses, exact matches first
+     * @throws SQLException if a query is incorrect
+     */
+    public List<Course> searchCourses(String query, int limit) throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            NameSearchIndex index = courseSearchIndex;
+            if (index == null) {
+                writeLock.lock();
+                try {
+                    if (courseSearchIndex == null) {
+                        courseSearchIndex = courseSearchIndexOf(courseRepo.getAll());
+                    }
+                    index = courseSearchIndex;
+                } finally {
+                    unlock();
+                }
+            }
+            return courseRepo.findAllById(index.search(query, limit));
+        }
+    }
+
+
+    private static EnrollmentIndex enrollmentIndexOf(List<Course> courses) {
+        EnrollmentIndex index = new EnrollmentIndex();
+        for (Course course : courses) {
+            index.enrollAll(course.getCourseId(), course.getStudentsEnrolled());
+        }
+        return index;
+    }
+
+
+    private static FreePlacesView freePlacesViewOf(List<Course> courses) {
+        FreePlacesView view = new FreePlacesView();
+        for (Course course : courses) {
+            view.addCourse(course.getCourseId(), course.getName(), course.getTeacher(), course.getCredits(),
+                    course.getMaxEnrollment(), course.getNumberOfStudents(), course.getTimeSlots());
+        }
+        return view;
+    }
+
+
+    private static Timetable timetableOf(List<Course> courses) {
+        Timetable timetable = new Timetable();
+        for (Course course : courses) {
+            if (!course.getTimeSlots().isEmpty()) {
+                timetable.addCourse(course.getCourseId(), course.getTimeSlots());
+                for (long studentId : course.getStudentsEnrolled()) {
+                    timetable.enroll(course.getCourseId(), studentId);
+                }
+            }
+        }
+        return timetable;
+    }
+
+
+    private static NavigableSet<Long> studentIdsOf(List<Student> students) {
+        NavigableSet<Long> index = new ConcurrentSkipListSet<>();
+        for (Student student : students) {
+            index.add(student.getStudentId());
+        }
+        return index;
+    }
+
+
+    private static CourseNameIndex courseNameIndexOf(List<Course> courses) {
+        CourseNameIndex index = new CourseNameIndex();
+        for (Course course : courses) {
+            index.add(course.getCourseId(), course.getName());
+        }
+        return index;
+    }
+
+
+    private static NameSearchIndex studentSearchIndexOf(List<Student> students) {
+        NameSearchIndex index = new NameSearchIndex();
+        for (Student student : students) {
+            index.add(student.getStudentId(), student.getFirstName(), student.getLastName());
+        }
+        return index;
+    }
+
+
+    private static NameSearchIndex teacherSearchIndexOf(List<Teacher> teachers) {
+        NameSearchIndex index = new NameSearchIndex();
+        for (Teacher teacher : teachers) {
+            index.add(teacher.getTeacherId(), teacher.getFirstName(), teacher.getLastName());
+        }
+        return index;
+    }
+
+
+    private static NameSearchIndex courseSearchIndexOf(List<Course> courses) {
+        NameSearchIndex index = new NameSearchIndex();
+        for (Course course : courses) {
+            index.add(course.getCourseId(), course.getName());
+        }
+        return index;
+    }
+
+
+    /**
+     * Outcome of the warm-up
+     * @param millis duration of the warm-up
+     * @param memoryBytes growth of the used heap (approximate, the garbage collector runs meanwhile)
+     * @param attempts number of loads (a load is discarded if a write happened meanwhile)
+     */
+    public record WarmUpReport(long millis, long memoryBytes, int teachers, int courses, int students, long enrollments, int attempts) {
+        @Override
+        public String toString() {
+            return String.format("%d teachers, %d courses, %d students, %d enrollments loaded in %d ms (%.1f MB, %d attempt(s))",
+                    teachers, courses, students, enrollments, millis, memoryBytes / 1048576.0, attempts);
+        }
+    }
+
+
+    /**
+     * Loads the teachers, the courses with their rosters and the students concurrently (each on its own connection,
+     * taken from a pool of the primary that is closed after the warm-up) and builds all the indexes from them, instead of leaving the first requests to load them one by one.
+     * The registration system can be used meanwhile : until the warm-up is done it works without the missing
+     * indexes, loading them on demand as before (see isWarmedUp). The loads do not block the writes; if a write
+     * happens while they run they are discarded and repeated (at most 3 times, then the indexes stay lazy)
+     * @return the report of the warm-up, completed exceptionally if a query failed
+     */
+    public CompletableFuture<WarmUpReport> startWarmUp() {
+        CompletableFuture<WarmUpReport> report = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                report.complete(warmUp());
+            } catch (SQLException | RuntimeException e) {
+                report.completeExceptionally(e);
+            }
+        }, "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+        return report;
+    }
+
+
+    /**
+     * @return the warm-up started by the constructor, null if there is none
+     */
+    public CompletableFuture<WarmUpReport> getStartupWarmUp() {
+        return startupWarmUp;
+    }
+
+
+    private WarmUpReport warmUp() throws SQLException {
+        Runtime runtime = Runtime.getRuntime();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        ExecutorService loaders = Executors.newFixedThreadPool(3, task -> {
+            Thread thread = new Thread(task, "warm-up-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // a connection per loader and database, reused by the repeated loads
+        List<ConnectionRouter.Pool> pools = new ArrayList<>(routers.size());
+        for (ConnectionRouter router : routers) {
+            pools.add(router.pool(3));
+        }
+        try {
+            for (int attempt = 1; ; attempt++) {
+                long startVersion = version.get();
+                Future<List<Teacher>> teachers = loaders.submit(() -> onPrimary(teacherRepo, pools));
+                Future<List<Course>> courses = loaders.submit(() -> onPrimary(courseRepo, pools));
+                Future<List<Student>> students = loaders.submit(() -> onPrimary(studentRepo, pools));
+
+                List<Teacher> loadedTeachers = result(teachers);
+                List<Course> loadedCourses = result(courses);
+                List<Student> loadedStudents = result(students);
+                writeLock.lock();
+                try {
+                    if (version.get() != startVersion) {
+                        if (attempt < 3) {
+                            continue;
+                        }
+                        throw new SQLException("The warm-up was interrupted by writes " + attempt + " times !");
+                    }
+                    // the indexes already loaded on demand meanwhile are as current as these
+                    if (enrollmentIndex == null) {
+                        enrollmentIndex = enrollmentIndexOf(loadedCourses);
+                    }
+                    if (freePlacesView == null) {
+                        freePlacesView = freePlacesViewOf(loadedCourses);
+                    }
+                    if (timetable == null) {
+                        timetable = timetableOf(loadedCourses);
+                    }
+                    if (courseNameIndex == null) {
+                        courseNameIndex = courseNameIndexOf(loadedCourses);
+                    }
+                    if (courseSearchIndex == null) {
+                        courseSearchIndex = courseSearchIndexOf(loadedCourses);
+                    }
+                    if (studentIdIndex == null) {
+                        studentIdIndex = studentIdsOf(loadedStudents);
+                    }
+                    if (studentSearchIndex == null) {
+                        studentSearchIndex = studentSearchIndexOf(loadedStudents);
+                    }
+                    if (teacherSearchIndex == null) {
+                        teacherSearchIndex = teacherSearchIndexOf(loadedTeachers);
+                    }
+                } finally {
+                    unlock();
+                }
+
+                long enrollments = 0;
+                for (Course course : loadedCourses) {
+                    enrollments += course.getNumberOfStudents();
+                }
+                return new WarmUpReport((System.nanoTime() - start) / 1_000_000, runtime.totalMemory() - runtime.freeMemory() - usedBefore,
+                        loadedTeachers.size(), loadedCourses.size(), loadedStudents.size(), enrollments, attempt);
+            }
+        } finally {
+            loaders.shutdown();
+            pools.forEach(ConnectionRouter.Pool::close);
+        }
+    }
+
+
+    /**
+     * loads all elements from the primary database over the pooled connections, a replica could miss the writes
+     * counted by the version
+     */
+    private <T> List<T> onPrimary(ICrudRepository<T> repository, List<ConnectionRouter.Pool> pools) throws SQLException {
+        List<ConnectionRouter.Pin> pooled = new ArrayList<>(routers.size());
+        for (int idx = 0; idx < routers.size(); idx++) {
+            pooled.add(routers.get(idx).usePool(pools.get(idx)));
+        }
+        try (ConnectionRouter.Pin pin = readFromPrimary()) {
+            return repository.getAll(FetchMode.EAGER);
+        } finally {
+            pooled.forEach(ConnectionRouter.Pin::close);
+        }
+    }
+
+
+    /**
+     * waits for a load of the warm-up
+     */
+    private static <T> T result(Future<T> load) throws SQLException {
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new SQLException("The warm-up failed !", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The warm-up was interrupted !", e);
+        }
+    }
+
+
+    /**
+     * Tells whether all the indexes are loaded; until then (e.g. during the warm-up) the registration system
+     * works in degraded mode, loading the missing indexes on demand
+     * @return true if all the indexes are loaded
+     */
+    public boolean isWarmedUp() {
+        return enrollmentIndex != null && freePlacesView != null && timetable != null && courseNameIndex != null && courseSearchIndex != null
+                && studentIdIndex != null && studentSearchIndex != null && teacherSearchIndex != null;
+    }
+
+
+    /**
+     * Runs the reports (filters and aggregates over all elements) in parallel on a dedicated pool,
+     * so they do not compete with the common pool. The results are the same as in sequential mode.
+     * @param parallelism number of threads, 1 to run the reports sequentially
+     */
+    public void setReportParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be at least 1 !");
+        }
+        ForkJoinPool previous = reportPool;
+        reportPool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+
+    /**
+     * Runs a report pipeline over a loaded snapshot, in parallel on the report pool if there is one.
+     * The pipelines must keep the encounter order (toList, sorted, ordered collectors) to stay deterministic.
+     */
+    private <T, R> R report(List<T> snapshot, Function<Stream<T>, R> pipeline) {
+        ForkJoinPool pool = reportPool;
+        if (pool == null) {
+            return pipeline.apply(snapshot.stream());
+        }
+        // an array backed list splits in balanced halves, a linked list only peels off small batches
+        List<T> elements = new ArrayList<>(snapshot);
+        return pool.submit(() -> pipeline.apply(elements.parallelStream())).join();
+    }
+
+
+    /**
+     * Filters the students enrolled to at least a course
+     * @return the list of students enrolled to one or more courses
+     */
+    public List<Student> filterStudentsEnrolled() throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return report(studentRepo.getAll(FetchMode.EAGER), students -> students.filter(stud -> stud.getNumberOfCourses() > 0).toList());
+        }
+    }
+
+
+    /**
+     * Filters the courses with at least a student enrolled for
      * @return the list of courses with one or more students
      */
     public List<Course> filterCoursesWithStudents() throws SQLException {
-        List<Course> courses = courseRepo.getAll();
-        return courses.stream().filter(course -> course.getNumberOfStudents() > 0).toList();
+        try (ConnectionRouter.Budget budget = budget()) {
+            return report(courseRepo.getAll(FetchMode.EAGER), courses -> courses.filter(course -> course.getNumberOfStudents() > 0).toList());
+        }
     }
 
+
+    /**
+     * Calculates the number of credits of every student
+     * @return the credits by student id, ascending by id
+     * @throws SQLException if a query is incorrect
+     */
+    public Map<Long, Integer> calculateCreditsPerStudent() throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            Map<Long, Integer> creditsByCourse = new HashMap<>();
+            for (Course course : courseRepo.getAll()) {
+                creditsByCourse.put(course.getCourseId(), course.getCredits());
+            }
+            return report(studentRepo.getAll(FetchMode.EAGER), students -> students.collect(Collectors.toMap(Student::getStudentId,
+                    student -> student.getEnrolledCourses().stream().mapToInt(courseId -> creditsByCourse.getOrDefault(courseId, 0)).sum(),
+                    Integer::sum, TreeMap::new)));
+        }
+    }
+
+
+    /**
+     * Creates the enrollment analytics report (fill rates, teacher loads, credit distribution,
+     * oversubscribed and empty courses) in one pass over the enrollments
+     * @return the report
+     * @throws SQLException if a query is incorrect
+     */
+    public EnrollmentReport createEnrollmentReport() throws SQLException {
+        try (ConnectionRouter.Budget budget = budget()) {
+            return EnrollmentReport.build(enrollmentRepo, studentIds().size());
+        }
+    }
+
+
+    /**
+     * Returns the bus on which every change is published (students, teachers and courses added,
+     * enrollments, deleted courses and teachers), for caches and views to follow them incrementally
+     * @return the event bus
+     */
+    public EventBus getEventBus() {
+        return eventBus;
+    }
+
+
+    /**
+     * Limits the time the statements of an operation may take, a write and its retries included.
+     * When it is used up the operation fails with a SQLTimeoutException (only for the JDBC repositories)
+     * @param millis the time budget of an operation, 0 for no limit
+     */
+    public void setOperationBudget(long millis) {
+        this.operationBudgetMillis = millis;
+    }
+
+
+    /**
+     * one attempt of a write returning a result, with the errors of its checks (RuntimeException for the unused ones)
+     */
+    @FunctionalInterface
+    private interface Attempt<T, E1 extends Exception, E2 extends Exception, E3 extends Exception, E4 extends Exception, E5 extends Exception> {
+        T run() throws SQLException, E1, E2, E3, E4, E5;
+    }
+
+
+    /**
+     * one attempt of a write without result, with the errors of its checks (RuntimeException for the unused ones)
+     */
+    @FunctionalInterface
+    private interface VoidAttempt<E1 extends Exception, E2 extends Exception, E3 extends Exception, E4 extends Exception, E5 extends Exception> {
+        void run() throws SQLException, E1, E2, E3, E4, E5;
+    }
+
+
+    /**
+     * Runs a write within the time budget, again while the retry policy allows it if the database rolled it back.
+     * The other errors of the attempt (the checks of the write) are thrown unchanged. An attempt with a single
+     * kind of check error has its types inferred, the others name them at the call.
+     * @param attempt : one attempt of the write
+     * @return the result of the attempt that succeeded
+     * @throws SQLException if the write is given up
+     */
+    private <T, E1 extends Exception, E2 extends Exception, E3 extends Exception, E4 extends Exception, E5 extends Exception>
+            T retrying(Attempt<T, E1, E2, E3, E4, E5> attempt) throws SQLException, E1, E2, E3, E4, E5 {
+        try (ConnectionRouter.Budget budget = budget()) {
+            RetryPolicy.Attempts attempts = retryPolicy.start();
+            while (true) {
+                try {
+                    T result = attempt.run();
+                    attempts.succeeded();
+                    return result;
+                } catch (SQLException e) {
+                    attempts.failed(e);
+                }
+            }
+        }
+    }
+
+
+    private <E1 extends Exception, E2 extends Exception, E3 extends Exception, E4 extends Exception, E5 extends Exception>
+            void retrying(VoidAttempt<E1, E2, E3, E4, E5> attempt) throws SQLException, E1, E2, E3, E4, E5 {
+        this.<Void, E1, E2, E3, E4, E5>retrying(() -> {
+            attempt.run();
+            return null;
+        });
+    }
+
+
+    /**
+     * starts the time budget of an operation, an operation called by another one stays in the budget of the caller
+     */
+    private ConnectionRouter.Budget budget() {
+        if (routers.isEmpty()) {
+            return ConnectionRouter.Budget.NONE;
+        }
+        if (routers.size() == 1) {
+            return routers.get(0).budget(operationBudgetMillis);
+        }
+        List<ConnectionRouter.Budget> budgets = new ArrayList<>(routers.size());
+        for (ConnectionRouter router : routers) {
+            budgets.add(router.budget(operationBudgetMillis));
+        }
+        return () -> budgets.forEach(ConnectionRouter.Budget::close);
+    }
+
+
+    /**
+     * @return the log of the slow statements of the JDBC repositories (of the first shard, the shards can share it),
+     * null if they are not logged
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return routers.isEmpty() ? null : routers.get(0).getSlowQueryLog();
+    }
+
+
+    /**
+     * Sets how the writes failing because of contention in the database are retried
+     * @param retryPolicy the policy, new RetryPolicy(1, 0, 0, 0) to not retry
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+
+    /**
+     * @return the counters of the retried writes
+     */
+    public RetryPolicy.Metrics getRetryMetrics() {
+        return retryPolicy.getMetrics();
+    }
+
+
+    /**
+     * Sends the reads of the current thread to the primary database until the pin is closed, for a caller
+     * that must see the latest writes of other threads (the own writes of a thread are seen anyway)
+     * @return the pin, to close after the reads
+     */
+    public ConnectionRouter.Pin readFromPrimary() {
+        if (routers.isEmpty()) {
+            return ConnectionRouter.Pin.NONE;
+        }
+        if (routers.size() == 1) {
+            return routers.get(0).pinToPrimary();
+        }
+        List<ConnectionRouter.Pin> pins = new ArrayList<>(routers.size());
+        for (ConnectionRouter router : routers) {
+            pins.add(router.pinToPrimary());
+        }
+        return () -> pins.forEach(ConnectionRouter.Pin::close);
+    }
+
+
+    /**
+     * Returns the number of changes made through this registration system. It grows with every change,
+     * so equal versions mean unchanged data (changes made by other applications on the same database are not counted)
+     * @return the version of the data
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+
+    /**
+     * An event claimed on the bus, waiting for the write lock to be released
+     */
+    private record PendingEvent(long sequence, RegistrationEvent event) {
+    }
+
+
+    /**
+     * counts a change and claims its place on the bus (called under the write lock, in the order of the writes),
+     * the event is handed to the bus when the lock is released
+     */
+    private void publish(RegistrationEvent event) {
+        version.incrementAndGet();
+        if (!writeLock.isHeldByCurrentThread()) {
+            eventBus.publish(event);
+            return;
+        }
+        pendingEvents.get().add(new PendingEvent(eventBus.claim(), event));
+    }
+
+
+    /**
+     * releases the write lock, then publishes the events claimed under it : a full ring makes this writer
+     * wait for the subscribers, not the other writers
+     */
+    private void unlock() {
+        writeLock.unlock();
+        if (writeLock.isHeldByCurrentThread()) {
+            return;
+        }
+        List<PendingEvent> pending = pendingEvents.get();
+        for (PendingEvent event : pending) {
+            eventBus.publish(event.sequence(), event.event());
+        }
+        pending.clear();
+    }
 }
@@ -0,0 +1,169 @@
+package Controller;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retries the write operations of the registration system that failed because of contention in the database
+ * (deadlocks, lock wait timeouts, serialization failures). The database rolled the failed transaction back,
+ * so the whole operation is run again, with its checks. Between the attempts the thread sleeps a random time
+ * up to an exponentially growing delay (full jitter), so that the writers that collided do not collide again.
+ * An operation is given up after the maximum number of attempts or when the next attempt would end after the budget.
+ */
+public class RetryPolicy {
+    // MySQL error codes of a deadlock and of a lock wait timeout
+    private static final int DEADLOCK = 1213;
+    private static final int LOCK_WAIT_TIMEOUT = 1205;
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long budgetMillis;
+
+    private final AtomicLong operations = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong backoffMillis = new AtomicLong();
+
+
+    /**
+     * Counters of the retries since the policy was created
+     * @param operations operations that failed at least once with a retryable error
+     * @param retries attempts run again
+     * @param recovered operations that succeeded after retrying
+     * @param exhausted operations given up after retrying (attempts or budget used up)
+     * @param backoffMillis total time slept between the attempts
+     */
+    public record Metrics(long operations, long retries, long recovered, long exhausted, long backoffMillis) {
+        @Override
+        public String toString() {
+            return String.format("%d operations retried (%d retries, %d recovered, %d given up, %d ms backoff)",
+                    operations, retries, recovered, exhausted, backoffMillis);
+        }
+    }
+
+
+    /**
+     * Constructor
+     * @param maxAttempts maximum number of attempts of an operation (1 disables the retries)
+     * @param baseDelayMillis upper bound of the first delay, doubled for every further retry
+     * @param maxDelayMillis upper bound of a delay
+     * @param budgetMillis time after which an operation is not tried again
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, long budgetMillis) {
+        if (maxAttempts < 1 || baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis || budgetMillis < 0) {
+            throw new IllegalArgumentException("Invalid retry policy !");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.budgetMillis = budgetMillis;
+    }
+
+
+    /**
+     * Default policy : 5 attempts within 2 seconds, delays from 20 up to 500 ms
+     */
+    public RetryPolicy() {
+        this(5, 20, 500, 2000);
+    }
+
+
+    /**
+     * Tells whether an error is caused by contention and the operation may succeed when run again
+     * @param exception the error of an attempt
+     * @return true for deadlocks, lock wait timeouts and other transaction rollbacks (SQL state class 40)
+     */
+    public static boolean isRetryable(SQLException exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                for (SQLException next = sqlException; next != null; next = next.getNextException()) {
+                    if (next instanceof SQLTransactionRollbackException
+                            || next.getErrorCode() == DEADLOCK || next.getErrorCode() == LOCK_WAIT_TIMEOUT
+                            || (next.getSQLState() != null && next.getSQLState().startsWith("40"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Starts an operation
+     * @return the attempts of the operation
+     */
+    public Attempts start() {
+        return new Attempts();
+    }
+
+
+    /**
+     * @return the counters of the retries
+     */
+    public Metrics getMetrics() {
+        return new Metrics(operations.get(), retries.get(), recovered.get(), exhausted.get(), backoffMillis.get());
+    }
+
+
+    /**
+     * Attempts of one operation : every failed attempt is reported to failed, which waits or gives up,
+     * the one that succeeds to succeeded
+     */
+    public class Attempts {
+        private final long start = System.nanoTime();
+        private int attempt = 1;
+
+
+        private Attempts() {
+        }
+
+
+        /**
+         * Records that the last attempt succeeded
+         */
+        public void succeeded() {
+            if (attempt > 1) {
+                recovered.incrementAndGet();
+            }
+        }
+
+
+        /**
+         * Waits before the next attempt if the error is retryable and the attempts and the budget allow it
+         * @param exception the error of the last attempt
+         * @throws SQLException the error, if the operation is given up
+         */
+        public void failed(SQLException exception) throws SQLException {
+            if (!isRetryable(exception)) {
+                throw exception;
+            }
+            if (attempt == 1) {
+                operations.incrementAndGet();
+            }
+
+            long bound = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+            long delay = bound == 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            if (attempt >= maxAttempts || elapsedMillis + delay > budgetMillis) {
+                exhausted.incrementAndGet();
+                throw exception;
+            }
+
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exhausted.incrementAndGet();
+                throw exception;
+            }
+            backoffMillis.addAndGet(delay);
+            retries.incrementAndGet();
+            attempt++;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package Events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process event bus on a lock-free ring buffer.
+ * Publishers claim a sequence number with one atomic increment, write the event into its slot and mark
+ * the slot published; they only wait when the ring is full (the slowest subscriber is a whole ring behind).
+ * Every subscription has its own thread, which takes all the events published since its last batch
+ * and hands them to its handler at once, so a busy subscriber catches up in few large batches.
+ * Events published before a subscription started are not delivered to it.
+ */
+public class EventBus implements AutoCloseable {
+    private final AtomicReferenceArray<RegistrationEvent> ring;
+    // sequence number of the event last published in every slot
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+
+    /**
+     * A subscriber with its delivery thread
+     */
+    public class Subscription implements AutoCloseable {
+        private final EventHandler handler;
+        private final Thread thread;
+        // sequence number of the last event handled
+        private final AtomicLong handled;
+        private volatile boolean sleeping;
+        private volatile boolean running = true;
+
+        private Subscription(String name, EventHandler handler) {
+            this.handler = handler;
+            this.handled = new AtomicLong(claimed.get());
+            this.thread = new Thread(this::run, "event-bus-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            long next = handled.get() + 1;
+            int idle = 0;
+            while (running || next <= claimed.get()) {
+                List<RegistrationEvent> batch = new ArrayList<>();
+                long sequence = next;
+                while (batch.size() < ring.length() && published.get((int) sequence & mask) == sequence) {
+                    batch.add(ring.get((int) sequence & mask));
+                    sequence++;
+                }
+
+                if (batch.isEmpty()) {
+                    idle = idle(idle);
+                    continue;
+                }
+                idle = 0;
+                try {
+                    handler.onEvents(batch);
+                } catch (RuntimeException e) {
+                    // a failing subscriber must not stop the delivery
+                    e.printStackTrace();
+                }
+                handled.set(sequence - 1);
+                next = sequence;
+            }
+        }
+
+        /**
+         * spins, then yields, then sleeps until a publisher wakes the thread up
+         */
+        private int idle(int idle) {
+            if (idle < 100) {
+                Thread.onSpinWait();
+            } else if (idle < 200) {
+                Thread.yield();
+            } else {
+                sleeping = true;
+                // a publish between the last check and this one would not have woken the thread
+                if (published.get((int) (handled.get() + 1) & mask) != handled.get() + 1 && running) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+                }
+                sleeping = false;
+            }
+            return idle + 1;
+        }
+
+        private void wake() {
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        /**
+         * Delivers the events published so far, then stops the subscription
+         */
+        @Override
+        public void close() {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            subscriptions.remove(this);
+        }
+    }
+
+
+    /**
+     * Constructor
+     * @param capacity : number of slots of the ring, rounded up to a power of two
+     */
+    public EventBus(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        ring = new AtomicReferenceArray<>(size);
+        published = new AtomicLongArray(size);
+        for (int idx = 0; idx < size; idx++) {
+            published.set(idx, -1);
+        }
+        mask = size - 1;
+    }
+
+
+    /**
+     * Subscribes a handler, which receives the events published from now on
+     * @param name : name of the subscriber (for its thread)
+     * @param handler : event handler
+     * @return the subscription, to close when the handler is not needed anymore
+     */
+    public Subscription subscribe(String name, EventHandler handler) {
+        Subscription subscription = new Subscription(name, handler);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+
+    /**
+     * Publishes an event to every subscriber. Does not wait for them, unless the ring is full
+     * @param event : event
+     */
+    public void publish(RegistrationEvent event) {
+        publish(claim(), event);
+    }
+
+
+    /**
+     * Reserves the place of the next event in the order of delivery, without waiting. A writer claims under its
+     * lock, in the order of its changes, and publishes once it released the lock, so a full ring does not
+     * block the other writers. Every claimed sequence must be published, the subscribers wait for it
+     * @return the sequence number of the event
+     */
+    public long claim() {
+        return claimed.incrementAndGet();
+    }
+
+
+    /**
+     * Publishes an event at a claimed sequence number. Does not wait for the subscribers, unless the ring is full
+     * @param sequence : sequence number returned by claim
+     * @param event : event
+     */
+    public void publish(long sequence, RegistrationEvent event) {
+        while (sequence - ring.length() > slowestHandled()) {
+            LockSupport.parkNanos(1000);
+        }
+        int slot = (int) sequence & mask;
+        ring.set(slot, event);
+        published.set(slot, sequence);
+        for (Subscription subscription : subscriptions) {
+            subscription.wake();
+        }
+    }
+
+
+    private long slowestHandled() {
+        long slowest = Long.MAX_VALUE;
+        for (Subscription subscription : subscriptions) {
+            slowest = Math.min(slowest, subscription.handled.get());
+        }
+        return slowest;
+    }
+
+
+    /**
+     * Waits until every subscriber handled the events published before the call
+     * @param timeout : maximum time to wait
+     * @param unit : unit of the timeout
+     * @return false if the time ran out
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean awaitDelivery(long timeout, TimeUnit unit) throws InterruptedException {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (slowestHandled() < target && subscriptions.stream().anyMatch(subscription -> subscription.running)) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+
+
+    /**
+     * Delivers the published events, then stops every subscription
+     */
+    @Override
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+}
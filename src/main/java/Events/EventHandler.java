@@ -0,0 +1,15 @@
+package Events;
+
+import java.util.List;
+
+/**
+ * Subscriber of the event bus
+ */
+public interface EventHandler {
+
+    /**
+     * handles the next events, in publishing order. Called by the thread of the subscription only
+     * @param batch : every event published since the previous batch (up to the ring size)
+     */
+    void onEvents(List<RegistrationEvent> batch);
+}
@@ -0,0 +1,66 @@
+package Events;
+
+import java.util.List;
+
+/**
+ * A change made by the registration system, published after it was written to the database
+ */
+public interface RegistrationEvent {
+
+    /**
+     * a student was added
+     */
+    record StudentAdded(long studentId, String firstName, String lastName) implements RegistrationEvent {
+    }
+
+
+    /**
+     * a teacher was added
+     */
+    record TeacherAdded(long teacherId, String firstName, String lastName) implements RegistrationEvent {
+    }
+
+
+    /**
+     * a course was added
+     */
+    record CourseAdded(long courseId, String name, long teacherId, int maxEnrollment, int credits) implements RegistrationEvent {
+    }
+
+
+    /**
+     * the number of places of a course was changed
+     */
+    record CourseCapacityChanged(long courseId, int maxEnrollment) implements RegistrationEvent {
+    }
+
+
+    /**
+     * a student was registered to a course
+     */
+    record Enrolled(long courseId, long studentId) implements RegistrationEvent {
+    }
+
+
+    /**
+     * a student was unregistered from a course
+     */
+    record Unenrolled(long courseId, long studentId) implements RegistrationEvent {
+    }
+
+
+    /**
+     * a course was deleted, with the enrollments of its students
+     * @param unenrolledStudents the students that were enrolled to it
+     */
+    record CourseDeleted(long courseId, long teacherId, List<Long> unenrolledStudents) implements RegistrationEvent {
+    }
+
+
+    /**
+     * a teacher was deleted, with his courses (each of them also published as CourseDeleted before)
+     * @param deletedCourses the courses he was teaching
+     */
+    record TeacherDeleted(long teacherId, List<Long> deletedCourses) implements RegistrationEvent {
+    }
+}
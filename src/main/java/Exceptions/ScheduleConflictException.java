@@ -0,0 +1,10 @@
+package Exceptions;
+
+/**
+ * Thrown when a course meets at the same time as a course the student is already registered to
+ */
+public class ScheduleConflictException extends Exception{
+    public ScheduleConflictException(String message){
+        super(message);
+    }
+}
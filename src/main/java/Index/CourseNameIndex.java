@@ -0,0 +1,102 @@
+package Index;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Course ids ordered by course name, ties broken by id. Backed by a skip list, so the order is kept
+ * on every add and remove and readers can iterate while it changes. Thread safe.
+ */
+public class CourseNameIndex {
+    private final NavigableSet<Key> keys = new ConcurrentSkipListSet<>();
+    private final Map<Long, String> namesById = new ConcurrentHashMap<>();
+
+
+    private record Key(String name, long courseId) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int byName = name.compareTo(other.name);
+            return byName != 0 ? byName : Long.compare(courseId, other.courseId);
+        }
+    }
+
+
+    /**
+     * Adds a course, or moves it if it was already added under another name
+     * @param courseId : course id
+     * @param name : course name
+     */
+    public void add(long courseId, String name) {
+        String previous = namesById.put(courseId, name);
+        if (previous != null) {
+            keys.remove(new Key(previous, courseId));
+        }
+        keys.add(new Key(name, courseId));
+    }
+
+
+    /**
+     * Removes a course
+     * @param courseId : course id
+     */
+    public void remove(long courseId) {
+        String name = namesById.remove(courseId);
+        if (name != null) {
+            keys.remove(new Key(name, courseId));
+        }
+    }
+
+
+    /**
+     * @return number of courses
+     */
+    public int size() {
+        return namesById.size();
+    }
+
+
+    /**
+     * @return the course ids, ascending by name
+     */
+    public List<Long> ids() {
+        return collect(keys.iterator(), Integer.MAX_VALUE);
+    }
+
+
+    /**
+     * @param limit : maximum number of ids
+     * @return the ids of the first courses by name
+     */
+    public List<Long> first(int limit) {
+        return collect(keys.iterator(), limit);
+    }
+
+
+    /**
+     * @param fromName : lowest name, inclusive
+     * @param toName : highest name, exclusive
+     * @return the ids of the courses with a name in the range, ascending by name
+     */
+    public List<Long> between(String fromName, String toName) {
+        if (fromName.compareTo(toName) >= 0) {
+            return new ArrayList<>();
+        }
+        Key from = new Key(fromName, Long.MIN_VALUE);
+        Key to = new Key(toName, Long.MIN_VALUE);
+        return collect(keys.subSet(from, true, to, false).iterator(), Integer.MAX_VALUE);
+    }
+
+
+    private static List<Long> collect(Iterator<Key> iterator, int limit) {
+        List<Long> ids = new ArrayList<>();
+        while (ids.size() < limit && iterator.hasNext()) {
+            ids.add(iterator.next().courseId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,182 @@
+package Index;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bidirectional enrollment index : a compressed bitmap of student ids per course and of course ids per student.
+ * Membership checks, rosters, counts and intersections never touch the repositories. Thread safe.
+ */
+public class EnrollmentIndex {
+    private final Map<Long, LongBitmap> studentsByCourse = new HashMap<>();
+    private final Map<Long, LongBitmap> coursesByStudent = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+
+    /**
+     * Adds an enrollment
+     * @param courseId : course id
+     * @param studentId : student id
+     */
+    public void enroll(long courseId, long studentId) {
+        lock.writeLock().lock();
+        try {
+            studentsByCourse.computeIfAbsent(courseId, id -> new LongBitmap()).add(studentId);
+            coursesByStudent.computeIfAbsent(studentId, id -> new LongBitmap()).add(courseId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Adds all enrollments of a course
+     * @param courseId : course id
+     * @param studentIds : the students enrolled to it
+     */
+    public void enrollAll(long courseId, List<Long> studentIds) {
+        lock.writeLock().lock();
+        try {
+            LongBitmap students = studentsByCourse.computeIfAbsent(courseId, id -> new LongBitmap());
+            for (long studentId : studentIds) {
+                students.add(studentId);
+                coursesByStudent.computeIfAbsent(studentId, id -> new LongBitmap()).add(courseId);
+            }
+            if (students.isEmpty()) {
+                studentsByCourse.remove(courseId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Removes an enrollment
+     * @param courseId : course id
+     * @param studentId : student id
+     */
+    public void unenroll(long courseId, long studentId) {
+        lock.writeLock().lock();
+        try {
+            removeFrom(studentsByCourse, courseId, studentId);
+            removeFrom(coursesByStudent, studentId, courseId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Removes a course with all its enrollments
+     * @param courseId : course id
+     */
+    public void removeCourse(long courseId) {
+        lock.writeLock().lock();
+        try {
+            LongBitmap students = studentsByCourse.remove(courseId);
+            if (students != null) {
+                students.forEach(studentId -> removeFrom(coursesByStudent, studentId, courseId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    private static void removeFrom(Map<Long, LongBitmap> bitmaps, long key, long id) {
+        LongBitmap bitmap = bitmaps.get(key);
+        if (bitmap != null && bitmap.remove(id) && bitmap.isEmpty()) {
+            bitmaps.remove(key);
+        }
+    }
+
+
+    /**
+     * @return true if the student is enrolled to the course
+     */
+    public boolean isEnrolled(long courseId, long studentId) {
+        lock.readLock().lock();
+        try {
+            LongBitmap students = studentsByCourse.get(courseId);
+            return students != null && students.contains(studentId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * @return number of students enrolled to the course
+     */
+    public int countStudents(long courseId) {
+        lock.readLock().lock();
+        try {
+            LongBitmap students = studentsByCourse.get(courseId);
+            return students == null ? 0 : (int) students.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * @return the ids of the students enrolled to the course, ascending
+     */
+    public long[] studentsOf(long courseId) {
+        lock.readLock().lock();
+        try {
+            LongBitmap students = studentsByCourse.get(courseId);
+            return students == null ? new long[0] : students.toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * @return the ids of the courses the student is enrolled to, ascending
+     */
+    public long[] coursesOf(long studentId) {
+        lock.readLock().lock();
+        try {
+            LongBitmap courses = coursesByStudent.get(studentId);
+            return courses == null ? new long[0] : courses.toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * @return the ids of the students enrolled to both courses, ascending
+     */
+    public long[] studentsInBoth(long firstCourseId, long secondCourseId) {
+        lock.readLock().lock();
+        try {
+            LongBitmap first = studentsByCourse.get(firstCourseId);
+            LongBitmap second = studentsByCourse.get(secondCourseId);
+            return first == null || second == null ? new long[0] : first.and(second).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * @return the number of students enrolled to both courses
+     */
+    public long countStudentsInBoth(long firstCourseId, long secondCourseId) {
+        lock.readLock().lock();
+        try {
+            LongBitmap first = studentsByCourse.get(firstCourseId);
+            LongBitmap second = studentsByCourse.get(secondCourseId);
+            return first == null || second == null ? 0 : first.andCardinality(second);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
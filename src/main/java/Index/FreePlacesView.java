@@ -0,0 +1,284 @@
+package Index;
+
+import Model.TimeSlot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Maintained view of the courses with free places. Every enrollment, capacity change and course
+ * added or deleted updates the seat counts and bumps the version; the sorted snapshots are built
+ * at most once per version and ordering, on the first read after a change, so repeated reads
+ * return the same immutable list without any work. The courses with free places are also kept ordered by
+ * credits (then most remaining seats), so the courses up to a number of credits are read with a range query.
+ * Thread safe.
+ */
+public class FreePlacesView {
+    private final Map<Long, Seats> seatsByCourse = new HashMap<>();
+    private final NavigableMap<CreditsKey, OpenCourse> openByCredits = new TreeMap<>();
+    private long version;
+    private volatile Snapshots snapshots = new Snapshots(-1);
+
+
+    /**
+     * Orderings of the courses with free places
+     */
+    public enum Order {
+        COURSE_ID(Comparator.comparingLong(OpenCourse::courseId)),
+        MOST_REMAINING_SEATS(Comparator.comparingInt(OpenCourse::remainingSeats).reversed()
+                .thenComparingLong(OpenCourse::courseId)),
+        NAME(Comparator.comparing(OpenCourse::name).thenComparingLong(OpenCourse::courseId));
+
+        private final Comparator<OpenCourse> comparator;
+
+        Order(Comparator<OpenCourse> comparator) {
+            this.comparator = comparator;
+        }
+    }
+
+
+    /**
+     * A course with free places, with its time slots
+     */
+    public record OpenCourse(long courseId, String name, long teacherId, int credits, int maxEnrollment, int students,
+                             List<TimeSlot> timeSlots) {
+        public int remainingSeats() {
+            return maxEnrollment - students;
+        }
+    }
+
+
+    /**
+     * position of a course with free places in the credits order : credits ascending, remaining seats
+     * descending, course id ascending
+     */
+    private record CreditsKey(int credits, int remainingSeats, long courseId) implements Comparable<CreditsKey> {
+        static CreditsKey of(OpenCourse course) {
+            return new CreditsKey(course.credits(), course.remainingSeats(), course.courseId());
+        }
+
+        @Override
+        public int compareTo(CreditsKey other) {
+            if (credits != other.credits) {
+                return Integer.compare(credits, other.credits);
+            }
+            if (remainingSeats != other.remainingSeats) {
+                return Integer.compare(other.remainingSeats, remainingSeats);
+            }
+            return Long.compare(courseId, other.courseId);
+        }
+    }
+
+
+    private static final class Seats {
+        final String name;
+        final long teacherId;
+        final int credits;
+        final List<TimeSlot> timeSlots;
+        int maxEnrollment;
+        int students;
+        // the entry of the course in the credits order, null while the course is full
+        OpenCourse open;
+
+        Seats(String name, long teacherId, int credits, List<TimeSlot> timeSlots, int maxEnrollment, int students) {
+            this.name = name;
+            this.teacherId = teacherId;
+            this.credits = credits;
+            this.timeSlots = List.copyOf(timeSlots);
+            this.maxEnrollment = maxEnrollment;
+            this.students = students;
+        }
+    }
+
+
+    private static final class Snapshots {
+        final long version;
+        final Map<Order, List<OpenCourse>> byOrder = new EnumMap<>(Order.class);
+
+        Snapshots(long version) {
+            this.version = version;
+        }
+    }
+
+
+    /**
+     * Adds a course
+     * @param courseId : course id
+     * @param name : course name
+     * @param teacherId : teacher id
+     * @param credits : credits
+     * @param maxEnrollment : number of places
+     * @param students : number of students already enrolled
+     * @param timeSlots : time slots of the course
+     */
+    public synchronized void addCourse(long courseId, String name, long teacherId, int credits, int maxEnrollment, int students,
+                                       List<TimeSlot> timeSlots) {
+        Seats seats = new Seats(name, teacherId, credits, timeSlots, maxEnrollment, students);
+        Seats previous = seatsByCourse.put(courseId, seats);
+        if (previous != null && previous.open != null) {
+            openByCredits.remove(CreditsKey.of(previous.open));
+        }
+        reorder(courseId, seats);
+        changed();
+    }
+
+
+    /**
+     * Removes a course
+     * @param courseId : course id
+     */
+    public synchronized void removeCourse(long courseId) {
+        Seats seats = seatsByCourse.remove(courseId);
+        if (seats != null) {
+            if (seats.open != null) {
+                openByCredits.remove(CreditsKey.of(seats.open));
+            }
+            changed();
+        }
+    }
+
+
+    /**
+     * Changes the number of places of a course
+     * @param courseId : course id
+     * @param maxEnrollment : new number of places
+     */
+    public synchronized void changeMaxEnrollment(long courseId, int maxEnrollment) {
+        Seats seats = seatsByCourse.get(courseId);
+        if (seats != null && seats.maxEnrollment != maxEnrollment) {
+            seats.maxEnrollment = maxEnrollment;
+            reorder(courseId, seats);
+            changed();
+        }
+    }
+
+
+    /**
+     * Takes a place of a course
+     * @param courseId : course id
+     */
+    public synchronized void enroll(long courseId) {
+        changeStudents(courseId, 1);
+    }
+
+
+    /**
+     * Frees a place of a course
+     * @param courseId : course id
+     */
+    public synchronized void unenroll(long courseId) {
+        changeStudents(courseId, -1);
+    }
+
+
+    /**
+     * bumps the version and drops the snapshots of the previous one
+     */
+    private void changed() {
+        version++;
+        snapshots = new Snapshots(version);
+    }
+
+
+    private void changeStudents(long courseId, int delta) {
+        Seats seats = seatsByCourse.get(courseId);
+        if (seats != null) {
+            seats.students += delta;
+            reorder(courseId, seats);
+            changed();
+        }
+    }
+
+
+    /**
+     * moves a course to its place in the credits order after its seats changed, or takes it out if it is full
+     */
+    private void reorder(long courseId, Seats seats) {
+        if (seats.open != null) {
+            openByCredits.remove(CreditsKey.of(seats.open));
+            seats.open = null;
+        }
+        if (seats.maxEnrollment > seats.students) {
+            seats.open = new OpenCourse(courseId, seats.name, seats.teacherId, seats.credits, seats.maxEnrollment, seats.students, seats.timeSlots);
+            openByCredits.put(CreditsKey.of(seats.open), seats.open);
+        }
+    }
+
+
+    /**
+     * Range query on the credits order
+     * @param maxCredits : most credits of a course
+     * @return the courses with free places and at most these credits, by credits ascending then most remaining seats first
+     */
+    public synchronized List<OpenCourse> openCoursesUpTo(int maxCredits) {
+        if (maxCredits == Integer.MAX_VALUE) {
+            return new ArrayList<>(openByCredits.values());
+        }
+        // the first key with more credits
+        return new ArrayList<>(openByCredits.headMap(new CreditsKey(maxCredits + 1, Integer.MAX_VALUE, Long.MIN_VALUE), false).values());
+    }
+
+
+    /**
+     * @param courseIds : ids of courses
+     * @return the sum of their credits, the unknown courses count 0
+     */
+    public synchronized int credits(long[] courseIds) {
+        int credits = 0;
+        for (long courseId : courseIds) {
+            Seats seats = seatsByCourse.get(courseId);
+            if (seats != null) {
+                credits += seats.credits;
+            }
+        }
+        return credits;
+    }
+
+
+    /**
+     * @param order : ordering of the courses
+     * @return immutable snapshot of the courses with free places
+     */
+    public List<OpenCourse> openCourses(Order order) {
+        Snapshots current = snapshots;
+        List<OpenCourse> courses = current.byOrder.get(order);
+        if (courses != null) {
+            return courses;
+        }
+        synchronized (this) {
+            current = snapshots;
+            courses = current.byOrder.get(order);
+            if (courses == null) {
+                courses = build(order);
+                // published copy on write, a reader never sees the map being filled
+                Snapshots updated = new Snapshots(current.version);
+                updated.byOrder.putAll(current.byOrder);
+                updated.byOrder.put(order, courses);
+                current = updated;
+            }
+            snapshots = current;
+            return courses;
+        }
+    }
+
+
+    private List<OpenCourse> build(Order order) {
+        List<OpenCourse> courses = new ArrayList<>();
+        for (Map.Entry<Long, Seats> entry : seatsByCourse.entrySet()) {
+            Seats seats = entry.getValue();
+            if (seats.maxEnrollment > seats.students) {
+                courses.add(new OpenCourse(entry.getKey(), seats.name, seats.teacherId, seats.credits, seats.maxEnrollment, seats.students,
+                        seats.timeSlots));
+            }
+        }
+        courses.sort(order.comparator);
+        return Collections.unmodifiableList(courses);
+    }
+}
@@ -0,0 +1,129 @@
+package Index;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Immutable interval tree of half-open intervals [start, end) tagged with an id. The intervals are kept sorted
+ * by start in arrays that form an implicit balanced tree (the middle of every range is the root of the range),
+ * every root keeps the largest end of its range. An overlap query visits O(log n + k) intervals.
+ * Adding or removing an interval returns a new tree (copying the arrays), so readers never see a change.
+ */
+public final class IntervalTree {
+    public static final IntervalTree EMPTY = new IntervalTree(new int[0], new int[0], new long[0]);
+
+    private final int[] starts;
+    private final int[] ends;
+    private final long[] ids;
+    private final int[] maxEnds;
+
+
+    private IntervalTree(int[] starts, int[] ends, long[] ids) {
+        this.starts = starts;
+        this.ends = ends;
+        this.ids = ids;
+        this.maxEnds = new int[starts.length];
+        computeMaxEnds(0, starts.length);
+    }
+
+
+    private int computeMaxEnds(int low, int high) {
+        if (low >= high) {
+            return Integer.MIN_VALUE;
+        }
+        int middle = (low + high) >>> 1;
+        maxEnds[middle] = Math.max(ends[middle], Math.max(computeMaxEnds(low, middle), computeMaxEnds(middle + 1, high)));
+        return maxEnds[middle];
+    }
+
+
+    /**
+     * @return number of intervals
+     */
+    public int size() {
+        return starts.length;
+    }
+
+
+    /**
+     * @param id : id of the interval
+     * @param start : start (included)
+     * @param end : end (excluded)
+     * @return a tree with the interval added
+     */
+    public IntervalTree with(long id, int start, int end) {
+        int position = 0;
+        while (position < starts.length && starts[position] <= start) {
+            position++;
+        }
+        int size = starts.length + 1;
+        int[] newStarts = new int[size];
+        int[] newEnds = new int[size];
+        long[] newIds = new long[size];
+        System.arraycopy(starts, 0, newStarts, 0, position);
+        System.arraycopy(ends, 0, newEnds, 0, position);
+        System.arraycopy(ids, 0, newIds, 0, position);
+        newStarts[position] = start;
+        newEnds[position] = end;
+        newIds[position] = id;
+        System.arraycopy(starts, position, newStarts, position + 1, starts.length - position);
+        System.arraycopy(ends, position, newEnds, position + 1, starts.length - position);
+        System.arraycopy(ids, position, newIds, position + 1, starts.length - position);
+        return new IntervalTree(newStarts, newEnds, newIds);
+    }
+
+
+    /**
+     * @param id : id of intervals
+     * @return a tree without the intervals of this id
+     */
+    public IntervalTree without(long id) {
+        int kept = 0;
+        int[] newStarts = new int[starts.length];
+        int[] newEnds = new int[starts.length];
+        long[] newIds = new long[starts.length];
+        for (int idx = 0; idx < starts.length; idx++) {
+            if (ids[idx] != id) {
+                newStarts[kept] = starts[idx];
+                newEnds[kept] = ends[idx];
+                newIds[kept] = ids[idx];
+                kept++;
+            }
+        }
+        if (kept == starts.length) {
+            return this;
+        }
+        return kept == 0 ? EMPTY : new IntervalTree(Arrays.copyOf(newStarts, kept), Arrays.copyOf(newEnds, kept), Arrays.copyOf(newIds, kept));
+    }
+
+
+    /**
+     * Finds the intervals that overlap [start, end)
+     * @param start : start (included)
+     * @param end : end (excluded)
+     * @param action : receives the id of every overlapping interval
+     */
+    public void overlapping(int start, int end, LongConsumer action) {
+        overlapping(0, starts.length, start, end, action);
+    }
+
+
+    private void overlapping(int low, int high, int start, int end, LongConsumer action) {
+        if (low >= high) {
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        // no interval of the range ends after the start
+        if (maxEnds[middle] <= start) {
+            return;
+        }
+        overlapping(low, middle, start, end, action);
+        if (starts[middle] < end) {
+            if (ends[middle] > start) {
+                action.accept(ids[middle]);
+            }
+            // the intervals on the right start at or after the middle one
+            overlapping(middle + 1, high, start, end, action);
+        }
+    }
+}
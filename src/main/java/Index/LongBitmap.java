@@ -0,0 +1,421 @@
+package Index;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Compressed bitmap of long ids (roaring layout). The ids are split into the high 48 bits, kept as sorted keys,
+ * and the low 16 bits, kept in a container per key : a sorted char array while sparse (up to 4096 values),
+ * a 65536 bit bitmap once dense. Not thread safe.
+ */
+public class LongBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+
+    private long[] keys = new long[2];
+    private Container[] containers = new Container[2];
+    private int size;
+    private long cardinality;
+
+
+    private abstract static class Container {
+        int cardinality;
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract Container and(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract void forEach(long high, LongConsumer consumer);
+    }
+
+
+    private static final class ArrayContainer extends Container {
+        char[] values = new char[4];
+
+        private int find(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value);
+        }
+
+        @Override
+        Container add(char value) {
+            int idx = find(value);
+            if (idx >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+            idx = -idx - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality * 2));
+            }
+            System.arraycopy(values, idx, values, idx + 1, cardinality - idx);
+            values[idx] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int idx = find(value);
+            if (idx >= 0) {
+                System.arraycopy(values, idx + 1, values, idx, cardinality - idx - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return find(value) >= 0;
+        }
+
+        @Override
+        Container and(Container other) {
+            ArrayContainer result = new ArrayContainer();
+            result.values = new char[Math.max(1, Math.min(cardinality, other.cardinality))];
+            if (other instanceof ArrayContainer array) {
+                int left = 0;
+                int right = 0;
+                while (left < cardinality && right < array.cardinality) {
+                    if (values[left] < array.values[right]) {
+                        left++;
+                    } else if (values[left] > array.values[right]) {
+                        right++;
+                    } else {
+                        result.values[result.cardinality++] = values[left];
+                        left++;
+                        right++;
+                    }
+                }
+            } else {
+                for (int idx = 0; idx < cardinality; idx++) {
+                    if (other.contains(values[idx])) {
+                        result.values[result.cardinality++] = values[idx];
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int count = 0;
+            if (other instanceof ArrayContainer array) {
+                int left = 0;
+                int right = 0;
+                while (left < cardinality && right < array.cardinality) {
+                    if (values[left] < array.values[right]) {
+                        left++;
+                    } else if (values[left] > array.values[right]) {
+                        right++;
+                    } else {
+                        count++;
+                        left++;
+                        right++;
+                    }
+                }
+            } else {
+                for (int idx = 0; idx < cardinality; idx++) {
+                    if (other.contains(values[idx])) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        @Override
+        void forEach(long high, LongConsumer consumer) {
+            for (int idx = 0; idx < cardinality; idx++) {
+                consumer.accept(high | values[idx]);
+            }
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int idx = 0; idx < cardinality; idx++) {
+                bitmap.words[values[idx] >>> 6] |= 1L << values[idx];
+            }
+            bitmap.cardinality = cardinality;
+            return bitmap;
+        }
+    }
+
+
+    private static final class BitmapContainer extends Container {
+        final long[] words = new long[1024];
+
+        @Override
+        Container add(char value) {
+            long word = words[value >>> 6];
+            long updated = word | (1L << value);
+            if (updated != word) {
+                words[value >>> 6] = updated;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long word = words[value >>> 6];
+            long updated = word & ~(1L << value);
+            if (updated != word) {
+                words[value >>> 6] = updated;
+                cardinality--;
+                if (cardinality <= ARRAY_LIMIT / 2) {
+                    return toArray();
+                }
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            BitmapContainer bitmap = (BitmapContainer) other;
+            BitmapContainer result = new BitmapContainer();
+            for (int idx = 0; idx < words.length; idx++) {
+                result.words[idx] = words[idx] & bitmap.words[idx];
+                result.cardinality += Long.bitCount(result.words[idx]);
+            }
+            return result.cardinality <= ARRAY_LIMIT ? result.toArray() : result;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+            BitmapContainer bitmap = (BitmapContainer) other;
+            int count = 0;
+            for (int idx = 0; idx < words.length; idx++) {
+                count += Long.bitCount(words[idx] & bitmap.words[idx]);
+            }
+            return count;
+        }
+
+        @Override
+        void forEach(long high, LongConsumer consumer) {
+            for (int idx = 0; idx < words.length; idx++) {
+                long word = words[idx];
+                while (word != 0) {
+                    consumer.accept(high | ((long) idx << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        ArrayContainer toArray() {
+            ArrayContainer array = new ArrayContainer();
+            array.values = new char[Math.max(4, cardinality)];
+            forEach(0, value -> array.values[array.cardinality++] = (char) value);
+            return array;
+        }
+    }
+
+
+    private int findKey(long key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+
+    /**
+     * Adds an id
+     * @param id : id to add
+     * @return true if it was not in the bitmap
+     */
+    public boolean add(long id) {
+        long key = id >>> 16;
+        int idx = findKey(key);
+        Container container;
+        if (idx < 0) {
+            idx = -idx - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                containers = Arrays.copyOf(containers, size * 2);
+            }
+            System.arraycopy(keys, idx, keys, idx + 1, size - idx);
+            System.arraycopy(containers, idx, containers, idx + 1, size - idx);
+            keys[idx] = key;
+            containers[idx] = new ArrayContainer();
+            size++;
+        }
+        container = containers[idx];
+        int before = container.cardinality;
+        containers[idx] = container.add((char) id);
+        if (containers[idx].cardinality != before) {
+            cardinality++;
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Removes an id
+     * @param id : id to remove
+     * @return true if it was in the bitmap
+     */
+    public boolean remove(long id) {
+        int idx = findKey(id >>> 16);
+        if (idx < 0) {
+            return false;
+        }
+        int before = containers[idx].cardinality;
+        containers[idx] = containers[idx].remove((char) id);
+        if (containers[idx].cardinality == before) {
+            return false;
+        }
+        cardinality--;
+        if (containers[idx].cardinality == 0) {
+            System.arraycopy(keys, idx + 1, keys, idx, size - idx - 1);
+            System.arraycopy(containers, idx + 1, containers, idx, size - idx - 1);
+            size--;
+            containers[size] = null;
+        }
+        return true;
+    }
+
+
+    /**
+     * @param id : id
+     * @return true if the id is in the bitmap
+     */
+    public boolean contains(long id) {
+        int idx = findKey(id >>> 16);
+        return idx >= 0 && containers[idx].contains((char) id);
+    }
+
+
+    /**
+     * @return number of ids
+     */
+    public long cardinality() {
+        return cardinality;
+    }
+
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+
+    /**
+     * @param other : another bitmap
+     * @return a new bitmap with the ids contained in both
+     */
+    public LongBitmap and(LongBitmap other) {
+        LongBitmap result = new LongBitmap();
+        int left = 0;
+        int right = 0;
+        while (left < size && right < other.size) {
+            if (keys[left] < other.keys[right]) {
+                left++;
+            } else if (keys[left] > other.keys[right]) {
+                right++;
+            } else {
+                Container container = containers[left].and(other.containers[right]);
+                if (container.cardinality > 0) {
+                    if (result.size == result.keys.length) {
+                        result.keys = Arrays.copyOf(result.keys, result.size * 2);
+                        result.containers = Arrays.copyOf(result.containers, result.size * 2);
+                    }
+                    result.keys[result.size] = keys[left];
+                    result.containers[result.size] = container;
+                    result.size++;
+                    result.cardinality += container.cardinality;
+                }
+                left++;
+                right++;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * @param other : another bitmap
+     * @return the number of ids contained in both, without building the intersection
+     */
+    public long andCardinality(LongBitmap other) {
+        long count = 0;
+        int left = 0;
+        int right = 0;
+        while (left < size && right < other.size) {
+            if (keys[left] < other.keys[right]) {
+                left++;
+            } else if (keys[left] > other.keys[right]) {
+                right++;
+            } else {
+                count += containers[left].andCardinality(other.containers[right]);
+                left++;
+                right++;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Calls the consumer with every id, ascending (for non-negative ids)
+     * @param consumer : id consumer
+     */
+    public void forEach(LongConsumer consumer) {
+        for (int idx = 0; idx < size; idx++) {
+            containers[idx].forEach(keys[idx] << 16, consumer);
+        }
+    }
+
+
+    /**
+     * @param count : maximum number of ids
+     * @return the smallest ids, ascending (for non-negative ids)
+     */
+    public long[] first(int count) {
+        long[] ids = new long[(int) Math.min(count, cardinality)];
+        int filled = 0;
+        for (int idx = 0; idx < size && filled < ids.length; idx++) {
+            long high = keys[idx] << 16;
+            if (containers[idx] instanceof ArrayContainer array) {
+                for (int pos = 0; pos < array.cardinality && filled < ids.length; pos++) {
+                    ids[filled++] = high | array.values[pos];
+                }
+            } else {
+                long[] words = ((BitmapContainer) containers[idx]).words;
+                for (int pos = 0; pos < words.length && filled < ids.length; pos++) {
+                    long word = words[pos];
+                    while (word != 0 && filled < ids.length) {
+                        ids[filled++] = high | ((long) pos << 6) | Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+
+    /**
+     * @return the ids in a new array
+     */
+    public long[] toArray() {
+        long[] ids = new long[(int) cardinality];
+        int[] position = {0};
+        forEach(id -> ids[position[0]++] = id);
+        return ids;
+    }
+}
@@ -0,0 +1,356 @@
+package Index;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Search index over the names of elements (students, teachers or courses), keyed by their id.
+ * Names are split into words, lower-cased and stripped of accents. Every query word must match a word of
+ * the element : exactly, as a prefix, or within a small edit distance.
+ * The words are kept sorted, so prefixes are ranges, and fuzzy matching walks them as a trie :
+ * words with a common prefix share the rows of the edit distance, and prefixes already too far
+ * from the query word skip all words starting with them. Thread safe.
+ */
+public class NameSearchIndex {
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int FUZZY = 2;
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private final NavigableMap<String, LongBitmap> idsByWord = new TreeMap<>();
+    private final Map<Long, String[]> wordsById = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+
+    /**
+     * Adds an element, or replaces its names if it was already added
+     * @param id : element id (non-negative)
+     * @param names : names of the element (e.g. first and last name)
+     */
+    public void add(long id, String... names) {
+        List<String> words = new ArrayList<>();
+        for (String name : names) {
+            words.addAll(words(name));
+        }
+        lock.writeLock().lock();
+        try {
+            removeWords(id);
+            wordsById.put(id, words.toArray(new String[0]));
+            for (String word : words) {
+                idsByWord.computeIfAbsent(word, key -> new LongBitmap()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Removes an element
+     * @param id : element id
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeWords(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    private void removeWords(long id) {
+        String[] words = wordsById.remove(id);
+        if (words == null) {
+            return;
+        }
+        for (String word : words) {
+            LongBitmap ids = idsByWord.get(word);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                idsByWord.remove(word);
+            }
+        }
+    }
+
+
+    /**
+     * Searches the elements matching every word of the query. Exact word matches rank first, then prefix
+     * matches, then fuzzy matches by edit distance; ties are ordered by id. Words of up to 2 letters
+     * are only matched as prefixes, words of up to 5 letters allow one edit, longer words two.
+     * @param query : one or more (partial) words
+     * @param limit : maximum number of results
+     * @return the ids of the best matches
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> queryWords = words(query);
+        if (queryWords.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (queryWords.size() == 1) {
+                return searchWord(queryWords.get(0), limit);
+            }
+            return searchWords(queryWords, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * One query word : the score only depends on the matched word, so the results are taken tier by tier,
+     * each tier needing only the smallest ids of its words.
+     */
+    private List<Long> searchWord(String queryWord, int limit) {
+        TreeMap<Integer, List<String>> tiers = new TreeMap<>();
+        for (Map.Entry<String, Integer> match : matchingWords(queryWord).entrySet()) {
+            tiers.computeIfAbsent(match.getValue(), score -> new ArrayList<>()).add(match.getKey());
+        }
+
+        List<Long> ids = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (List<String> tier : tiers.values()) {
+            if (ids.size() == limit) {
+                break;
+            }
+            // the smallest ids of a union are among the smallest ids of each of its bitmaps
+            int wanted = limit - ids.size() + seen.size();
+            TreeSet<Long> smallest = new TreeSet<>();
+            for (String word : tier) {
+                for (long id : idsByWord.get(word).first(wanted)) {
+                    if (smallest.size() == wanted && id >= smallest.last()) {
+                        break;
+                    }
+                    if (smallest.add(id) && smallest.size() > wanted) {
+                        smallest.pollLast();
+                    }
+                }
+            }
+            for (long id : smallest) {
+                if (ids.size() == limit) {
+                    break;
+                }
+                if (seen.add(id)) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+
+    /**
+     * Several query words : the candidates are the elements matching the most selective query word,
+     * each of them is then scored against the other query words using its own words.
+     */
+    private List<Long> searchWords(List<String> queryWords, int limit) {
+        Map<String, Integer> driving = null;
+        long drivingSize = Long.MAX_VALUE;
+        for (String queryWord : queryWords) {
+            Map<String, Integer> matches = matchingWords(queryWord);
+            long size = 0;
+            for (String word : matches.keySet()) {
+                size += idsByWord.get(word).cardinality();
+            }
+            if (size < drivingSize) {
+                driving = matches;
+                drivingSize = size;
+            }
+        }
+
+        LongBitmap candidates = new LongBitmap();
+        for (String word : driving.keySet()) {
+            idsByWord.get(word).forEach(candidates::add);
+        }
+
+        // the worst of the best results on top, as [score, id]
+        PriorityQueue<long[]> best = new PriorityQueue<>((first, second) -> first[0] != second[0]
+                ? Long.compare(second[0], first[0]) : Long.compare(second[1], first[1]));
+        candidates.forEach(id -> {
+            long total = 0;
+            for (String queryWord : queryWords) {
+                int score = NO_MATCH;
+                for (String word : wordsById.get(id)) {
+                    score = Math.min(score, score(queryWord, word));
+                }
+                if (score == NO_MATCH) {
+                    return;
+                }
+                total += score;
+            }
+            best.add(new long[]{total, id});
+            if (best.size() > limit) {
+                best.poll();
+            }
+        });
+
+        Long[] ids = new Long[best.size()];
+        for (int idx = ids.length - 1; idx >= 0; idx--) {
+            ids[idx] = best.poll()[1];
+        }
+        return new ArrayList<>(Arrays.asList(ids));
+    }
+
+
+    private static int maxDistance(String queryWord) {
+        return queryWord.length() <= 2 ? 0 : queryWord.length() <= 5 ? 1 : 2;
+    }
+
+
+    /**
+     * @return the score of a word for a query word (lower is better), NO_MATCH if it does not match
+     */
+    private static int score(String queryWord, String word) {
+        if (word.startsWith(queryWord)) {
+            return word.length() == queryWord.length() ? EXACT : PREFIX;
+        }
+        int maxDistance = maxDistance(queryWord);
+        if (maxDistance == 0 || Math.abs(word.length() - queryWord.length()) > maxDistance) {
+            return NO_MATCH;
+        }
+        int distance = distance(queryWord, word, maxDistance);
+        return distance <= maxDistance ? FUZZY + distance : NO_MATCH;
+    }
+
+
+    /**
+     * @return the indexed words matching the query word, with their score
+     */
+    private Map<String, Integer> matchingWords(String queryWord) {
+        Map<String, Integer> matches = new HashMap<>();
+        for (String word : idsByWord.subMap(queryWord, true, queryWord + Character.MAX_VALUE, false).keySet()) {
+            matches.put(word, word.length() == queryWord.length() ? EXACT : PREFIX);
+        }
+        int maxDistance = maxDistance(queryWord);
+        if (maxDistance == 0) {
+            return matches;
+        }
+
+        // rows[depth] : edit distances between the first depth letters of the word and every prefix of the query word.
+        // Past queryWord.length() + maxDistance letters every distance is too large, so the rows stop there.
+        int[][] rows = new int[queryWord.length() + maxDistance + 2][queryWord.length() + 1];
+        for (int col = 0; col <= queryWord.length(); col++) {
+            rows[0][col] = col;
+        }
+        String previous = "";
+        String word = idsByWord.isEmpty() ? null : idsByWord.firstKey();
+        while (word != null) {
+            if (word.startsWith(queryWord)) {
+                // already matched as a prefix, the rows still belong to previous
+                word = idsByWord.higherKey(queryWord + Character.MAX_VALUE);
+                continue;
+            }
+            int depth = commonPrefix(previous, word);
+            boolean reachable = true;
+            while (depth < word.length()) {
+                int[] row = rows[depth + 1];
+                int[] above = rows[depth];
+                row[0] = depth + 1;
+                int min = row[0];
+                for (int col = 1; col <= queryWord.length(); col++) {
+                    int cost = queryWord.charAt(col - 1) == word.charAt(depth) ? 0 : 1;
+                    row[col] = Math.min(above[col - 1] + cost, Math.min(above[col], row[col - 1]) + 1);
+                    min = Math.min(min, row[col]);
+                }
+                depth++;
+                if (min > maxDistance) {
+                    reachable = false;
+                    break;
+                }
+            }
+            if (!reachable) {
+                // no word starting with this prefix is close enough
+                previous = word.substring(0, depth);
+                word = idsByWord.higherKey(previous + Character.MAX_VALUE);
+                continue;
+            }
+            int distance = rows[word.length()][queryWord.length()];
+            if (distance <= maxDistance && !matches.containsKey(word)) {
+                matches.put(word, FUZZY + distance);
+            }
+            previous = word;
+            word = idsByWord.higherKey(word);
+        }
+        return matches;
+    }
+
+
+    private static int commonPrefix(String first, String second) {
+        int length = Math.min(first.length(), second.length());
+        int idx = 0;
+        while (idx < length && first.charAt(idx) == second.charAt(idx)) {
+            idx++;
+        }
+        return idx;
+    }
+
+
+    /**
+     * Levenshtein distance, computed only along the band of width maxDistance
+     * @return the distance, or maxDistance + 1 if it is greater than maxDistance
+     */
+    static int distance(String first, String second, int maxDistance) {
+        int[] previous = new int[second.length() + 1];
+        int[] current = new int[second.length() + 1];
+        for (int col = 0; col <= second.length(); col++) {
+            previous[col] = col;
+        }
+        for (int row = 1; row <= first.length(); row++) {
+            int from = Math.max(1, row - maxDistance);
+            int to = Math.min(second.length(), row + maxDistance);
+            current[from - 1] = from == 1 ? row : maxDistance + 1;
+            int best = current[from - 1];
+            for (int col = from; col <= to; col++) {
+                int cost = first.charAt(row - 1) == second.charAt(col - 1) ? 0 : 1;
+                int value = Math.min(previous[col - 1] + cost, Math.min(previous[col], current[col - 1]) + 1);
+                current[col] = Math.min(value, maxDistance + 1);
+                best = Math.min(best, current[col]);
+            }
+            if (to < second.length()) {
+                current[to + 1] = maxDistance + 1;
+            }
+            if (best > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[second.length()], maxDistance + 1);
+    }
+
+
+    /**
+     * @return the words of a name, lower case and without accents
+     */
+    static List<String> words(String name) {
+        List<String> words = new ArrayList<>();
+        if (name == null) {
+            return words;
+        }
+        String normalized = Normalizer.normalize(name, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        for (String word : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
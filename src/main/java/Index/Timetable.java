@@ -0,0 +1,115 @@
+package Index;
+
+import Model.TimeSlot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Weekly timetable of every student : the time slots of the courses and, per student, an interval tree of the
+ * slots of the courses the student is enrolled to (in minutes of the week). A conflict check only queries the tree of the student,
+ * it never reads the courses again. Only the courses with time slots are kept. Thread safe, the trees are
+ * immutable so the checks do not lock.
+ */
+public class Timetable {
+    private final Map<Long, List<TimeSlot>> slotsByCourse = new ConcurrentHashMap<>();
+    private final Map<Long, IntervalTree> treesByStudent = new ConcurrentHashMap<>();
+
+
+    /**
+     * Adds a course
+     * @param courseId : course id
+     * @param slots : time slots of the course
+     */
+    public void addCourse(long courseId, List<TimeSlot> slots) {
+        if (!slots.isEmpty()) {
+            slotsByCourse.put(courseId, List.copyOf(slots));
+        }
+    }
+
+
+    /**
+     * Removes a course from the timetable of its students
+     * @param courseId : course id
+     * @param studentIds : the students that were enrolled
+     */
+    public void removeCourse(long courseId, long[] studentIds) {
+        if (slotsByCourse.remove(courseId) == null) {
+            return;
+        }
+        for (long studentId : studentIds) {
+            unenrollSlots(courseId, studentId);
+        }
+    }
+
+
+    /**
+     * Adds the slots of a course to the timetable of a student
+     * @param courseId : course id
+     * @param studentId : student id
+     */
+    public void enroll(long courseId, long studentId) {
+        List<TimeSlot> slots = slotsByCourse.get(courseId);
+        if (slots == null) {
+            return;
+        }
+        treesByStudent.compute(studentId, (id, tree) -> {
+            IntervalTree updated = tree == null ? IntervalTree.EMPTY : tree;
+            for (TimeSlot slot : slots) {
+                updated = updated.with(courseId, slot.weekStart(), slot.weekEnd());
+            }
+            return updated;
+        });
+    }
+
+
+    /**
+     * Removes the slots of a course from the timetable of a student
+     * @param courseId : course id
+     * @param studentId : student id
+     */
+    public void unenroll(long courseId, long studentId) {
+        if (slotsByCourse.containsKey(courseId)) {
+            unenrollSlots(courseId, studentId);
+        }
+    }
+
+
+    private void unenrollSlots(long courseId, long studentId) {
+        treesByStudent.computeIfPresent(studentId, (id, tree) -> {
+            IntervalTree updated = tree.without(courseId);
+            return updated.size() == 0 ? null : updated;
+        });
+    }
+
+
+    /**
+     * @param courseId : course id
+     * @return the time slots of the course, empty if it has none
+     */
+    public List<TimeSlot> slotsOf(long courseId) {
+        return slotsByCourse.getOrDefault(courseId, List.of());
+    }
+
+
+    /**
+     * Finds the courses of a student that overlap some time slots
+     * @param slots : time slots (e.g. of a course the student wants to join)
+     * @param studentId : student id
+     * @return ids of the overlapping courses of the student, ascending
+     */
+    public List<Long> conflicts(List<TimeSlot> slots, long studentId) {
+        IntervalTree tree = treesByStudent.get(studentId);
+        if (tree == null || slots.isEmpty()) {
+            return List.of();
+        }
+        TreeSet<Long> courseIds = new TreeSet<>();
+        for (TimeSlot slot : slots) {
+            tree.overlapping(slot.weekStart(), slot.weekEnd(), courseIds::add);
+        }
+        return new ArrayList<>(courseIds);
+    }
+}
@@ -1,12 +1,48 @@
 import UserInterface.ConsoleView;
 
+import java.sql.SQLException;
+
 /**
  * Main class - starts the Application
+ * Usage : Main (interactive menu), Main --batch commands-file|- [results-file] (commands without interaction)
+ * or Main --http [port] (HTTP/JSON interface, port 8080 by default)
  */
 public class Main {
     public static void main(String[] args) {
 
-        ConsoleView consoleView = new ConsoleView();
+        ConsoleView consoleView;
+        try {
+            consoleView = new ConsoleView();
+        } catch (SQLException e) {
+            System.out.println("Could not prepare the database : " + e.getMessage());
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--batch")) {
+            if (args.length < 2) {
+                System.out.println("Usage : --batch commands-file|- [results-file]");
+                return;
+            }
+            String resultsFile = args.length > 2 ? args[2] : (args[1].equals("-") ? "batch" : args[1]) + ".results";
+            consoleView.runBatch(args[1], resultsFile);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--http")) {
+            int port = 8080;
+            if (args.length > 1) {
+                try {
+                    port = Integer.parseInt(args[1]);
+                } catch (NumberFormatException e) {
+                    port = -1;
+                }
+                if (port < 0 || port > 65535) {
+                    System.out.println("Usage : --http [port] (0 to 65535)");
+                    return;
+                }
+            }
+            consoleView.serveHttp(port);
+            return;
+        }
         consoleView.start();
     }
 }
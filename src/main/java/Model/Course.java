@@ -12,6 +12,7 @@ public class Course implements Comparable<Course>{
     private List<Long> studentsEnrolled;
     private int credits;
     private long courseId;
+    private List<TimeSlot> timeSlots = List.of();
 
 
     /**
@@ -44,6 +45,7 @@ public class Course implements Comparable<Course>{
                 ", enrolledStudents=" + studentsEnrolled +
                 ", credits=" + credits +
                 ", courseId=" + courseId +
+                ", timeSlots=" + timeSlots +
                 '}';
     }
 
@@ -123,11 +125,11 @@ public class Course implements Comparable<Course>{
 
 
     /**
-     * setter for the maximum number of students enrolled to a course
+     * setter for the maximum number of students enrolled to a course, ignored if more students are enrolled
      * @param maxEnrollment : max number of students
      */
     public void setMaxEnrollment(int maxEnrollment) {
-        if (this.getNumberOfStudents() > maxEnrollment) {
+        if (maxEnrollment >= this.getNumberOfStudents()) {
             this.maxEnrollment = maxEnrollment;
         }
     }
@@ -168,6 +170,24 @@ public class Course implements Comparable<Course>{
         this.studentsEnrolled = studentsEnrolled;
     }
 
+    /**
+     * getter for the weekly meeting times of a course
+     * @return the time slots, empty if the course has none
+     */
+    public List<TimeSlot> getTimeSlots() {
+        return timeSlots;
+    }
+
+
+    /**
+     * setter for the weekly meeting times of a course
+     * @param timeSlots : the time slots
+     */
+    public void setTimeSlots(List<TimeSlot> timeSlots) {
+        this.timeSlots = List.copyOf(timeSlots);
+    }
+
+
     /**
      * getter for the course id
      * @return course id (long)
@@ -0,0 +1,7 @@
+package Model;
+
+/**
+ * Id, name, teacher, credits and free places of a course, for listings that do not need its students
+ */
+public record CourseSummary(long courseId, String name, long teacherId, int credits, int freeSeats) {
+}
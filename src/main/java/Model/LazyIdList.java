@@ -0,0 +1,118 @@
+package Model;
+
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * List of related ids (e.g. the courses of a student) loaded on first access.
+ * The loader usually fills the lists of a whole batch of elements with one query, so that
+ * going through the lists of a listing does not run a query per element.
+ * Loading is thread safe, the changes of the list are not (like the lists loaded eagerly).
+ */
+public class LazyIdList extends AbstractList<Long> {
+    private final Loader loader;
+    private volatile List<Long> ids;
+
+
+    /**
+     * Loads the ids of the list (and of other lists of its batch) by calling fill
+     */
+    public interface Loader {
+        void load() throws SQLException;
+    }
+
+
+    /**
+     * Constructor
+     * @param loader : loads the ids on first access
+     */
+    public LazyIdList(Loader loader) {
+        this.loader = loader;
+    }
+
+
+    /**
+     * Sets the ids of the list, unless they are already loaded
+     * @param ids : the ids (the list is modified by the changes of this list)
+     */
+    public synchronized void fill(List<Long> ids) {
+        if (this.ids == null) {
+            this.ids = ids;
+        }
+    }
+
+
+    /**
+     * @return true if the ids are loaded
+     */
+    public boolean isLoaded() {
+        return ids != null;
+    }
+
+
+    /**
+     * loads the ids if needed; the loader runs without holding the lock of the list, it locks the lists of its batch
+     */
+    private List<Long> ids() {
+        List<Long> loaded = ids;
+        if (loaded == null) {
+            try {
+                loader.load();
+            } catch (SQLException e) {
+                throw new IllegalStateException("The related ids could not be loaded !", e);
+            }
+            loaded = ids;
+            if (loaded == null) {
+                throw new IllegalStateException("The loader did not fill the list !");
+            }
+        }
+        return loaded;
+    }
+
+
+    @Override
+    public Long get(int index) {
+        return ids().get(index);
+    }
+
+
+    @Override
+    public int size() {
+        return ids().size();
+    }
+
+
+    @Override
+    public Long set(int index, Long id) {
+        return ids().set(index, id);
+    }
+
+
+    @Override
+    public void add(int index, Long id) {
+        ids().add(index, id);
+        modCount++;
+    }
+
+
+    @Override
+    public Long remove(int index) {
+        modCount++;
+        return ids().remove(index);
+    }
+
+
+    @Override
+    public Iterator<Long> iterator() {
+        return ids().iterator();
+    }
+
+
+    @Override
+    public ListIterator<Long> listIterator(int index) {
+        return ids().listIterator(index);
+    }
+}
@@ -0,0 +1,7 @@
+package Model;
+
+/**
+ * Id and name of a student, for listings that do not need his courses
+ */
+public record StudentSummary(long studentId, String firstName, String lastName) {
+}
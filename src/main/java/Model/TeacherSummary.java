@@ -0,0 +1,7 @@
+package Model;
+
+/**
+ * Id and name of a teacher, for listings that do not need his courses
+ */
+public record TeacherSummary(long teacherId, String firstName, String lastName) {
+}
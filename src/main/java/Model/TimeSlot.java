@@ -0,0 +1,89 @@
+package Model;
+
+import java.time.DayOfWeek;
+import java.util.Locale;
+
+/**
+ * A weekly meeting time of a course : a day and the minutes of the day it starts and ends (the end excluded)
+ */
+public record TimeSlot(DayOfWeek day, int startMinute, int endMinute) {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+
+    public TimeSlot {
+        if (day == null || startMinute < 0 || endMinute > MINUTES_PER_DAY || startMinute >= endMinute) {
+            throw new IllegalArgumentException("Invalid time slot !");
+        }
+    }
+
+
+    /**
+     * Reads a slot written as "MON 09:00-10:30" (the day may also be written in full)
+     * @param text : the slot
+     * @return the time slot
+     * @throws IllegalArgumentException if the text is not a valid slot
+     */
+    public static TimeSlot parse(String text) {
+        String[] parts = text.strip().split("\\s+");
+        String[] times = parts.length == 2 ? parts[1].split("-") : new String[0];
+        if (times.length != 2) {
+            throw new IllegalArgumentException("Invalid time slot " + text + " !");
+        }
+        return new TimeSlot(dayOf(parts[0]), minuteOf(times[0]), minuteOf(times[1]));
+    }
+
+
+    private static DayOfWeek dayOf(String text) {
+        String upper = text.toUpperCase(Locale.ROOT);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (day.name().equals(upper) || (upper.length() >= 3 && day.name().startsWith(upper))) {
+                return day;
+            }
+        }
+        throw new IllegalArgumentException("Invalid day " + text + " !");
+    }
+
+
+    private static int minuteOf(String text) {
+        String[] parts = text.split(":");
+        try {
+            if (parts.length == 2) {
+                return Integer.parseInt(parts[0]) * 60 + Integer.parseInt(parts[1]);
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Invalid time " + text + " !");
+    }
+
+
+    /**
+     * @return the start as minutes since the beginning of the week (monday 00:00)
+     */
+    public int weekStart() {
+        return (day.getValue() - 1) * MINUTES_PER_DAY + startMinute;
+    }
+
+
+    /**
+     * @return the end as minutes since the beginning of the week (excluded)
+     */
+    public int weekEnd() {
+        return (day.getValue() - 1) * MINUTES_PER_DAY + endMinute;
+    }
+
+
+    /**
+     * @param other : another slot
+     * @return true if both slots share some time
+     */
+    public boolean overlaps(TimeSlot other) {
+        return weekStart() < other.weekEnd() && other.weekStart() < weekEnd();
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("%s %02d:%02d-%02d:%02d", day.name().substring(0, 3), startMinute / 60, startMinute % 60,
+                endMinute / 60, endMinute % 60);
+    }
+}
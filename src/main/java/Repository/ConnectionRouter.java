@@ -0,0 +1,530 @@
+package Repository;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Opens the connections of the JDBC repositories : the writes go to the primary database, the reads
+ * to one of the read replicas (round robin or the one with the fewest open connections).
+ * A replica may lag behind the primary, so the reads of a thread go to the primary
+ * <ul>
+ *     <li>for a short time after the thread wrote (its session sees its own writes)</li>
+ *     <li>while the thread holds a pin (see pinToPrimary)</li>
+ *     <li>while the primary condition holds (e.g. the checks of a write)</li>
+ * </ul>
+ * Without replicas everything goes to the primary. The connections are opened for every statement, except for
+ * the threads using a pool (see pool), which reuse a few connections to the primary.
+ * The statements get a query timeout, shortened to what is left of the time budget of the current operation
+ * (see budget), and the slow ones are logged (see StatementMonitor).
+ */
+public class ConnectionRouter {
+    private final String primaryUrl;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final String user;
+    private final String password;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile Selection selection = Selection.ROUND_ROBIN;
+    private volatile long pinMillis = 2000;
+    private volatile BooleanSupplier primaryCondition = () -> false;
+    private volatile int statementTimeoutSeconds;
+    private volatile SlowQueryLog slowQueryLog;
+
+    // time until which the reads of the thread go to the primary after a write
+    private final ThreadLocal<long[]> pinnedUntil = ThreadLocal.withInitial(() -> new long[1]);
+    // number of open pins of the thread
+    private final ThreadLocal<int[]> pins = ThreadLocal.withInitial(() -> new int[1]);
+    // end (System.nanoTime) of the time budget of the thread's operation, 0 without budget
+    private final ThreadLocal<long[]> deadline = ThreadLocal.withInitial(() -> new long[1]);
+    // pool of the connections to the primary of the thread, null to open them
+    private final ThreadLocal<Pool> pooled = new ThreadLocal<>();
+
+
+    /**
+     * How the replica of a read is chosen
+     */
+    public enum Selection {
+        ROUND_ROBIN,
+        LEAST_LOADED
+    }
+
+
+    /**
+     * Closing a pin sends the reads of the thread back to the replicas
+     */
+    public interface Pin extends AutoCloseable {
+        Pin NONE = () -> {
+        };
+
+        @Override
+        void close();
+    }
+
+
+    /**
+     * Closing a budget ends the time limit of the operation
+     */
+    public interface Budget extends AutoCloseable {
+        Budget NONE = () -> {
+        };
+
+        @Override
+        void close();
+    }
+
+
+    /**
+     * The routing of a thread (reads to the primary, time budget, pool of connections or null), carried to the threads working for it
+     */
+    public record Context(boolean primary, long pinnedUntil, long deadline, Pool pool) {
+    }
+
+
+    /**
+     * A small bounded pool of connections to the primary : at most size connections are borrowed at once,
+     * a thread borrowing one more waits until one is given back. The connections are opened on demand,
+     * closing a borrowed connection gives it back, closing the pool closes them
+     */
+    public final class Pool implements AutoCloseable {
+        private final Semaphore permits;
+        private final Deque<Connection> idle = new ArrayDeque<>();
+        private boolean closed;
+
+
+        private Pool(int size) {
+            this.permits = new Semaphore(size);
+        }
+
+
+        private Connection borrow() throws SQLException {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a pooled connection !", e);
+            }
+            try {
+                Connection connection;
+                synchronized (this) {
+                    if (closed) {
+                        throw new SQLException("The connection pool is closed !");
+                    }
+                    connection = idle.poll();
+                }
+                if (connection == null || !connection.isValid(1)) {
+                    closeQuietly(connection);
+                    connection = DriverManager.getConnection(primaryUrl, user, password);
+                }
+                return lent(connection);
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+
+        /**
+         * the connection closing gives it back to the pool
+         */
+        private Connection lent(Connection connection) {
+            boolean[] returned = new boolean[1];
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, arguments) -> {
+                        if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                            synchronized (returned) {
+                                if (!returned[0]) {
+                                    returned[0] = true;
+                                    giveBack(connection);
+                                }
+                            }
+                            return null;
+                        }
+                        try {
+                            return method.invoke(connection, arguments);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+
+
+        private void giveBack(Connection connection) {
+            try {
+                // the next borrower gets the connection as freshly opened
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                synchronized (this) {
+                    if (!closed) {
+                        idle.push(connection);
+                        connection = null;
+                    }
+                }
+            } catch (SQLException e) {
+                // dropped, the next borrower opens a new one
+            }
+            closeQuietly(connection);
+            permits.release();
+        }
+
+
+        /**
+         * Closes the idle connections, the borrowed ones are closed when given back
+         */
+        @Override
+        public synchronized void close() {
+            closed = true;
+            for (Connection connection : idle) {
+                closeQuietly(connection);
+            }
+            idle.clear();
+        }
+    }
+
+
+    private static final class Replica {
+        final String url;
+        final AtomicInteger open = new AtomicInteger();
+
+        Replica(String url) {
+            this.url = url;
+        }
+    }
+
+
+    /**
+     * Constructor
+     * @param primaryUrl the url of the primary database
+     * @param replicaUrls the urls of the read replicas (can be empty)
+     * @param user the user to access
+     * @param password the password for the user
+     */
+    public ConnectionRouter(String primaryUrl, List<String> replicaUrls, String user, String password) {
+        this.primaryUrl = primaryUrl;
+        for (String url : replicaUrls) {
+            replicas.add(new Replica(url));
+        }
+        this.user = user;
+        this.password = password;
+    }
+
+
+    /**
+     * Constructor for a single database
+     * @param url the database url
+     * @param user the user to access
+     * @param password the password for the user
+     */
+    public ConnectionRouter(String url, String user, String password) {
+        this(url, List.of(), user, password);
+    }
+
+
+    /**
+     * @param selection how the replica of a read is chosen
+     */
+    public void setSelection(Selection selection) {
+        this.selection = selection;
+    }
+
+
+    /**
+     * @param pinMillis how long the reads of a thread go to the primary after it wrote (the expected replication lag)
+     */
+    public void setPinMillis(long pinMillis) {
+        this.pinMillis = pinMillis;
+    }
+
+
+    /**
+     * @param primaryCondition the reads go to the primary while it is true for the reading thread
+     */
+    public void setPrimaryCondition(BooleanSupplier primaryCondition) {
+        this.primaryCondition = primaryCondition;
+    }
+
+
+    /**
+     * @param statementTimeoutSeconds the longest a statement may run, 0 for no limit (JDBC counts whole seconds)
+     */
+    public void setStatementTimeout(int statementTimeoutSeconds) {
+        this.statementTimeoutSeconds = statementTimeoutSeconds;
+    }
+
+
+    /**
+     * @param slowQueryLog the log of the slow statements, null to not log them
+     */
+    public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+
+    /**
+     * @return the log of the slow statements, null if they are not logged
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+
+    /**
+     * Limits the time of the statements run by the current thread until the budget is closed : the timeout of
+     * a statement is shortened to what is left of the budget and no statement is run once it is used up.
+     * A budget opened within another one does not extend it
+     * @param millis the time budget, 0 or less for no limit
+     * @return the budget
+     */
+    public Budget budget(long millis) {
+        if (millis <= 0) {
+            return Budget.NONE;
+        }
+        long[] end = deadline.get();
+        long previous = end[0];
+        long next = System.nanoTime() + millis * 1_000_000;
+        if (previous != 0 && previous - next <= 0) {
+            return Budget.NONE;
+        }
+        end[0] = next;
+        return () -> end[0] = previous;
+    }
+
+
+    /**
+     * @return the query timeout of the next statement of the thread, 0 for no limit
+     * @throws SQLTimeoutException if the budget of the operation is used up
+     */
+    int queryTimeoutSeconds() throws SQLTimeoutException {
+        int timeout = statementTimeoutSeconds;
+        long end = deadline.get()[0];
+        if (end != 0) {
+            long remaining = end - System.nanoTime();
+            if (remaining <= 0) {
+                throw new SQLTimeoutException("The time budget of the operation is used up !");
+            }
+            // rounded up, a statement may exceed the budget by less than a second
+            int budgetSeconds = (int) Math.min(Integer.MAX_VALUE, (remaining + 999_999_999) / 1_000_000_000);
+            timeout = timeout == 0 ? budgetSeconds : Math.min(timeout, budgetSeconds);
+        }
+        return timeout;
+    }
+
+
+    /**
+     * Creates a pool of connections to the primary, for threads that run many statements in a row (e.g. the
+     * loads of a warm-up) ; a thread uses it through usePool
+     * @param size the most connections of the pool
+     * @return the pool, to be closed after use
+     */
+    public Pool pool(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Invalid pool size !");
+        }
+        return new Pool(size);
+    }
+
+
+    /**
+     * Takes the connections of the current thread from a pool until the returned pin is closed : the writes
+     * and the reads then go to the primary
+     * @param pool a pool of this router
+     * @return the pin restoring the connections of the thread
+     */
+    public Pin usePool(Pool pool) {
+        Pool previous = pooled.get();
+        pooled.set(pool);
+        return new Pin() {
+            private boolean closed;
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    pooled.set(previous);
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Sends the reads of the current thread to the primary until the pin is closed
+     * @return the pin
+     */
+    public Pin pinToPrimary() {
+        int[] count = pins.get();
+        count[0]++;
+        return new Pin() {
+            private boolean closed;
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    count[0]--;
+                }
+            }
+        };
+    }
+
+
+    /**
+     * @return the routing of the current thread, for the threads working for it (see enter)
+     */
+    public Context context() {
+        return new Context(pins.get()[0] > 0 || primaryCondition.getAsBoolean(), pinnedUntil.get()[0], deadline.get()[0], pooled.get());
+    }
+
+
+    /**
+     * Routes the statements of the current thread like the ones of the thread the context comes from,
+     * until the returned pin is closed
+     * @param context the routing of the other thread
+     * @return the pin restoring the routing of the current thread
+     */
+    public Pin enter(Context context) {
+        int[] count = pins.get();
+        long[] until = pinnedUntil.get();
+        long[] end = deadline.get();
+        long previousUntil = until[0];
+        long previousEnd = end[0];
+        Pool previousPool = pooled.get();
+        int added = context.primary() ? 1 : 0;
+        count[0] += added;
+        until[0] = Math.max(previousUntil, context.pinnedUntil());
+        end[0] = context.deadline();
+        pooled.set(context.pool());
+        return new Pin() {
+            private boolean closed;
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    count[0] -= added;
+                    until[0] = previousUntil;
+                    end[0] = previousEnd;
+                    pooled.set(previousPool);
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Opens a connection for writing, to the primary. The reads of the thread follow it for a while
+     * @return the connection
+     * @throws SQLException if the connection could not be opened
+     */
+    public Connection write() throws SQLException {
+        queryTimeoutSeconds();
+        pinnedUntil.get()[0] = System.currentTimeMillis() + pinMillis;
+        return watched(primary());
+    }
+
+
+    /**
+     * Opens a connection for reading, to a replica unless the reads of the thread go to the primary.
+     * If the replica can not be reached the primary is used
+     * @return the connection
+     * @throws SQLException if the connection could not be opened
+     */
+    public Connection read() throws SQLException {
+        queryTimeoutSeconds();
+        if (replicas.isEmpty() || pins.get()[0] > 0 || pinnedUntil.get()[0] > System.currentTimeMillis()
+                || primaryCondition.getAsBoolean() || pooled.get() != null) {
+            return watched(primary());
+        }
+
+        Replica replica = choose();
+        Connection connection;
+        try {
+            connection = DriverManager.getConnection(replica.url, user, password);
+        } catch (SQLException e) {
+            return watched(DriverManager.getConnection(primaryUrl, user, password));
+        }
+        return watched(counted(connection, replica));
+    }
+
+
+    /**
+     * opens a connection to the primary, or borrows it from the pool of the thread
+     */
+    private Connection primary() throws SQLException {
+        Pool pool = pooled.get();
+        return pool != null ? pool.borrow() : DriverManager.getConnection(primaryUrl, user, password);
+    }
+
+
+    private static void closeQuietly(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // nothing more to release
+            }
+        }
+    }
+
+
+    /**
+     * watches the statements of the connection if they get timeouts or are logged
+     */
+    private Connection watched(Connection connection) {
+        SlowQueryLog log = slowQueryLog;
+        if (statementTimeoutSeconds == 0 && log == null && deadline.get()[0] == 0) {
+            return connection;
+        }
+        return StatementMonitor.watch(connection, this, log);
+    }
+
+
+    private Replica choose() {
+        if (selection == Selection.ROUND_ROBIN) {
+            return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+        }
+        Replica least = replicas.get(0);
+        for (Replica replica : replicas) {
+            if (replica.open.get() < least.open.get()) {
+                least = replica;
+            }
+        }
+        return least;
+    }
+
+
+    /**
+     * counts the connection as open on the replica until it is closed
+     */
+    private static Connection counted(Connection connection, Replica replica) {
+        replica.open.incrementAndGet();
+        boolean[] closed = new boolean[1];
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, arguments) -> {
+                    if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                        synchronized (closed) {
+                            if (!closed[0]) {
+                                closed[0] = true;
+                                replica.open.decrementAndGet();
+                            }
+                        }
+                    }
+                    try {
+                        return method.invoke(connection, arguments);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
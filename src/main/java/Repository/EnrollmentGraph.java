@@ -0,0 +1,162 @@
+package Repository;
+
+import java.util.*;
+
+/**
+ * In-memory relations between students, courses and teachers :
+ * the roster of every course, the courses of every student and the courses of every teacher.
+ * Not thread safe, the owning database synchronizes the access.
+ */
+class EnrollmentGraph {
+    private final Map<Long, List<Long>> rosters = new HashMap<>();
+    private final Map<Long, Set<Long>> studentCourses = new HashMap<>();
+    private final Map<Long, Set<Long>> teacherCourses = new HashMap<>();
+
+
+    /**
+     * @return copy of the students enrolled to a course, in enrollment order
+     */
+    List<Long> studentsOf(long courseId) {
+        return new LinkedList<>(rosters.getOrDefault(courseId, List.of()));
+    }
+
+
+    /**
+     * @return copy of the courses a student is enrolled to
+     */
+    List<Long> coursesOfStudent(long studentId) {
+        return new LinkedList<>(studentCourses.getOrDefault(studentId, Set.of()));
+    }
+
+
+    /**
+     * @return copy of the courses a teacher is teaching
+     */
+    List<Long> coursesOfTeacher(long teacherId) {
+        return new LinkedList<>(teacherCourses.getOrDefault(teacherId, Set.of()));
+    }
+
+
+    /**
+     * @return the live roster of a course (empty if nobody is enrolled)
+     */
+    List<Long> roster(long courseId) {
+        return rosters.getOrDefault(courseId, List.of());
+    }
+
+
+    /**
+     * @return the ids of the courses with at least one student
+     */
+    Set<Long> coursesWithStudents() {
+        return rosters.keySet();
+    }
+
+
+    /**
+     * @return the live courses of every student, by student id
+     */
+    Map<Long, Set<Long>> coursesByStudent() {
+        return studentCourses;
+    }
+
+
+    boolean isEnrolled(long courseId, long studentId) {
+        return studentCourses.getOrDefault(studentId, Set.of()).contains(courseId);
+    }
+
+
+    void addCourse(long courseId, long teacherId) {
+        teacherCourses.computeIfAbsent(teacherId, id -> new LinkedHashSet<>()).add(courseId);
+    }
+
+
+    void moveCourse(long courseId, long fromTeacherId, long toTeacherId) {
+        Set<Long> courses = teacherCourses.get(fromTeacherId);
+        if (courses != null) {
+            courses.remove(courseId);
+        }
+        addCourse(courseId, toTeacherId);
+    }
+
+
+    /**
+     * Removes a course and all its enrollments
+     * @return the students that were enrolled
+     */
+    List<Long> removeCourse(long courseId, long teacherId) {
+        Set<Long> courses = teacherCourses.get(teacherId);
+        if (courses != null) {
+            courses.remove(courseId);
+        }
+        List<Long> roster = rosters.remove(courseId);
+        if (roster == null) {
+            return List.of();
+        }
+        for (long studentId : roster) {
+            studentCourses.get(studentId).remove(courseId);
+        }
+        return roster;
+    }
+
+
+    /**
+     * Removes all enrollments of a student
+     * @return the courses the student was enrolled to
+     */
+    List<Long> removeStudent(long studentId) {
+        Set<Long> courses = studentCourses.remove(studentId);
+        if (courses == null) {
+            return List.of();
+        }
+        for (long courseId : courses) {
+            List<Long> roster = rosters.get(courseId);
+            roster.remove(studentId);
+            if (roster.isEmpty()) {
+                rosters.remove(courseId);
+            }
+        }
+        return new ArrayList<>(courses);
+    }
+
+
+    /**
+     * @return false if the student was already enrolled
+     */
+    boolean enroll(long courseId, long studentId) {
+        if (!studentCourses.computeIfAbsent(studentId, id -> new LinkedHashSet<>()).add(courseId)) {
+            return false;
+        }
+        rosters.computeIfAbsent(courseId, id -> new ArrayList<>()).add(studentId);
+        return true;
+    }
+
+
+    /**
+     * @return false if the student was not enrolled
+     */
+    boolean unenroll(long courseId, long studentId) {
+        Set<Long> courses = studentCourses.get(studentId);
+        if (courses == null || !courses.remove(courseId)) {
+            return false;
+        }
+        List<Long> roster = rosters.get(courseId);
+        roster.remove(studentId);
+        if (roster.isEmpty()) {
+            rosters.remove(courseId);
+        }
+        return true;
+    }
+
+
+    /**
+     * @return number of enrollments
+     */
+    long enrollmentCount() {
+        long count = 0;
+        for (List<Long> roster : rosters.values()) {
+            count += roster.size();
+        }
+        return count;
+    }
+}
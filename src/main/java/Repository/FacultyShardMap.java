@@ -0,0 +1,58 @@
+package Repository;
+
+/**
+ * Shards holding whole faculties (or campuses). Every faculty gives the ids of its students, teachers
+ * and courses from its own block : faculty f has the ids from f * idsPerFaculty to (f + 1) * idsPerFaculty - 1
+ */
+public class FacultyShardMap implements ShardMap {
+    private final long idsPerFaculty;
+    private final int[] shardOfFaculty;
+    private final int shardCount;
+
+
+    /**
+     * Constructor
+     * @param idsPerFaculty : size of the id block of a faculty
+     * @param shardOfFaculty : the shard of every faculty, by faculty number
+     */
+    public FacultyShardMap(long idsPerFaculty, int... shardOfFaculty) {
+        if (idsPerFaculty < 1 || shardOfFaculty.length == 0) {
+            throw new IllegalArgumentException("Invalid faculties !");
+        }
+        int shards = 0;
+        for (int shard : shardOfFaculty) {
+            if (shard < 0) {
+                throw new IllegalArgumentException("Invalid shard " + shard + " !");
+            }
+            shards = Math.max(shards, shard + 1);
+        }
+        this.idsPerFaculty = idsPerFaculty;
+        this.shardOfFaculty = shardOfFaculty.clone();
+        this.shardCount = shards;
+    }
+
+
+    @Override
+    public int shardCount() {
+        return shardCount;
+    }
+
+
+    /**
+     * @param id : id of a student, a teacher or a course
+     * @return the faculty the id belongs to
+     */
+    public int facultyOf(long id) {
+        long faculty = id / idsPerFaculty;
+        if (id < 0 || faculty >= shardOfFaculty.length) {
+            throw new IllegalArgumentException("The id " + id + " belongs to no faculty !");
+        }
+        return (int) faculty;
+    }
+
+
+    @Override
+    public int shardOf(long id) {
+        return shardOfFaculty[facultyOf(id)];
+    }
+}
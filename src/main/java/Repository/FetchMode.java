@@ -0,0 +1,17 @@
+package Repository;
+
+/**
+ * When the related ids of the loaded elements (courses of a student, students of a course,
+ * courses of a teacher) are read from the database
+ */
+public enum FetchMode {
+    /**
+     * with the elements, in batch queries
+     */
+    EAGER,
+
+    /**
+     * on the first access to the ids of an element, in one batch query for the elements loaded with it
+     */
+    LAZY
+}
@@ -0,0 +1,569 @@
+package Repository;
+
+import Model.Course;
+import Model.Student;
+import Model.Teacher;
+import Model.TimeSlot;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.DayOfWeek;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File-backed registration database for running without MySQL.
+ * Students, teachers, courses and enrollments are kept in four log-structured stores, an enrollment
+ * is one small record (a registration appends one, an unregistration removes it);
+ * the relations between them are rebuilt in an in-memory EnrollmentGraph on startup.
+ * Holds the same integrity rules as the MySQL schema : unique ids and existing teachers, students and courses.
+ */
+public class FileDatabase implements RegistrationStore, AutoCloseable {
+    private static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+    private static final double COMPACTION_THRESHOLD = 0.5;
+
+    private final LogStructuredStore studentStore;
+    private final LogStructuredStore teacherStore;
+    private final LogStructuredStore courseStore;
+    private final LogStructuredStore enrollmentStore;
+
+    private final EnrollmentGraph graph = new EnrollmentGraph();
+    // id of the record of every enrollment, and the id of the next one
+    private final Map<Enrollment, Long> enrollmentRecords = new HashMap<>();
+    private long nextEnrollmentRecord = 1;
+
+    private final ScheduledExecutorService compactor;
+
+    private final StoreStudentRepository studentRepository = new StoreStudentRepository(this);
+    private final StoreTeacherRepository teacherRepository = new StoreTeacherRepository(this);
+    private final StoreCourseRepository courseRepository = new StoreCourseRepository(this);
+    private final StoreEnrollmentRepository enrollmentRepository = new StoreEnrollmentRepository(this);
+
+
+    /**
+     * Opens a database with 64 MB segments, synchronous writes and a compaction check every minute
+     * @param directory : directory of the database files
+     * @throws IOException if the files cannot be read or written
+     */
+    public FileDatabase(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, true, 60_000);
+    }
+
+
+    /**
+     * Opens a database, recovering its state from the segment files
+     * @param directory : directory of the database files
+     * @param maxSegmentSize : size after which a store starts a new segment
+     * @param syncOnWrite : force every write to the disk before returning
+     * @param compactionIntervalMillis : interval of the background compaction check, 0 disables it
+     * @throws IOException if the files cannot be read or written
+     */
+    public FileDatabase(Path directory, long maxSegmentSize, boolean syncOnWrite, long compactionIntervalMillis) throws IOException {
+        studentStore = new LogStructuredStore(directory.resolve("student"), maxSegmentSize, syncOnWrite);
+        teacherStore = new LogStructuredStore(directory.resolve("teacher"), maxSegmentSize, syncOnWrite);
+        courseStore = new LogStructuredStore(directory.resolve("course"), maxSegmentSize, syncOnWrite);
+        enrollmentStore = new LogStructuredStore(directory.resolve("enrollment"), maxSegmentSize, syncOnWrite);
+
+        List<IOException> errors = new ArrayList<>();
+        courseStore.forEachId(courseId -> {
+            try {
+                graph.addCourse(courseId, decodeCourse(courseId, courseStore.get(courseId), List.of()).getTeacher());
+            } catch (IOException e) {
+                errors.add(e);
+            }
+        });
+        enrollmentStore.forEachId(recordId -> {
+            try {
+                DataInputStream input = new DataInputStream(new ByteArrayInputStream(enrollmentStore.get(recordId)));
+                long courseId = input.readLong();
+                long studentId = input.readLong();
+                graph.enroll(courseId, studentId);
+                enrollmentRecords.put(new Enrollment(courseId, studentId), recordId);
+                nextEnrollmentRecord = Math.max(nextEnrollmentRecord, recordId + 1);
+            } catch (IOException e) {
+                errors.add(e);
+            }
+        });
+        if (!errors.isEmpty()) {
+            throw errors.get(0);
+        }
+
+        if (compactionIntervalMillis > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "file-database-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compactIfNeeded, compactionIntervalMillis, compactionIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            compactor = null;
+        }
+    }
+
+
+    /**
+     * an enrollment, key of its record
+     */
+    private record Enrollment(long courseId, long studentId) {
+    }
+
+
+    public StoreStudentRepository getStudentRepository() {
+        return studentRepository;
+    }
+
+
+    public StoreTeacherRepository getTeacherRepository() {
+        return teacherRepository;
+    }
+
+
+    public StoreCourseRepository getCourseRepository() {
+        return courseRepository;
+    }
+
+
+    public StoreEnrollmentRepository getEnrollmentRepository() {
+        return enrollmentRepository;
+    }
+
+
+    /**
+     * Compacts every store whose sealed segments are mostly garbage
+     */
+    public void compactIfNeeded() {
+        for (LogStructuredStore store : List.of(studentStore, teacherStore, courseStore, enrollmentStore)) {
+            if (store.garbageRatio() > COMPACTION_THRESHOLD) {
+                try {
+                    store.compact();
+                } catch (IOException e) {
+                    // the store stays consistent, the next run tries again
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+
+    private static SQLException storeError(IOException e) {
+        return new SQLException("File store error : " + e.getMessage(), e);
+    }
+
+
+    // ---------------------------------------------------------------- students
+
+    @Override
+    public synchronized void createStudent(Student student) throws SQLException {
+        if (studentStore.contains(student.getStudentId())) {
+            throw new SQLIntegrityConstraintViolationException("Duplicate entry " + student.getStudentId() + " for key student.PRIMARY");
+        }
+        putPerson(studentStore, student.getStudentId(), student.getFirstName(), student.getLastName());
+    }
+
+
+    @Override
+    public synchronized List<Student> getAllStudents() throws SQLException {
+        List<Student> students = new LinkedList<>();
+        for (long studentId : sortedIds(studentStore)) {
+            students.add(findStudent(studentId));
+        }
+        return students;
+    }
+
+
+    @Override
+    public synchronized Student findStudent(long studentId) throws SQLException {
+        try {
+            byte[] value = studentStore.get(studentId);
+            if (value == null) {
+                return null;
+            }
+            String[] names = decodePerson(value);
+            return new Student(names[0], names[1], graph.coursesOfStudent(studentId), studentId);
+        } catch (IOException e) {
+            throw storeError(e);
+        }
+    }
+
+
+    @Override
+    public synchronized List<Student> findStudents(List<Long> studentIds) throws SQLException {
+        List<Student> students = new ArrayList<>(studentIds.size());
+        for (long studentId : studentIds) {
+            Student student = findStudent(studentId);
+            if (student != null) {
+                students.add(student);
+            }
+        }
+        return students;
+    }
+
+
+    @Override
+    public synchronized void updateStudent(Student student) throws SQLException {
+        long studentId = student.getStudentId();
+        if (!studentStore.contains(studentId)) {
+            return;
+        }
+        putPerson(studentStore, studentId, student.getFirstName(), student.getLastName());
+
+        Set<Long> wanted = new LinkedHashSet<>(student.getEnrolledCourses());
+        for (long courseId : graph.coursesOfStudent(studentId)) {
+            if (!wanted.remove(courseId)) {
+                unenroll(courseId, studentId);
+            }
+        }
+        for (long courseId : wanted) {
+            enroll(courseId, studentId);
+        }
+    }
+
+
+    @Override
+    public synchronized void deleteStudent(Student student) throws SQLException {
+        long studentId = student.getStudentId();
+        for (long courseId : graph.removeStudent(studentId)) {
+            removeEnrollment(courseId, studentId);
+        }
+        try {
+            studentStore.remove(studentId);
+        } catch (IOException e) {
+            throw storeError(e);
+        }
+    }
+
+
+    // ---------------------------------------------------------------- teachers
+
+    @Override
+    public synchronized void createTeacher(Teacher teacher) throws SQLException {
+        if (teacherStore.contains(teacher.getTeacherId())) {
+            throw new SQLIntegrityConstraintViolationException("Duplicate entry " + teacher.getTeacherId() + " for key teacher.PRIMARY");
+        }
+        putPerson(teacherStore, teacher.getTeacherId(), teacher.getFirstName(), teacher.getLastName());
+    }
+
+
+    @Override
+    public synchronized List<Teacher> getAllTeachers() throws SQLException {
+        List<Teacher> teachers = new LinkedList<>();
+        for (long teacherId : sortedIds(teacherStore)) {
+            teachers.add(findTeacher(teacherId));
+        }
+        return teachers;
+    }
+
+
+    @Override
+    public synchronized Teacher findTeacher(long teacherId) throws SQLException {
+        try {
+            byte[] value = teacherStore.get(teacherId);
+            if (value == null) {
+                return null;
+            }
+            String[] names = decodePerson(value);
+            return new Teacher(names[0], names[1], graph.coursesOfTeacher(teacherId), teacherId);
+        } catch (IOException e) {
+            throw storeError(e);
+        }
+    }
+
+
+    @Override
+    public synchronized void updateTeacher(Teacher teacher) throws SQLException {
+        if (teacherStore.contains(teacher.getTeacherId())) {
+            putPerson(teacherStore, teacher.getTeacherId(), teacher.getFirstName(), teacher.getLastName());
+        }
+    }
+
+
+    @Override
+    public synchronized void deleteTeacher(Teacher teacher) throws SQLException {
+        for (long courseId : graph.coursesOfTeacher(teacher.getTeacherId())) {
+            deleteCourse(courseId);
+        }
+        try {
+            teacherStore.remove(teacher.getTeacherId());
+        } catch (IOException e) {
+            throw storeError(e);
+        }
+    }
+
+
+    // ---------------------------------------------------------------- courses
+
+    @Override
+    public synchronized void createCourse(Course course) throws SQLException {
+        if (courseStore.contains(course.getCourseId())) {
+            throw new SQLIntegrityConstraintViolationException("Duplicate entry " + course.getCourseId() + " for key course.PRIMARY");
+        }
+        if (!teacherStore.contains(course.getTeacher())) {
+            throw new SQLIntegrityConstraintViolationException("Cannot add the course : teacher " + course.getTeacher() + " does not exist");
+        }
+        putCourse(course);
+        graph.addCourse(course.getCourseId(), course.getTeacher());
+    }
+
+
+    @Override
+    public synchronized List<Course> getAllCourses() throws SQLException {
+        List<Course> courses = new LinkedList<>();
+        for (long courseId : sortedIds(courseStore)) {
+            courses.add(findCourse(courseId));
+        }
+        return courses;
+    }
+
+
+    @Override
+    public synchronized Course findCourse(long courseId) throws SQLException {
+        try {
+            byte[] value = courseStore.get(courseId);
+            if (value == null) {
+                return null;
+            }
+            return decodeCourse(courseId, value, graph.studentsOf(courseId));
+        } catch (IOException e) {
+            throw storeError(e);
+        }
+    }
+
+
+    @Override
+    public synchronized void updateCourse(Course course) throws SQLException {
+        long courseId = course.getCourseId();
+        Course stored = findCourse(courseId);
+        if (stored == null) {
+            return;
+        }
+        if (stored.getTeacher() != course.getTeacher()) {
+            if (!teacherStore.contains(course.getTeacher())) {
+                throw new SQLIntegrityConstraintViolationException("Cannot update the course : teacher " + course.getTeacher() + " does not exist");
+            }
+            graph.moveCourse(courseId, stored.getTeacher(), course.getTeacher());
+        }
+        putCourse(course);
+
+        Set<Long> wanted = new LinkedHashSet<>(course.getStudentsEnrolled());
+        for (long studentId : graph.studentsOf(courseId)) {
+            if (!wanted.remove(studentId)) {
+                unenroll(courseId, studentId);
+            }
+        }
+        for (long studentId : wanted) {
+            enroll(courseId, studentId);
+        }
+    }
+
+
+    @Override
+    public synchronized void deleteCourse(long courseId) throws SQLException {
+        try {
+            byte[] value = courseStore.get(courseId);
+            if (value == null) {
+                return;
+            }
+            for (long studentId : graph.removeCourse(courseId, decodeCourse(courseId, value, List.of()).getTeacher())) {
+                removeEnrollment(courseId, studentId);
+            }
+            courseStore.remove(courseId);
+        } catch (IOException e) {
+            throw storeError(e);
+        }
+    }
+
+
+    // ---------------------------------------------------------------- enrollments
+
+    @Override
+    public synchronized IEnrollmentRepository.EnrollOutcome enroll(long courseId, long studentId) throws SQLException {
+        Course course = findCourse(courseId);
+        if (course == null || !studentStore.contains(studentId)) {
+            throw new SQLIntegrityConstraintViolationException("Cannot enroll : course " + courseId + " or student " + studentId + " does not exist");
+        }
+        if (graph.isEnrolled(courseId, studentId)) {
+            return IEnrollmentRepository.EnrollOutcome.ALREADY_ENROLLED;
+        }
+        if (course.getNumberOfStudents() >= course.getMaxEnrollment()) {
+            return IEnrollmentRepository.EnrollOutcome.COURSE_FULL;
+        }
+        graph.enroll(courseId, studentId);
+        appendEnrollment(courseId, studentId);
+        return IEnrollmentRepository.EnrollOutcome.ENROLLED;
+    }
+
+
+    @Override
+    public synchronized boolean unenroll(long courseId, long studentId) throws SQLException {
+        if (!graph.unenroll(courseId, studentId)) {
+            return false;
+        }
+        removeEnrollment(courseId, studentId);
+        return true;
+    }
+
+
+    @Override
+    public synchronized List<Long> unenrollAll(long courseId, List<Long> studentIds) throws SQLException {
+        List<Long> removed = new LinkedList<>();
+        for (long studentId : studentIds) {
+            if (graph.unenroll(courseId, studentId)) {
+                removeEnrollment(courseId, studentId);
+                removed.add(studentId);
+            }
+        }
+        return removed;
+    }
+
+
+    /**
+     * Streams the enrollments from the in-memory relations; only the courses are read from the store,
+     * once each, for their teacher, capacity and credits
+     */
+    @Override
+    public synchronized void forEachEnrollment(IEnrollmentRepository.EnrollmentHandler handler) throws SQLException {
+        Map<Long, Course> courses = new HashMap<>();
+        try {
+            for (long courseId : sortedIds(courseStore)) {
+                Course course = decodeCourse(courseId, courseStore.get(courseId), List.of());
+                courses.put(courseId, course);
+                if (graph.roster(courseId).isEmpty()) {
+                    handler.accept(courseId, course.getTeacher(), course.getMaxEnrollment(), course.getCredits(), IEnrollmentRepository.NO_STUDENT);
+                }
+            }
+        } catch (IOException e) {
+            throw storeError(e);
+        }
+        for (Map.Entry<Long, Set<Long>> student : graph.coursesByStudent().entrySet()) {
+            for (long courseId : student.getValue()) {
+                Course course = courses.get(courseId);
+                handler.accept(courseId, course.getTeacher(), course.getMaxEnrollment(), course.getCredits(), student.getKey());
+            }
+        }
+    }
+
+
+    // ---------------------------------------------------------------- encoding
+
+    private static List<Long> sortedIds(LogStructuredStore store) {
+        List<Long> ids = new ArrayList<>(store.size());
+        store.forEachId(ids::add);
+        Collections.sort(ids);
+        return ids;
+    }
+
+
+    private static void putPerson(LogStructuredStore store, long id, String firstName, String lastName) throws SQLException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeUTF(firstName);
+            output.writeUTF(lastName);
+            store.put(id, bytes.toByteArray());
+        } catch (IOException e) {
+            throw storeError(e);
+        }
+    }
+
+
+    private static String[] decodePerson(byte[] value) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(value));
+        return new String[]{input.readUTF(), input.readUTF()};
+    }
+
+
+    private void putCourse(Course course) throws SQLException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeUTF(course.getName());
+            output.writeLong(course.getTeacher());
+            output.writeInt(course.getMaxEnrollment());
+            output.writeInt(course.getCredits());
+            output.writeInt(course.getTimeSlots().size());
+            for (TimeSlot slot : course.getTimeSlots()) {
+                output.writeInt(slot.day().getValue());
+                output.writeInt(slot.startMinute());
+                output.writeInt(slot.endMinute());
+            }
+            courseStore.put(course.getCourseId(), bytes.toByteArray());
+        } catch (IOException e) {
+            throw storeError(e);
+        }
+    }
+
+
+    private static Course decodeCourse(long courseId, byte[] value, List<Long> students) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(value));
+        String name = input.readUTF();
+        long teacherId = input.readLong();
+        int maxEnrollment = input.readInt();
+        int credits = input.readInt();
+        Course course = new Course(name, teacherId, maxEnrollment, credits, courseId, students);
+        // the courses written before the time slots end here
+        if (input.available() > 0) {
+            int count = input.readInt();
+            List<TimeSlot> slots = new ArrayList<>(count);
+            for (int idx = 0; idx < count; idx++) {
+                slots.add(new TimeSlot(DayOfWeek.of(input.readInt()), input.readInt(), input.readInt()));
+            }
+            course.setTimeSlots(slots);
+        }
+        return course;
+    }
+
+
+    private void appendEnrollment(long courseId, long studentId) throws SQLException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeLong(courseId);
+            output.writeLong(studentId);
+            long recordId = nextEnrollmentRecord++;
+            enrollmentStore.put(recordId, bytes.toByteArray());
+            enrollmentRecords.put(new Enrollment(courseId, studentId), recordId);
+        } catch (IOException e) {
+            throw storeError(e);
+        }
+    }
+
+
+    private void removeEnrollment(long courseId, long studentId) throws SQLException {
+        Long recordId = enrollmentRecords.remove(new Enrollment(courseId, studentId));
+        if (recordId == null) {
+            return;
+        }
+        try {
+            enrollmentStore.remove(recordId);
+        } catch (IOException e) {
+            throw storeError(e);
+        }
+    }
+
+
+    /**
+     * Stops the compaction, waiting for a running one to finish, and closes every store.
+     * The compactor is not interrupted : an interrupted file channel is closed, the store could not be used anymore
+     * @throws IOException if a store cannot be closed or the wait was interrupted
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the compaction !");
+            }
+        }
+        studentStore.close();
+        teacherStore.close();
+        courseStore.close();
+        enrollmentStore.close();
+    }
+}
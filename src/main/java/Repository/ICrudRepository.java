@@ -1,6 +1,7 @@
 package Repository;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,11 +19,52 @@ public interface ICrudRepository<T> {
 
 
     /**
-     * @return all objects
+     * @return all objects, ascending by id
      */
     List<T> getAll() throws SQLException;
 
 
+    /**
+     * @param fetchMode : when the related ids of the objects are loaded
+     * @return all objects, ascending by id
+     */
+    default List<T> getAll(FetchMode fetchMode) throws SQLException {
+        return getAll();
+    }
+
+
+    /**
+     * @param obj : a loaded object
+     * @return true if its related ids are loaded (they are loaded on first access otherwise)
+     */
+    default boolean isFullyLoaded(T obj) {
+        return true;
+    }
+
+
+    /**
+     * @param id : id of the object
+     * @return the object with this id or null if it does not exist
+     */
+    T findById(long id) throws SQLException;
+
+
+    /**
+     * @param ids : ids of the objects
+     * @return the objects with these ids that exist, in the order of the ids
+     */
+    default List<T> findAllById(List<Long> ids) throws SQLException {
+        List<T> found = new ArrayList<>(ids.size());
+        for (long id : ids) {
+            T obj = findById(id);
+            if (obj != null) {
+                found.add(obj);
+            }
+        }
+        return found;
+    }
+
+
     /**
      * updates an object
      * @param obj : object to update
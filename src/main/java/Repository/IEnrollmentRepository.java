@@ -0,0 +1,67 @@
+package Repository;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Repository interface for the enrollment relation (student <-> course)
+ */
+public interface IEnrollmentRepository {
+    /**
+     * student id of the row of a course nobody is enrolled to
+     */
+    long NO_STUDENT = Long.MIN_VALUE;
+
+
+    /**
+     * An enrollment joined with its course
+     */
+    interface EnrollmentHandler {
+        void accept(long courseId, long teacherId, int maxEnrollment, int credits, long studentId);
+    }
+
+
+    /**
+     * Outcome of an enrollment
+     */
+    enum EnrollOutcome { ENROLLED, ALREADY_ENROLLED, COURSE_FULL }
+
+
+    /**
+     * enrolls a student to a course if he is not enrolled to it yet and the course has a free place.
+     * The storage checks both in the same write as the insert, so several registration systems
+     * sharing a database can not enroll a student twice or overfill a course
+     * @param courseId : course id
+     * @param studentId : student id
+     * @return ENROLLED, or why the student was not enrolled
+     */
+    EnrollOutcome enroll(long courseId, long studentId) throws SQLException;
+
+
+    /**
+     * removes a single enrollment
+     * @param courseId : course id
+     * @param studentId : student id
+     * @return true if the enrollment existed and was removed
+     */
+    boolean unenroll(long courseId, long studentId) throws SQLException;
+
+
+    /**
+     * removes the enrollments of many students from the same course
+     * @param courseId : course id
+     * @param studentIds : ids of the students to remove
+     * @return the ids of the students that were actually enrolled and are now removed
+     */
+    List<Long> unenrollAll(long courseId, List<Long> studentIds) throws SQLException;
+
+
+    /**
+     * streams every enrollment joined with its course, in one pass without loading them all.
+     * The courses nobody is enrolled to come first, once each with NO_STUDENT,
+     * then the enrollments grouped by student (all rows of a student are consecutive)
+     * @param handler : row consumer
+     */
+    void forEachEnrollment(EnrollmentHandler handler) throws SQLException;
+
+}
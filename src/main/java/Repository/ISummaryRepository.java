@@ -0,0 +1,16 @@
+package Repository;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Repository that lists compact summaries of its elements with a narrow query, without building the elements
+ * @param <S> summary type
+ */
+public interface ISummaryRepository<S> {
+
+    /**
+     * @return the summaries of all elements, ascending by id
+     */
+    List<S> getSummaries() throws SQLException;
+}
@@ -0,0 +1,39 @@
+package Repository;
+
+import java.util.Arrays;
+
+/**
+ * Shards holding consecutive ranges of ids
+ */
+public class IdRangeShardMap implements ShardMap {
+    private final long[] firstIds;
+
+
+    /**
+     * Constructor
+     * @param firstIds : the first id of every shard but the first one, ascending
+     *                 (new IdRangeShardMap(100000, 200000) has three shards, the first one up to id 99999)
+     */
+    public IdRangeShardMap(long... firstIds) {
+        for (int idx = 1; idx < firstIds.length; idx++) {
+            if (firstIds[idx] <= firstIds[idx - 1]) {
+                throw new IllegalArgumentException("The ranges of the shards must be ascending !");
+            }
+        }
+        this.firstIds = firstIds.clone();
+    }
+
+
+    @Override
+    public int shardCount() {
+        return firstIds.length + 1;
+    }
+
+
+    @Override
+    public int shardOf(long id) {
+        int position = Arrays.binarySearch(firstIds, id);
+        // an id equal to a first id belongs to that shard, otherwise to the shard of the range before the insertion point
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+}
@@ -1,18 +1,25 @@
 package Repository;
 
 import Model.Course;
+import Model.CourseSummary;
+import Model.LazyIdList;
+import Model.TimeSlot;
 
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.sql.*;
 
 /**
  * JDBCCourseRepository
  */
-public class JDBCCourseRepository implements ICrudRepository<Course>{
-    private String DB_URL;
-    private String USER;
-    private String PASS;
+public class JDBCCourseRepository implements ICrudRepository<Course>, ISummaryRepository<CourseSummary>{
+    private ConnectionRouter router;
+    private RelationBatches enrolledStudents;
 
 
     /**
@@ -22,9 +29,17 @@ public class JDBCCourseRepository implements ICrudRepository<Course>{
      * @param password the password for the user
      */
     public JDBCCourseRepository(String url, String user, String password){
-        DB_URL = url;
-        USER = user;
-        PASS = password;
+        this(new ConnectionRouter(url, user, password));
+    }
+
+
+    /**
+     * Constructor for a primary database with read replicas
+     * @param router opens the connections (writes to the primary, reads to the replicas)
+     */
+    public JDBCCourseRepository(ConnectionRouter router){
+        this.router = router;
+        this.enrolledStudents = new RelationBatches(router, "enrolled", "courseId", "studentId");
     }
 
 
@@ -35,31 +50,103 @@ public class JDBCCourseRepository implements ICrudRepository<Course>{
      */
     @Override
     public void create(Course obj) throws SQLException {
-        Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
+        Connection connection = router.write();
+        connection.setAutoCommit(false);
         Statement statement = connection.createStatement();
+        try {
+            String insertCourse = String.format("INSERT INTO course(name, maxEnrollment, credits, courseId, teacher) VALUES (\"%s\", %2d, %2d, %2d, %2d)",
+                    obj.getName(), obj.getMaxEnrollment(), obj.getCredits(), obj.getCourseId(), obj.getTeacher());
+            statement.execute(insertCourse);
+            insertSlots(connection, obj);
 
-        String insertCourse = String.format("INSERT INTO course(name, maxEnrollment, credits, courseId, teacher) VALUES (\"%s\", %2d, %2d, %2d, %2d)",
-                obj.getName(), obj.getMaxEnrollment(), obj.getCredits(), obj.getCourseId(), obj.getTeacher());
-        statement.execute(insertCourse);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            statement.close();
+            connection.close();
+        }
+    }
 
-        statement.close();
-        connection.close();
+
+    /**
+     * Inserts the time slots of a course, in one batch
+     */
+    private static void insertSlots(Connection connection, Course course) throws SQLException {
+        if (course.getTimeSlots().isEmpty()) {
+            return;
+        }
+        PreparedStatement insertSlot = connection.prepareStatement("INSERT INTO course_slot(courseId, weekDay, startMinute, endMinute) VALUES (?, ?, ?, ?)");
+        for (TimeSlot slot : course.getTimeSlots()) {
+            insertSlot.setLong(1, course.getCourseId());
+            insertSlot.setInt(2, slot.day().getValue());
+            insertSlot.setInt(3, slot.startMinute());
+            insertSlot.setInt(4, slot.endMinute());
+            insertSlot.addBatch();
+        }
+        insertSlot.executeBatch();
+        insertSlot.close();
     }
 
 
     /**
-     * Returns all courses from the database
+     * Reads the time slots of all courses, or of some courses
+     * @param courseIds : the courses, null for all courses
+     * @return the time slots by course id
+     */
+    private static Map<Long, List<TimeSlot>> selectSlots(Connection connection, List<Long> courseIds) throws SQLException {
+        StringBuilder query = new StringBuilder("SELECT courseId, weekDay, startMinute, endMinute FROM course_slot");
+        if (courseIds != null) {
+            query.append(" WHERE courseId IN (");
+            for (int idx = 0; idx < courseIds.size(); idx++) {
+                query.append(idx == 0 ? "?" : ", ?");
+            }
+            query.append(')');
+        }
+        PreparedStatement selectSlots = connection.prepareStatement(query.toString());
+        if (courseIds != null) {
+            for (int idx = 0; idx < courseIds.size(); idx++) {
+                selectSlots.setLong(idx + 1, courseIds.get(idx));
+            }
+        }
+        Map<Long, List<TimeSlot>> slots = new HashMap<>();
+        ResultSet resultSet = selectSlots.executeQuery();
+        while (resultSet.next()) {
+            slots.computeIfAbsent(resultSet.getLong(1), id -> new ArrayList<>())
+                    .add(new TimeSlot(DayOfWeek.of(resultSet.getInt(2)), resultSet.getInt(3), resultSet.getInt(4)));
+        }
+        selectSlots.close();
+        return slots;
+    }
+
+
+    /**
+     * Returns all courses from the database, their enrolled students are loaded on first access
      * @return list of courses
      * @throws SQLException if a query is incorrect
      */
     @Override
     public List<Course> getAll() throws SQLException {
-        Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
+        return getAll(FetchMode.LAZY);
+    }
+
+
+    /**
+     * Returns all courses from the database
+     * @param fetchMode : when the enrolled students are loaded (in batches of courses in both cases)
+     * @return list of courses
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public List<Course> getAll(FetchMode fetchMode) throws SQLException {
+        Connection connection = router.read();
         Statement statement = connection.createStatement();
 
         List<Course> courses = new LinkedList<>();
+        List<Long> ids = new ArrayList<>();
 
-        String selectAllCourses = "SELECT * FROM course";
+        String selectAllCourses = "SELECT name, maxEnrollment, credits, courseId, teacher FROM course ORDER BY courseId";
         ResultSet resultSet = statement.executeQuery(selectAllCourses);
         while (resultSet.next()){
             String name = resultSet.getString("name");
@@ -68,20 +155,155 @@ public class JDBCCourseRepository implements ICrudRepository<Course>{
             long courseId = resultSet.getLong("courseId");
             long teacher = resultSet.getLong("teacher");
 
+            courses.add(new Course(name, teacher, maxEnrollment, credits, courseId, null));
+            ids.add(courseId);
+        }
+
+        Map<Long, List<TimeSlot>> slots = selectSlots(connection, null);
+        for (Course course : courses) {
+            course.setTimeSlots(slots.getOrDefault(course.getCourseId(), List.of()));
+        }
+
+        statement.close();
+        connection.close();
+
+        List<LazyIdList> students = enrolledStudents.listsOf(ids, fetchMode);
+        int idx = 0;
+        for (Course course : courses) {
+            course.setStudentsEnrolled(students.get(idx++));
+        }
+        return courses;
+    }
+
+
+    /**
+     * @param obj : a loaded course
+     * @return true if its enrolled students are loaded
+     */
+    @Override
+    public boolean isFullyLoaded(Course obj) {
+        return !(obj.getStudentsEnrolled() instanceof LazyIdList students) || students.isLoaded();
+    }
+
+
+    /**
+     * Returns the ids, names, teachers, credits and free places of all courses, without their students
+     * (the students are only counted, on the course index of the enrollments)
+     * @return list of course summaries, ascending by id
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public List<CourseSummary> getSummaries() throws SQLException {
+        Connection connection = router.read();
+        Statement statement = connection.createStatement();
+
+        List<CourseSummary> courses = new ArrayList<>();
+        ResultSet resultSet = statement.executeQuery("SELECT course.courseId, course.name, course.teacher, course.credits, " +
+                "course.maxEnrollment - COUNT(enrolled.studentId) FROM course " +
+                "LEFT JOIN enrolled ON enrolled.courseId=course.courseId " +
+                "GROUP BY course.courseId, course.name, course.teacher, course.credits, course.maxEnrollment ORDER BY course.courseId");
+        while (resultSet.next()){
+            courses.add(new CourseSummary(resultSet.getLong(1), resultSet.getString(2), resultSet.getLong(3),
+                    resultSet.getInt(4), resultSet.getInt(5)));
+        }
+
+        statement.close();
+        connection.close();
+        return courses;
+    }
+
+
+    /**
+     * Returns a single course with its enrolled students
+     * @param id : course id
+     * @return the course or null if it does not exist
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public Course findById(long id) throws SQLException {
+        Connection connection = router.read();
+        PreparedStatement statement = connection.prepareStatement("SELECT * FROM course WHERE courseId=?");
+        statement.setLong(1, id);
+
+        Course course = null;
+        ResultSet resultSet = statement.executeQuery();
+        if (resultSet.next()){
+            String name = resultSet.getString("name");
+            int maxEnrollment = resultSet.getInt("maxEnrollment");
+            int credits = resultSet.getInt("credits");
+            long teacher = resultSet.getLong("teacher");
+
             List<Long> students = new LinkedList<>();
-            String selectStudentsEnrolled = String.format("SELECT studentId FROM enrolled WHERE courseId=%2d",courseId);
-            Statement statement1 = connection.createStatement();
-            ResultSet enrolledStudents = statement1.executeQuery(selectStudentsEnrolled);
+            PreparedStatement statement1 = connection.prepareStatement("SELECT studentId FROM enrolled WHERE courseId=?");
+            statement1.setLong(1, id);
+            ResultSet enrolledStudents = statement1.executeQuery();
             while (enrolledStudents.next()){
                 students.add(enrolledStudents.getLong("studentId"));
             }
             statement1.close();
 
-            courses.add(new Course(name, teacher, maxEnrollment, credits, courseId, students));
+            course = new Course(name, teacher, maxEnrollment, credits, id, students);
+            course.setTimeSlots(selectSlots(connection, List.of(id)).getOrDefault(id, List.of()));
         }
 
         statement.close();
         connection.close();
+        return course;
+    }
+
+
+    /**
+     * Returns many courses with one lookup, their time slots and enrolled students with one more each
+     * @param ids : course ids
+     * @return the courses that exist, in the order of the ids
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public List<Course> findAllById(List<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder query = new StringBuilder("SELECT name, maxEnrollment, credits, courseId, teacher FROM course WHERE courseId IN (");
+        for (int idx = 0; idx < ids.size(); idx++) {
+            query.append(idx == 0 ? "?" : ", ?");
+        }
+        query.append(')');
+
+        Connection connection = router.read();
+        PreparedStatement statement = connection.prepareStatement(query.toString());
+        for (int idx = 0; idx < ids.size(); idx++) {
+            statement.setLong(idx + 1, ids.get(idx));
+        }
+        Map<Long, Course> byId = new HashMap<>();
+        ResultSet resultSet = statement.executeQuery();
+        while (resultSet.next()){
+            long courseId = resultSet.getLong("courseId");
+            byId.put(courseId, new Course(resultSet.getString("name"), resultSet.getLong("teacher"),
+                    resultSet.getInt("maxEnrollment"), resultSet.getInt("credits"), courseId, null));
+        }
+        statement.close();
+
+        List<Course> courses = new ArrayList<>(byId.size());
+        List<Long> foundIds = new ArrayList<>(byId.size());
+        for (long id : ids) {
+            Course course = byId.get(id);
+            if (course != null) {
+                courses.add(course);
+                foundIds.add(id);
+            }
+        }
+        if (!foundIds.isEmpty()) {
+            Map<Long, List<TimeSlot>> slots = selectSlots(connection, foundIds);
+            for (Course course : courses) {
+                course.setTimeSlots(slots.getOrDefault(course.getCourseId(), List.of()));
+            }
+        }
+        connection.close();
+
+        List<LazyIdList> students = enrolledStudents.listsOf(foundIds, FetchMode.EAGER);
+        for (int idx = 0; idx < courses.size(); idx++) {
+            courses.get(idx).setStudentsEnrolled(students.get(idx));
+        }
         return courses;
     }
 
@@ -93,40 +315,57 @@ public class JDBCCourseRepository implements ICrudRepository<Course>{
      */
     @Override
     public void update(Course obj) throws SQLException {
-        Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
+        Connection connection = router.write();
+        connection.setAutoCommit(false);
         Statement statement = connection.createStatement();
+        try {
+            String updateCourse = String.format("UPDATE course SET name=\"%s\", maxEnrollment=%2d, credits=%2d, teacher=%2d WHERE courseId=%2d",
+                    obj.getName(), obj.getMaxEnrollment(), obj.getCredits(), obj.getTeacher(), obj.getCourseId());
+            statement.execute(updateCourse);
 
-        String updateCourse = String.format("UPDATE course SET name=\"%s\", maxEnrollment=%2d, credits=%2d, teacher=%2d WHERE courseId=%2d",
-                obj.getName(), obj.getMaxEnrollment(), obj.getCredits(), obj.getTeacher(), obj.getCourseId());
-        statement.execute(updateCourse);
-
-        List<Long> updatedEnrolledStudents = obj.getStudentsEnrolled();
-
-        String getEnrollment = String.format("SELECT studentId FROM enrolled WHERE courseId=%2d", obj.getCourseId());
-        Statement statement1 = connection.createStatement();
-        ResultSet enrolledStudents = statement1.executeQuery(getEnrollment);
-
-        // find the deleted enrollment and deleting it from the database
-        while (enrolledStudents.next()){
-            long studentId = enrolledStudents.getLong("studentId");
-            if (!updatedEnrolledStudents.contains(studentId)){
-                Statement statement2 = connection.createStatement();
-                statement2.execute(String.format("DELETE FROM enrolled WHERE studentId=%2d AND courseId=%2d", studentId, obj.getCourseId()));
-                statement2.close();
-            } else {
-                updatedEnrolledStudents.remove(studentId);
+            // the time slots are only rewritten when they changed (not on a new capacity, for example)
+            List<TimeSlot> storedSlots = selectSlots(connection, List.of(obj.getCourseId())).getOrDefault(obj.getCourseId(), List.of());
+            if (storedSlots.size() != obj.getTimeSlots().size() || !new HashSet<>(storedSlots).equals(new HashSet<>(obj.getTimeSlots()))) {
+                Statement deleteSlots = connection.createStatement();
+                deleteSlots.execute(String.format("DELETE FROM course_slot WHERE courseId=%2d", obj.getCourseId()));
+                deleteSlots.close();
+                insertSlots(connection, obj);
             }
-        }
 
-        // add the new enrollment (the one remaining after the previous while)
-        if (!updatedEnrolledStudents.isEmpty()) {
-            Statement statement3 = connection.createStatement();
-            statement3.execute(String.format("INSERT INTO enrolled(studentId, courseId) VALUES (%2d, %2d)", updatedEnrolledStudents.get(0), obj.getCourseId()));
-            statement3.close();
-        }
+            List<Long> updatedEnrolledStudents = obj.getStudentsEnrolled();
 
-        statement.close();
-        connection.close();
+            String getEnrollment = String.format("SELECT studentId FROM enrolled WHERE courseId=%2d", obj.getCourseId());
+            Statement statement1 = connection.createStatement();
+            ResultSet enrolledStudents = statement1.executeQuery(getEnrollment);
+
+            // find the deleted enrollment and deleting it from the database
+            while (enrolledStudents.next()){
+                long studentId = enrolledStudents.getLong("studentId");
+                if (!updatedEnrolledStudents.contains(studentId)){
+                    Statement statement2 = connection.createStatement();
+                    statement2.execute(String.format("DELETE FROM enrolled WHERE studentId=%2d AND courseId=%2d", studentId, obj.getCourseId()));
+                    statement2.close();
+                } else {
+                    updatedEnrolledStudents.remove(studentId);
+                }
+            }
+            statement1.close();
+
+            // add the new enrollment (the one remaining after the previous while)
+            if (!updatedEnrolledStudents.isEmpty()) {
+                Statement statement3 = connection.createStatement();
+                statement3.execute(String.format("INSERT INTO enrolled(studentId, courseId) VALUES (%2d, %2d)", updatedEnrolledStudents.get(0), obj.getCourseId()));
+                statement3.close();
+            }
+
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            statement.close();
+            connection.close();
+        }
     }
 
 
@@ -137,19 +376,27 @@ public class JDBCCourseRepository implements ICrudRepository<Course>{
      */
     @Override
     public void delete(Course obj) throws SQLException {
-        Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
-        Statement statement = connection.createStatement();
-
-        // Un-enroll all students from the course
-        String deleteEnrollment = String.format("DELETE FROM enrolled WHERE courseId=%2d", obj.getCourseId());
-        statement.execute(deleteEnrollment);
+        Connection connection = router.write();
+        connection.setAutoCommit(false);
+        PreparedStatement deleteEnrollment = connection.prepareStatement("DELETE FROM enrolled WHERE courseId=?");
+        PreparedStatement deleteCourse = connection.prepareStatement("DELETE FROM course WHERE courseId=?");
+        try {
+            // Un-enroll all students from the course
+            deleteEnrollment.setLong(1, obj.getCourseId());
+            deleteEnrollment.executeUpdate();
 
-        // Delete the course
-        Statement statement1 = connection.createStatement();
-        String deleteCourse = String.format("DELETE FROM course WHERE courseId=%2d", obj.getCourseId());
-        statement1.execute(deleteCourse);
+            // Delete the course
+            deleteCourse.setLong(1, obj.getCourseId());
+            deleteCourse.executeUpdate();
 
-        statement.close();
-        connection.close();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            deleteEnrollment.close();
+            deleteCourse.close();
+            connection.close();
+        }
     }
 }
@@ -0,0 +1,217 @@
+package Repository;
+
+import java.sql.*;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * JDBCEnrollmentRepository
+ */
+public class JDBCEnrollmentRepository implements IEnrollmentRepository {
+    private ConnectionRouter router;
+
+
+    /**
+     * Constructor
+     * @param url the database url
+     * @param user the user to access
+     * @param password the password for the user
+     */
+    public JDBCEnrollmentRepository(String url, String user, String password){
+        this(new ConnectionRouter(url, user, password));
+    }
+
+
+    /**
+     * Constructor for a primary database with read replicas
+     * @param router opens the connections (writes to the primary, reads to the replicas)
+     */
+    public JDBCEnrollmentRepository(ConnectionRouter router){
+        this.router = router;
+    }
+
+
+    /**
+     * Inserts a single enrollment inside one transaction. The course row is locked first (SELECT ... FOR UPDATE),
+     * so the enrollments of a course are serialized on the database, also between registration systems running
+     * in other processes, and the count of its students and the existing enrollment are read under that lock
+     * @param courseId : course id
+     * @param studentId : student id
+     * @return ENROLLED, ALREADY_ENROLLED or COURSE_FULL
+     * @throws SQLIntegrityConstraintViolationException if the course does not exist
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public EnrollOutcome enroll(long courseId, long studentId) throws SQLException {
+        Connection connection = router.write();
+        connection.setAutoCommit(false);
+        try {
+            PreparedStatement select = connection.prepareStatement(
+                    "SELECT c.maxEnrollment, (SELECT COUNT(*) FROM enrolled e WHERE e.courseId = c.courseId), " +
+                    "EXISTS (SELECT 1 FROM enrolled e WHERE e.courseId = c.courseId AND e.studentId = ?) " +
+                    "FROM course c WHERE c.courseId = ? FOR UPDATE");
+            select.setLong(1, studentId);
+            select.setLong(2, courseId);
+            ResultSet resultSet = select.executeQuery();
+            if (!resultSet.next()) {
+                select.close();
+                throw new SQLIntegrityConstraintViolationException("Cannot enroll : course " + courseId + " does not exist");
+            }
+            int maxEnrollment = resultSet.getInt(1);
+            int students = resultSet.getInt(2);
+            boolean enrolled = resultSet.getBoolean(3);
+            select.close();
+
+            EnrollOutcome outcome = enrolled ? EnrollOutcome.ALREADY_ENROLLED
+                    : students >= maxEnrollment ? EnrollOutcome.COURSE_FULL : EnrollOutcome.ENROLLED;
+            if (outcome == EnrollOutcome.ENROLLED) {
+                PreparedStatement insert = connection.prepareStatement("INSERT INTO enrolled(studentId, courseId) VALUES (?, ?)");
+                insert.setLong(1, studentId);
+                insert.setLong(2, courseId);
+                insert.executeUpdate();
+                insert.close();
+            }
+            connection.commit();
+            return outcome;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.close();
+        }
+    }
+
+
+    /**
+     * Deletes a single enrollment with one keyed DELETE
+     * @param courseId : course id
+     * @param studentId : student id
+     * @return true if a row was deleted
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public boolean unenroll(long courseId, long studentId) throws SQLException {
+        Connection connection = router.write();
+        PreparedStatement statement = connection.prepareStatement("DELETE FROM enrolled WHERE studentId=? AND courseId=?");
+        statement.setLong(1, studentId);
+        statement.setLong(2, courseId);
+
+        // the affected row count decides which of two concurrent callers actually dropped the course
+        int deleted = statement.executeUpdate();
+
+        statement.close();
+        connection.close();
+        return deleted > 0;
+    }
+
+
+    /**
+     * Deletes the enrollments of many students from a course inside one transaction. The existing enrollments
+     * are locked first (SELECT ... FOR UPDATE), then deleted with one statement, so the removed students are the
+     * locked rows and not guessed from the update counts of a batch (a rewritten batch only reports SUCCESS_NO_INFO)
+     * @param courseId : course id
+     * @param studentIds : ids of the students to remove
+     * @return the ids of the students whose enrollment was deleted
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public List<Long> unenrollAll(long courseId, List<Long> studentIds) throws SQLException {
+        List<Long> removed = new LinkedList<>();
+        if (studentIds.isEmpty()) {
+            return removed;
+        }
+
+        Connection connection = router.write();
+        connection.setAutoCommit(false);
+        try {
+            PreparedStatement select = connection.prepareStatement(
+                    "SELECT studentId FROM enrolled WHERE courseId=? AND studentId IN (" + placeholders(studentIds.size()) + ") FOR UPDATE");
+            select.setLong(1, courseId);
+            for (int idx = 0; idx < studentIds.size(); idx++) {
+                select.setLong(idx + 2, studentIds.get(idx));
+            }
+            Set<Long> enrolled = new HashSet<>();
+            ResultSet resultSet = select.executeQuery();
+            while (resultSet.next()) {
+                enrolled.add(resultSet.getLong(1));
+            }
+            select.close();
+
+            // in the order of the request, every student once
+            for (long studentId : studentIds) {
+                if (enrolled.remove(studentId)) {
+                    removed.add(studentId);
+                }
+            }
+
+            if (!removed.isEmpty()) {
+                PreparedStatement delete = connection.prepareStatement(
+                        "DELETE FROM enrolled WHERE courseId=? AND studentId IN (" + placeholders(removed.size()) + ")");
+                delete.setLong(1, courseId);
+                int idx = 2;
+                for (long studentId : removed) {
+                    delete.setLong(idx++, studentId);
+                }
+                delete.executeUpdate();
+                delete.close();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.close();
+        }
+        return removed;
+    }
+
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int idx = 0; idx < count; idx++) {
+            placeholders.append(idx == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+
+
+    /**
+     * Streams the enrollments joined with their course. The empty courses are found through the
+     * (courseId, studentId) index, the enrollments are ordered by student, which the (studentId, courseId) key
+     * already provides, and the driver streams the rows instead of buffering the result set.
+     * @param handler : row consumer
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public void forEachEnrollment(EnrollmentHandler handler) throws SQLException {
+        Connection connection = router.read();
+        try {
+            PreparedStatement emptyCourses = connection.prepareStatement(
+                    "SELECT c.courseId, c.teacher, c.maxEnrollment, c.credits FROM course c " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM enrolled e WHERE e.courseId = c.courseId)");
+            ResultSet courses = emptyCourses.executeQuery();
+            while (courses.next()) {
+                handler.accept(courses.getLong(1), courses.getLong(2), courses.getInt(3), courses.getInt(4), NO_STUDENT);
+            }
+            courses.close();
+            emptyCourses.close();
+
+            PreparedStatement enrollments = connection.prepareStatement(
+                    "SELECT e.courseId, c.teacher, c.maxEnrollment, c.credits, e.studentId " +
+                    "FROM enrolled e JOIN course c ON c.courseId = e.courseId " +
+                    "ORDER BY e.studentId", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // MySQL Connector/J streams the rows one by one with this fetch size
+            enrollments.setFetchSize(Integer.MIN_VALUE);
+            ResultSet rows = enrollments.executeQuery();
+            while (rows.next()) {
+                handler.accept(rows.getLong(1), rows.getLong(2), rows.getInt(3), rows.getInt(4), rows.getLong(5));
+            }
+            rows.close();
+            enrollments.close();
+        } finally {
+            connection.close();
+        }
+    }
+}
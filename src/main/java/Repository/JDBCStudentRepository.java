@@ -1,18 +1,22 @@
 package Repository;
 
+import Model.LazyIdList;
 import Model.Student;
+import Model.StudentSummary;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.sql.*;
 
 /**
  * JDBCStudentRepository
  */
-public class JDBCStudentRepository implements ICrudRepository<Student>{
-    private String DB_URL;
-    private String USER;
-    private String PASS;
+public class JDBCStudentRepository implements ICrudRepository<Student>, ISummaryRepository<StudentSummary>{
+    private ConnectionRouter router;
+    private RelationBatches enrolledCourses;
 
     /**
      * Constructor
@@ -21,9 +25,17 @@ public class JDBCStudentRepository implements ICrudRepository<Student>{
      * @param password the password for the user
      */
     public JDBCStudentRepository(String url, String user, String password){
-        DB_URL = url;
-        USER = user;
-        PASS = password;
+        this(new ConnectionRouter(url, user, password));
+    }
+
+
+    /**
+     * Constructor for a primary database with read replicas
+     * @param router opens the connections (writes to the primary, reads to the replicas)
+     */
+    public JDBCStudentRepository(ConnectionRouter router){
+        this.router = router;
+        this.enrolledCourses = new RelationBatches(router, "enrolled", "studentId", "courseId");
     }
 
 
@@ -34,7 +46,7 @@ public class JDBCStudentRepository implements ICrudRepository<Student>{
      */
     @Override
     public void create(Student obj) throws SQLException {
-        Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
+        Connection connection = router.write();
         Statement statement = connection.createStatement();
 
         String insertStudent = String.format("INSERT INTO student(firstName, lastName, studentId) VALUES (\"%s\", \"%s\", %2d)",
@@ -47,38 +59,165 @@ public class JDBCStudentRepository implements ICrudRepository<Student>{
 
 
     /**
-     * Returns all students
+     * Returns all students, their enrolled courses are loaded on first access
      * @return list of students
      * @throws SQLException if a query is incorrect
      */
     @Override
     public List<Student> getAll() throws SQLException {
-        Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
+        return getAll(FetchMode.LAZY);
+    }
+
+
+    /**
+     * Returns all students
+     * @param fetchMode : when the enrolled courses are loaded (in batches of students in both cases)
+     * @return list of students
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public List<Student> getAll(FetchMode fetchMode) throws SQLException {
+        Connection connection = router.read();
         Statement statement = connection.createStatement();
 
         List<Student> students = new LinkedList<>();
+        List<Long> ids = new ArrayList<>();
 
-        String selectAllStudents = "SELECT * FROM student";
+        String selectAllStudents = "SELECT firstName, lastName, studentId FROM student ORDER BY studentId";
         ResultSet resultSet = statement.executeQuery(selectAllStudents);
         while (resultSet.next()){
             String firstName = resultSet.getString("firstName");
             String lastName = resultSet.getString("lastName");
             long studentId = resultSet.getLong("studentId");
 
+            students.add(new Student(firstName, lastName, null, studentId));
+            ids.add(studentId);
+        }
+
+        statement.close();
+        connection.close();
+
+        List<LazyIdList> courses = enrolledCourses.listsOf(ids, fetchMode);
+        int idx = 0;
+        for (Student student : students) {
+            student.setEnrolledCourses(courses.get(idx++));
+        }
+        return students;
+    }
+
+
+    /**
+     * @param obj : a loaded student
+     * @return true if his enrolled courses are loaded
+     */
+    @Override
+    public boolean isFullyLoaded(Student obj) {
+        return !(obj.getEnrolledCourses() instanceof LazyIdList courses) || courses.isLoaded();
+    }
+
+
+    /**
+     * Returns the ids and names of all students, without their courses
+     * @return list of student summaries, ascending by id
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public List<StudentSummary> getSummaries() throws SQLException {
+        Connection connection = router.read();
+        Statement statement = connection.createStatement();
+
+        List<StudentSummary> students = new ArrayList<>();
+        ResultSet resultSet = statement.executeQuery("SELECT studentId, firstName, lastName FROM student ORDER BY studentId");
+        while (resultSet.next()){
+            students.add(new StudentSummary(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3)));
+        }
+
+        statement.close();
+        connection.close();
+        return students;
+    }
+
+
+    /**
+     * Returns a single student with his enrolled courses
+     * @param id : student id
+     * @return the student or null if he does not exist
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public Student findById(long id) throws SQLException {
+        Connection connection = router.read();
+        PreparedStatement statement = connection.prepareStatement("SELECT * FROM student WHERE studentId=?");
+        statement.setLong(1, id);
+
+        Student student = null;
+        ResultSet resultSet = statement.executeQuery();
+        if (resultSet.next()){
+            String firstName = resultSet.getString("firstName");
+            String lastName = resultSet.getString("lastName");
+
             List<Long> courses = new LinkedList<>();
-            String selectCoursesEnrolled = String.format("SELECT courseId FROM enrolled WHERE studentId=%2d",studentId);
-            Statement statement1 = connection.createStatement();
-            ResultSet enrolledCourses = statement1.executeQuery(selectCoursesEnrolled);
+            PreparedStatement statement1 = connection.prepareStatement("SELECT courseId FROM enrolled WHERE studentId=?");
+            statement1.setLong(1, id);
+            ResultSet enrolledCourses = statement1.executeQuery();
             while (enrolledCourses.next()){
                 courses.add(enrolledCourses.getLong("courseId"));
             }
             statement1.close();
 
-            students.add(new Student(firstName, lastName, courses, studentId));
+            student = new Student(firstName, lastName, courses, id);
         }
 
         statement.close();
         connection.close();
+        return student;
+    }
+
+
+    /**
+     * Returns many students with one lookup, their enrolled courses with one more
+     * @param ids : student ids
+     * @return the students that exist, in the order of the ids
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public List<Student> findAllById(List<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder query = new StringBuilder("SELECT firstName, lastName, studentId FROM student WHERE studentId IN (");
+        for (int idx = 0; idx < ids.size(); idx++) {
+            query.append(idx == 0 ? "?" : ", ?");
+        }
+        query.append(')');
+
+        Connection connection = router.read();
+        PreparedStatement statement = connection.prepareStatement(query.toString());
+        for (int idx = 0; idx < ids.size(); idx++) {
+            statement.setLong(idx + 1, ids.get(idx));
+        }
+        Map<Long, Student> byId = new HashMap<>();
+        ResultSet resultSet = statement.executeQuery();
+        while (resultSet.next()){
+            long studentId = resultSet.getLong("studentId");
+            byId.put(studentId, new Student(resultSet.getString("firstName"), resultSet.getString("lastName"), null, studentId));
+        }
+        statement.close();
+        connection.close();
+
+        List<Student> students = new ArrayList<>(byId.size());
+        List<Long> foundIds = new ArrayList<>(byId.size());
+        for (long id : ids) {
+            Student student = byId.get(id);
+            if (student != null) {
+                students.add(student);
+                foundIds.add(id);
+            }
+        }
+        List<LazyIdList> courses = enrolledCourses.listsOf(foundIds, FetchMode.EAGER);
+        for (int idx = 0; idx < students.size(); idx++) {
+            students.get(idx).setEnrolledCourses(courses.get(idx));
+        }
         return students;
     }
 
@@ -90,7 +229,7 @@ public class JDBCStudentRepository implements ICrudRepository<Student>{
      */
     @Override
     public void update(Student obj) throws SQLException {
-        Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
+        Connection connection = router.write();
         Statement statement = connection.createStatement();
 
         String updateStudent = String.format("UPDATE student SET firstName=\"%s\", lastName=\"%s\" WHERE studentId=%2d",
@@ -133,7 +272,7 @@ public class JDBCStudentRepository implements ICrudRepository<Student>{
      */
     @Override
     public void delete(Student obj) throws SQLException {
-        Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
+        Connection connection = router.write();
         Statement statement = connection.createStatement();
 
         // Un-enroll student from all courses
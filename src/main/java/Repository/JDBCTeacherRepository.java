@@ -1,18 +1,22 @@
 package Repository;
 
+import Model.LazyIdList;
 import Model.Teacher;
+import Model.TeacherSummary;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.sql.*;
 
 /**
  * JDBCTeacherRepository
  */
-public class JDBCTeacherRepository implements ICrudRepository<Teacher>{
-    private String DB_URL;
-    private String USER;
-    private String PASS;
+public class JDBCTeacherRepository implements ICrudRepository<Teacher>, ISummaryRepository<TeacherSummary>{
+    private ConnectionRouter router;
+    private RelationBatches teachingCourses;
 
 
     /**
@@ -22,9 +26,17 @@ public class JDBCTeacherRepository implements ICrudRepository<Teacher>{
      * @param password the password for the user
      */
     public JDBCTeacherRepository(String url, String user, String password){
-        DB_URL = url;
-        USER = user;
-        PASS = password;
+        this(new ConnectionRouter(url, user, password));
+    }
+
+
+    /**
+     * Constructor for a primary database with read replicas
+     * @param router opens the connections (writes to the primary, reads to the replicas)
+     */
+    public JDBCTeacherRepository(ConnectionRouter router){
+        this.router = router;
+        this.teachingCourses = new RelationBatches(router, "course", "teacher", "courseId");
     }
 
 
@@ -35,7 +47,7 @@ public class JDBCTeacherRepository implements ICrudRepository<Teacher>{
      */
     @Override
     public void create(Teacher obj) throws SQLException {
-        Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
+        Connection connection = router.write();
         Statement statement = connection.createStatement();
 
         String insertTeacher = String.format("INSERT INTO teacher(firstName, lastName, teacherId) VALUES (\"%s\", \"%s\", %2d)",
@@ -48,39 +60,165 @@ public class JDBCTeacherRepository implements ICrudRepository<Teacher>{
 
 
     /**
-     * Returns all teachers
+     * Returns all teachers, the courses they teach are loaded on first access
      * @return list of teachers
      * @throws SQLException if a query is incorrect
      */
     @Override
     public List<Teacher> getAll() throws SQLException {
-        Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
+        return getAll(FetchMode.LAZY);
+    }
+
+
+    /**
+     * Returns all teachers
+     * @param fetchMode : when the courses they teach are loaded (in batches of teachers in both cases)
+     * @return list of teachers
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public List<Teacher> getAll(FetchMode fetchMode) throws SQLException {
+        Connection connection = router.read();
         Statement statement = connection.createStatement();
 
         List<Teacher> teachers = new LinkedList<>();
+        List<Long> ids = new ArrayList<>();
 
-        String selectAllTeachers = "SELECT * FROM teacher";
+        String selectAllTeachers = "SELECT firstName, lastName, teacherId FROM teacher ORDER BY teacherId";
         ResultSet resultSet = statement.executeQuery(selectAllTeachers);
         while (resultSet.next()){
             String firstName = resultSet.getString("firstName");
             String lastName = resultSet.getString("lastName");
             long teacherId = resultSet.getLong("teacherId");
 
+            teachers.add(new Teacher(firstName, lastName, null, teacherId));
+            ids.add(teacherId);
+        }
+
+        statement.close();
+        connection.close();
+
+        List<LazyIdList> courses = teachingCourses.listsOf(ids, fetchMode);
+        int idx = 0;
+        for (Teacher teacher : teachers) {
+            teacher.setCourses(courses.get(idx++));
+        }
+        return teachers;
+    }
+
+
+    /**
+     * @param obj : a loaded teacher
+     * @return true if the courses he teaches are loaded
+     */
+    @Override
+    public boolean isFullyLoaded(Teacher obj) {
+        return !(obj.getCourses() instanceof LazyIdList courses) || courses.isLoaded();
+    }
+
+
+    /**
+     * Returns the ids and names of all teachers, without their courses
+     * @return list of teacher summaries, ascending by id
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public List<TeacherSummary> getSummaries() throws SQLException {
+        Connection connection = router.read();
+        Statement statement = connection.createStatement();
+
+        List<TeacherSummary> teachers = new ArrayList<>();
+        ResultSet resultSet = statement.executeQuery("SELECT teacherId, firstName, lastName FROM teacher ORDER BY teacherId");
+        while (resultSet.next()){
+            teachers.add(new TeacherSummary(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3)));
+        }
+
+        statement.close();
+        connection.close();
+        return teachers;
+    }
+
+
+    /**
+     * Returns a single teacher with the courses he is teaching
+     * @param id : teacher id
+     * @return the teacher or null if he does not exist
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public Teacher findById(long id) throws SQLException {
+        Connection connection = router.read();
+        PreparedStatement statement = connection.prepareStatement("SELECT * FROM teacher WHERE teacherId=?");
+        statement.setLong(1, id);
+
+        Teacher teacher = null;
+        ResultSet resultSet = statement.executeQuery();
+        if (resultSet.next()){
+            String firstName = resultSet.getString("firstName");
+            String lastName = resultSet.getString("lastName");
+
             List<Long> courses = new LinkedList<>();
-            String selectTeachingCourses = String
-                    .format("SELECT course.courseId FROM course INNER JOIN teacher ON course.teacher=teacher.teacherId WHERE teacher=%2d",teacherId);
-            Statement statement1 = connection.createStatement();
-            ResultSet teachingCourses = statement1.executeQuery(selectTeachingCourses);
+            PreparedStatement statement1 = connection.prepareStatement("SELECT courseId FROM course WHERE teacher=?");
+            statement1.setLong(1, id);
+            ResultSet teachingCourses = statement1.executeQuery();
             while (teachingCourses.next()){
                 courses.add(teachingCourses.getLong("courseId"));
             }
             statement1.close();
 
-            teachers.add(new Teacher(firstName, lastName, courses, teacherId));
+            teacher = new Teacher(firstName, lastName, courses, id);
         }
 
         statement.close();
         connection.close();
+        return teacher;
+    }
+
+
+    /**
+     * Returns many teachers with one lookup, the courses they teach with one more
+     * @param ids : teacher ids
+     * @return the teachers that exist, in the order of the ids
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public List<Teacher> findAllById(List<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder query = new StringBuilder("SELECT firstName, lastName, teacherId FROM teacher WHERE teacherId IN (");
+        for (int idx = 0; idx < ids.size(); idx++) {
+            query.append(idx == 0 ? "?" : ", ?");
+        }
+        query.append(')');
+
+        Connection connection = router.read();
+        PreparedStatement statement = connection.prepareStatement(query.toString());
+        for (int idx = 0; idx < ids.size(); idx++) {
+            statement.setLong(idx + 1, ids.get(idx));
+        }
+        Map<Long, Teacher> byId = new HashMap<>();
+        ResultSet resultSet = statement.executeQuery();
+        while (resultSet.next()){
+            long teacherId = resultSet.getLong("teacherId");
+            byId.put(teacherId, new Teacher(resultSet.getString("firstName"), resultSet.getString("lastName"), null, teacherId));
+        }
+        statement.close();
+        connection.close();
+
+        List<Teacher> teachers = new ArrayList<>(byId.size());
+        List<Long> foundIds = new ArrayList<>(byId.size());
+        for (long id : ids) {
+            Teacher teacher = byId.get(id);
+            if (teacher != null) {
+                teachers.add(teacher);
+                foundIds.add(id);
+            }
+        }
+        List<LazyIdList> courses = teachingCourses.listsOf(foundIds, FetchMode.EAGER);
+        for (int idx = 0; idx < teachers.size(); idx++) {
+            teachers.get(idx).setCourses(courses.get(idx));
+        }
         return teachers;
     }
 
@@ -92,7 +230,7 @@ public class JDBCTeacherRepository implements ICrudRepository<Teacher>{
      */
     @Override
     public void update(Teacher obj) throws SQLException {
-        Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
+        Connection connection = router.write();
         Statement statement = connection.createStatement();
 
         String updateTeacher = String.format("UPDATE teacher SET firstName=\"%s\", lastName=\"%s\" WHERE teacherId=%2d",
@@ -111,7 +249,7 @@ public class JDBCTeacherRepository implements ICrudRepository<Teacher>{
      */
     @Override
     public void delete(Teacher obj) throws SQLException {
-        Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
+        Connection connection = router.write();
         Statement statement = connection.createStatement();
 
         // Un-enroll students from all courses taught by the teacher
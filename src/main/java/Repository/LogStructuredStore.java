@@ -0,0 +1,482 @@
+package Repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only key/value store on disk. Every write appends a record to the active segment file,
+ * a memory-mapped index keeps the location of the newest record of every id.
+ * Segments are rolled over at a fixed size; sealed segments with mostly superseded records are compacted.
+ * A store closed cleanly is reopened with its index file when the segments still end where the index says
+ * (same segments and sizes, intact last record); otherwise the index is rebuilt by scanning the segments.
+ *
+ * Record layout : length (int) | type (byte) | id (long) | value | crc32 of type, id and value (int)
+ */
+public class LogStructuredStore implements AutoCloseable {
+    private static final byte PUT = 1;
+    private static final byte TOMBSTONE = 2;
+    private static final int HEADER_SIZE = 4 + 1 + 8;
+    private static final int TRAILER_SIZE = 4;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final long maxSegmentSize;
+    private final boolean syncOnWrite;
+    private MappedLongIndex index;
+
+    private final NavigableMap<Integer, FileChannel> segments = new TreeMap<>();
+    private final Map<Integer, long[]> segmentUsage = new HashMap<>();
+    private int activeSegment;
+    private FileChannel active;
+    // location of the last record appended, -1 if the segments hold none
+    private long lastRecord = -1;
+
+
+    /**
+     * Opens a store, recovering the index from the segment files in the directory
+     * @param directory : directory of the store (created if missing)
+     * @param maxSegmentSize : size after which a new segment is started
+     * @param syncOnWrite : force every write to the disk before returning
+     * @throws IOException if the files cannot be read or written
+     */
+    public LogStructuredStore(Path directory, long maxSegmentSize, boolean syncOnWrite) throws IOException {
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        this.syncOnWrite = syncOnWrite;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+
+    /**
+     * Reuses the index file if it matches the segments, otherwise rebuilds the index by scanning every segment
+     * in order; a torn record at the end of a segment is cut off
+     */
+    private void recover() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                ids.add(Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(ids);
+        for (int segmentId : ids) {
+            segments.put(segmentId, FileChannel.open(segmentPath(segmentId), StandardOpenOption.READ, StandardOpenOption.WRITE));
+            segmentUsage.put(segmentId, new long[2]);
+        }
+
+        Path indexFile = directory.resolve("index.map");
+        MappedLongIndex stored = MappedLongIndex.reopen(indexFile);
+        if (stored != null && matchesSegments(stored.checkpoint())) {
+            index = stored;
+            lastRecord = stored.checkpoint()[3];
+            // every byte of a segment is a record, the live ones are the ones of the index
+            for (Map.Entry<Integer, FileChannel> segment : segments.entrySet()) {
+                segmentUsage.get(segment.getKey())[0] = segment.getValue().size();
+            }
+            index.forEachKey(id -> {
+                MappedLongIndex.Entry entry = index.get(id);
+                segmentUsage.get(segmentOf(entry.location()))[1] += entry.size();
+            });
+        } else {
+            index = new MappedLongIndex(indexFile, 1024);
+            for (Map.Entry<Integer, FileChannel> segment : segments.entrySet()) {
+                FileChannel channel = segment.getValue();
+                long validEnd = scan(segment.getKey(), channel);
+                if (validEnd < channel.size()) {
+                    channel.truncate(validEnd);
+                }
+            }
+        }
+
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            activeSegment = segments.lastKey();
+            active = segments.get(activeSegment);
+            active.position(active.size());
+        }
+    }
+
+
+    /**
+     * Tells whether the segments end where the checkpoint of a clean close says : same number of segments,
+     * same last segment and size, and the last record is intact and ends its segment
+     * @param checkpoint : last segment, its size, number of segments, location of the last record
+     */
+    private boolean matchesSegments(long[] checkpoint) throws IOException {
+        if (segments.isEmpty()) {
+            return false;
+        }
+        int last = segments.lastKey();
+        if (checkpoint[0] != last || checkpoint[1] != segments.get(last).size() || checkpoint[2] != segments.size()) {
+            return false;
+        }
+        long recordLocation = checkpoint[3];
+        if (recordLocation == -1) {
+            for (FileChannel channel : segments.values()) {
+                if (channel.size() != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        FileChannel channel = segments.get(segmentOf(recordLocation));
+        long position = positionOf(recordLocation);
+        if (channel == null || position + HEADER_SIZE + TRAILER_SIZE > channel.size()) {
+            return false;
+        }
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        channel.read(lengthBuffer, position);
+        int length = lengthBuffer.getInt(0);
+        if (length < 9 || position + 4 + length + TRAILER_SIZE != channel.size()) {
+            return false;
+        }
+        ByteBuffer record = ByteBuffer.allocate(length + TRAILER_SIZE);
+        while (record.hasRemaining()) {
+            if (channel.read(record, position + 4 + record.position()) < 0) {
+                return false;
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, length);
+        return (int) crc.getValue() == record.getInt(length);
+    }
+
+
+    /**
+     * Scans a segment sequentially and applies its records to the index
+     * @return the position after the last valid record
+     */
+    private long scan(int segmentId, FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        long bufferStart = 0;
+        long position = 0;
+        long size = channel.size();
+        channel.read(buffer, 0);
+        buffer.flip();
+
+        while (position + HEADER_SIZE + TRAILER_SIZE <= size) {
+            int offset = (int) (position - bufferStart);
+            if (buffer.limit() - offset < 4) {
+                bufferStart = position;
+                buffer = refill(channel, buffer, position, 4);
+                offset = 0;
+            }
+            int length = buffer.getInt(offset);
+            int recordSize = 4 + length + TRAILER_SIZE;
+            if (length < 9 || position + recordSize > size) {
+                break;
+            }
+            if (buffer.limit() - offset < recordSize) {
+                bufferStart = position;
+                buffer = refill(channel, buffer, position, recordSize);
+                offset = 0;
+            }
+
+            CRC32 crc = new CRC32();
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(offset + 4).limit(offset + 4 + length);
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4 + length)) {
+                break;
+            }
+
+            byte type = buffer.get(offset + 4);
+            long id = buffer.getLong(offset + 5);
+            lastRecord = location(segmentId, position);
+            segmentUsage.get(segmentId)[0] += recordSize;
+            if (type == PUT) {
+                applyPut(id, location(segmentId, position), recordSize);
+            } else {
+                applyRemove(id);
+                // the tombstone itself is garbage once the older segments are gone
+            }
+            position += recordSize;
+        }
+        return position;
+    }
+
+
+    private static ByteBuffer refill(FileChannel channel, ByteBuffer buffer, long position, int needed) throws IOException {
+        if (buffer.capacity() < needed) {
+            buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(needed) << 1);
+        }
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+
+    private void applyPut(long id, long location, int recordSize) throws IOException {
+        MappedLongIndex.Entry previous = index.put(id, location, recordSize);
+        if (previous != null) {
+            segmentUsage.get(segmentOf(previous.location()))[1] -= previous.size();
+        }
+        segmentUsage.get(segmentOf(location))[1] += recordSize;
+    }
+
+
+    private void applyRemove(long id) {
+        MappedLongIndex.Entry previous = index.remove(id);
+        if (previous != null) {
+            segmentUsage.get(segmentOf(previous.location()))[1] -= previous.size();
+        }
+    }
+
+
+    private static long location(int segmentId, long position) {
+        return ((long) segmentId << 40) | position;
+    }
+
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 40);
+    }
+
+
+    private static long positionOf(long location) {
+        return location & ((1L << 40) - 1);
+    }
+
+
+    private Path segmentPath(int segmentId) {
+        return directory.resolve(String.format("%08d%s", segmentId, SEGMENT_SUFFIX));
+    }
+
+
+    private void openSegment(int segmentId) throws IOException {
+        active = FileChannel.open(segmentPath(segmentId), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeSegment = segmentId;
+        segments.put(segmentId, active);
+        segmentUsage.put(segmentId, new long[2]);
+    }
+
+
+    /**
+     * Appends a record to the active segment
+     * @return the location of the record
+     */
+    private long append(byte type, long id, byte[] value) throws IOException {
+        int length = 1 + 8 + value.length;
+        ByteBuffer record = ByteBuffer.allocate(4 + length + TRAILER_SIZE);
+        record.putInt(length).put(type).putLong(id).put(value);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, length);
+        record.putInt((int) crc.getValue());
+        record.flip();
+
+        if (active.position() + record.remaining() > maxSegmentSize && active.position() > 0) {
+            active.force(false);
+            openSegment(activeSegment + 1);
+        }
+
+        long position = active.position();
+        while (record.hasRemaining()) {
+            active.write(record);
+        }
+        if (syncOnWrite) {
+            active.force(false);
+        }
+        segmentUsage.get(activeSegment)[0] += record.capacity();
+        lastRecord = location(activeSegment, position);
+        return lastRecord;
+    }
+
+
+    /**
+     * Stores the value of an id
+     * @param id : id
+     * @param value : serialized value
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void put(long id, byte[] value) throws IOException {
+        long location = append(PUT, id, value);
+        applyPut(id, location, 4 + 1 + 8 + value.length + TRAILER_SIZE);
+    }
+
+
+    /**
+     * Removes an id
+     * @param id : id
+     * @return true if the id existed
+     * @throws IOException if the tombstone cannot be written
+     */
+    public synchronized boolean remove(long id) throws IOException {
+        if (index.get(id) == null) {
+            return false;
+        }
+        append(TOMBSTONE, id, new byte[0]);
+        applyRemove(id);
+        return true;
+    }
+
+
+    /**
+     * @param id : id
+     * @return the stored value or null
+     * @throws IOException if the record cannot be read
+     */
+    public synchronized byte[] get(long id) throws IOException {
+        MappedLongIndex.Entry entry = index.get(id);
+        if (entry == null) {
+            return null;
+        }
+        return readValue(entry);
+    }
+
+
+    /**
+     * @param id : id
+     * @return true if the id exists
+     */
+    public synchronized boolean contains(long id) {
+        return index.get(id) != null;
+    }
+
+
+    /**
+     * Calls the consumer with every stored id
+     * @param consumer : id consumer
+     */
+    public synchronized void forEachId(LongConsumer consumer) {
+        index.forEachKey(consumer);
+    }
+
+
+    /**
+     * @return number of stored ids
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+
+    private byte[] readValue(MappedLongIndex.Entry entry) throws IOException {
+        FileChannel channel = segments.get(segmentOf(entry.location()));
+        ByteBuffer record = ByteBuffer.allocate(entry.size());
+        long position = positionOf(entry.location());
+        while (record.hasRemaining()) {
+            if (channel.read(record, position + record.position()) < 0) {
+                throw new IOException("Unexpected end of segment " + segmentOf(entry.location()));
+            }
+        }
+        byte[] value = new byte[entry.size() - HEADER_SIZE - TRAILER_SIZE];
+        record.position(HEADER_SIZE);
+        record.get(value);
+        return value;
+    }
+
+
+    /**
+     * @return fraction of the bytes of the sealed segments that belong to superseded records or tombstones
+     */
+    public synchronized double garbageRatio() {
+        long total = 0;
+        long live = 0;
+        for (Map.Entry<Integer, long[]> usage : segmentUsage.entrySet()) {
+            if (usage.getKey() != activeSegment) {
+                total += usage.getValue()[0];
+                live += usage.getValue()[1];
+            }
+        }
+        return total == 0 ? 0 : 1.0 - (double) live / total;
+    }
+
+
+    /**
+     * Copies the live records of all sealed segments to the active segment and deletes the sealed segments.
+     * The live check and copy of every record happen under the store lock, so writers are only blocked per record.
+     * Sealed segments are deleted oldest first, a crash in between never resurrects a removed id.
+     * @throws IOException if the segments cannot be read or written
+     */
+    public void compact() throws IOException {
+        List<Integer> sealed;
+        synchronized (this) {
+            if (segments.size() < 2) {
+                return;
+            }
+            // start a fresh segment so that the copies never land in a segment that is being compacted
+            active.force(false);
+            openSegment(activeSegment + 1);
+            sealed = new ArrayList<>(segments.headMap(activeSegment, false).keySet());
+        }
+
+        for (int segmentId : sealed) {
+            FileChannel channel;
+            synchronized (this) {
+                channel = segments.get(segmentId);
+            }
+            long size = channel.size();
+            long position = 0;
+            ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+            while (position < size) {
+                lengthBuffer.clear();
+                channel.read(lengthBuffer, position);
+                int recordSize = 4 + lengthBuffer.getInt(0) + TRAILER_SIZE;
+                copyIfLive(segmentId, position, recordSize);
+                position += recordSize;
+            }
+        }
+
+        synchronized (this) {
+            active.force(false);
+            for (int segmentId : sealed) {
+                segments.remove(segmentId).close();
+                segmentUsage.remove(segmentId);
+                Files.delete(segmentPath(segmentId));
+                if (lastRecord != -1 && segmentOf(lastRecord) == segmentId) {
+                    lastRecord = -1;
+                }
+            }
+        }
+    }
+
+
+    private synchronized void copyIfLive(int segmentId, long position, int recordSize) throws IOException {
+        FileChannel channel = segments.get(segmentId);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, position);
+        if (header.get(4) != PUT) {
+            return;
+        }
+        long id = header.getLong(5);
+        long location = location(segmentId, position);
+        MappedLongIndex.Entry entry = index.get(id);
+        if (entry == null || entry.location() != location) {
+            return;
+        }
+        put(id, readValue(entry));
+    }
+
+
+    /**
+     * Flushes the active segment and the index and closes every segment; the index is checkpointed
+     * with the end of the segments, so that the next open can reuse it
+     * @throws IOException if a file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        active.force(false);
+        index.close(activeSegment, active.size(), segments.size(), lastRecord);
+        for (FileChannel channel : segments.values()) {
+            channel.close();
+        }
+        segments.clear();
+    }
+}
@@ -0,0 +1,306 @@
+package Repository;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
+/**
+ * Memory-mapped open addressing hash table from a long id to the location and size of its record in a segment log.
+ * Lookups are O(1); the table doubles (into a new file) when it becomes 70% full.
+ * A checkpoint written by the owner when it closes the index cleanly (e.g. the end of the log the index covers)
+ * lets the next open reuse the file instead of rebuilding it; the index is marked unclean again as soon as it is reopened.
+ *
+ * File layout : header (magic, capacity, size, removed, clean flag, checkpoint) | slots (key, location, size, state)
+ */
+public class MappedLongIndex implements AutoCloseable {
+    private static final int MAGIC = 0x4d4c4931;
+    private static final int CHECKPOINT_LONGS = 4;
+    private static final int HEADER_SIZE = 24 + 8 * CHECKPOINT_LONGS;
+    private static final int SLOT_SIZE = 24;
+    private static final int EMPTY = 0;
+    private static final int USED = 1;
+    private static final int REMOVED = 2;
+
+    private final Path file;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+    private int removed;
+
+
+    /**
+     * Location of a record : segment position and record size
+     */
+    public record Entry(long location, int size) {
+    }
+
+
+    /**
+     * Creates an empty index, overwriting the file
+     * @param file the index file
+     * @param initialCapacity number of slots (rounded up to a power of two)
+     * @throws IOException if the file cannot be mapped
+     */
+    public MappedLongIndex(Path file, int initialCapacity) throws IOException {
+        this.file = file;
+        this.capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1)) << 1;
+        Files.deleteIfExists(file);
+        this.buffer = map(file, capacity);
+    }
+
+
+    private MappedLongIndex(Path file, MappedByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        this.capacity = buffer.getInt(4);
+        this.size = buffer.getInt(8);
+        this.removed = buffer.getInt(12);
+    }
+
+
+    /**
+     * Reopens the index of a file that was closed with a checkpoint
+     * @param file the index file
+     * @return the index, marked unclean until its next checkpoint, or null if the file is missing, damaged
+     * or was not closed cleanly
+     * @throws IOException if the file cannot be mapped
+     */
+    public static MappedLongIndex reopen(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        int capacity = buffer.getInt(4);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(16) != 1 || capacity < 16 || Integer.bitCount(capacity) != 1
+                || buffer.capacity() != HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+            return null;
+        }
+        // changes from now on are not covered by the checkpoint
+        buffer.putInt(16, 0);
+        buffer.force();
+        return new MappedLongIndex(file, buffer);
+    }
+
+
+    private static MappedByteBuffer map(Path file, int capacity) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, capacity);
+        return buffer;
+    }
+
+
+    private static int base(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+
+    /**
+     * @param key : id
+     * @return the slot holding the key, or -1
+     */
+    private int findSlot(long key) {
+        int mask = capacity - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            int base = base(slot);
+            int state = buffer.getInt(base + 20);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == USED && buffer.getLong(base) == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+
+    /**
+     * @param key : id
+     * @return the location of the record of this id or null
+     */
+    public Entry get(long key) {
+        int slot = findSlot(key);
+        if (slot == -1) {
+            return null;
+        }
+        int base = base(slot);
+        return new Entry(buffer.getLong(base + 8), buffer.getInt(base + 16));
+    }
+
+
+    /**
+     * Stores the location of a record
+     * @param key : id
+     * @param location : encoded segment position
+     * @param recordSize : size of the record in bytes
+     * @return the previous entry or null
+     * @throws IOException if the index had to grow and the new file cannot be mapped
+     */
+    public Entry put(long key, long location, int recordSize) throws IOException {
+        int existing = findSlot(key);
+        if (existing != -1) {
+            int base = base(existing);
+            Entry previous = new Entry(buffer.getLong(base + 8), buffer.getInt(base + 16));
+            buffer.putLong(base + 8, location);
+            buffer.putInt(base + 16, recordSize);
+            return previous;
+        }
+
+        if ((size + removed + 1) * 10L > capacity * 7L) {
+            resize(size * 10L > capacity * 3L ? capacity * 2 : capacity);
+        }
+
+        int mask = capacity - 1;
+        int slot = hash(key) & mask;
+        while (buffer.getInt(base(slot) + 20) == USED) {
+            slot = (slot + 1) & mask;
+        }
+        int base = base(slot);
+        if (buffer.getInt(base + 20) == REMOVED) {
+            removed--;
+        }
+        buffer.putLong(base, key);
+        buffer.putLong(base + 8, location);
+        buffer.putInt(base + 16, recordSize);
+        buffer.putInt(base + 20, USED);
+        size++;
+        return null;
+    }
+
+
+    /**
+     * Removes an id
+     * @param key : id
+     * @return the removed entry or null
+     */
+    public Entry remove(long key) {
+        int slot = findSlot(key);
+        if (slot == -1) {
+            return null;
+        }
+        int base = base(slot);
+        Entry previous = new Entry(buffer.getLong(base + 8), buffer.getInt(base + 16));
+        buffer.putInt(base + 20, REMOVED);
+        size--;
+        removed++;
+        return previous;
+    }
+
+
+    /**
+     * @return number of ids in the index
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Calls the consumer with every id of the index (in no particular order)
+     * @param consumer : id consumer
+     */
+    public void forEachKey(LongConsumer consumer) {
+        for (int slot = 0; slot < capacity; slot++) {
+            int base = base(slot);
+            if (buffer.getInt(base + 20) == USED) {
+                consumer.accept(buffer.getLong(base));
+            }
+        }
+    }
+
+
+    /**
+     * Rehashes into a new file of the given capacity, dropping the removed slots
+     */
+    private void resize(int newCapacity) throws IOException {
+        Path resized = file.resolveSibling(file.getFileName() + ".resize");
+        Files.deleteIfExists(resized);
+        MappedByteBuffer target = map(resized, newCapacity);
+        int mask = newCapacity - 1;
+        for (int slot = 0; slot < capacity; slot++) {
+            int base = base(slot);
+            if (buffer.getInt(base + 20) != USED) {
+                continue;
+            }
+            long key = buffer.getLong(base);
+            int newSlot = hash(key) & mask;
+            while (target.getInt(base(newSlot) + 20) == USED) {
+                newSlot = (newSlot + 1) & mask;
+            }
+            int newBase = base(newSlot);
+            target.putLong(newBase, key);
+            target.putLong(newBase + 8, buffer.getLong(base + 8));
+            target.putInt(newBase + 16, buffer.getInt(base + 16));
+            target.putInt(newBase + 20, USED);
+        }
+        Files.move(resized, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        buffer = target;
+        capacity = newCapacity;
+        removed = 0;
+    }
+
+
+    /**
+     * @return the values of the checkpoint the index was closed with (see reopen)
+     */
+    public long[] checkpoint() {
+        long[] values = new long[CHECKPOINT_LONGS];
+        for (int idx = 0; idx < CHECKPOINT_LONGS; idx++) {
+            values[idx] = buffer.getLong(24 + 8 * idx);
+        }
+        return values;
+    }
+
+
+    /**
+     * Flushes the mapped pages and marks the index clean with a checkpoint, so that reopen trusts it
+     * @param values : what the index covers (at most 4 values), checked by the owner after reopen
+     */
+    public void close(long... values) {
+        if (values.length > CHECKPOINT_LONGS) {
+            throw new IllegalArgumentException("Too many checkpoint values !");
+        }
+        buffer.putInt(8, size);
+        buffer.putInt(12, removed);
+        for (int idx = 0; idx < CHECKPOINT_LONGS; idx++) {
+            buffer.putLong(24 + 8 * idx, idx < values.length ? values[idx] : 0);
+        }
+        // the slots reach the disk before the flag that makes them trusted
+        buffer.force();
+        buffer.putInt(16, 1);
+        buffer.force();
+    }
+
+
+    /**
+     * Flushes the mapped pages, the index is rebuilt on the next open
+     */
+    @Override
+    public void close() {
+        buffer.force();
+    }
+}
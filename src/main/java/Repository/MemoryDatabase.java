@@ -0,0 +1,775 @@
+package Repository;
+
+import Model.Course;
+import Model.Student;
+import Model.Teacher;
+import Model.TimeSlot;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.DayOfWeek;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Registration database held completely in memory and made durable with a write-ahead log and periodic snapshots.
+ * Every mutation is validated, appended to the log and applied under the database lock; the caller then waits
+ * for the log to be forced outside the lock, so concurrent writers share one fsync (group commit).
+ * On startup the newest snapshot is loaded and the log records after it are replayed.
+ */
+public class MemoryDatabase implements RegistrationStore, AutoCloseable {
+    private static final byte PUT_STUDENT = 1;
+    private static final byte DELETE_STUDENT = 2;
+    private static final byte PUT_TEACHER = 3;
+    private static final byte DELETE_TEACHER = 4;
+    private static final byte PUT_COURSE = 5;
+    private static final byte DELETE_COURSE = 6;
+    private static final byte ENROLL = 7;
+    private static final byte UNENROLL = 8;
+
+    private static final int SNAPSHOT_MAGIC = 0x52454753;
+    // version 2 added the time slots of the courses
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private record PersonRow(String firstName, String lastName) {
+    }
+
+    private record CourseRow(String name, long teacherId, int maxEnrollment, int credits, List<TimeSlot> timeSlots) {
+        static CourseRow of(Course course) {
+            return new CourseRow(course.getName(), course.getTeacher(), course.getMaxEnrollment(), course.getCredits(), List.copyOf(course.getTimeSlots()));
+        }
+    }
+
+    private final Path directory;
+    private final Map<Long, PersonRow> students = new HashMap<>();
+    private final Map<Long, PersonRow> teachers = new HashMap<>();
+    private final Map<Long, CourseRow> courses = new HashMap<>();
+    private final EnrollmentGraph graph = new EnrollmentGraph();
+    private final WriteAheadLog log;
+    private final Object snapshotLock = new Object();
+    private final ScheduledExecutorService snapshotter;
+
+    private final StoreStudentRepository studentRepository = new StoreStudentRepository(this);
+    private final StoreTeacherRepository teacherRepository = new StoreTeacherRepository(this);
+    private final StoreCourseRepository courseRepository = new StoreCourseRepository(this);
+    private final StoreEnrollmentRepository enrollmentRepository = new StoreEnrollmentRepository(this);
+
+
+    /**
+     * Opens a database that writes a snapshot every five minutes
+     * @param directory : directory of the snapshots and log files
+     * @throws IOException if the state cannot be recovered
+     */
+    public MemoryDatabase(Path directory) throws IOException {
+        this(directory, 5 * 60_000);
+    }
+
+
+    /**
+     * Opens a database, recovering the state from the newest snapshot and the log
+     * @param directory : directory of the snapshots and log files
+     * @param snapshotIntervalMillis : interval of the periodic snapshots, 0 disables them
+     * @throws IOException if the state cannot be recovered
+     */
+    public MemoryDatabase(Path directory, long snapshotIntervalMillis) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        long snapshotLsn = loadSnapshot();
+        long lastLsn = WriteAheadLog.replay(directory, snapshotLsn, this::replay);
+        log = new WriteAheadLog(directory, lastLsn);
+
+        if (snapshotIntervalMillis > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "memory-database-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotter.scheduleWithFixedDelay(() -> {
+                try {
+                    snapshot();
+                } catch (IOException e) {
+                    // the log still holds everything, the next run tries again
+                    e.printStackTrace();
+                }
+            }, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            snapshotter = null;
+        }
+    }
+
+
+    public StoreStudentRepository getStudentRepository() {
+        return studentRepository;
+    }
+
+
+    public StoreTeacherRepository getTeacherRepository() {
+        return teacherRepository;
+    }
+
+
+    public StoreCourseRepository getCourseRepository() {
+        return courseRepository;
+    }
+
+
+    public StoreEnrollmentRepository getEnrollmentRepository() {
+        return enrollmentRepository;
+    }
+
+
+    private static SQLException storeError(IOException e) {
+        return new SQLException("Write-ahead log error : " + e.getMessage(), e);
+    }
+
+
+    /**
+     * Appends a record to the log; must be called under the database lock, before applying the change
+     * @return the lsn to wait for
+     */
+    private long append(byte type, Object... fields) throws SQLException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+            DataOutputStream output = new DataOutputStream(bytes);
+            for (Object field : fields) {
+                if (field instanceof Long value) {
+                    output.writeLong(value);
+                } else if (field instanceof Integer value) {
+                    output.writeInt(value);
+                } else {
+                    output.writeUTF((String) field);
+                }
+            }
+            return log.append(type, bytes.toByteArray());
+        } catch (IOException e) {
+            throw storeError(e);
+        }
+    }
+
+
+    /**
+     * Waits outside the database lock until the record is durable
+     */
+    private void sync(long lsn) throws SQLException {
+        try {
+            log.sync(lsn);
+        } catch (IOException e) {
+            throw storeError(e);
+        }
+    }
+
+
+    // ---------------------------------------------------------------- state changes (used live and by the replay)
+
+    private void applyPutCourse(long courseId, CourseRow row) {
+        CourseRow previous = courses.put(courseId, row);
+        if (previous == null) {
+            graph.addCourse(courseId, row.teacherId());
+        } else if (previous.teacherId() != row.teacherId()) {
+            graph.moveCourse(courseId, previous.teacherId(), row.teacherId());
+        }
+    }
+
+
+    private void applyDeleteCourse(long courseId) {
+        CourseRow row = courses.remove(courseId);
+        if (row != null) {
+            graph.removeCourse(courseId, row.teacherId());
+        }
+    }
+
+
+    private void applyDeleteTeacher(long teacherId) {
+        for (long courseId : graph.coursesOfTeacher(teacherId)) {
+            applyDeleteCourse(courseId);
+        }
+        teachers.remove(teacherId);
+    }
+
+
+    private void applyDeleteStudent(long studentId) {
+        graph.removeStudent(studentId);
+        students.remove(studentId);
+    }
+
+
+    private synchronized void replay(long lsn, byte type, ByteBuffer payload) throws IOException {
+        switch (type) {
+            case PUT_STUDENT -> students.put(payload.getLong(), new PersonRow(readUTF(payload), readUTF(payload)));
+            case DELETE_STUDENT -> applyDeleteStudent(payload.getLong());
+            case PUT_TEACHER -> teachers.put(payload.getLong(), new PersonRow(readUTF(payload), readUTF(payload)));
+            case DELETE_TEACHER -> applyDeleteTeacher(payload.getLong());
+            case PUT_COURSE -> applyPutCourse(payload.getLong(), readCourse(payload));
+            case DELETE_COURSE -> applyDeleteCourse(payload.getLong());
+            case ENROLL -> graph.enroll(payload.getLong(), payload.getLong());
+            case UNENROLL -> graph.unenroll(payload.getLong(), payload.getLong());
+            default -> throw new IOException("Unknown log record type " + type + " at lsn " + lsn);
+        }
+    }
+
+
+    /**
+     * reads a course record, the records written before the time slots end after the credits
+     */
+    private static CourseRow readCourse(ByteBuffer payload) throws IOException {
+        String name = readUTF(payload);
+        long teacherId = payload.getLong();
+        int maxEnrollment = payload.getInt();
+        int credits = payload.getInt();
+        List<TimeSlot> slots = new ArrayList<>();
+        if (payload.hasRemaining()) {
+            int count = payload.getInt();
+            for (int idx = 0; idx < count; idx++) {
+                slots.add(new TimeSlot(DayOfWeek.of(payload.getInt()), payload.getInt(), payload.getInt()));
+            }
+        }
+        return new CourseRow(name, teacherId, maxEnrollment, credits, List.copyOf(slots));
+    }
+
+
+    /**
+     * @return the fields of a course record : id, name, teacher, places, credits and the time slots
+     */
+    private static Object[] courseFields(Course course) {
+        List<Object> fields = new ArrayList<>(List.of(course.getCourseId(), course.getName(), course.getTeacher(),
+                course.getMaxEnrollment(), course.getCredits(), course.getTimeSlots().size()));
+        for (TimeSlot slot : course.getTimeSlots()) {
+            fields.add(slot.day().getValue());
+            fields.add(slot.startMinute());
+            fields.add(slot.endMinute());
+        }
+        return fields.toArray();
+    }
+
+
+    /**
+     * reads a string written by DataOutputStream.writeUTF (modified UTF-8, length first)
+     */
+    private static String readUTF(ByteBuffer buffer) throws IOException {
+        int size = 2 + (buffer.getShort(buffer.position()) & 0xffff);
+        String value = new DataInputStream(new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), size)).readUTF();
+        buffer.position(buffer.position() + size);
+        return value;
+    }
+
+
+    // ---------------------------------------------------------------- students
+
+    @Override
+    public void createStudent(Student student) throws SQLException {
+        long lsn;
+        synchronized (this) {
+            if (students.containsKey(student.getStudentId())) {
+                throw new SQLIntegrityConstraintViolationException("Duplicate entry " + student.getStudentId() + " for key student.PRIMARY");
+            }
+            lsn = append(PUT_STUDENT, student.getStudentId(), student.getFirstName(), student.getLastName());
+            students.put(student.getStudentId(), new PersonRow(student.getFirstName(), student.getLastName()));
+        }
+        sync(lsn);
+    }
+
+
+    @Override
+    public synchronized List<Student> getAllStudents() {
+        List<Student> result = new LinkedList<>();
+        for (long studentId : new TreeSet<>(students.keySet())) {
+            result.add(findStudent(studentId));
+        }
+        return result;
+    }
+
+
+    @Override
+    public synchronized Student findStudent(long studentId) {
+        PersonRow row = students.get(studentId);
+        if (row == null) {
+            return null;
+        }
+        return new Student(row.firstName(), row.lastName(), graph.coursesOfStudent(studentId), studentId);
+    }
+
+
+    @Override
+    public synchronized List<Student> findStudents(List<Long> studentIds) {
+        List<Student> result = new ArrayList<>(studentIds.size());
+        for (long studentId : studentIds) {
+            Student student = findStudent(studentId);
+            if (student != null) {
+                result.add(student);
+            }
+        }
+        return result;
+    }
+
+
+    @Override
+    public void updateStudent(Student student) throws SQLException {
+        long lsn;
+        synchronized (this) {
+            long studentId = student.getStudentId();
+            if (!students.containsKey(studentId)) {
+                return;
+            }
+            Set<Long> wanted = new LinkedHashSet<>(student.getEnrolledCourses());
+            for (long courseId : wanted) {
+                if (!courses.containsKey(courseId)) {
+                    throw new SQLIntegrityConstraintViolationException("Cannot enroll : course " + courseId + " does not exist");
+                }
+            }
+
+            lsn = append(PUT_STUDENT, studentId, student.getFirstName(), student.getLastName());
+            students.put(studentId, new PersonRow(student.getFirstName(), student.getLastName()));
+            for (long courseId : graph.coursesOfStudent(studentId)) {
+                if (!wanted.remove(courseId)) {
+                    lsn = append(UNENROLL, courseId, studentId);
+                    graph.unenroll(courseId, studentId);
+                }
+            }
+            for (long courseId : wanted) {
+                lsn = append(ENROLL, courseId, studentId);
+                graph.enroll(courseId, studentId);
+            }
+        }
+        sync(lsn);
+    }
+
+
+    @Override
+    public void deleteStudent(Student student) throws SQLException {
+        long lsn;
+        synchronized (this) {
+            if (!students.containsKey(student.getStudentId())) {
+                return;
+            }
+            lsn = append(DELETE_STUDENT, student.getStudentId());
+            applyDeleteStudent(student.getStudentId());
+        }
+        sync(lsn);
+    }
+
+
+    // ---------------------------------------------------------------- teachers
+
+    @Override
+    public void createTeacher(Teacher teacher) throws SQLException {
+        long lsn;
+        synchronized (this) {
+            if (teachers.containsKey(teacher.getTeacherId())) {
+                throw new SQLIntegrityConstraintViolationException("Duplicate entry " + teacher.getTeacherId() + " for key teacher.PRIMARY");
+            }
+            lsn = append(PUT_TEACHER, teacher.getTeacherId(), teacher.getFirstName(), teacher.getLastName());
+            teachers.put(teacher.getTeacherId(), new PersonRow(teacher.getFirstName(), teacher.getLastName()));
+        }
+        sync(lsn);
+    }
+
+
+    @Override
+    public synchronized List<Teacher> getAllTeachers() {
+        List<Teacher> result = new LinkedList<>();
+        for (long teacherId : new TreeSet<>(teachers.keySet())) {
+            result.add(findTeacher(teacherId));
+        }
+        return result;
+    }
+
+
+    @Override
+    public synchronized Teacher findTeacher(long teacherId) {
+        PersonRow row = teachers.get(teacherId);
+        if (row == null) {
+            return null;
+        }
+        return new Teacher(row.firstName(), row.lastName(), graph.coursesOfTeacher(teacherId), teacherId);
+    }
+
+
+    @Override
+    public void updateTeacher(Teacher teacher) throws SQLException {
+        long lsn;
+        synchronized (this) {
+            if (!teachers.containsKey(teacher.getTeacherId())) {
+                return;
+            }
+            lsn = append(PUT_TEACHER, teacher.getTeacherId(), teacher.getFirstName(), teacher.getLastName());
+            teachers.put(teacher.getTeacherId(), new PersonRow(teacher.getFirstName(), teacher.getLastName()));
+        }
+        sync(lsn);
+    }
+
+
+    @Override
+    public void deleteTeacher(Teacher teacher) throws SQLException {
+        long lsn;
+        synchronized (this) {
+            if (!teachers.containsKey(teacher.getTeacherId())) {
+                return;
+            }
+            lsn = append(DELETE_TEACHER, teacher.getTeacherId());
+            applyDeleteTeacher(teacher.getTeacherId());
+        }
+        sync(lsn);
+    }
+
+
+    // ---------------------------------------------------------------- courses
+
+    @Override
+    public void createCourse(Course course) throws SQLException {
+        long lsn;
+        synchronized (this) {
+            if (courses.containsKey(course.getCourseId())) {
+                throw new SQLIntegrityConstraintViolationException("Duplicate entry " + course.getCourseId() + " for key course.PRIMARY");
+            }
+            if (!teachers.containsKey(course.getTeacher())) {
+                throw new SQLIntegrityConstraintViolationException("Cannot add the course : teacher " + course.getTeacher() + " does not exist");
+            }
+            lsn = append(PUT_COURSE, courseFields(course));
+            applyPutCourse(course.getCourseId(), CourseRow.of(course));
+        }
+        sync(lsn);
+    }
+
+
+    @Override
+    public synchronized List<Course> getAllCourses() {
+        List<Course> result = new LinkedList<>();
+        for (long courseId : new TreeSet<>(courses.keySet())) {
+            result.add(findCourse(courseId));
+        }
+        return result;
+    }
+
+
+    @Override
+    public synchronized Course findCourse(long courseId) {
+        CourseRow row = courses.get(courseId);
+        if (row == null) {
+            return null;
+        }
+        Course course = new Course(row.name(), row.teacherId(), row.maxEnrollment(), row.credits(), courseId, graph.studentsOf(courseId));
+        course.setTimeSlots(row.timeSlots());
+        return course;
+    }
+
+
+    @Override
+    public void updateCourse(Course course) throws SQLException {
+        long lsn;
+        synchronized (this) {
+            long courseId = course.getCourseId();
+            if (!courses.containsKey(courseId)) {
+                return;
+            }
+            if (!teachers.containsKey(course.getTeacher())) {
+                throw new SQLIntegrityConstraintViolationException("Cannot update the course : teacher " + course.getTeacher() + " does not exist");
+            }
+            Set<Long> wanted = new LinkedHashSet<>(course.getStudentsEnrolled());
+            for (long studentId : wanted) {
+                if (!students.containsKey(studentId)) {
+                    throw new SQLIntegrityConstraintViolationException("Cannot enroll : student " + studentId + " does not exist");
+                }
+            }
+
+            lsn = append(PUT_COURSE, courseFields(course));
+            applyPutCourse(courseId, CourseRow.of(course));
+            for (long studentId : graph.studentsOf(courseId)) {
+                if (!wanted.remove(studentId)) {
+                    lsn = append(UNENROLL, courseId, studentId);
+                    graph.unenroll(courseId, studentId);
+                }
+            }
+            for (long studentId : wanted) {
+                lsn = append(ENROLL, courseId, studentId);
+                graph.enroll(courseId, studentId);
+            }
+        }
+        sync(lsn);
+    }
+
+
+    @Override
+    public void deleteCourse(long courseId) throws SQLException {
+        long lsn;
+        synchronized (this) {
+            if (!courses.containsKey(courseId)) {
+                return;
+            }
+            lsn = append(DELETE_COURSE, courseId);
+            applyDeleteCourse(courseId);
+        }
+        sync(lsn);
+    }
+
+
+    // ---------------------------------------------------------------- enrollments
+
+    @Override
+    public IEnrollmentRepository.EnrollOutcome enroll(long courseId, long studentId) throws SQLException {
+        long lsn;
+        synchronized (this) {
+            CourseRow course = courses.get(courseId);
+            if (course == null || !students.containsKey(studentId)) {
+                throw new SQLIntegrityConstraintViolationException("Cannot enroll : course " + courseId + " or student " + studentId + " does not exist");
+            }
+            if (graph.isEnrolled(courseId, studentId)) {
+                return IEnrollmentRepository.EnrollOutcome.ALREADY_ENROLLED;
+            }
+            if (graph.roster(courseId).size() >= course.maxEnrollment()) {
+                return IEnrollmentRepository.EnrollOutcome.COURSE_FULL;
+            }
+            lsn = append(ENROLL, courseId, studentId);
+            graph.enroll(courseId, studentId);
+        }
+        sync(lsn);
+        return IEnrollmentRepository.EnrollOutcome.ENROLLED;
+    }
+
+
+    @Override
+    public boolean unenroll(long courseId, long studentId) throws SQLException {
+        long lsn;
+        synchronized (this) {
+            if (!graph.isEnrolled(courseId, studentId)) {
+                return false;
+            }
+            lsn = append(UNENROLL, courseId, studentId);
+            graph.unenroll(courseId, studentId);
+        }
+        sync(lsn);
+        return true;
+    }
+
+
+    @Override
+    public List<Long> unenrollAll(long courseId, List<Long> studentIds) throws SQLException {
+        List<Long> removed = new LinkedList<>();
+        long lsn = 0;
+        synchronized (this) {
+            for (long studentId : studentIds) {
+                if (graph.isEnrolled(courseId, studentId)) {
+                    lsn = append(UNENROLL, courseId, studentId);
+                    graph.unenroll(courseId, studentId);
+                    removed.add(studentId);
+                }
+            }
+        }
+        if (lsn > 0) {
+            sync(lsn);
+        }
+        return removed;
+    }
+
+
+    @Override
+    public synchronized void forEachEnrollment(IEnrollmentRepository.EnrollmentHandler handler) {
+        for (Map.Entry<Long, CourseRow> course : courses.entrySet()) {
+            if (graph.roster(course.getKey()).isEmpty()) {
+                CourseRow row = course.getValue();
+                handler.accept(course.getKey(), row.teacherId(), row.maxEnrollment(), row.credits(), IEnrollmentRepository.NO_STUDENT);
+            }
+        }
+        for (Map.Entry<Long, Set<Long>> student : graph.coursesByStudent().entrySet()) {
+            for (long courseId : student.getValue()) {
+                CourseRow row = courses.get(courseId);
+                handler.accept(courseId, row.teacherId(), row.maxEnrollment(), row.credits(), student.getKey());
+            }
+        }
+    }
+
+
+    // ---------------------------------------------------------------- snapshots
+
+    /**
+     * Writes a snapshot of the current state and deletes the log files it covers.
+     * The state is copied under the database lock; the file is written outside of it.
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            Map<Long, PersonRow> studentCopy;
+            Map<Long, PersonRow> teacherCopy;
+            Map<Long, CourseRow> courseCopy;
+            Map<Long, long[]> rosterCopy = new HashMap<>();
+            long lsn;
+            synchronized (this) {
+                studentCopy = new HashMap<>(students);
+                teacherCopy = new HashMap<>(teachers);
+                courseCopy = new HashMap<>(courses);
+                for (long courseId : graph.coursesWithStudents()) {
+                    rosterCopy.put(courseId, graph.roster(courseId).stream().mapToLong(Long::longValue).toArray());
+                }
+                // the records after this lsn go to a new log file
+                lsn = log.roll();
+            }
+
+            Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, lsn, SNAPSHOT_SUFFIX));
+            Path temporary = directory.resolve(target.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                BufferedOutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+                CRC32 crc = new CRC32();
+                DataOutputStream output = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+                output.writeInt(SNAPSHOT_MAGIC);
+                output.writeInt(SNAPSHOT_VERSION);
+                output.writeLong(lsn);
+                writePeople(output, teacherCopy);
+                writePeople(output, studentCopy);
+                output.writeInt(courseCopy.size());
+                for (Map.Entry<Long, CourseRow> course : courseCopy.entrySet()) {
+                    output.writeLong(course.getKey());
+                    output.writeUTF(course.getValue().name());
+                    output.writeLong(course.getValue().teacherId());
+                    output.writeInt(course.getValue().maxEnrollment());
+                    output.writeInt(course.getValue().credits());
+                    output.writeInt(course.getValue().timeSlots().size());
+                    for (TimeSlot slot : course.getValue().timeSlots()) {
+                        output.writeInt(slot.day().getValue());
+                        output.writeInt(slot.startMinute());
+                        output.writeInt(slot.endMinute());
+                    }
+                }
+                output.writeInt(rosterCopy.size());
+                for (Map.Entry<Long, long[]> roster : rosterCopy.entrySet()) {
+                    output.writeLong(roster.getKey());
+                    output.writeInt(roster.getValue().length);
+                    for (long studentId : roster.getValue()) {
+                        output.writeLong(studentId);
+                    }
+                }
+                output.flush();
+                new DataOutputStream(buffered).writeLong(crc.getValue());
+                buffered.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            // the new snapshot is durable : older snapshots and the log files it covers can go
+            for (long older : snapshots()) {
+                if (older < lsn) {
+                    Files.delete(directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, older, SNAPSHOT_SUFFIX)));
+                }
+            }
+            log.truncateUpTo(lsn);
+        }
+    }
+
+
+    private static void writePeople(DataOutputStream output, Map<Long, PersonRow> people) throws IOException {
+        output.writeInt(people.size());
+        for (Map.Entry<Long, PersonRow> person : people.entrySet()) {
+            output.writeLong(person.getKey());
+            output.writeUTF(person.getValue().firstName());
+            output.writeUTF(person.getValue().lastName());
+        }
+    }
+
+
+    private static void readPeople(DataInputStream input, Map<Long, PersonRow> people) throws IOException {
+        int count = input.readInt();
+        for (int idx = 0; idx < count; idx++) {
+            people.put(input.readLong(), new PersonRow(input.readUTF(), input.readUTF()));
+        }
+    }
+
+
+    /**
+     * @return the lsn of every snapshot file, ascending
+     */
+    private List<Long> snapshots() throws IOException {
+        List<Long> lsns = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                lsns.add(Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(lsns);
+        return lsns;
+    }
+
+
+    /**
+     * Loads the newest snapshot
+     * @return its lsn, 0 if there is no snapshot
+     */
+    private long loadSnapshot() throws IOException {
+        List<Long> lsns = snapshots();
+        if (lsns.isEmpty()) {
+            return 0;
+        }
+        long lsn = lsns.get(lsns.size() - 1);
+        Path file = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, lsn, SNAPSHOT_SUFFIX));
+        try (BufferedInputStream buffered = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            CRC32 crc = new CRC32();
+            DataInputStream input = new DataInputStream(new CheckedInputStream(buffered, crc));
+            int magic = input.readInt();
+            int version = input.readInt();
+            if (magic != SNAPSHOT_MAGIC || version != SNAPSHOT_VERSION || input.readLong() != lsn) {
+                throw new IOException("Invalid snapshot header in " + file);
+            }
+            readPeople(input, teachers);
+            readPeople(input, students);
+            int courseCount = input.readInt();
+            for (int idx = 0; idx < courseCount; idx++) {
+                long courseId = input.readLong();
+                String name = input.readUTF();
+                long teacherId = input.readLong();
+                int maxEnrollment = input.readInt();
+                int credits = input.readInt();
+                List<TimeSlot> slots = new ArrayList<>();
+                for (int slot = input.readInt(); slot > 0; slot--) {
+                    slots.add(new TimeSlot(DayOfWeek.of(input.readInt()), input.readInt(), input.readInt()));
+                }
+                applyPutCourse(courseId, new CourseRow(name, teacherId, maxEnrollment, credits, List.copyOf(slots)));
+            }
+            int rosterCount = input.readInt();
+            for (int idx = 0; idx < rosterCount; idx++) {
+                long courseId = input.readLong();
+                int size = input.readInt();
+                for (int student = 0; student < size; student++) {
+                    graph.enroll(courseId, input.readLong());
+                }
+            }
+            long expected = crc.getValue();
+            if (new DataInputStream(buffered).readLong() != expected) {
+                throw new IOException("Snapshot checksum mismatch in " + file);
+            }
+        }
+        return lsn;
+    }
+
+
+    /**
+     * Stops the periodic snapshots, waiting for a running one to finish, and closes the log
+     * @throws IOException if the log cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (snapshotter != null) {
+            // not interrupted : a snapshot being written is finished, an interrupted file channel is closed
+            snapshotter.shutdown();
+            try {
+                snapshotter.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the snapshot !");
+            }
+        }
+        synchronized (snapshotLock) {
+            log.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package Repository;
+
+import Model.Course;
+import Model.Student;
+import Model.Teacher;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Storage engine behind the Store*Repository classes (FileDatabase, MemoryDatabase).
+ * Implementations hold the same integrity rules as the MySQL schema.
+ */
+interface RegistrationStore {
+
+    void createStudent(Student student) throws SQLException;
+
+    List<Student> getAllStudents() throws SQLException;
+
+    Student findStudent(long studentId) throws SQLException;
+
+    List<Student> findStudents(List<Long> studentIds) throws SQLException;
+
+    void updateStudent(Student student) throws SQLException;
+
+    void deleteStudent(Student student) throws SQLException;
+
+    void createTeacher(Teacher teacher) throws SQLException;
+
+    List<Teacher> getAllTeachers() throws SQLException;
+
+    Teacher findTeacher(long teacherId) throws SQLException;
+
+    void updateTeacher(Teacher teacher) throws SQLException;
+
+    void deleteTeacher(Teacher teacher) throws SQLException;
+
+    void createCourse(Course course) throws SQLException;
+
+    List<Course> getAllCourses() throws SQLException;
+
+    Course findCourse(long courseId) throws SQLException;
+
+    void updateCourse(Course course) throws SQLException;
+
+    void deleteCourse(long courseId) throws SQLException;
+
+    IEnrollmentRepository.EnrollOutcome enroll(long courseId, long studentId) throws SQLException;
+
+    boolean unenroll(long courseId, long studentId) throws SQLException;
+
+    List<Long> unenrollAll(long courseId, List<Long> studentIds) throws SQLException;
+
+    void forEachEnrollment(IEnrollmentRepository.EnrollmentHandler handler) throws SQLException;
+}
@@ -0,0 +1,114 @@
+package Repository;
+
+import Model.LazyIdList;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the lazy related id lists of loaded elements. The elements are split into batches;
+ * the first access to a list loads the lists of its whole batch with one query, e.g.
+ * SELECT courseId, studentId FROM enrolled WHERE courseId IN (...)
+ */
+class RelationBatches {
+    static final int BATCH_SIZE = 500;
+    private final ConnectionRouter router;
+    private final String table;
+    private final String ownerColumn;
+    private final String relatedColumn;
+
+
+    /**
+     * Constructor
+     * @param router opens the connections of the batch queries
+     * @param table table of the relation
+     * @param ownerColumn column of the ids of the loaded elements
+     * @param relatedColumn column of the related ids
+     */
+    RelationBatches(ConnectionRouter router, String table, String ownerColumn, String relatedColumn) {
+        this.router = router;
+        this.table = table;
+        this.ownerColumn = ownerColumn;
+        this.relatedColumn = relatedColumn;
+    }
+
+
+    /**
+     * Creates the lists of related ids of elements
+     * @param ownerIds ids of the elements, in the order of the lists
+     * @param fetchMode EAGER to load the lists now
+     * @return a list of related ids per element
+     * @throws SQLException if a query is incorrect
+     */
+    List<LazyIdList> listsOf(List<Long> ownerIds, FetchMode fetchMode) throws SQLException {
+        List<LazyIdList> lists = new ArrayList<>(ownerIds.size());
+        for (int from = 0; from < ownerIds.size(); from += BATCH_SIZE) {
+            Batch batch = new Batch(ownerIds.subList(from, Math.min(from + BATCH_SIZE, ownerIds.size())));
+            lists.addAll(batch.lists);
+            if (fetchMode == FetchMode.EAGER) {
+                batch.load();
+            }
+        }
+        return lists;
+    }
+
+
+    /**
+     * The lists of some elements, loaded together
+     */
+    private class Batch {
+        private final List<Long> ownerIds;
+        private final List<LazyIdList> lists = new ArrayList<>();
+        private boolean loaded;
+
+        Batch(List<Long> ownerIds) {
+            this.ownerIds = new ArrayList<>(ownerIds);
+            for (int idx = 0; idx < ownerIds.size(); idx++) {
+                lists.add(new LazyIdList(this::load));
+            }
+        }
+
+        private synchronized void load() throws SQLException {
+            if (loaded) {
+                return;
+            }
+            Map<Long, List<Long>> related = new HashMap<>();
+            for (long ownerId : ownerIds) {
+                related.put(ownerId, new ArrayList<>());
+            }
+
+            StringBuilder query = new StringBuilder("SELECT ").append(ownerColumn).append(", ").append(relatedColumn)
+                    .append(" FROM ").append(table).append(" WHERE ").append(ownerColumn).append(" IN (");
+            for (int idx = 0; idx < ownerIds.size(); idx++) {
+                query.append(idx == 0 ? "?" : ", ?");
+            }
+            query.append(')');
+
+            Connection connection = router.read();
+            try {
+                PreparedStatement statement = connection.prepareStatement(query.toString());
+                for (int idx = 0; idx < ownerIds.size(); idx++) {
+                    statement.setLong(idx + 1, ownerIds.get(idx));
+                }
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    related.get(resultSet.getLong(1)).add(resultSet.getLong(2));
+                }
+                statement.close();
+            } finally {
+                connection.close();
+            }
+
+            for (int idx = 0; idx < ownerIds.size(); idx++) {
+                lists.get(idx).fill(related.get(ownerIds.get(idx)));
+            }
+            loaded = true;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package Repository;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Versioned schema bootstrap and migration for the registration database.
+ * The applied version is stored in the schema_version table, every migration with a higher version is applied in order.
+ */
+public class SchemaMigrator {
+    // named lock held while migrating, so that applications starting together do not run the same migrations twice
+    private static final String LOCK_NAME = "registration_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private ConnectionRouter router;
+
+    private final List<Migration> migrations = new ArrayList<>();
+
+
+    /**
+     * A single schema migration
+     */
+    private interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+
+    /**
+     * @param altersTables : true if the migration adds keys to tables that may have existed before the migrations
+     */
+    private record Migration(int version, String description, boolean altersTables, Step step) {
+    }
+
+
+    /**
+     * Index that must exist after the migrations : the leading columns of some index of the table must match
+     */
+    private record ExpectedIndex(String table, String name, boolean unique, List<String> columns) {
+    }
+
+
+    private static final List<ExpectedIndex> EXPECTED_INDEXES = List.of(
+            new ExpectedIndex("student", "PRIMARY", true, List.of("studentId")),
+            new ExpectedIndex("teacher", "PRIMARY", true, List.of("teacherId")),
+            new ExpectedIndex("course", "PRIMARY", true, List.of("courseId")),
+            new ExpectedIndex("course", "idx_course_teacher", false, List.of("teacher")),
+            new ExpectedIndex("enrolled", "uq_enrolled_student_course", true, List.of("studentId", "courseId")),
+            new ExpectedIndex("enrolled", "idx_enrolled_course_student", false, List.of("courseId", "studentId"))
+    );
+
+
+    /**
+     * Constructor
+     * @param url the database url
+     * @param user the user to access
+     * @param password the password for the user
+     */
+    public SchemaMigrator(String url, String user, String password){
+        this(new ConnectionRouter(url, user, password));
+    }
+
+
+    /**
+     * Constructor, the migrations are applied to the primary database
+     * @param router opens the connections
+     */
+    public SchemaMigrator(ConnectionRouter router){
+        this.router = router;
+
+        migrations.add(new Migration(1, "create tables", false, this::createTables));
+        migrations.add(new Migration(2, "keys and lookup indexes", true, this::createIndexes));
+        migrations.add(new Migration(3, "foreign keys", true, this::createForeignKeys));
+        migrations.add(new Migration(4, "course time slots", false, this::createCourseSlots));
+    }
+
+
+    /**
+     * Applies the pending migrations and verifies the expected indexes, holding a named lock of the database
+     * (GET_LOCK) meanwhile : another application migrating the same database waits for it and then finds the
+     * migrations applied
+     * @return the schema version after the migration
+     * @throws SQLException if a migration fails, an expected index is missing or the lock is not granted in time
+     */
+    public int migrate() throws SQLException {
+        Connection connection = router.write();
+        try {
+            lock(connection);
+            try {
+                return migrate(connection);
+            } finally {
+                unlock(connection);
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+
+    private int migrate(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE IF NOT EXISTS schema_version(" +
+                "version INT NOT NULL PRIMARY KEY, " +
+                "description VARCHAR(255) NOT NULL, " +
+                "appliedAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        statement.close();
+
+        int version = currentVersion(connection);
+        boolean rowsChecked = false;
+        for (Migration migration : migrations) {
+            if (migration.version() > version) {
+                if (migration.altersTables() && !rowsChecked) {
+                    checkExistingRows(connection);
+                    rowsChecked = true;
+                }
+                // MySQL commits DDL implicitly, so every migration is recorded right after it was applied
+                migration.step().apply(connection);
+                PreparedStatement insertVersion = connection.prepareStatement("INSERT INTO schema_version(version, description) VALUES (?, ?)");
+                insertVersion.setInt(1, migration.version());
+                insertVersion.setString(2, migration.description());
+                insertVersion.executeUpdate();
+                insertVersion.close();
+                version = migration.version();
+            }
+        }
+
+        verifyIndexes(connection);
+        return version;
+    }
+
+
+    /**
+     * takes the migration lock, the lock belongs to the session of the connection
+     */
+    private void lock(Connection connection) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)");
+        statement.setString(1, LOCK_NAME);
+        statement.setInt(2, LOCK_TIMEOUT_SECONDS);
+        ResultSet resultSet = statement.executeQuery();
+        resultSet.next();
+        int granted = resultSet.getInt(1);
+        boolean failed = resultSet.wasNull();
+        statement.close();
+        if (failed) {
+            throw new SQLException("The migration lock could not be taken !");
+        }
+        if (granted != 1) {
+            throw new SQLException("Another migration is still running after " + LOCK_TIMEOUT_SECONDS + " seconds !");
+        }
+    }
+
+
+    private void unlock(Connection connection) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)");
+        statement.setString(1, LOCK_NAME);
+        statement.executeQuery().close();
+        statement.close();
+    }
+
+
+    /**
+     * @return the highest applied version, 0 for a new database
+     */
+    private int currentVersion(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(version), 0) AS version FROM schema_version");
+        resultSet.next();
+        int version = resultSet.getInt("version");
+        statement.close();
+        return version;
+    }
+
+
+    /**
+     * Version 1 : the four tables with their keys (kept as they are if they were created by hand)
+     */
+    private void createTables(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE IF NOT EXISTS teacher(" +
+                "teacherId BIGINT NOT NULL PRIMARY KEY, " +
+                "firstName VARCHAR(100) NOT NULL, " +
+                "lastName VARCHAR(100) NOT NULL)");
+        statement.execute("CREATE TABLE IF NOT EXISTS student(" +
+                "studentId BIGINT NOT NULL PRIMARY KEY, " +
+                "firstName VARCHAR(100) NOT NULL, " +
+                "lastName VARCHAR(100) NOT NULL)");
+        statement.execute("CREATE TABLE IF NOT EXISTS course(" +
+                "courseId BIGINT NOT NULL PRIMARY KEY, " +
+                "name VARCHAR(255) NOT NULL, " +
+                "maxEnrollment INT NOT NULL, " +
+                "credits INT NOT NULL, " +
+                "teacher BIGINT NOT NULL, " +
+                "INDEX idx_course_teacher(teacher))");
+        statement.execute("CREATE TABLE IF NOT EXISTS enrolled(" +
+                "studentId BIGINT NOT NULL, " +
+                "courseId BIGINT NOT NULL, " +
+                "UNIQUE KEY uq_enrolled_student_course(studentId, courseId), " +
+                "INDEX idx_enrolled_course_student(courseId, studentId))");
+        statement.close();
+    }
+
+
+    /**
+     * Runs before the first migration adding keys to tables that existed before the migrations, so that no ALTER
+     * fails halfway. The enrollments of missing students or courses are deleted, nothing refers to them.
+     * Duplicate ids and courses of missing teachers are reported, only a person can tell which rows are right
+     * @throws SQLException listing the rows to fix by hand
+     */
+    private void checkExistingRows(Connection connection) throws SQLException {
+        List<String> problems = new ArrayList<>();
+        for (String[] key : new String[][]{{"student", "studentId"}, {"teacher", "teacherId"}, {"course", "courseId"}}) {
+            List<Long> duplicates = ids(connection, String.format("SELECT %2$s FROM %1$s GROUP BY %2$s HAVING COUNT(*) > 1", key[0], key[1]));
+            if (!duplicates.isEmpty()) {
+                problems.add("duplicate ids in " + key[0] + " " + duplicates);
+            }
+        }
+        List<Long> orphanCourses = ids(connection,
+                "SELECT c.courseId FROM course c LEFT JOIN teacher t ON t.teacherId = c.teacher WHERE t.teacherId IS NULL");
+        if (!orphanCourses.isEmpty()) {
+            problems.add("courses of missing teachers " + orphanCourses);
+        }
+        if (!problems.isEmpty()) {
+            throw new SQLException("The existing rows must be fixed before the migration : " + String.join(", ", problems) + " !");
+        }
+
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("DELETE e FROM enrolled e LEFT JOIN student s ON s.studentId = e.studentId WHERE s.studentId IS NULL");
+        statement.executeUpdate("DELETE e FROM enrolled e LEFT JOIN course c ON c.courseId = e.courseId WHERE c.courseId IS NULL");
+        statement.close();
+    }
+
+
+    /**
+     * @return the ids selected by a query, at most 20 of them (enough to name the rows in an error)
+     */
+    private List<Long> ids(Connection connection, String query) throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.setMaxRows(20);
+        List<Long> ids = new ArrayList<>();
+        ResultSet resultSet = statement.executeQuery(query);
+        while (resultSet.next()) {
+            ids.add(resultSet.getLong(1));
+        }
+        statement.close();
+        return ids;
+    }
+
+
+    /**
+     * Version 2 : the keys and lookup indexes, for tables that existed before the migrations
+     */
+    private void createIndexes(Connection connection) throws SQLException {
+        for (ExpectedIndex index : EXPECTED_INDEXES) {
+            if (hasIndex(connection, index)) {
+                continue;
+            }
+            if (index.name().equals("uq_enrolled_student_course")) {
+                removeDuplicateEnrollments(connection);
+            }
+            String definition;
+            if (index.name().equals("PRIMARY")) {
+                definition = "PRIMARY KEY";
+            } else {
+                definition = (index.unique() ? "UNIQUE KEY " : "INDEX ") + index.name();
+            }
+            Statement statement = connection.createStatement();
+            statement.execute(String.format("ALTER TABLE %s ADD %s(%s)", index.table(), definition, String.join(", ", index.columns())));
+            statement.close();
+        }
+    }
+
+
+    /**
+     * Keeps a single row of every enrollment, the unique key can not be added over duplicates.
+     * The rows have no key of their own, the extra copies are deleted with DELETE ... LIMIT
+     */
+    private void removeDuplicateEnrollments(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet duplicates = statement.executeQuery(
+                "SELECT studentId, courseId, COUNT(*) FROM enrolled GROUP BY studentId, courseId HAVING COUNT(*) > 1");
+        PreparedStatement delete = connection.prepareStatement("DELETE FROM enrolled WHERE studentId=? AND courseId=? LIMIT ?");
+        while (duplicates.next()) {
+            delete.setLong(1, duplicates.getLong(1));
+            delete.setLong(2, duplicates.getLong(2));
+            delete.setInt(3, duplicates.getInt(3) - 1);
+            delete.executeUpdate();
+        }
+        delete.close();
+        statement.close();
+    }
+
+
+    /**
+     * Version 3 : foreign keys from course to teacher and from enrolled to student and course
+     */
+    private void createForeignKeys(Connection connection) throws SQLException {
+        addForeignKey(connection, "course", "fk_course_teacher", "teacher", "teacher", "teacherId");
+        addForeignKey(connection, "enrolled", "fk_enrolled_student", "studentId", "student", "studentId");
+        addForeignKey(connection, "enrolled", "fk_enrolled_course", "courseId", "course", "courseId");
+    }
+
+
+    /**
+     * Version 4 : the weekly meeting times of the courses, deleted with their course
+     */
+    private void createCourseSlots(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE IF NOT EXISTS course_slot(" +
+                "courseId BIGINT NOT NULL, " +
+                "weekDay TINYINT NOT NULL, " +
+                "startMinute SMALLINT NOT NULL, " +
+                "endMinute SMALLINT NOT NULL, " +
+                "INDEX idx_course_slot_course(courseId), " +
+                "CONSTRAINT fk_course_slot_course FOREIGN KEY (courseId) REFERENCES course(courseId) ON DELETE CASCADE)");
+        statement.close();
+    }
+
+
+    private void addForeignKey(Connection connection, String table, String name, String column, String referencedTable, String referencedColumn) throws SQLException {
+        ResultSet importedKeys = connection.getMetaData().getImportedKeys(connection.getCatalog(), null, table);
+        while (importedKeys.next()) {
+            if (importedKeys.getString("FKCOLUMN_NAME").equalsIgnoreCase(column)) {
+                importedKeys.close();
+                return;
+            }
+        }
+        importedKeys.close();
+
+        Statement statement = connection.createStatement();
+        statement.execute(String.format("ALTER TABLE %s ADD CONSTRAINT %s FOREIGN KEY (%s) REFERENCES %s(%s)",
+                table, name, column, referencedTable, referencedColumn));
+        statement.close();
+    }
+
+
+    /**
+     * Checks that every expected index exists
+     * @throws SQLException naming the first missing index
+     */
+    private void verifyIndexes(Connection connection) throws SQLException {
+        for (ExpectedIndex index : EXPECTED_INDEXES) {
+            if (!hasIndex(connection, index)) {
+                throw new SQLException(String.format("Missing index %s on %s(%s) !", index.name(), index.table(), String.join(", ", index.columns())));
+            }
+        }
+    }
+
+
+    /**
+     * @return true if an index of the table starts with the expected columns (or has exactly them if it must be unique)
+     */
+    private boolean hasIndex(Connection connection, ExpectedIndex expected) throws SQLException {
+        Map<String, SortedMap<Short, String>> indexColumns = new HashMap<>();
+        Map<String, Boolean> indexUnique = new HashMap<>();
+
+        ResultSet resultSet = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, expected.table(), false, false);
+        while (resultSet.next()) {
+            String indexName = resultSet.getString("INDEX_NAME");
+            String column = resultSet.getString("COLUMN_NAME");
+            if (indexName == null || column == null) {
+                continue;
+            }
+            indexColumns.computeIfAbsent(indexName, name -> new TreeMap<>()).put(resultSet.getShort("ORDINAL_POSITION"), column);
+            indexUnique.put(indexName, !resultSet.getBoolean("NON_UNIQUE"));
+        }
+        resultSet.close();
+
+        for (Map.Entry<String, SortedMap<Short, String>> index : indexColumns.entrySet()) {
+            List<String> columns = new ArrayList<>(index.getValue().values());
+            if (columns.size() < expected.columns().size()) {
+                continue;
+            }
+            // a unique key over more columns does not make the expected columns unique
+            if (expected.unique() && (columns.size() != expected.columns().size() || !indexUnique.get(index.getKey()))) {
+                continue;
+            }
+            boolean matches = true;
+            for (int idx = 0; idx < expected.columns().size(); idx++) {
+                if (!columns.get(idx).equalsIgnoreCase(expected.columns().get(idx))) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
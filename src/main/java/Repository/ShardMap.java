@@ -0,0 +1,21 @@
+package Repository;
+
+/**
+ * Tells on which shard database an element is stored, by its id. The enrollments of a course are stored
+ * with the course, and the tables reference each other, so a course must be on the shard of its teacher
+ * and of its students (e.g. the shards hold faculties or campuses, whose elements have ids of their own ranges)
+ */
+public interface ShardMap {
+
+    /**
+     * @return the number of shards
+     */
+    int shardCount();
+
+
+    /**
+     * @param id : id of a student, a teacher or a course
+     * @return the shard of the element, from 0 to shardCount() - 1
+     */
+    int shardOf(long id);
+}
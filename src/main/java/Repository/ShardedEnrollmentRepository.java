@@ -0,0 +1,75 @@
+package Repository;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Enrollments over one repository per shard : the enrollments of a course are stored on its shard,
+ * in the same database as its students, so that a registration stays a single statement on one database.
+ * Registering a student to a course of another shard is refused
+ */
+public class ShardedEnrollmentRepository implements IEnrollmentRepository {
+    private final Shards shards;
+    private final List<IEnrollmentRepository> repositories;
+
+
+    /**
+     * Constructor
+     * @param shards : the shards
+     * @param repositories : the repository of every shard, in the order of the shard numbers
+     */
+    public ShardedEnrollmentRepository(Shards shards, List<? extends IEnrollmentRepository> repositories) {
+        if (repositories.size() != shards.count()) {
+            throw new IllegalArgumentException("Expected a repository per shard !");
+        }
+        this.shards = shards;
+        this.repositories = new ArrayList<>(repositories);
+    }
+
+
+    /**
+     * Enrolls a student to a course of the same shard
+     * @param courseId : id of the course
+     * @param studentId : id of the student
+     * @return ENROLLED, or why the student was not enrolled
+     * @throws SQLIntegrityConstraintViolationException if the course and the student are on different shards
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public EnrollOutcome enroll(long courseId, long studentId) throws SQLException {
+        int shard = shards.shardOf(courseId);
+        if (shards.shardOf(studentId) != shard) {
+            throw new SQLIntegrityConstraintViolationException("The course and the student are stored on different shards !");
+        }
+        return repositories.get(shard).enroll(courseId, studentId);
+    }
+
+
+    @Override
+    public boolean unenroll(long courseId, long studentId) throws SQLException {
+        return repositories.get(shards.shardOf(courseId)).unenroll(courseId, studentId);
+    }
+
+
+    @Override
+    public List<Long> unenrollAll(long courseId, List<Long> studentIds) throws SQLException {
+        return repositories.get(shards.shardOf(courseId)).unenrollAll(courseId, studentIds);
+    }
+
+
+    /**
+     * Goes through the enrollments shard after shard, on the calling thread. A student and the courses
+     * he is enrolled to are on the same shard, so his rows stay consecutive
+     * (the courses nobody is enrolled to come first within every shard)
+     * @param handler : receives the rows
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public void forEachEnrollment(EnrollmentHandler handler) throws SQLException {
+        for (IEnrollmentRepository repository : repositories) {
+            repository.forEachEnrollment(handler);
+        }
+    }
+}
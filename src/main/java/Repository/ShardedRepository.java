@@ -0,0 +1,155 @@
+package Repository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Repository over one repository per shard : an element is stored on the shard of its id, the listings
+ * are gathered from all the shards in parallel and merged ascending by id
+ * @param <T> type of the elements
+ * @param <S> type of their summaries
+ */
+public class ShardedRepository<T, S> implements ICrudRepository<T>, ISummaryRepository<S> {
+    private final Shards shards;
+    private final List<ICrudRepository<T>> repositories = new ArrayList<>();
+    private final List<ISummaryRepository<S>> summaryRepositories = new ArrayList<>();
+    private final ToLongFunction<T> idOf;
+    private final Comparator<T> byId;
+    private final Comparator<S> summariesById;
+
+
+    /**
+     * Constructor
+     * @param shards : the shards
+     * @param repositories : the repository of every shard, in the order of the shard numbers
+     * @param idOf : the id of an element
+     * @param summaryIdOf : the id of a summary
+     */
+    public <R extends ICrudRepository<T> & ISummaryRepository<S>> ShardedRepository(Shards shards, List<R> repositories,
+                                                                                     ToLongFunction<T> idOf, ToLongFunction<S> summaryIdOf) {
+        if (repositories.size() != shards.count()) {
+            throw new IllegalArgumentException("Expected a repository per shard !");
+        }
+        this.shards = shards;
+        this.repositories.addAll(repositories);
+        this.summaryRepositories.addAll(repositories);
+        this.idOf = idOf;
+        this.byId = Comparator.comparingLong(idOf);
+        this.summariesById = Comparator.comparingLong(summaryIdOf);
+    }
+
+
+    private ICrudRepository<T> repositoryOf(T obj) {
+        return repositories.get(shards.shardOf(idOf.applyAsLong(obj)));
+    }
+
+
+    /**
+     * Adds an element to its shard
+     * @param obj : element to add
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public void create(T obj) throws SQLException {
+        repositoryOf(obj).create(obj);
+    }
+
+
+    @Override
+    public List<T> getAll() throws SQLException {
+        return getAll(FetchMode.LAZY);
+    }
+
+
+    /**
+     * Gathers the elements of all the shards, every shard sorting its own ones
+     * @param fetchMode : when the related ids of the elements are loaded
+     * @return all the elements, ascending by id
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public List<T> getAll(FetchMode fetchMode) throws SQLException {
+        return Shards.merge(shards.gather(shard -> {
+            List<T> elements = new ArrayList<>(repositories.get(shard).getAll(fetchMode));
+            elements.sort(byId);
+            return elements;
+        }), byId);
+    }
+
+
+    @Override
+    public boolean isFullyLoaded(T obj) {
+        return repositoryOf(obj).isFullyLoaded(obj);
+    }
+
+
+    /**
+     * @return the summaries of all the shards (each ascending by id), merged ascending by id
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public List<S> getSummaries() throws SQLException {
+        return Shards.merge(shards.gather(shard -> summaryRepositories.get(shard).getSummaries()), summariesById);
+    }
+
+
+    /**
+     * @param id : id of the element
+     * @return the element, read from its shard, or null if it does not exist
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public T findById(long id) throws SQLException {
+        return repositories.get(shards.shardOf(id)).findById(id);
+    }
+
+
+    /**
+     * Reads the elements of every shard with one lookup per shard, the shards in parallel
+     * @param ids : ids of the elements
+     * @return the elements that exist, in the order of the ids
+     * @throws SQLException if a query is incorrect
+     */
+    @Override
+    public List<T> findAllById(List<Long> ids) throws SQLException {
+        List<List<Long>> idsByShard = new ArrayList<>(shards.count());
+        for (int shard = 0; shard < shards.count(); shard++) {
+            idsByShard.add(new ArrayList<>());
+        }
+        for (long id : ids) {
+            idsByShard.get(shards.shardOf(id)).add(id);
+        }
+        Map<Long, T> byId = new HashMap<>();
+        for (List<T> found : shards.gather(shard -> idsByShard.get(shard).isEmpty()
+                ? List.<T>of() : repositories.get(shard).findAllById(idsByShard.get(shard)))) {
+            for (T obj : found) {
+                byId.put(idOf.applyAsLong(obj), obj);
+            }
+        }
+        List<T> elements = new ArrayList<>(byId.size());
+        for (long id : ids) {
+            T obj = byId.get(id);
+            if (obj != null) {
+                elements.add(obj);
+            }
+        }
+        return elements;
+    }
+
+
+    @Override
+    public void update(T obj) throws SQLException {
+        repositoryOf(obj).update(obj);
+    }
+
+
+    @Override
+    public void delete(T obj) throws SQLException {
+        repositoryOf(obj).delete(obj);
+    }
+}
@@ -0,0 +1,163 @@
+package Repository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The shard databases of a registration system : the shard map and the router (connections) of every shard.
+ * A listing of all elements is gathered from the shards in parallel, each shard on its own thread with the
+ * routing of the calling thread (reads of a write on the primaries, time budget)
+ */
+public class Shards implements AutoCloseable {
+    private final ShardMap shardMap;
+    private final List<ConnectionRouter> routers;
+    private final ExecutorService executor;
+
+
+    /**
+     * Work done on one shard
+     * @param <R> type of the result
+     */
+    public interface ShardTask<R> {
+        R run(int shard) throws SQLException;
+    }
+
+
+    /**
+     * Constructor
+     * @param shardMap : tells the shard of an element
+     * @param routers : the router of every shard, in the order of the shard numbers
+     */
+    public Shards(ShardMap shardMap, List<ConnectionRouter> routers) {
+        if (routers.size() != shardMap.shardCount()) {
+            throw new IllegalArgumentException("Expected " + shardMap.shardCount() + " shards but got " + routers.size() + " !");
+        }
+        this.shardMap = shardMap;
+        this.routers = List.copyOf(routers);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, routers.size() - 1), task -> {
+            Thread thread = new Thread(task, "shard-gather");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * @return the number of shards
+     */
+    public int count() {
+        return routers.size();
+    }
+
+
+    /**
+     * @param id : id of an element
+     * @return the shard of the element
+     */
+    public int shardOf(long id) {
+        return shardMap.shardOf(id);
+    }
+
+
+    /**
+     * @return the routers of the shards, in the order of the shard numbers
+     */
+    public List<ConnectionRouter> getRouters() {
+        return routers;
+    }
+
+
+    /**
+     * Runs a task on every shard in parallel (the last shard on the calling thread)
+     * @param task : the work done on a shard
+     * @return the results, in the order of the shards
+     * @throws SQLException the first error of a shard
+     */
+    public <R> List<R> gather(ShardTask<R> task) throws SQLException {
+        List<Future<R>> others = new ArrayList<>();
+        for (int shard = 0; shard < routers.size() - 1; shard++) {
+            int current = shard;
+            ConnectionRouter router = routers.get(shard);
+            ConnectionRouter.Context context = router.context();
+            others.add(executor.submit(() -> {
+                try (ConnectionRouter.Pin pin = router.enter(context)) {
+                    return task.run(current);
+                }
+            }));
+        }
+
+        List<R> results = new ArrayList<>(routers.size());
+        try {
+            R last = task.run(routers.size() - 1);
+            for (Future<R> other : others) {
+                results.add(other.get());
+            }
+            results.add(last);
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new SQLException("A shard could not be read !", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Reading the shards was interrupted !", e);
+        } finally {
+            for (Future<R> other : others) {
+                other.cancel(true);
+            }
+        }
+    }
+
+
+    /**
+     * Merges lists that are sorted by the same order, without sorting them again
+     * @param sorted : the sorted lists
+     * @param order : their order
+     * @return all the elements, in this order
+     */
+    public static <E> List<E> merge(List<List<E>> sorted, Comparator<? super E> order) {
+        int total = 0;
+        for (List<E> list : sorted) {
+            total += list.size();
+        }
+        List<E> merged = new ArrayList<>(total);
+
+        // the next element of every list, the smallest one first
+        record Cursor<E>(List<E> list, int position) {
+            E element() {
+                return list.get(position);
+            }
+        }
+        PriorityQueue<Cursor<E>> heads = new PriorityQueue<>(Math.max(1, sorted.size()), (first, second) -> order.compare(first.element(), second.element()));
+        for (List<E> list : sorted) {
+            if (!list.isEmpty()) {
+                heads.add(new Cursor<>(list, 0));
+            }
+        }
+        while (!heads.isEmpty()) {
+            Cursor<E> head = heads.poll();
+            merged.add(head.element());
+            if (head.position() + 1 < head.list().size()) {
+                heads.add(new Cursor<>(head.list(), head.position() + 1));
+            }
+        }
+        return merged;
+    }
+
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
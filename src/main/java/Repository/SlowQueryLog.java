@@ -0,0 +1,102 @@
+package Repository;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the most recent statements that ran longer than a threshold, with their bind values, duration and rows.
+ * For the slow selects over a second threshold the plan of the database (EXPLAIN) can be captured too,
+ * which shows the full table scans of a missing index.
+ */
+public class SlowQueryLog {
+    private final long thresholdMillis;
+    private final long explainThresholdMillis;
+    private final int capacity;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private volatile Consumer<Entry> listener = entry -> {
+    };
+
+
+    /**
+     * A slow statement
+     * @param at when the statement ended
+     * @param sql the SQL text
+     * @param parameters the bind values, by position (null for the unbound ones)
+     * @param millis duration, until the rows were read for a query
+     * @param rows rows read or changed
+     * @param plan the EXPLAIN output, null if it was not captured
+     */
+    public record Entry(Instant at, String sql, List<Object> parameters, long millis, long rows, String plan) {
+        @Override
+        public String toString() {
+            return String.format("%s %d ms, %d rows : %s%s%s", at, millis, rows, sql,
+                    parameters.isEmpty() ? "" : " " + parameters, plan == null ? "" : System.lineSeparator() + "  plan : " + plan);
+        }
+    }
+
+
+    /**
+     * Constructor
+     * @param thresholdMillis statements running at least this long are logged
+     * @param explainThresholdMillis the plan of the selects running at least this long is captured, -1 to never capture it
+     * @param capacity number of entries kept, the oldest are dropped
+     */
+    public SlowQueryLog(long thresholdMillis, long explainThresholdMillis, int capacity) {
+        if (thresholdMillis < 0 || capacity < 1) {
+            throw new IllegalArgumentException("Invalid slow query log !");
+        }
+        this.thresholdMillis = thresholdMillis;
+        this.explainThresholdMillis = explainThresholdMillis;
+        this.capacity = capacity;
+    }
+
+
+    /**
+     * @param listener receives every entry when it is logged (e.g. to print it)
+     */
+    public void setListener(Consumer<Entry> listener) {
+        this.listener = listener;
+    }
+
+
+    /**
+     * @param millis duration of a statement
+     * @return true if the statement is logged
+     */
+    boolean isSlow(long millis) {
+        return millis >= thresholdMillis;
+    }
+
+
+    /**
+     * @param millis duration of a statement
+     * @return true if the plan of the statement is captured
+     */
+    boolean shouldExplain(long millis) {
+        return explainThresholdMillis >= 0 && millis >= explainThresholdMillis;
+    }
+
+
+    void add(Entry entry) {
+        synchronized (entries) {
+            if (entries.size() == capacity) {
+                entries.removeFirst();
+            }
+            entries.addLast(entry);
+        }
+        listener.accept(entry);
+    }
+
+
+    /**
+     * @return the logged statements, the oldest first
+     */
+    public List<Entry> getEntries() {
+        synchronized (entries) {
+            return new ArrayList<>(entries);
+        }
+    }
+}
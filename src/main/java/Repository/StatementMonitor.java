@@ -0,0 +1,258 @@
+package Repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Watches the statements of a connection opened by the router : before every execution the query timeout is set
+ * (the statement timeout, shortened to what is left of the time budget of the operation) and the statement is
+ * refused if the budget is used up. The statements running longer than the threshold of the slow query log
+ * are logged when their rows were read, with their bind values.
+ */
+final class StatementMonitor {
+    private final ConnectionRouter router;
+    private final SlowQueryLog log;
+    private final Connection connection;
+    private final List<Watched> open = new ArrayList<>();
+
+
+    private StatementMonitor(Connection connection, ConnectionRouter router, SlowQueryLog log) {
+        this.connection = connection;
+        this.router = router;
+        this.log = log;
+    }
+
+
+    /**
+     * Wraps a connection
+     * @param connection the connection
+     * @param router gives the query timeouts
+     * @param log the slow query log, null to not log
+     * @return the watched connection
+     */
+    static Connection watch(Connection connection, ConnectionRouter router, SlowQueryLog log) {
+        StatementMonitor monitor = new StatementMonitor(connection, router, log);
+        return proxy(Connection.class, connection, (proxy, method, arguments) -> monitor.onConnection(method, arguments));
+    }
+
+
+    private Object onConnection(Method method, Object[] arguments) throws Throwable {
+        switch (method.getName()) {
+            case "createStatement" -> {
+                Watched watched = new Watched((Statement) invoke(connection, method, arguments), null);
+                open.add(watched);
+                return proxy(Statement.class, watched.statement, watched);
+            }
+            case "prepareStatement" -> {
+                Watched watched = new Watched((Statement) invoke(connection, method, arguments), (String) arguments[0]);
+                open.add(watched);
+                return proxy(PreparedStatement.class, watched.statement, watched);
+            }
+            case "close" -> {
+                // the statements are closed with the connection, their last queries are logged before
+                for (Watched watched : open) {
+                    watched.finish();
+                }
+                open.clear();
+                return invoke(connection, method, arguments);
+            }
+            default -> {
+                return invoke(connection, method, arguments);
+            }
+        }
+    }
+
+
+    /**
+     * A statement of the connection and its last execution
+     */
+    private final class Watched implements InvocationHandler {
+        final Statement statement;
+        final String preparedSql;
+        final List<Object> parameters = new ArrayList<>();
+
+        // the last execution, pending until its rows were read
+        String sql;
+        List<Object> boundParameters;
+        long start;
+        long end;
+        long rows;
+        boolean pending;
+
+
+        Watched(Statement statement, String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, arguments);
+            }
+            if (preparedSql != null && name.startsWith("set") && arguments != null && arguments.length >= 2
+                    && method.getParameterTypes()[0] == int.class) {
+                bind((Integer) arguments[0], name.equals("setNull") ? null : arguments[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.equals("getResultSet")) {
+                ResultSet resultSet = (ResultSet) StatementMonitor.invoke(statement, method, arguments);
+                return resultSet == null ? null : rows(resultSet);
+            } else if (name.equals("close")) {
+                finish();
+                open.remove(this);
+            }
+            return StatementMonitor.invoke(statement, method, arguments);
+        }
+
+
+        private void bind(int index, Object value) {
+            while (parameters.size() < index) {
+                parameters.add(null);
+            }
+            parameters.set(index - 1, value);
+        }
+
+
+        private Object execute(Method method, Object[] arguments) throws Throwable {
+            finish();
+            int timeout = router.queryTimeoutSeconds();
+            if (timeout > 0) {
+                statement.setQueryTimeout(timeout);
+            }
+
+            sql = arguments != null && arguments.length > 0 && arguments[0] instanceof String text ? text : preparedSql;
+            boundParameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+            rows = 0;
+            end = 0;
+            start = System.nanoTime();
+            Object result = StatementMonitor.invoke(statement, method, arguments);
+            pending = true;
+
+            if (result instanceof ResultSet resultSet) {
+                return rows(resultSet);
+            }
+            if (result instanceof Boolean isQuery) {
+                if (!isQuery) {
+                    rows = Math.max(statement.getUpdateCount(), 0);
+                    finish();
+                }
+                return result;
+            }
+            if (result instanceof Number count) {
+                rows = count.longValue();
+            } else if (result instanceof int[] counts) {
+                for (int count : counts) {
+                    rows += Math.max(count, 0);
+                }
+            } else if (result instanceof long[] counts) {
+                for (long count : counts) {
+                    rows += Math.max(count, 0);
+                }
+            }
+            finish();
+            return result;
+        }
+
+
+        /**
+         * counts the rows read from the result set, the query ends with its last row or when it is closed
+         */
+        private ResultSet rows(ResultSet resultSet) {
+            return proxy(ResultSet.class, resultSet, (proxy, method, arguments) -> {
+                if (method.getName().equals("close")) {
+                    finish();
+                }
+                Object result = StatementMonitor.invoke(resultSet, method, arguments);
+                if (method.getName().equals("next")) {
+                    if ((Boolean) result) {
+                        rows++;
+                    } else if (end == 0) {
+                        end = System.nanoTime();
+                    }
+                }
+                return result;
+            });
+        }
+
+
+        /**
+         * logs the last execution if it was slow
+         */
+        void finish() {
+            if (!pending) {
+                return;
+            }
+            pending = false;
+            long millis = ((end == 0 ? System.nanoTime() : end) - start) / 1_000_000;
+            if (log == null || !log.isSlow(millis)) {
+                return;
+            }
+            String plan = null;
+            if (log.shouldExplain(millis) && sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("select")) {
+                plan = explain(sql, boundParameters);
+            }
+            log.add(new SlowQueryLog.Entry(Instant.now(), sql, boundParameters, millis, rows, plan));
+        }
+    }
+
+
+    /**
+     * runs EXPLAIN for a query on the connection, one line per table of the plan
+     */
+    private String explain(String sql, List<Object> parameters) {
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int idx = 0; idx < parameters.size(); idx++) {
+                explain.setObject(idx + 1, parameters.get(idx));
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rows = explain.executeQuery()) {
+                ResultSetMetaData columns = rows.getMetaData();
+                while (rows.next()) {
+                    if (plan.length() > 0) {
+                        plan.append(" | ");
+                    }
+                    for (int column = 1; column <= columns.getColumnCount(); column++) {
+                        Object value = rows.getObject(column);
+                        if (value != null) {
+                            plan.append(columns.getColumnLabel(column)).append('=').append(value).append(' ');
+                        }
+                    }
+                }
+            }
+            return plan.toString().strip();
+        } catch (SQLException e) {
+            return "EXPLAIN failed : " + e.getMessage();
+        }
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+
+    private static Object invoke(Object target, Method method, Object[] arguments) throws Throwable {
+        try {
+            return method.invoke(target, arguments);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package Repository;
+
+import Model.Course;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * StoreCourseRepository : courses kept by a RegistrationStore (file or memory database)
+ */
+public class StoreCourseRepository implements ICrudRepository<Course> {
+    private final RegistrationStore store;
+
+
+    /**
+     * Constructor
+     * @param store the store holding the courses
+     */
+    StoreCourseRepository(RegistrationStore store) {
+        this.store = store;
+    }
+
+
+    @Override
+    public void create(Course obj) throws SQLException {
+        store.createCourse(obj);
+    }
+
+
+    @Override
+    public List<Course> getAll() throws SQLException {
+        return store.getAllCourses();
+    }
+
+
+    @Override
+    public Course findById(long id) throws SQLException {
+        return store.findCourse(id);
+    }
+
+
+    @Override
+    public void update(Course obj) throws SQLException {
+        store.updateCourse(obj);
+    }
+
+
+    @Override
+    public void delete(Course obj) throws SQLException {
+        store.deleteCourse(obj.getCourseId());
+    }
+}
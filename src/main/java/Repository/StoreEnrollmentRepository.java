@@ -0,0 +1,44 @@
+package Repository;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * StoreEnrollmentRepository : enrollments kept by a RegistrationStore (file or memory database)
+ */
+public class StoreEnrollmentRepository implements IEnrollmentRepository {
+    private final RegistrationStore store;
+
+
+    /**
+     * Constructor
+     * @param store the store holding the enrollments
+     */
+    StoreEnrollmentRepository(RegistrationStore store) {
+        this.store = store;
+    }
+
+
+    @Override
+    public EnrollOutcome enroll(long courseId, long studentId) throws SQLException {
+        return store.enroll(courseId, studentId);
+    }
+
+
+    @Override
+    public boolean unenroll(long courseId, long studentId) throws SQLException {
+        return store.unenroll(courseId, studentId);
+    }
+
+
+    @Override
+    public List<Long> unenrollAll(long courseId, List<Long> studentIds) throws SQLException {
+        return store.unenrollAll(courseId, studentIds);
+    }
+
+
+    @Override
+    public void forEachEnrollment(EnrollmentHandler handler) throws SQLException {
+        store.forEachEnrollment(handler);
+    }
+}
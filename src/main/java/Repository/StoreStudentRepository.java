@@ -0,0 +1,58 @@
+package Repository;
+
+import Model.Student;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * StoreStudentRepository : students kept by a RegistrationStore (file or memory database)
+ */
+public class StoreStudentRepository implements ICrudRepository<Student> {
+    private final RegistrationStore store;
+
+
+    /**
+     * Constructor
+     * @param store the store holding the students
+     */
+    StoreStudentRepository(RegistrationStore store) {
+        this.store = store;
+    }
+
+
+    @Override
+    public void create(Student obj) throws SQLException {
+        store.createStudent(obj);
+    }
+
+
+    @Override
+    public List<Student> getAll() throws SQLException {
+        return store.getAllStudents();
+    }
+
+
+    @Override
+    public Student findById(long id) throws SQLException {
+        return store.findStudent(id);
+    }
+
+
+    @Override
+    public List<Student> findAllById(List<Long> ids) throws SQLException {
+        return store.findStudents(ids);
+    }
+
+
+    @Override
+    public void update(Student obj) throws SQLException {
+        store.updateStudent(obj);
+    }
+
+
+    @Override
+    public void delete(Student obj) throws SQLException {
+        store.deleteStudent(obj);
+    }
+}
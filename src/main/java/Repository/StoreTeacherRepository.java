@@ -0,0 +1,52 @@
+package Repository;
+
+import Model.Teacher;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * StoreTeacherRepository : teachers kept by a RegistrationStore (file or memory database)
+ */
+public class StoreTeacherRepository implements ICrudRepository<Teacher> {
+    private final RegistrationStore store;
+
+
+    /**
+     * Constructor
+     * @param store the store holding the teachers
+     */
+    StoreTeacherRepository(RegistrationStore store) {
+        this.store = store;
+    }
+
+
+    @Override
+    public void create(Teacher obj) throws SQLException {
+        store.createTeacher(obj);
+    }
+
+
+    @Override
+    public List<Teacher> getAll() throws SQLException {
+        return store.getAllTeachers();
+    }
+
+
+    @Override
+    public Teacher findById(long id) throws SQLException {
+        return store.findTeacher(id);
+    }
+
+
+    @Override
+    public void update(Teacher obj) throws SQLException {
+        store.updateTeacher(obj);
+    }
+
+
+    @Override
+    public void delete(Teacher obj) throws SQLException {
+        store.deleteTeacher(obj);
+    }
+}
@@ -0,0 +1,240 @@
+package Repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of numbered records, split into files named after their first log sequence number (lsn).
+ * Appending only writes to the page cache; sync(lsn) forces the file with group commit :
+ * one force covers every record appended before it, so concurrent writers share the fsync.
+ *
+ * Record layout : length (int) | lsn (long) | type (byte) | payload | crc32 of lsn, type and payload (int)
+ */
+public class WriteAheadLog implements AutoCloseable {
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final long MAX_FILE_SIZE = 64L << 20;
+
+    private final Path directory;
+    private final Object flushLock = new Object();
+    private FileChannel channel;
+    private long lastLsn;
+    private volatile long durableLsn;
+
+
+    /**
+     * A replayed record
+     */
+    public interface RecordHandler {
+        void apply(long lsn, byte type, ByteBuffer payload) throws IOException;
+    }
+
+
+    /**
+     * Opens the log for appending after the given lsn, in a new file
+     * @param directory : directory of the log files
+     * @param lastLsn : the lsn of the last record already applied (from a snapshot or a replay)
+     * @throws IOException if the file cannot be created
+     */
+    public WriteAheadLog(Path directory, long lastLsn) throws IOException {
+        this.directory = directory;
+        this.lastLsn = lastLsn;
+        this.durableLsn = lastLsn;
+        Files.createDirectories(directory);
+        openFile(lastLsn + 1);
+    }
+
+
+    private void openFile(long firstLsn) throws IOException {
+        channel = FileChannel.open(directory.resolve(String.format("%s%020d%s", PREFIX, firstLsn, SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+
+    /**
+     * @return the first lsn of every log file of the directory, ascending
+     */
+    private static List<Long> logFiles(Path directory) throws IOException {
+        List<Long> firstLsns = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return firstLsns;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                firstLsns.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(firstLsns);
+        return firstLsns;
+    }
+
+
+    /**
+     * Replays every record with a lsn greater than afterLsn, in order. A torn record ends the replay of its file.
+     * @param directory : directory of the log files
+     * @param afterLsn : lsn already covered by a snapshot
+     * @param handler : record consumer
+     * @return the lsn of the last valid record (afterLsn if there is none)
+     * @throws IOException if a file cannot be read
+     */
+    public static long replay(Path directory, long afterLsn, RecordHandler handler) throws IOException {
+        long last = afterLsn;
+        for (long firstLsn : logFiles(directory)) {
+            Path file = directory.resolve(String.format("%s%020d%s", PREFIX, firstLsn, SUFFIX));
+            ByteBuffer content;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                content = ByteBuffer.allocate((int) channel.size());
+                while (content.hasRemaining() && channel.read(content) >= 0) {
+                    // read the whole file
+                }
+            }
+            content.flip();
+
+            while (content.remaining() >= 4 + 8 + 1 + 4) {
+                int start = content.position();
+                int length = content.getInt();
+                if (length < 9 || content.remaining() < length + 4) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(content.array(), start + 4, length);
+                if ((int) crc.getValue() != content.getInt(start + 4 + length)) {
+                    break;
+                }
+                long lsn = content.getLong();
+                byte type = content.get();
+                ByteBuffer payload = content.slice(content.position(), length - 9);
+                if (lsn > last) {
+                    handler.apply(lsn, type, payload);
+                    last = lsn;
+                }
+                content.position(start + 4 + length + 4);
+            }
+        }
+        return last;
+    }
+
+
+    /**
+     * Appends a record (not yet durable, see sync)
+     * @param type : record type
+     * @param payload : record payload
+     * @return the lsn of the record
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized long append(byte type, byte[] payload) throws IOException {
+        if (channel.position() > MAX_FILE_SIZE) {
+            roll();
+        }
+        long lsn = lastLsn + 1;
+        int length = 8 + 1 + payload.length;
+        ByteBuffer record = ByteBuffer.allocate(4 + length + 4);
+        record.putInt(length).putLong(lsn).put(type).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, length);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        lastLsn = lsn;
+        return lsn;
+    }
+
+
+    /**
+     * Waits until the record with this lsn is on the disk. The first waiting thread forces the file
+     * for everyone who appended before it; the others find their record already durable.
+     * @param lsn : lsn returned by append
+     * @throws IOException if the file cannot be forced
+     */
+    public void sync(long lsn) throws IOException {
+        if (durableLsn >= lsn) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (durableLsn >= lsn) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                target = lastLsn;
+                current = channel;
+            }
+            try {
+                current.force(false);
+            } catch (ClosedChannelException e) {
+                // a concurrent roll forced and closed the file
+                if (durableLsn >= lsn) {
+                    return;
+                }
+                throw e;
+            }
+            markDurable(target);
+        }
+    }
+
+
+    private synchronized void markDurable(long lsn) {
+        if (lsn > durableLsn) {
+            durableLsn = lsn;
+        }
+    }
+
+
+    /**
+     * Closes the current file and continues in a new one
+     * @return the lsn of the last record of the closed files
+     * @throws IOException if the files cannot be forced or created
+     */
+    public synchronized long roll() throws IOException {
+        channel.force(false);
+        channel.close();
+        markDurable(lastLsn);
+        openFile(lastLsn + 1);
+        return lastLsn;
+    }
+
+
+    /**
+     * Deletes the files that only hold records up to the given lsn
+     * @param lsn : lsn covered by a durable snapshot
+     * @throws IOException if a file cannot be deleted
+     */
+    public synchronized void truncateUpTo(long lsn) throws IOException {
+        List<Long> files = logFiles(directory);
+        for (int idx = 0; idx + 1 < files.size(); idx++) {
+            // a file ends right before the first lsn of the next file
+            if (files.get(idx + 1) - 1 <= lsn) {
+                Files.delete(directory.resolve(String.format("%s%020d%s", PREFIX, files.get(idx), SUFFIX)));
+            }
+        }
+    }
+
+
+    /**
+     * @return the lsn of the last appended record
+     */
+    public synchronized long lastLsn() {
+        return lastLsn;
+    }
+
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+}
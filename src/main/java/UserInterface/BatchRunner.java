@@ -0,0 +1,271 @@
+package UserInterface;
+
+import Controller.RegistrationSystem;
+import Exceptions.*;
+import Model.TimeSlot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Runs registration commands from a stream, one per line, without interaction. For example :
+ * <pre>
+ * addTeacher Radu Dragan 1
+ * addCourse "Baze de date" 1 10 5 1
+ * addCourse Algebra 1 10 5 2 "MON 08:00-10:00" "THU 12:00-14:00"
+ * register 1 4411
+ * </pre>
+ * The time slots of a course are optional, after its id.
+ * A reader thread tokenizes the lines and hands them over in batches, while the commands of the previous
+ * batch are applied to the registration system, so reading and parsing overlap with the database work.
+ * For every command a result line (line number, OK or ERROR, message) is written, then a summary.
+ * Empty lines and lines starting with # are skipped.
+ */
+public class BatchRunner {
+    private static final int BATCH_SIZE = 512;
+    private final RegistrationSystem registrationSystem;
+
+
+    /**
+     * A parsed command line
+     */
+    private record Command(int line, String name, String[] arguments) {
+    }
+
+
+    /**
+     * Outcome of a run
+     */
+    public record Summary(long commands, long failed, long millis) {
+        public long succeeded() {
+            return commands - failed;
+        }
+
+        public double commandsPerSecond() {
+            return millis == 0 ? commands * 1000.0 : commands * 1000.0 / millis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d commands, %d succeeded, %d failed in %d ms (%.0f commands/s)",
+                    commands, succeeded(), failed, millis, commandsPerSecond());
+        }
+    }
+
+
+    /**
+     * Constructor
+     * @param registrationSystem : the registration system the commands are applied to
+     */
+    public BatchRunner(RegistrationSystem registrationSystem) {
+        this.registrationSystem = registrationSystem;
+    }
+
+
+    /**
+     * Runs all the commands of a stream
+     * @param commands : command lines
+     * @param results : output of the results and of the summary
+     * @return the summary of the run
+     * @throws IOException if the commands could not be read or the results written
+     */
+    public Summary run(Reader commands, Writer results) throws IOException {
+        BlockingQueue<List<Command>> batches = new ArrayBlockingQueue<>(4);
+        IOException[] readFailure = new IOException[1];
+        Thread reader = new Thread(() -> read(commands, batches, readFailure), "batch-reader");
+        reader.setDaemon(true);
+
+        long start = System.nanoTime();
+        long total = 0;
+        long failed = 0;
+        reader.start();
+        try {
+            List<Command> batch;
+            // the reader ends with an empty batch
+            while (!(batch = batches.take()).isEmpty()) {
+                for (Command command : batch) {
+                    total++;
+                    String error = execute(command);
+                    if (error == null) {
+                        results.write(command.line() + "\tOK" + System.lineSeparator());
+                    } else {
+                        failed++;
+                        results.write(command.line() + "\tERROR\t" + error + System.lineSeparator());
+                    }
+                }
+            }
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The batch was interrupted !", e);
+        }
+        if (readFailure[0] != null) {
+            throw readFailure[0];
+        }
+
+        Summary summary = new Summary(total, failed, (System.nanoTime() - start) / 1_000_000);
+        results.write("# " + summary + System.lineSeparator());
+        results.flush();
+        return summary;
+    }
+
+
+    /**
+     * reads and tokenizes the lines, handing them over in batches, then an empty batch
+     */
+    private static void read(Reader commands, BlockingQueue<List<Command>> batches, IOException[] failure) {
+        try {
+            BufferedReader lines = new BufferedReader(commands, 1 << 16);
+            List<String> tokens = new ArrayList<>();
+            List<Command> batch = new ArrayList<>(BATCH_SIZE);
+            int lineNumber = 0;
+            String line;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                tokenize(line, tokens);
+                if (tokens.isEmpty() || tokens.get(0).startsWith("#")) {
+                    continue;
+                }
+                batch.add(new Command(lineNumber, tokens.get(0), tokens.subList(1, tokens.size()).toArray(new String[0])));
+                if (batch.size() == BATCH_SIZE) {
+                    batches.put(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.put(batch);
+            }
+        } catch (IOException e) {
+            failure[0] = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                batches.put(List.of());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    /**
+     * Splits a line into tokens separated by whitespace, a token in double quotes can contain spaces
+     * @param line : command line
+     * @param tokens : receives the tokens (cleared before)
+     */
+    private static void tokenize(String line, List<String> tokens) {
+        tokens.clear();
+        int length = line.length();
+        int idx = 0;
+        while (idx < length) {
+            char character = line.charAt(idx);
+            if (Character.isWhitespace(character)) {
+                idx++;
+            } else if (character == '"') {
+                int end = line.indexOf('"', idx + 1);
+                end = end < 0 ? length : end;
+                tokens.add(line.substring(idx + 1, end));
+                idx = end + 1;
+            } else {
+                int end = idx + 1;
+                while (end < length && !Character.isWhitespace(line.charAt(end))) {
+                    end++;
+                }
+                tokens.add(line.substring(idx, end));
+                idx = end;
+            }
+        }
+    }
+
+
+    /**
+     * applies a command to the registration system
+     * @return null if it succeeded, the error message otherwise
+     */
+    private String execute(Command command) {
+        String[] arguments = command.arguments();
+        try {
+            switch (command.name()) {
+                case "addStudent" -> {
+                    expect(arguments, 3);
+                    registrationSystem.addStudent(arguments[0], arguments[1], number(arguments[2]));
+                }
+                case "addTeacher" -> {
+                    expect(arguments, 3);
+                    registrationSystem.addTeacher(arguments[0], arguments[1], number(arguments[2]));
+                }
+                case "addCourse" -> {
+                    if (arguments.length < 5) {
+                        expect(arguments, 5);
+                    }
+                    List<TimeSlot> timeSlots = new ArrayList<>();
+                    for (int idx = 5; idx < arguments.length; idx++) {
+                        timeSlots.add(TimeSlot.parse(arguments[idx]));
+                    }
+                    registrationSystem.addCourse(arguments[0], number(arguments[1]), smallNumber(arguments[2]),
+                            smallNumber(arguments[3]), number(arguments[4]), timeSlots);
+                }
+                case "register" -> {
+                    expect(arguments, 2);
+                    registrationSystem.register(number(arguments[0]), number(arguments[1]));
+                }
+                case "unregister" -> {
+                    expect(arguments, 2);
+                    registrationSystem.unregister(number(arguments[0]), number(arguments[1]));
+                }
+                case "changeMaxEnrollment" -> {
+                    expect(arguments, 2);
+                    registrationSystem.changeMaxEnrollment(number(arguments[0]), smallNumber(arguments[1]));
+                }
+                case "deleteCourse" -> {
+                    expect(arguments, 2);
+                    registrationSystem.deleteTeacherCourse(number(arguments[0]), number(arguments[1]));
+                }
+                case "deleteTeacher" -> {
+                    expect(arguments, 1);
+                    registrationSystem.deleteTeacher(number(arguments[0]));
+                }
+                default -> throw new IllegalArgumentException("Unknown command " + command.name() + " !");
+            }
+            return null;
+        } catch (AlreadyExistsException | ElementDoesNotExistException | MaxCreditsSurpassedException
+                | MaxEnrollmentSurpassedException | NotTeachingTheCourseException | ScheduleConflictException | IllegalArgumentException e) {
+            return e.getMessage();
+        } catch (SQLException e) {
+            return "Database error : " + e.getMessage();
+        }
+    }
+
+
+    private static void expect(String[] arguments, int count) {
+        if (arguments.length != count) {
+            throw new IllegalArgumentException("Expected " + count + " arguments but got " + arguments.length + " !");
+        }
+    }
+
+
+    private static long number(String token) {
+        try {
+            return Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number : " + token + " !");
+        }
+    }
+
+
+    private static int smallNumber(String token) {
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number : " + token + " !");
+        }
+    }
+}
@@ -1,28 +1,100 @@
 package UserInterface;
 
+import Controller.EnrollmentReport;
 import Controller.RegistrationSystem;
+import Controller.RetryPolicy;
 import Exceptions.*;
+import Index.FreePlacesView;
 import Model.Course;
+import Model.CourseSummary;
 import Model.Student;
-import Model.Teacher;
-
+import Model.StudentSummary;
+import Model.TeacherSummary;
+import Model.TimeSlot;
+import Repository.ConnectionRouter;
+import Repository.SlowQueryLog;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * User interface
  */
 public class ConsoleView {
+    private static final int PAGE_SIZE = 25;
     private RegistrationSystem registrationSystem;
     private Scanner inputScanner;
+    private final CompletableFuture<RegistrationSystem.WarmUpReport> warmUp;
+    // the listings are written through a large buffer, flushed once per page
+    private final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)), 1 << 16);
+    private final TableRenderer<Student> studentTable = new TableRenderer<Student>()
+            .numberColumn("Id", 10, (row, student) -> row.append(student.getStudentId()))
+            .column("First name", 20, (row, student) -> row.append(student.getFirstName()))
+            .column("Last name", 20, (row, student) -> row.append(student.getLastName()))
+            .numberColumn("Courses", 7, (row, student) -> row.append(student.getEnrolledCourses().size()));
+    // the listings of all elements show summaries, read without the relations of the elements
+    private final TableRenderer<StudentSummary> studentSummaryTable = new TableRenderer<StudentSummary>()
+            .numberColumn("Id", 10, (row, student) -> row.append(student.studentId()))
+            .column("First name", 20, (row, student) -> row.append(student.firstName()))
+            .column("Last name", 20, (row, student) -> row.append(student.lastName()));
+    private final TableRenderer<TeacherSummary> teacherTable = new TableRenderer<TeacherSummary>()
+            .numberColumn("Id", 10, (row, teacher) -> row.append(teacher.teacherId()))
+            .column("First name", 20, (row, teacher) -> row.append(teacher.firstName()))
+            .column("Last name", 20, (row, teacher) -> row.append(teacher.lastName()));
+    private final TableRenderer<CourseSummary> courseSummaryTable = new TableRenderer<CourseSummary>()
+            .numberColumn("Id", 10, (row, course) -> row.append(course.courseId()))
+            .column("Name", 30, (row, course) -> row.append(course.name()))
+            .numberColumn("Teacher", 10, (row, course) -> row.append(course.teacherId()))
+            .numberColumn("Free", 8, (row, course) -> row.append(course.freeSeats()))
+            .numberColumn("Credits", 7, (row, course) -> row.append(course.credits()));
+    private final TableRenderer<Course> courseTable = new TableRenderer<Course>()
+            .numberColumn("Id", 10, (row, course) -> row.append(course.getCourseId()))
+            .column("Name", 30, (row, course) -> row.append(course.getName()))
+            .numberColumn("Teacher", 10, (row, course) -> row.append(course.getTeacher()))
+            .numberColumn("Students", 8, (row, course) -> row.append(course.getNumberOfStudents()))
+            .numberColumn("Places", 8, (row, course) -> row.append(course.getMaxEnrollment()))
+            .numberColumn("Credits", 7, (row, course) -> row.append(course.getCredits()))
+            .column("Time slots", 40, (row, course) -> {
+                for (TimeSlot slot : course.getTimeSlots()) {
+                    row.append(slot).append(' ');
+                }
+            });
+    private final TableRenderer<FreePlacesView.OpenCourse> freePlacesTable = new TableRenderer<FreePlacesView.OpenCourse>()
+            .numberColumn("Id", 10, (row, course) -> row.append(course.courseId()))
+            .column("Name", 30, (row, course) -> row.append(course.name()))
+            .numberColumn("Teacher", 10, (row, course) -> row.append(course.teacherId()))
+            .numberColumn("Free", 8, (row, course) -> row.append(course.remainingSeats()))
+            .numberColumn("Places", 8, (row, course) -> row.append(course.maxEnrollment()))
+            .numberColumn("Credits", 7, (row, course) -> row.append(course.credits()));
 
 
     /**
      * Constructor for the user interface
+     * @throws SQLException if the database could not be prepared
      */
-    public ConsoleView() {
-        registrationSystem = new RegistrationSystem("jdbc:mysql://localhost:3306/university", "root", "password31");
+    public ConsoleView() throws SQLException {
+        ConnectionRouter router = new ConnectionRouter("jdbc:mysql://localhost:3306/university", "root", "password31");
+        // the application is usable during the warm-up, loading what it needs on demand
+        registrationSystem = new RegistrationSystem(router, true);
+        // after the migration of the schema, which may take long on large tables
+        router.setStatementTimeout(30);
+        router.setSlowQueryLog(new SlowQueryLog(200, 1000, 100));
+        registrationSystem.setOperationBudget(60_000);
         inputScanner = new Scanner(System.in);
+        warmUp = registrationSystem.getStartupWarmUp();
     }
 
 
@@ -36,7 +108,7 @@ public class ConsoleView {
             this.showMenu();
             System.out.print("Please choose an Option : ");
             option = inputScanner.nextInt();
-            if (option > 13 || option < 0){
+            if (option > 16 || option < 0){
                 System.out.println("This Option does not exist, please try again !");
             }
 
@@ -66,6 +138,12 @@ public class ConsoleView {
                 this.filterStudentsEnrolled();
             } else if (option == 13) {
                 this.filterCoursesWithStudents();
+            } else if (option == 14) {
+                this.unregister();
+            } else if (option == 15) {
+                this.showEnrollmentReport();
+            } else if (option == 16) {
+                this.showEligibleCourses();
             }
         }
 
@@ -73,6 +151,39 @@ public class ConsoleView {
     }
 
 
+    /**
+     * Runs the commands of a file without interaction (see BatchRunner for the commands)
+     * @param commandsFile : file with one command per line, - for the standard input
+     * @param resultsFile : file receiving the status of every command and the summary
+     */
+    public void runBatch(String commandsFile, String resultsFile) {
+        try (Reader commands = commandsFile.equals("-") ? new InputStreamReader(System.in) : Files.newBufferedReader(Path.of(commandsFile));
+             Writer results = Files.newBufferedWriter(Path.of(resultsFile))) {
+            BatchRunner.Summary summary = new BatchRunner(registrationSystem).run(commands, results);
+            System.out.println(summary);
+        } catch (IOException e) {
+            System.out.println("The batch could not be run : " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Serves the registration system over HTTP (see HttpApi) until Enter is pressed
+     * @param port : port to listen on
+     */
+    public void serveHttp(int port) {
+        try (HttpApi api = new HttpApi(registrationSystem, port)) {
+            api.start();
+            System.out.println("Listening on port " + api.getPort() + ", press Enter to stop");
+            warmUp.whenComplete((report, failure) -> System.out.println(failure == null
+                    ? "Warm-up done : " + report : "Warm-up failed, the data is loaded on demand : " + failure.getMessage()));
+            inputScanner.nextLine();
+        } catch (IOException e) {
+            System.out.println("The server could not be started : " + e.getMessage());
+        }
+    }
+
+
     /**
      * gets from user the input for adding a student
      */
@@ -94,7 +205,7 @@ public class ConsoleView {
         } catch (AlreadyExistsException e) {
             System.out.println("Student already exists !");
         } catch (SQLException throwable) {
-            throwable.printStackTrace();
+            showWriteError(throwable);
         }
     }
 
@@ -120,7 +231,7 @@ public class ConsoleView {
         } catch (AlreadyExistsException e) {
             System.out.println("Teacher already exists !");
         } catch (SQLException throwable) {
-            throwable.printStackTrace();
+            showWriteError(throwable);
         }
     }
 
@@ -145,17 +256,31 @@ public class ConsoleView {
 
         System.out.print("Enter course id : ");
         long courseId = inputScanner.nextLong();
+        inputScanner.nextLine();
+
+        List<TimeSlot> timeSlots = new ArrayList<>();
+        System.out.print("Enter a time slot (e.g. MON 09:00-10:30), nothing to finish : ");
+        String slot = inputScanner.nextLine();
+        while (!slot.isBlank()) {
+            try {
+                timeSlots.add(TimeSlot.parse(slot));
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+            }
+            System.out.print("Enter a time slot (e.g. MON 09:00-10:30), nothing to finish : ");
+            slot = inputScanner.nextLine();
+        }
 
 
         try {
-            registrationSystem.addCourse(name, teacherId, maxEnrollment, credits, courseId);
+            registrationSystem.addCourse(name, teacherId, maxEnrollment, credits, courseId, timeSlots);
             System.out.println("Course added successfully !");
         } catch (AlreadyExistsException e) {
             System.out.println("Course already exists !");
         } catch (ElementDoesNotExistException e) {
             System.out.println("That teacher does not exist !");
         } catch (SQLException throwable) {
-            throwable.printStackTrace();
+            showWriteError(throwable);
         }
     }
 
@@ -183,20 +308,61 @@ public class ConsoleView {
             System.out.println("This course has no available places !");
         } catch (AlreadyExistsException e) {
             System.out.println("Student is already registered to this course !");
+        } catch (ScheduleConflictException e) {
+            System.out.println("This course overlaps a course the student is registered to !");
         } catch (SQLException throwable) {
-            throwable.printStackTrace();
+            showWriteError(throwable);
         }
     }
 
 
     /**
-     * shows the courses with free places
+     * gets from user the input for unregistering a student from a course
+     */
+    public void unregister(){
+        inputScanner.nextLine();
+
+        System.out.print("Enter course id : ");
+        long courseId = inputScanner.nextLong();
+
+        System.out.print("Enter student id : ");
+        long studentId = inputScanner.nextLong();
+
+        try {
+            registrationSystem.unregister(courseId, studentId);
+            System.out.println("Successfully unregistered from the course !");
+        } catch (ElementDoesNotExistException e) {
+            System.out.println("The Student is not registered to this course !");
+        } catch (SQLException throwable) {
+            showWriteError(throwable);
+        }
+    }
+
+
+    /**
+     * shows the courses with free places, the ones with most free places first
      */
     public void retrieveFree(){
         try {
-            for (Course course : registrationSystem.retrieveCoursesWithFreePlaces()){
-                System.out.println(course);
-            }
+            showTable(registrationSystem.retrieveCoursesWithFreePlaces(FreePlacesView.Order.MOST_REMAINING_SEATS), freePlacesTable);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * gets from user a student and shows the courses the student can still register to
+     */
+    public void showEligibleCourses(){
+        inputScanner.nextLine();
+
+        System.out.print("Enter student id : ");
+        long studentId = inputScanner.nextLong();
+
+        try {
+            showTable(registrationSystem.retrieveEligibleCourses(studentId), freePlacesTable);
+        } catch (ElementDoesNotExistException e) {
+            System.out.println("The Student could not be found !");
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -207,9 +373,7 @@ public class ConsoleView {
      */
     public void retrieveAll(){
         try {
-            for (Course course : registrationSystem.getAllCourses()){
-                System.out.println(course);
-            }
+            showTable(registrationSystem.retrieveCourseSummaries(), courseSummaryTable);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -246,9 +410,7 @@ public class ConsoleView {
      */
     public void showAllTeachers(){
         try {
-            for (Teacher teacher : registrationSystem.retrieveAllTeachers()){
-                System.out.println(teacher);
-            }
+            showTable(registrationSystem.retrieveTeacherSummaries(), teacherTable);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -260,9 +422,7 @@ public class ConsoleView {
      */
     public void showAllStudents(){
         try {
-            for (Student student : registrationSystem.retrieveAllStudents()){
-                System.out.println(student);
-            }
+            showTable(registrationSystem.retrieveStudentSummaries(), studentSummaryTable);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -274,9 +434,7 @@ public class ConsoleView {
      */
     public void showStudentsSortedById(){
         try {
-            for (Student student : registrationSystem.sortStudentsById()){
-                System.out.println(student);
-            }
+            showTable(registrationSystem.retrieveStudentSummaries(), studentSummaryTable);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -288,9 +446,7 @@ public class ConsoleView {
      */
     public void showCoursesSortedByName(){
         try {
-            for (Course course : registrationSystem.sortCoursesByName()){
-                System.out.println(course);
-            }
+            showTable(registrationSystem.retrieveCourseSummariesByName(), courseSummaryTable);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -302,9 +458,7 @@ public class ConsoleView {
      */
     public void filterStudentsEnrolled(){
         try {
-            for (Student student : registrationSystem.filterStudentsEnrolled()){
-                System.out.println(student);
-            }
+            showTable(registrationSystem.filterStudentsEnrolled(), studentTable);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -316,15 +470,100 @@ public class ConsoleView {
      */
     public void filterCoursesWithStudents(){
         try {
-            for (Course course : registrationSystem.filterCoursesWithStudents()){
-                System.out.println(course);
-            }
+            showTable(registrationSystem.filterCoursesWithStudents(), courseTable);
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
 
+    /**
+     * shows the fill rate of the courses, the load of the teachers and the credits of the students
+     */
+    public void showEnrollmentReport(){
+        try {
+            EnrollmentReport report = registrationSystem.createEnrollmentReport();
+
+            System.out.println("Courses (id, teacher, students / places, fill rate) :");
+            for (EnrollmentReport.CourseLoad course : report.getCourses()) {
+                System.out.printf("  %d, %d, %d / %d, %.0f%%%n", course.courseId(), course.teacherId(),
+                        course.students(), course.maxEnrollment(), course.fillRate() * 100);
+            }
+
+            System.out.println("Teachers (id, courses, students) :");
+            for (EnrollmentReport.TeacherLoad teacher : report.getTeachers()) {
+                System.out.printf("  %d, %d, %d%n", teacher.teacherId(), teacher.courses(), teacher.students());
+            }
+
+            System.out.println("Students by credits :");
+            report.getCreditDistribution().forEach((credits, students) -> System.out.printf("  %d credits : %d%n", credits, students));
+
+            System.out.println("Oversubscribed courses : " + report.getOversubscribedCourses().stream().map(EnrollmentReport.CourseLoad::courseId).toList());
+            System.out.println("Empty courses : " + report.getEmptyCourses().stream().map(EnrollmentReport.CourseLoad::courseId).toList());
+        } catch (SQLException throwable) {
+            throwable.printStackTrace();
+        }
+    }
+
+
+    /**
+     * shows why a change failed : a busy database (the retries were used up) or an unexpected database error
+     */
+    private void showWriteError(SQLException exception) {
+        if (RetryPolicy.isRetryable(exception)) {
+            System.out.println("The database is busy, please try again !");
+        } else {
+            exception.printStackTrace();
+        }
+    }
+
+
+    /**
+     * shows a listing as a table, one page at a time. The user can go to the next or previous page,
+     * jump to a page by its number or show all the remaining rows at once
+     * @param elements : rows of the table
+     * @param table : renderer of the rows
+     */
+    private <T> void showTable(List<T> elements, TableRenderer<T> table) {
+        int pages = Math.max(1, (elements.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+        int page = 0;
+        try {
+            while (true) {
+                System.out.flush();
+                int from = page * PAGE_SIZE;
+                table.header(out);
+                table.rows(out, elements, from, Math.min(from + PAGE_SIZE, elements.size()));
+                if (pages == 1) {
+                    out.flush();
+                    return;
+                }
+                out.write("Page " + (page + 1) + " / " + pages + " (" + elements.size() + " rows)" + System.lineSeparator());
+                out.flush();
+
+                System.out.print("n(ext), p(revious), a(ll), q(uit) or a page number : ");
+                String command = inputScanner.next();
+                if (command.equals("q") || (command.equals("n") && page == pages - 1)) {
+                    return;
+                } else if (command.equals("n")) {
+                    page++;
+                } else if (command.equals("p")) {
+                    page = Math.max(page - 1, 0);
+                } else if (command.equals("a")) {
+                    table.rows(out, elements, Math.min(from + PAGE_SIZE, elements.size()), elements.size());
+                    out.flush();
+                    return;
+                } else if (command.matches("\\d{1,9}")) {
+                    page = Math.min(Math.max(Integer.parseInt(command), 1), pages) - 1;
+                } else {
+                    System.out.println("This Option does not exist, please try again !");
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+
     /**
      * shows the user menu
      */
@@ -343,7 +582,10 @@ public class ConsoleView {
                 10. Show students sorted by id\s
                 11. Show courses sorted by name\s
                 12. Filter students enrolled for at least a course\s
-                13. Filter courses with at least one student enrolled for
+                13. Filter courses with at least one student enrolled for\s
+                14. Unregister a student from a course\s
+                15. Show the enrollment report\s
+                16. Show the courses a student can still register to
                 """);
     }
 }
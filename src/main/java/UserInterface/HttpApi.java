@@ -0,0 +1,664 @@
+package UserInterface;
+
+import Controller.EnrollmentReport;
+import Controller.RegistrationSystem;
+import Controller.RetryPolicy;
+import Exceptions.*;
+import Index.FreePlacesView;
+import Model.Course;
+import Model.CourseSummary;
+import Model.Student;
+import Model.StudentSummary;
+import Model.Teacher;
+import Model.TeacherSummary;
+import Model.TimeSlot;
+import Repository.SlowQueryLog;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP/JSON interface of the registration system, on the server of the JDK.
+ * <pre>
+ * GET    /students, /students/enrolled, /students/search?q=
+ * GET    /teachers, /teachers/search?q=
+ * GET    /courses (?sort=name), /courses/with-students, /courses/free (?order=MOST_REMAINING_SEATS), /courses/search?q=
+ * GET    /courses/{id}/students
+ * GET    /students/{id}/eligible-courses         the courses the student can still register to (credits, free places,
+ *                                                time slots), by credits
+ * GET    /report
+ * GET    /status                                 warmed up or degraded (indexes still loading), version of the data,
+ *                                                counters of the retried writes
+ * GET    /slow-queries                           the last slow statements (SQL, bind values, duration, rows, plan)
+ * POST   /students, /teachers, /courses (JSON body with the fields of the element, the optional "timeSlots"
+ *                                                of a course as ["MON 09:00-10:30", ...])
+ * PUT    /courses/{id}/students/{studentId}     registers a student
+ * DELETE /courses/{id}/students/{studentId}     unregisters a student
+ * PUT    /courses/{id}/max-enrollment           body {"maxEnrollment" : n}
+ * DELETE /teachers/{id}/courses/{courseId}, /teachers/{id}
+ * </pre>
+ * The lists are paged with ?offset= and ?limit= and written element by element to the response.
+ * /students, /teachers and /courses list summaries (ids, names, free places) read with narrow queries,
+ * ?full=true lists the elements with their related ids, the students and the courses are paged on the
+ * in-memory indexes so that only the elements of the page are loaded.
+ * Every GET response has an ETag made of the version of the data, so that a client sending it back
+ * in If-None-Match gets a 304 without the data being read at all while nothing changed.
+ * Requests are handled on virtual threads when the JVM has them (Java 21 and later), otherwise on a thread pool.
+ */
+public class HttpApi implements AutoCloseable {
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+    // the searches rank at most this many results, the pages past them are empty
+    private static final int MAX_SEARCH_RESULTS = 10 * MAX_LIMIT;
+    // the version restarts with the application, the ETags of different runs must not match
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+    private final RegistrationSystem registrationSystem;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+
+    /**
+     * Writes an element as a JSON object
+     */
+    private interface ElementWriter<T> {
+        void write(JsonGenerator json, T element) throws IOException;
+    }
+
+
+    /**
+     * Computes the elements of a listing
+     */
+    private interface Listing<T> {
+        List<T> load() throws SQLException, HttpError, ElementDoesNotExistException;
+    }
+
+
+    /**
+     * Computes one page of a listing, with the number of elements of the whole listing
+     */
+    private interface PagedListing<T> {
+        RegistrationSystem.Page<T> load(int offset, int limit) throws SQLException, HttpError, ElementDoesNotExistException;
+    }
+
+
+    /**
+     * Answers a request with an error status
+     */
+    private static class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+
+    /**
+     * Constructor, the server is started by start()
+     * @param registrationSystem : the registration system
+     * @param port : port to listen on, 0 for any free port
+     * @throws IOException if the port could not be opened
+     */
+    public HttpApi(RegistrationSystem registrationSystem, int port) throws IOException {
+        this.registrationSystem = registrationSystem;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+
+    /**
+     * @return an executor starting a virtual thread per request, or a pool of platform threads before Java 21
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "http-api");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+
+    /**
+     * Starts answering requests
+     */
+    public void start() {
+        server.start();
+    }
+
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+
+    /**
+     * Stops the server, waiting at most a second for the requests being handled
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange, exchange.getRequestMethod(), exchange.getRequestURI().getPath().split("/"));
+        } catch (HttpError e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (ElementDoesNotExistException e) {
+            sendError(exchange, 404, e.getMessage());
+        } catch (AlreadyExistsException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | NotTeachingTheCourseException
+                | ScheduleConflictException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (JsonProcessingException e) {
+            sendError(exchange, 400, "The body is not valid JSON : " + e.getOriginalMessage());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // e.g. a registration to a course of another shard
+            sendError(exchange, 409, e.getMessage());
+        } catch (SQLException e) {
+            if (RetryPolicy.isRetryable(e)) {
+                // the retries of the write were used up, the client can try again later
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendError(exchange, 503, "The database is busy, please try again !");
+            } else {
+                sendError(exchange, 500, "Database error : " + e.getMessage());
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+
+    /**
+     * calls the operation of the request
+     * @param path : the parts of the path, the first one is empty
+     */
+    private void route(HttpExchange exchange, String method, String[] path) throws HttpError, IOException, SQLException,
+            ElementDoesNotExistException, AlreadyExistsException, MaxCreditsSurpassedException,
+            MaxEnrollmentSurpassedException, NotTeachingTheCourseException, ScheduleConflictException {
+        Map<String, String> query = query(exchange);
+        String resource = path.length > 1 ? path[1] : "";
+        String action = path.length > 2 ? path[2] : "";
+
+        if (method.equals("GET")) {
+            switch (resource + "/" + (path.length > 3 ? "{id}/" + path[3] : action)) {
+                case "students/" -> {
+                    if (full(query)) {
+                        page(exchange, query, registrationSystem::retrieveStudentsPage, this::writeStudent);
+                    } else {
+                        list(exchange, query, registrationSystem::retrieveStudentSummaries, this::writeStudentSummary);
+                    }
+                }
+                case "students/enrolled" -> list(exchange, query, registrationSystem::filterStudentsEnrolled, this::writeStudent);
+                case "students/search" -> list(exchange, query,
+                        () -> registrationSystem.searchStudents(required(query, "q"), searchLimit(query)), this::writeStudent);
+                case "teachers/" -> {
+                    if (full(query)) {
+                        list(exchange, query, registrationSystem::retrieveAllTeachers, this::writeTeacher);
+                    } else {
+                        list(exchange, query, registrationSystem::retrieveTeacherSummaries, this::writeTeacherSummary);
+                    }
+                }
+                case "teachers/search" -> list(exchange, query,
+                        () -> registrationSystem.searchTeachers(required(query, "q"), searchLimit(query)), this::writeTeacher);
+                case "courses/" -> {
+                    boolean byName = "name".equals(query.get("sort"));
+                    if (full(query)) {
+                        page(exchange, query, (offset, limit) -> registrationSystem.retrieveCoursesPage(offset, limit, byName), this::writeCourse);
+                    } else {
+                        list(exchange, query, byName ? registrationSystem::retrieveCourseSummariesByName
+                                : registrationSystem::retrieveCourseSummaries, this::writeCourseSummary);
+                    }
+                }
+                case "courses/with-students" -> list(exchange, query, registrationSystem::filterCoursesWithStudents, this::writeCourse);
+                case "courses/free" -> {
+                    FreePlacesView.Order order = FreePlacesView.Order.valueOf(query.getOrDefault("order", "COURSE_ID"));
+                    list(exchange, query, () -> registrationSystem.retrieveCoursesWithFreePlaces(order), this::writeOpenCourse);
+                }
+                case "courses/search" -> list(exchange, query,
+                        () -> registrationSystem.searchCourses(required(query, "q"), searchLimit(query)), this::writeCourse);
+                case "students/{id}/eligible-courses" -> {
+                    long studentId = id(path[2]);
+                    list(exchange, query, () -> registrationSystem.retrieveEligibleCourses(studentId), this::writeOpenCourse);
+                }
+                case "courses/{id}/students" -> {
+                    long courseId = id(path[2]);
+                    list(exchange, query, () -> registrationSystem.retrieveStudentsEnrolledForACourse(courseId), this::writeStudent);
+                }
+                case "report/" -> report(exchange);
+                case "status/" -> status(exchange);
+                case "slow-queries/" -> slowQueries(exchange);
+                default -> throw new HttpError(404, "Unknown resource !");
+            }
+            return;
+        }
+
+        if (method.equals("POST") && path.length == 2) {
+            JsonNode body = body(exchange);
+            switch (resource) {
+                case "students" -> registrationSystem.addStudent(text(body, "firstName"), text(body, "lastName"), number(body, "studentId"));
+                case "teachers" -> registrationSystem.addTeacher(text(body, "firstName"), text(body, "lastName"), number(body, "teacherId"));
+                case "courses" -> registrationSystem.addCourse(text(body, "name"), number(body, "teacherId"),
+                        (int) number(body, "maxEnrollment"), (int) number(body, "credits"), number(body, "courseId"), timeSlots(body));
+                default -> throw new HttpError(404, "Unknown resource !");
+            }
+            exchange.sendResponseHeaders(201, -1);
+            return;
+        }
+
+        if (resource.equals("courses") && path.length == 5 && path[3].equals("students") && (method.equals("PUT") || method.equals("DELETE"))) {
+            if (method.equals("PUT")) {
+                registrationSystem.register(id(path[2]), id(path[4]));
+            } else {
+                registrationSystem.unregister(id(path[2]), id(path[4]));
+            }
+        } else if (resource.equals("courses") && path.length == 4 && path[3].equals("max-enrollment") && method.equals("PUT")) {
+            JsonNode body = body(exchange);
+            registrationSystem.changeMaxEnrollment(id(path[2]), (int) number(body, "maxEnrollment"));
+        } else if (resource.equals("teachers") && path.length == 5 && path[3].equals("courses") && method.equals("DELETE")) {
+            registrationSystem.deleteTeacherCourse(id(path[4]), id(path[2]));
+        } else if (resource.equals("teachers") && path.length == 3 && method.equals("DELETE")) {
+            registrationSystem.deleteTeacher(id(path[2]));
+        } else {
+            throw new HttpError(404, "Unknown resource !");
+        }
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+
+    /**
+     * answers with a page of a listing computed as a whole, or with 304 if the client has the current version
+     */
+    private <T> void list(HttpExchange exchange, Map<String, String> query, Listing<T> listing, ElementWriter<T> writer) throws IOException, SQLException, HttpError,
+            ElementDoesNotExistException {
+        page(exchange, query, (offset, limit) -> {
+            List<T> elements = listing.load();
+            int from = Math.min(offset, elements.size());
+            int to = from + Math.min(limit, elements.size() - from);
+            return new RegistrationSystem.Page<>(elements.subList(from, to), elements.size());
+        }, writer);
+    }
+
+
+    /**
+     * answers with a page of a listing, or with 304 if the client has the current version
+     */
+    private <T> void page(HttpExchange exchange, Map<String, String> query, PagedListing<T> listing, ElementWriter<T> writer) throws IOException, SQLException, HttpError,
+            ElementDoesNotExistException {
+        int offset = offset(query);
+        int limit = limit(query);
+        // read before the data, a change in between makes the next request load the data again
+        if (notModified(exchange)) {
+            return;
+        }
+
+        RegistrationSystem.Page<T> page = listing.load(offset, limit);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        try (JsonGenerator json = jsonFactory.createGenerator(exchange.getResponseBody())) {
+            json.writeStartObject();
+            json.writeNumberField("offset", Math.min(offset, page.total()));
+            json.writeNumberField("limit", limit);
+            json.writeNumberField("total", page.total());
+            json.writeArrayFieldStart("items");
+            for (T element : page.elements()) {
+                writer.write(json, element);
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+
+    private void report(HttpExchange exchange) throws IOException, SQLException {
+        if (notModified(exchange)) {
+            return;
+        }
+
+        EnrollmentReport report = registrationSystem.createEnrollmentReport();
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        try (JsonGenerator json = jsonFactory.createGenerator(exchange.getResponseBody())) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("courses");
+            for (EnrollmentReport.CourseLoad course : report.getCourses()) {
+                json.writeStartObject();
+                json.writeNumberField("courseId", course.courseId());
+                json.writeNumberField("teacherId", course.teacherId());
+                json.writeNumberField("students", course.students());
+                json.writeNumberField("maxEnrollment", course.maxEnrollment());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeArrayFieldStart("teachers");
+            for (EnrollmentReport.TeacherLoad teacher : report.getTeachers()) {
+                json.writeStartObject();
+                json.writeNumberField("teacherId", teacher.teacherId());
+                json.writeNumberField("courses", teacher.courses());
+                json.writeNumberField("students", teacher.students());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeObjectFieldStart("creditDistribution");
+            for (Map.Entry<Integer, Long> entry : report.getCreditDistribution().entrySet()) {
+                json.writeNumberField(entry.getKey().toString(), entry.getValue());
+            }
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+    }
+
+
+    private void status(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("status", registrationSystem.isWarmedUp() ? "ready" : "degraded");
+        status.put("version", registrationSystem.getVersion());
+        status.put("retries", registrationSystem.getRetryMetrics());
+        byte[] body = mapper.writeValueAsBytes(status);
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+
+    private void slowQueries(HttpExchange exchange) throws IOException {
+        SlowQueryLog log = registrationSystem.getSlowQueryLog();
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, 0);
+        try (JsonGenerator json = jsonFactory.createGenerator(exchange.getResponseBody())) {
+            json.writeStartArray();
+            for (SlowQueryLog.Entry entry : log == null ? List.<SlowQueryLog.Entry>of() : log.getEntries()) {
+                json.writeStartObject();
+                json.writeStringField("at", entry.at().toString());
+                json.writeStringField("sql", entry.sql());
+                json.writeArrayFieldStart("parameters");
+                for (Object parameter : entry.parameters()) {
+                    json.writeString(parameter == null ? null : parameter.toString());
+                }
+                json.writeEndArray();
+                json.writeNumberField("millis", entry.millis());
+                json.writeNumberField("rows", entry.rows());
+                json.writeStringField("plan", entry.plan());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        }
+    }
+
+
+    /**
+     * sets the ETag of the current version and answers 304 if the client sent the same one
+     * @return true if the response was sent
+     */
+    private boolean notModified(HttpExchange exchange) throws IOException {
+        String etag = "\"" + EPOCH + "-" + registrationSystem.getVersion() + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.equals(etag) || ifNoneMatch.equals("*"))) {
+            exchange.sendResponseHeaders(304, -1);
+            return true;
+        }
+        return false;
+    }
+
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            // the response was already started, the client sees it cut
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        byte[] body = mapper.writeValueAsBytes(Map.of("error", message == null ? "" : message));
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+
+    private static boolean full(Map<String, String> query) {
+        return "true".equals(query.get("full"));
+    }
+
+
+    private void writeStudentSummary(JsonGenerator json, StudentSummary student) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("studentId", student.studentId());
+        json.writeStringField("firstName", student.firstName());
+        json.writeStringField("lastName", student.lastName());
+        json.writeEndObject();
+    }
+
+
+    private void writeTeacherSummary(JsonGenerator json, TeacherSummary teacher) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("teacherId", teacher.teacherId());
+        json.writeStringField("firstName", teacher.firstName());
+        json.writeStringField("lastName", teacher.lastName());
+        json.writeEndObject();
+    }
+
+
+    private void writeCourseSummary(JsonGenerator json, CourseSummary course) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("courseId", course.courseId());
+        json.writeStringField("name", course.name());
+        json.writeNumberField("teacherId", course.teacherId());
+        json.writeNumberField("credits", course.credits());
+        json.writeNumberField("freeSeats", course.freeSeats());
+        json.writeEndObject();
+    }
+
+
+    private void writeStudent(JsonGenerator json, Student student) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("studentId", student.getStudentId());
+        json.writeStringField("firstName", student.getFirstName());
+        json.writeStringField("lastName", student.getLastName());
+        writeIds(json, "enrolledCourses", student.getEnrolledCourses());
+        json.writeEndObject();
+    }
+
+
+    private void writeTeacher(JsonGenerator json, Teacher teacher) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("teacherId", teacher.getTeacherId());
+        json.writeStringField("firstName", teacher.getFirstName());
+        json.writeStringField("lastName", teacher.getLastName());
+        writeIds(json, "courses", teacher.getCourses());
+        json.writeEndObject();
+    }
+
+
+    private void writeCourse(JsonGenerator json, Course course) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("courseId", course.getCourseId());
+        json.writeStringField("name", course.getName());
+        json.writeNumberField("teacherId", course.getTeacher());
+        json.writeNumberField("maxEnrollment", course.getMaxEnrollment());
+        json.writeNumberField("credits", course.getCredits());
+        writeIds(json, "studentsEnrolled", course.getStudentsEnrolled());
+        json.writeArrayFieldStart("timeSlots");
+        for (TimeSlot slot : course.getTimeSlots()) {
+            json.writeString(slot.toString());
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
+
+    private void writeOpenCourse(JsonGenerator json, FreePlacesView.OpenCourse course) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("courseId", course.courseId());
+        json.writeStringField("name", course.name());
+        json.writeNumberField("teacherId", course.teacherId());
+        json.writeNumberField("maxEnrollment", course.maxEnrollment());
+        json.writeNumberField("credits", course.credits());
+        json.writeNumberField("students", course.students());
+        json.writeNumberField("remainingSeats", course.remainingSeats());
+        json.writeArrayFieldStart("timeSlots");
+        for (TimeSlot slot : course.timeSlots()) {
+            json.writeString(slot.toString());
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
+
+    private static void writeIds(JsonGenerator json, String name, List<Long> ids) throws IOException {
+        json.writeArrayFieldStart(name);
+        for (long id : ids) {
+            json.writeNumber(id);
+        }
+        json.writeEndArray();
+    }
+
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                            URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters;
+    }
+
+
+    private static int offset(Map<String, String> query) throws HttpError {
+        int offset = integer(query, "offset", 0);
+        if (offset < 0) {
+            throw new HttpError(400, "The offset can not be negative !");
+        }
+        return offset;
+    }
+
+
+    private static int limit(Map<String, String> query) throws HttpError {
+        int limit = integer(query, "limit", DEFAULT_LIMIT);
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new HttpError(400, "The limit must be between 1 and " + MAX_LIMIT + " !");
+        }
+        return limit;
+    }
+
+
+    /**
+     * @return the number of results a search must rank for the requested page, offset and limit together
+     */
+    private static int searchLimit(Map<String, String> query) throws HttpError {
+        return (int) Math.min((long) offset(query) + limit(query), MAX_SEARCH_RESULTS);
+    }
+
+
+    private static int integer(Map<String, String> query, String name, int defaultValue) throws HttpError {
+        String value = query.get(name);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Not a number : " + name + " !");
+        }
+    }
+
+
+    private static String required(Map<String, String> query, String name) throws HttpError {
+        String value = query.get(name);
+        if (value == null) {
+            throw new HttpError(400, "Missing parameter " + name + " !");
+        }
+        return value;
+    }
+
+
+    private static long id(String value) throws HttpError {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "Unknown resource !");
+        }
+    }
+
+
+    private JsonNode body(HttpExchange exchange) throws IOException, HttpError {
+        JsonNode body = mapper.readTree(exchange.getRequestBody());
+        if (body == null || !body.isObject()) {
+            throw new HttpError(400, "The body must be a JSON object !");
+        }
+        return body;
+    }
+
+
+    private static String text(JsonNode body, String field) throws HttpError {
+        JsonNode value = body.get(field);
+        if (value == null || !value.isTextual()) {
+            throw new HttpError(400, "Missing text field " + field + " !");
+        }
+        return value.asText();
+    }
+
+
+    private static long number(JsonNode body, String field) throws HttpError {
+        JsonNode value = body.get(field);
+        if (value == null || !value.canConvertToLong()) {
+            throw new HttpError(400, "Missing number field " + field + " !");
+        }
+        return value.asLong();
+    }
+
+
+    private static List<TimeSlot> timeSlots(JsonNode body) throws HttpError {
+        JsonNode value = body.get("timeSlots");
+        if (value == null) {
+            return List.of();
+        }
+        if (!value.isArray()) {
+            throw new HttpError(400, "The time slots must be an array !");
+        }
+        List<TimeSlot> timeSlots = new ArrayList<>();
+        for (JsonNode slot : value) {
+            // an invalid slot is a 400, like the other invalid arguments
+            timeSlots.add(TimeSlot.parse(slot.asText()));
+        }
+        return timeSlots;
+    }
+}
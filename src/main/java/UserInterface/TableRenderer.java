@@ -0,0 +1,150 @@
+package UserInterface;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders elements as rows of a table with fixed-width columns.
+ * Every row is formatted into the same buffer (numbers are appended without building strings)
+ * and written to the output in one call, so that large listings are not slowed down by
+ * string concatenation and a flush per line.
+ * @param <T> type of the rendered elements
+ */
+public class TableRenderer<T> {
+    private static final String PADDING = " ".repeat(32);
+    private final List<Column<T>> columns = new ArrayList<>();
+    private final StringBuilder row = new StringBuilder(128);
+    private char[] chars = new char[128];
+
+
+    /**
+     * Appends the value of a cell to the row
+     * @param <T> type of the rendered elements
+     */
+    public interface Cell<T> {
+        void append(StringBuilder row, T element);
+    }
+
+
+    private record Column<T>(String title, int width, boolean rightAligned, Cell<T> cell) {
+    }
+
+
+    /**
+     * Adds a left aligned column, longer values are cut
+     * @param title : column title
+     * @param width : number of characters
+     * @param cell : appends the value of the column
+     * @return this renderer
+     */
+    public TableRenderer<T> column(String title, int width, Cell<T> cell) {
+        columns.add(new Column<>(title, Math.max(width, title.length()), false, cell));
+        return this;
+    }
+
+
+    /**
+     * Adds a right aligned column (for numbers), longer values are cut
+     * @param title : column title
+     * @param width : number of characters
+     * @param cell : appends the value of the column
+     * @return this renderer
+     */
+    public TableRenderer<T> numberColumn(String title, int width, Cell<T> cell) {
+        columns.add(new Column<>(title, Math.max(width, title.length()), true, cell));
+        return this;
+    }
+
+
+    /**
+     * Writes the title row and a separator line
+     * @param out : output
+     * @throws IOException if the output could not be written
+     */
+    public void header(Writer out) throws IOException {
+        row.setLength(0);
+        for (Column<T> column : columns) {
+            int start = startCell();
+            row.append(column.title());
+            endCell(column, start);
+        }
+        writeRow(out);
+
+        row.setLength(0);
+        for (Column<T> column : columns) {
+            startCell();
+            row.append("-".repeat(column.width()));
+        }
+        writeRow(out);
+    }
+
+
+    /**
+     * Writes the rows of the elements from index from (inclusive) to index to (exclusive)
+     * @param out : output
+     * @param elements : elements to render
+     * @param from : index of the first row
+     * @param to : index after the last row
+     * @throws IOException if the output could not be written
+     */
+    public void rows(Writer out, List<T> elements, int from, int to) throws IOException {
+        for (T element : elements.subList(from, to)) {
+            row.setLength(0);
+            for (Column<T> column : columns) {
+                int start = startCell();
+                column.cell().append(row, element);
+                endCell(column, start);
+            }
+            writeRow(out);
+        }
+    }
+
+
+    /**
+     * separates the cell from the previous one
+     * @return the index at which the value of the cell starts
+     */
+    private int startCell() {
+        if (row.length() > 0) {
+            row.append("  ");
+        }
+        return row.length();
+    }
+
+
+    /**
+     * cuts or pads the value of the cell to the width of the column
+     */
+    private void endCell(Column<T> column, int start) {
+        int length = row.length() - start;
+        if (length > column.width()) {
+            row.setLength(start + column.width());
+            row.setCharAt(row.length() - 1, '~');
+        } else if (column.rightAligned()) {
+            for (int pad = column.width() - length; pad > 0; pad -= PADDING.length()) {
+                row.insert(start, PADDING, 0, Math.min(pad, PADDING.length()));
+            }
+        } else {
+            for (int pad = column.width() - length; pad > 0; pad -= PADDING.length()) {
+                row.append(PADDING, 0, Math.min(pad, PADDING.length()));
+            }
+        }
+    }
+
+
+    private void writeRow(Writer out) throws IOException {
+        // trailing spaces of the last column are not written
+        int length = row.length();
+        while (length > 0 && row.charAt(length - 1) == ' ') {
+            length--;
+        }
+        if (chars.length < length + 1) {
+            chars = new char[Math.max(length + 1, chars.length * 2)];
+        }
+        row.getChars(0, length, chars, 0);
+        chars[length] = '\n';
+        out.write(chars, 0, length + 1);
+    }
+}
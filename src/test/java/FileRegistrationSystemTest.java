@@ -0,0 +1,92 @@
+import Controller.RegistrationSystem;
+import Model.Student;
+import Repository.FileDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * Runs the registration system tests on the file-backed repositories
+ *
+ */
+class FileRegistrationSystemTest extends RegistrationSystemTest {
+    @TempDir
+    Path directory;
+
+    private FileDatabase database;
+
+    @Override
+    RegistrationSystem createRegistrationSystem() throws SQLException {
+        try {
+            // small segments, so that the tests also roll over and compact segments
+            database = new FileDatabase(directory, 256, false, 0);
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+        return new RegistrationSystem(database.getCourseRepository(), database.getStudentRepository(),
+                database.getTeacherRepository(), database.getEnrollmentRepository());
+    }
+
+    @Override
+    void removeOldData() {
+        // every test gets a new directory
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        database.close();
+    }
+
+    @Test
+    void recovery() throws IOException, SQLException {
+        database.getEnrollmentRepository().enroll(1, 1);
+        database.getEnrollmentRepository().enroll(1, 2);
+        database.getEnrollmentRepository().unenroll(1, 1);
+        database.getStudentRepository().delete(database.getStudentRepository().findById(6));
+        database.compactIfNeeded();
+        database.close();
+
+        // the state is rebuilt from the segments
+        database = new FileDatabase(directory, 256, false, 0);
+        assertEquals(5, database.getStudentRepository().getAll().size());
+        assertNull(database.getStudentRepository().findById(6));
+        assertEquals(3, database.getCourseRepository().getAll().size());
+        assertEquals(1, database.getCourseRepository().findById(1).getNumberOfStudents());
+        assertEquals(1, database.getStudentRepository().findById(2).getNumberOfCourses());
+        assertEquals(2, database.getTeacherRepository().findById(2).getNrOfCourses());
+    }
+
+    @Test
+    void tornTailAfterCleanClose() throws IOException, SQLException {
+        database.getEnrollmentRepository().enroll(1, 1);
+        database.close();
+
+        // a partial record after the checkpoint of the index : the index is rebuilt and the tail cut off
+        Path lastSegment;
+        try (Stream<Path> files = Files.list(directory.resolve("student"))) {
+            lastSegment = files.filter(file -> file.toString().endsWith(".seg")).max(Comparator.naturalOrder()).orElseThrow();
+        }
+        Files.write(lastSegment, new byte[]{0, 0, 0, 40, 1}, StandardOpenOption.APPEND);
+
+        database = new FileDatabase(directory, 256, false, 0);
+        assertEquals(6, database.getStudentRepository().getAll().size());
+        assertTrue(database.getStudentRepository().findById(1).getEnrolledCourses().contains(1L));
+        database.getStudentRepository().create(new Student("New", "Student", new ArrayList<>(), 7));
+        database.close();
+
+        database = new FileDatabase(directory, 256, false, 0);
+        assertEquals("New", database.getStudentRepository().findById(7).getFirstName());
+    }
+}
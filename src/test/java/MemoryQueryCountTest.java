@@ -0,0 +1,55 @@
+import Controller.RegistrationSystem;
+import Repository.MemoryDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+/**
+ *
+ * Counts the repository calls of the registration system operations on the in-memory database
+ *
+ */
+class MemoryQueryCountTest extends QueryCountTest {
+    @TempDir
+    Path directory;
+
+    private MemoryDatabase database;
+    private int datasets;
+
+    @Override
+    RegistrationSystem createRegistrationSystem() {
+        return new RegistrationSystem(counter.repository(database.getCourseRepository()), counter.repository(database.getStudentRepository()),
+                counter.repository(database.getTeacherRepository()), counter.repository(database.getEnrollmentRepository()));
+    }
+
+    @Override
+    void removeOldData() throws SQLException {
+        try {
+            if (database != null) {
+                database.close();
+            }
+            // every dataset gets a new directory
+            database = new MemoryDatabase(directory.resolve("dataset" + ++datasets), 0);
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    @Override
+    int[] sizes() {
+        return new int[]{20, 200, 2000};
+    }
+
+    @Override
+    long roundTripsPerCall() {
+        return 1;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        database.close();
+    }
+}
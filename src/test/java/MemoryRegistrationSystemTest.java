@@ -0,0 +1,181 @@
+import Controller.RegistrationSystem;
+import Controller.RetryPolicy;
+import Exceptions.AlreadyExistsException;
+import Exceptions.ElementDoesNotExistException;
+import Exceptions.MaxCreditsSurpassedException;
+import Exceptions.MaxEnrollmentSurpassedException;
+import Exceptions.ScheduleConflictException;
+import Model.Course;
+import Model.Student;
+import Model.TimeSlot;
+import Repository.IEnrollmentRepository;
+import Repository.MemoryDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * Runs the registration system tests on the in-memory database with write-ahead log
+ *
+ */
+class MemoryRegistrationSystemTest extends RegistrationSystemTest {
+    @TempDir
+    Path directory;
+
+    private MemoryDatabase database;
+
+    @Override
+    RegistrationSystem createRegistrationSystem() throws SQLException {
+        try {
+            database = new MemoryDatabase(directory, 0);
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+        return new RegistrationSystem(database.getCourseRepository(), database.getStudentRepository(),
+                database.getTeacherRepository(), database.getEnrollmentRepository());
+    }
+
+    @Override
+    void removeOldData() {
+        // every test gets a new directory
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        database.close();
+    }
+
+    @Test
+    void recovery() throws IOException, SQLException {
+        database.getEnrollmentRepository().enroll(1, 1);
+        database.getEnrollmentRepository().enroll(1, 2);
+        database.snapshot();
+
+        // log tail after the snapshot
+        database.getEnrollmentRepository().unenroll(1, 1);
+        database.getEnrollmentRepository().enroll(3, 4);
+        database.getTeacherRepository().delete(database.getTeacherRepository().findById(1));
+        database.close();
+
+        database = new MemoryDatabase(directory, 0);
+        assertEquals(6, database.getStudentRepository().getAll().size());
+        assertEquals(2, database.getCourseRepository().getAll().size());
+        assertNull(database.getCourseRepository().findById(3));
+        assertEquals(1, database.getCourseRepository().findById(1).getNumberOfStudents());
+        assertEquals(0, database.getStudentRepository().findById(4).getNumberOfCourses());
+        assertEquals(1, database.getTeacherRepository().getAll().size());
+    }
+
+    @Test
+    void timeSlotsRecovery() throws IOException, SQLException {
+        Course course = database.getCourseRepository().findById(1);
+        course.setTimeSlots(List.of(TimeSlot.parse("TUE 14:00-16:00")));
+        database.getCourseRepository().update(course);
+        database.snapshot();
+
+        // log tail after the snapshot
+        course = database.getCourseRepository().findById(3);
+        course.setTimeSlots(List.of(TimeSlot.parse("FRI 08:00-09:00"), TimeSlot.parse("FRI 12:00-13:00")));
+        database.getCourseRepository().update(course);
+        database.close();
+
+        database = new MemoryDatabase(directory, 0);
+        assertEquals(List.of(TimeSlot.parse("TUE 14:00-16:00")), database.getCourseRepository().findById(1).getTimeSlots());
+        assertEquals(2, database.getCourseRepository().findById(3).getTimeSlots().size());
+        assertEquals(List.of(), database.getCourseRepository().findById(2).getTimeSlots());
+    }
+
+    @Test
+    void namesRecovery() throws IOException, SQLException {
+        // supplementary characters and NUL are encoded differently by modified UTF-8
+        database.getStudentRepository().create(new Student("Zo\u00eb \uD83D\uDE00", "A\u0000B", List.of(), 7));
+        database.close();
+
+        // replayed from the log
+        database = new MemoryDatabase(directory, 0);
+        Student student = database.getStudentRepository().findById(7);
+        assertEquals("Zo\u00eb \uD83D\uDE00", student.getFirstName());
+        assertEquals("A\u0000B", student.getLastName());
+        database.snapshot();
+        database.close();
+
+        // read from the snapshot
+        database = new MemoryDatabase(directory, 0);
+        student = database.getStudentRepository().findById(7);
+        assertEquals("Zo\u00eb \uD83D\uDE00", student.getFirstName());
+        assertEquals("A\u0000B", student.getLastName());
+    }
+
+
+    @Test
+    void registrationSystemsSharingTheDatabase() {
+        RegistrationSystem first = new RegistrationSystem(database.getCourseRepository(), database.getStudentRepository(),
+                database.getTeacherRepository(), database.getEnrollmentRepository());
+        RegistrationSystem second = new RegistrationSystem(database.getCourseRepository(), database.getStudentRepository(),
+                database.getTeacherRepository(), database.getEnrollmentRepository());
+        try {
+            // the second one loads its indexes before the first one registers
+            assertFalse(second.isRegistered(3, 1));
+            first.changeMaxEnrollment(3, 1);
+            first.register(3, 1);
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | ScheduleConflictException | SQLException e) {
+            fail();
+        }
+
+        assertThrows(MaxEnrollmentSurpassedException.class, () -> second.register(3, 2));
+        assertThrows(AlreadyExistsException.class, () -> second.register(3, 1));
+    }
+
+
+    @Test
+    void retryOnDeadlock() throws SQLException {
+        // the first enrollment fails like a deadlock in MySQL, the others succeed
+        IEnrollmentRepository enrollments = database.getEnrollmentRepository();
+        AtomicInteger failures = new AtomicInteger(1);
+        IEnrollmentRepository deadlocking = (IEnrollmentRepository) Proxy.newProxyInstance(IEnrollmentRepository.class.getClassLoader(),
+                new Class<?>[]{IEnrollmentRepository.class}, (proxy, method, arguments) -> {
+                    if (method.getName().equals("enroll") && failures.getAndDecrement() > 0) {
+                        throw new SQLTransactionRollbackException("Deadlock found when trying to get lock", "40001", 1213);
+                    }
+                    try {
+                        return method.invoke(enrollments, arguments);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        RegistrationSystem registrationSystem = new RegistrationSystem(database.getCourseRepository(), database.getStudentRepository(),
+                database.getTeacherRepository(), deadlocking);
+        registrationSystem.setRetryPolicy(new RetryPolicy(3, 1, 5, 1000));
+
+        try {
+            registrationSystem.register(1, 1);
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | ScheduleConflictException e) {
+            fail();
+        }
+        assertTrue(registrationSystem.isRegistered(1, 1));
+        assertEquals(1, registrationSystem.getRetryMetrics().retries());
+        assertEquals(1, registrationSystem.getRetryMetrics().recovered());
+
+        // given up after the last attempt
+        failures.set(3);
+        SQLException error = assertThrows(SQLException.class, () -> registrationSystem.register(1, 2));
+        assertEquals(1213, error.getErrorCode());
+        assertEquals(3, registrationSystem.getRetryMetrics().retries());
+        assertEquals(1, registrationSystem.getRetryMetrics().exhausted());
+
+        // other errors are not retried
+        assertFalse(RetryPolicy.isRetryable(new SQLException("Table 'enrolled' doesn't exist", "42S02", 1146)));
+    }
+}
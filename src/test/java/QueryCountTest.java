@@ -0,0 +1,172 @@
+import Controller.RegistrationSystem;
+import Index.FreePlacesView;
+import Model.Student;
+import Repository.ConnectionRouter;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * Guards the number of queries of every operation of the registration system : each operation is run on a
+ * new registration system (indexes not loaded yet) over datasets of growing size, its statements and round
+ * trips must stay under a bound that does not depend on the size. An operation that runs a query per student
+ * or per course of the tables fails at the larger sizes
+ *
+ */
+class QueryCountTest {
+    final QueryCounter counter = new QueryCounter();
+    private ConnectionRouter router;
+
+    /**
+     * An operation of the registration system on the dataset of the given size
+     */
+    interface Operation {
+        void run(RegistrationSystem registrationSystem, int size) throws Exception;
+    }
+
+    private record Bounded(String name, long maxCalls, Operation operation) {
+    }
+
+    /**
+     * Creates a registration system on the current dataset, with its storage work counted
+     */
+    RegistrationSystem createRegistrationSystem() throws SQLException {
+        if (router == null) {
+            router = counter.router("jdbc:mysql://localhost:3306/university", "root", "password31");
+        }
+        return new RegistrationSystem(router);
+    }
+
+    /**
+     * Removes the data of the previous dataset
+     */
+    void removeOldData() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:mysql://localhost:3306/university", "root", "password31");
+        Statement statement = connection.createStatement();
+        statement.execute("DELETE FROM enrolled");
+        statement.execute("DELETE FROM student");
+        statement.execute("DELETE FROM course");
+        statement.execute("DELETE FROM teacher");
+        statement.close();
+        connection.close();
+    }
+
+    /**
+     * Sizes of the datasets (number of students), below the batch size of the related ids on a database
+     */
+    int[] sizes() {
+        return new int[]{20, 100, 400};
+    }
+
+    /**
+     * Round trips of a repository call : opening the connection, the statements, committing
+     */
+    long roundTripsPerCall() {
+        return 5;
+    }
+
+    /**
+     * n students, n / 10 courses with 10 students each, n / 20 teachers, at least 5 courses and teachers
+     * so that the searches and the multi-course operations find several elements at every size
+     */
+    private static void populate(RegistrationSystem registrationSystem, int size) throws Exception {
+        int courses = Math.max(size / 10, 5);
+        int teachers = Math.max(size / 20, 5);
+        for (long teacherId = 1; teacherId <= teachers; teacherId++) {
+            registrationSystem.addTeacher("First" + teacherId, "Last" + teacherId, teacherId);
+        }
+        for (long courseId = 1; courseId <= courses; courseId++) {
+            registrationSystem.addCourse(String.format("Course %04d", courseId), (courseId - 1) % teachers + 1, 1000, 5, courseId);
+        }
+        for (long studentId = 1; studentId <= size; studentId++) {
+            registrationSystem.addStudent("First" + studentId, "Last" + studentId, studentId);
+            registrationSystem.register((studentId - 1) % courses + 1, studentId);
+        }
+    }
+
+    /**
+     * The operations in the order they are run (the writes only change elements they added),
+     * with the most repository calls they may take. The reads of several elements find 5 of them,
+     * a lookup per element would go over their bound
+     */
+    private static List<Bounded> operations() {
+        List<Bounded> operations = new ArrayList<>();
+        operations.add(new Bounded("addStudent", 3, (system, size) -> system.addStudent("New", "Student", size + 1)));
+        operations.add(new Bounded("addTeacher", 3, (system, size) -> system.addTeacher("New", "Teacher", size + 1)));
+        operations.add(new Bounded("addCourse", 3, (system, size) -> system.addCourse("New course", size + 1, 10, 5, size + 1)));
+        operations.add(new Bounded("register", 6, (system, size) -> system.register(size + 1, size + 1)));
+        operations.add(new Bounded("unregister", 3, (system, size) -> system.unregister(size + 1, size + 1)));
+        operations.add(new Bounded("unregisterAll", 3, (system, size) -> system.unregisterAll(1, List.of(1L, 1L + size / 10))));
+        operations.add(new Bounded("changeMaxEnrollment", 3, (system, size) -> system.changeMaxEnrollment(2, 500)));
+        operations.add(new Bounded("deleteTeacherCourse", 4, (system, size) -> system.deleteTeacherCourse(size + 1, size + 1)));
+        operations.add(new Bounded("deleteTeacher", 4, (system, size) -> system.deleteTeacher(size + 1)));
+
+        operations.add(new Bounded("isRegistered", 2, (system, size) -> system.isRegistered(2, 2)));
+        operations.add(new Bounded("countStudentsEnrolled", 2, (system, size) -> system.countStudentsEnrolled(2)));
+        operations.add(new Bounded("retrieveStudentsEnrolledForBothCourses", 2, (system, size) -> system.retrieveStudentsEnrolledForBothCourses(1, 2)));
+        operations.add(new Bounded("countStudentsEnrolledForBothCourses", 2, (system, size) -> system.countStudentsEnrolledForBothCourses(1, 2)));
+        operations.add(new Bounded("retrieveStudentsEnrolledForACourse", 2, (system, size) -> system.retrieveStudentsEnrolledForACourse(2)));
+        operations.add(new Bounded("retrieveCoursesWithFreePlaces", 3, (system, size) -> system.retrieveCoursesWithFreePlaces()));
+        operations.add(new Bounded("retrieveCoursesWithFreePlaces(order)", 2,
+                (system, size) -> system.retrieveCoursesWithFreePlaces(FreePlacesView.Order.MOST_REMAINING_SEATS)));
+        operations.add(new Bounded("retrieveEligibleCourses", 5, (system, size) -> system.retrieveEligibleCourses(2)));
+        operations.add(new Bounded("getAllCourses", 2, (system, size) -> system.getAllCourses()));
+        operations.add(new Bounded("calculateStudentCredits", 2, (system, size) -> system.calculateStudentCredits(new Student("First2", "Last2", new ArrayList<>(List.of(1L, 2L, 3L, 4L, 5L)), 2))));
+        operations.add(new Bounded("retrieveAllStudents", 2, (system, size) -> system.retrieveAllStudents()));
+        operations.add(new Bounded("retrieveAllTeachers", 2, (system, size) -> system.retrieveAllTeachers()));
+        operations.add(new Bounded("retrieveStudentSummaries", 2, (system, size) -> system.retrieveStudentSummaries()));
+        operations.add(new Bounded("retrieveTeacherSummaries", 2, (system, size) -> system.retrieveTeacherSummaries()));
+        operations.add(new Bounded("retrieveCourseSummaries", 2, (system, size) -> system.retrieveCourseSummaries()));
+        operations.add(new Bounded("retrieveCourseSummariesByName", 2, (system, size) -> system.retrieveCourseSummariesByName()));
+        operations.add(new Bounded("sortStudentsById", 2, (system, size) -> system.sortStudentsById()));
+        operations.add(new Bounded("retrieveStudentsByIdRange", 2, (system, size) -> system.retrieveStudentsByIdRange(1, 10)));
+        operations.add(new Bounded("sortCoursesByName", 3, (system, size) -> system.sortCoursesByName()));
+        operations.add(new Bounded("retrieveStudentsPage", 3, (system, size) -> system.retrieveStudentsPage(5, 5)));
+        operations.add(new Bounded("retrieveCoursesPage", 3, (system, size) -> system.retrieveCoursesPage(0, 5, true)));
+        operations.add(new Bounded("retrieveCoursesByNameRange", 3, (system, size) -> system.retrieveCoursesByNameRange("Course 0001", "Course 0002")));
+        operations.add(new Bounded("retrieveFirstCoursesByName", 3, (system, size) -> system.retrieveFirstCoursesByName(5)));
+        operations.add(new Bounded("searchStudents", 2, (system, size) -> system.searchStudents("Last1", 5)));
+        operations.add(new Bounded("searchTeachers", 2, (system, size) -> system.searchTeachers("First", 5)));
+        operations.add(new Bounded("searchCourses", 3, (system, size) -> system.searchCourses("Course", 5)));
+        operations.add(new Bounded("filterStudentsEnrolled", 2, (system, size) -> system.filterStudentsEnrolled()));
+        operations.add(new Bounded("filterCoursesWithStudents", 2, (system, size) -> system.filterCoursesWithStudents()));
+        operations.add(new Bounded("calculateCreditsPerStudent", 3, (system, size) -> system.calculateCreditsPerStudent()));
+        operations.add(new Bounded("createEnrollmentReport", 4, (system, size) -> system.createEnrollmentReport()));
+        return operations;
+    }
+
+    @Test
+    void queriesDoNotGrowWithTheData() throws Exception {
+        List<Bounded> operations = operations();
+        Map<String, List<QueryCounter.Counts>> countsByOperation = new LinkedHashMap<>();
+        for (int size : sizes()) {
+            removeOldData();
+            populate(createRegistrationSystem(), size);
+
+            for (Bounded bounded : operations) {
+                RegistrationSystem registrationSystem = createRegistrationSystem();
+                counter.reset();
+                bounded.operation().run(registrationSystem, size);
+                QueryCounter.Counts counts = counter.counts();
+                countsByOperation.computeIfAbsent(bounded.name(), name -> new ArrayList<>()).add(counts);
+
+                long maxRoundTrips = bounded.maxCalls() * roundTripsPerCall();
+                assertTrue(counts.statements() <= maxRoundTrips && counts.roundTrips() <= maxRoundTrips,
+                        bounded.name() + " with " + size + " students : " + counts + ", at most " + maxRoundTrips + " expected");
+            }
+        }
+
+        // the counts of every operation, to see how they grow
+        countsByOperation.forEach((name, counts) -> System.out.println(name + " : " + counts));
+    }
+}
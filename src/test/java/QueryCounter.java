@@ -0,0 +1,155 @@
+import Repository.ConnectionRouter;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ *
+ * Counts the work a registration system asks from its storage : statements, round trips and rows.
+ * On a database every connection, execution, commit and rollback is a round trip and the rows are the ones
+ * read and changed; on in-process repositories every call of a repository is a statement and a round trip
+ * and the rows are the elements returned
+ *
+ */
+class QueryCounter {
+    private long statements;
+    private long roundTrips;
+    private long rows;
+
+    /**
+     * Counts of an operation
+     */
+    record Counts(long statements, long roundTrips, long rows) {
+        @Override
+        public String toString() {
+            return statements + " statements, " + roundTrips + " round trips, " + rows + " rows";
+        }
+    }
+
+    /**
+     * Starts counting again
+     */
+    synchronized void reset() {
+        statements = 0;
+        roundTrips = 0;
+        rows = 0;
+    }
+
+    /**
+     * @return the counts since the last reset
+     */
+    synchronized Counts counts() {
+        return new Counts(statements, roundTrips, rows);
+    }
+
+    private synchronized void count(long statements, long roundTrips, long rows) {
+        this.statements += statements;
+        this.roundTrips += roundTrips;
+        this.rows += rows;
+    }
+
+    /**
+     * Router whose connections are counted
+     */
+    ConnectionRouter router(String url, String user, String password) {
+        return new ConnectionRouter(url, user, password) {
+            @Override
+            public Connection write() throws SQLException {
+                return connection(super.write());
+            }
+
+            @Override
+            public Connection read() throws SQLException {
+                return connection(super.read());
+            }
+        };
+    }
+
+    private Connection connection(Connection connection) {
+        count(0, 1, 0);
+        return proxy(connection, (proxy, method, arguments) -> {
+            Object result = invoke(connection, method, arguments);
+            switch (method.getName()) {
+                case "createStatement", "prepareStatement" -> {
+                    return statement((Statement) result);
+                }
+                case "commit", "rollback", "setAutoCommit" -> count(0, 1, 0);
+            }
+            return result;
+        });
+    }
+
+    private Statement statement(Statement statement) {
+        count(1, 0, 0);
+        return proxy(statement, (proxy, method, arguments) -> {
+            Object result = invoke(statement, method, arguments);
+            if (method.getName().startsWith("execute")) {
+                long changed = 0;
+                if (result instanceof Number count) {
+                    changed = count.longValue();
+                } else if (result instanceof int[] counts) {
+                    for (int count : counts) {
+                        changed += Math.max(count, 0);
+                    }
+                }
+                count(0, 1, changed);
+            }
+            if (result instanceof ResultSet resultSet) {
+                return resultSet(resultSet);
+            }
+            return result;
+        });
+    }
+
+    private ResultSet resultSet(ResultSet resultSet) {
+        return proxy(resultSet, (proxy, method, arguments) -> {
+            Object result = invoke(resultSet, method, arguments);
+            if (method.getName().equals("next") && (Boolean) result) {
+                count(0, 0, 1);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * In-process repository whose calls are counted
+     * @param repository : the repository
+     * @return the counted repository, with the same interfaces
+     */
+    <T> T repository(T repository) {
+        return proxy(repository, (proxy, method, arguments) -> {
+            Object result = invoke(repository, method, arguments);
+            long returned = result instanceof Collection<?> elements ? elements.size()
+                    : (result == null || result instanceof Boolean || method.getReturnType() == void.class) ? 0 : 1;
+            count(1, 1, returned);
+            return result;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(T target, InvocationHandler handler) {
+        Set<Class<?>> interfaces = new LinkedHashSet<>();
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            interfaces.addAll(List.of(type.getInterfaces()));
+        }
+        return (T) Proxy.newProxyInstance(QueryCounter.class.getClassLoader(), interfaces.toArray(new Class<?>[0]), handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] arguments) throws Throwable {
+        try {
+            return method.invoke(target, arguments);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
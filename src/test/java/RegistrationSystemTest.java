@@ -1,13 +1,27 @@
+import Controller.EnrollmentReport;
 import Controller.RegistrationSystem;
+import Events.EventBus;
+import Events.RegistrationEvent;
 import Exceptions.*;
+import Index.FreePlacesView;
 import Model.Course;
+import Model.CourseSummary;
 import Model.Student;
+import Model.StudentSummary;
+import Model.TeacherSummary;
+import Model.TimeSlot;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.sql.*;
+import java.time.DayOfWeek;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -19,23 +33,40 @@ import static org.junit.jupiter.api.Assertions.*;
 class RegistrationSystemTest {
     private RegistrationSystem registrationSystem;
 
+    /**
+     * Creates the registration system under test (overridden for other storage backends)
+     */
+    RegistrationSystem createRegistrationSystem() throws SQLException {
+        return new RegistrationSystem("jdbc:mysql://localhost:3306/university", "root", "password31");
+    }
+
+    /**
+     * Removes the data left by previous tests
+     */
+    void removeOldData() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:mysql://localhost:3306/university", "root", "password31");
+        Statement statement1 = connection.createStatement();
+        statement1.execute("DELETE FROM enrolled");
+        Statement statement2 = connection.createStatement();
+        statement2.execute("DELETE FROM student");
+        Statement statement3 = connection.createStatement();
+        statement3.execute("DELETE FROM course");
+        Statement statement4 = connection.createStatement();
+        statement4.execute("DELETE FROM teacher");
+    }
+
     @BeforeEach
     void setUp() {
             // Creating the registration system
-            registrationSystem = new RegistrationSystem("jdbc:mysql://localhost:3306/university", "root", "password31");
+            try {
+                registrationSystem = createRegistrationSystem();
+            } catch (SQLException e) {
+                fail();
+            }
 
             // Removing old data
-            Connection connection;
             try {
-                connection = DriverManager.getConnection("jdbc:mysql://localhost:3306/university", "root", "password31");
-                Statement statement1 = connection.createStatement();
-                statement1.execute("DELETE FROM enrolled");
-                Statement statement2 = connection.createStatement();
-                statement2.execute("DELETE FROM student");
-                Statement statement3 = connection.createStatement();
-                statement3.execute("DELETE FROM course");
-                Statement statement4 = connection.createStatement();
-                statement4.execute("DELETE FROM teacher");
+                removeOldData();
             } catch (SQLException e) {
                 fail();
             }
@@ -120,7 +151,7 @@ class RegistrationSystemTest {
             for (Student student : registrationSystem.retrieveAllStudents()){
                 try {
                     registrationSystem.register(2, student.getStudentId());
-                } catch (ElementDoesNotExistException | MaxEnrollmentSurpassedException | AlreadyExistsException e) {
+                } catch (ElementDoesNotExistException | MaxEnrollmentSurpassedException | AlreadyExistsException | ScheduleConflictException e) {
                     Assertions.fail();
                 } catch (MaxCreditsSurpassedException e) {
                     Assertions.assertTrue(true);
@@ -135,7 +166,7 @@ class RegistrationSystemTest {
             for (Student student : registrationSystem.retrieveAllStudents()){
                 try {
                     registrationSystem.register(1, student.getStudentId());
-                } catch (ElementDoesNotExistException | MaxEnrollmentSurpassedException | AlreadyExistsException | MaxCreditsSurpassedException e) {
+                } catch (ElementDoesNotExistException | MaxEnrollmentSurpassedException | AlreadyExistsException | MaxCreditsSurpassedException | ScheduleConflictException e) {
                     Assertions.fail();
                 }
             }
@@ -148,7 +179,7 @@ class RegistrationSystemTest {
             for (Student student : registrationSystem.retrieveAllStudents()){
                 try {
                     registrationSystem.register(3, student.getStudentId());
-                } catch (ElementDoesNotExistException | AlreadyExistsException | MaxCreditsSurpassedException e) {
+                } catch (ElementDoesNotExistException | AlreadyExistsException | MaxCreditsSurpassedException | ScheduleConflictException e) {
                     Assertions.fail();
                 } catch (MaxEnrollmentSurpassedException e) {
                     if (student.getStudentId() != 6) {
@@ -168,7 +199,7 @@ class RegistrationSystemTest {
             for (Student student : registrationSystem.retrieveAllStudents()){
                 try {
                     registrationSystem.register(3, student.getStudentId());
-                } catch (ElementDoesNotExistException | AlreadyExistsException | MaxCreditsSurpassedException e) {
+                } catch (ElementDoesNotExistException | AlreadyExistsException | MaxCreditsSurpassedException | ScheduleConflictException e) {
                     Assertions.fail();
                 } catch (MaxEnrollmentSurpassedException e) {
                     if (student.getStudentId() != 6) {
@@ -195,7 +226,7 @@ class RegistrationSystemTest {
             for (Student student : registrationSystem.retrieveAllStudents()){
                 try {
                     registrationSystem.register(1, student.getStudentId());
-                } catch (ElementDoesNotExistException | MaxEnrollmentSurpassedException | AlreadyExistsException | MaxCreditsSurpassedException e) {
+                } catch (ElementDoesNotExistException | MaxEnrollmentSurpassedException | AlreadyExistsException | MaxCreditsSurpassedException | ScheduleConflictException e) {
                     Assertions.fail();
                 }
             }
@@ -236,6 +267,64 @@ class RegistrationSystemTest {
         }
     }
 
+    @Test
+    void unregister() {
+        try {
+            registrationSystem.register(1, 1);
+            registrationSystem.register(1, 2);
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | ScheduleConflictException | SQLException e) {
+            fail();
+        }
+
+        // the student drops the course
+        try {
+            registrationSystem.unregister(1, 1);
+            assertEquals(1, registrationSystem.retrieveStudentsEnrolledForACourse(1).size());
+        } catch (ElementDoesNotExistException | SQLException e) {
+            fail();
+        }
+
+        // the student is not registered anymore
+        try {
+            registrationSystem.unregister(1, 1);
+            fail();
+        } catch (ElementDoesNotExistException e) {
+            assertTrue(true);
+        } catch (SQLException e) {
+            fail();
+        }
+
+        // batch form, only the registered student is reported as removed
+        try {
+            assertEquals(List.of(2L), registrationSystem.unregisterAll(1, List.of(1L, 2L)));
+            assertTrue(registrationSystem.retrieveStudentsEnrolledForACourse(1).isEmpty());
+        } catch (SQLException e) {
+            fail();
+        }
+    }
+
+
+    @Test
+    void studentsEnrolledForBothCourses() {
+        try {
+            registrationSystem.register(1, 1);
+            registrationSystem.register(1, 2);
+            registrationSystem.register(3, 2);
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | ScheduleConflictException | SQLException e) {
+            fail();
+        }
+
+        try {
+            assertTrue(registrationSystem.isRegistered(1, 1));
+            assertFalse(registrationSystem.isRegistered(3, 1));
+            assertEquals(2, registrationSystem.countStudentsEnrolled(1));
+            assertEquals(1, registrationSystem.countStudentsEnrolledForBothCourses(1, 3));
+            assertEquals(2, registrationSystem.retrieveStudentsEnrolledForBothCourses(1, 3).get(0).getStudentId());
+        } catch (SQLException e) {
+            fail();
+        }
+    }
+
     @Test
     void deleteTeacherCourse() {
         // All students join the course
@@ -243,7 +332,7 @@ class RegistrationSystemTest {
             for (Student student : registrationSystem.retrieveAllStudents()){
                 try {
                     registrationSystem.register(1, student.getStudentId());
-                } catch (ElementDoesNotExistException | MaxEnrollmentSurpassedException | AlreadyExistsException | MaxCreditsSurpassedException e) {
+                } catch (ElementDoesNotExistException | MaxEnrollmentSurpassedException | AlreadyExistsException | MaxCreditsSurpassedException | ScheduleConflictException e) {
                     Assertions.fail();
                 }
             }
@@ -373,7 +462,7 @@ class RegistrationSystemTest {
             for (Student student : registrationSystem.retrieveAllStudents()){
                 try {
                     registrationSystem.register(1, student.getStudentId());
-                } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException e) {
+                } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | ScheduleConflictException e) {
                     fail();
                 }
             }
@@ -396,7 +485,7 @@ class RegistrationSystemTest {
         for (int idx = 0; idx < 3; idx++){
             try {
                 registrationSystem.register(3, students.get(idx).getStudentId());
-            } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | SQLException e) {
+            } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | ScheduleConflictException | SQLException e) {
                 fail();
             }
         }
@@ -452,6 +541,99 @@ class RegistrationSystemTest {
     }
 
 
+    @Test
+    void pages() {
+        try {
+            RegistrationSystem.Page<Student> students = registrationSystem.retrieveStudentsPage(2, 3);
+            assertEquals(6, students.total());
+            assertEquals(List.of(3L, 4L, 5L), students.elements().stream().map(Student::getStudentId).toList());
+            assertTrue(registrationSystem.retrieveStudentsPage(6, 3).elements().isEmpty());
+
+            RegistrationSystem.Page<Course> courses = registrationSystem.retrieveCoursesPage(1, 5, true);
+            assertEquals(3, courses.total());
+            assertEquals(List.of(1L, 2L), courses.elements().stream().map(Course::getCourseId).toList());
+            assertEquals(List.of(1L), registrationSystem.retrieveCoursesPage(0, 1, false).elements()
+                    .stream().map(Course::getCourseId).toList());
+        } catch (SQLException e) {
+            fail();
+        }
+    }
+
+
+    @Test
+    void summaries() {
+        try {
+            registrationSystem.register(3, 1);
+            registrationSystem.register(3, 2);
+
+            List<CourseSummary> courses = registrationSystem.retrieveCourseSummaries();
+            assertEquals(List.of(1L, 2L, 3L), courses.stream().map(CourseSummary::courseId).toList());
+            assertEquals(new CourseSummary(3, "Analiza matematica", 1, 5, 3), courses.get(2));
+            assertEquals(List.of(3L, 1L, 2L), registrationSystem.retrieveCourseSummariesByName()
+                    .stream().map(CourseSummary::courseId).toList());
+
+            assertEquals(6, registrationSystem.retrieveStudentSummaries().size());
+            assertEquals(new StudentSummary(1, "Alin", "Goga"), registrationSystem.retrieveStudentSummaries().get(0));
+            assertEquals(new TeacherSummary(2, "Florin", "Dragomirescu"), registrationSystem.retrieveTeacherSummaries().get(1));
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | ScheduleConflictException | SQLException e) {
+            fail();
+        }
+    }
+
+
+    @Test
+    void retrieveCoursesByNameRange() {
+        try {
+            // the index follows the new courses
+            registrationSystem.addCourse("Algebra", 1, 10, 5, 4);
+
+            List<Course> courses = registrationSystem.retrieveCoursesByNameRange("Am", "C");
+            assertEquals(2, courses.size());
+            assertEquals(3, courses.get(0).getCourseId());
+            assertEquals(1, courses.get(1).getCourseId());
+
+            assertEquals(4, registrationSystem.retrieveFirstCoursesByName(1).get(0).getCourseId());
+            assertEquals(3, registrationSystem.retrieveStudentsByIdRange(2, 4).size());
+        } catch (AlreadyExistsException | ElementDoesNotExistException | SQLException e) {
+            fail();
+        }
+    }
+
+
+    @Test
+    void search() {
+        try {
+            // prefix of both names, any case
+            List<Student> students = registrationSystem.searchStudents("ali GOG", 10);
+            assertEquals(1, students.size());
+            assertEquals(1, students.get(0).getStudentId());
+
+            // misspelled name
+            assertEquals(2, registrationSystem.searchTeachers("Dragomiresku", 10).get(0).getTeacherId());
+
+            // the exact word ranks before the misspelled one
+            registrationSystem.addStudent("Ion", "Pop", 7);
+            students = registrationSystem.searchStudents("ion", 10);
+            assertEquals(2, students.size());
+            assertEquals(7, students.get(0).getStudentId());
+            assertEquals(3, students.get(1).getStudentId());
+
+            // the misspelled word comes after the exact one and an unrelated word with a common letter (balu)
+            registrationSystem.addStudent("Bob", "Zet", 8);
+            registrationSystem.addStudent("Boc", "Zet", 9);
+            students = registrationSystem.searchStudents("bob", 10);
+            assertEquals(2, students.size());
+            assertEquals(8, students.get(0).getStudentId());
+            assertEquals(9, students.get(1).getStudentId());
+
+            assertEquals(3, registrationSystem.searchCourses("analiza", 10).get(0).getCourseId());
+            assertTrue(registrationSystem.searchCourses("chimie", 10).isEmpty());
+        } catch (AlreadyExistsException | SQLException e) {
+            fail();
+        }
+    }
+
+
     @Test
     void filterStudentsEnrolled() {
         List<Student> studentsEnrolled = null;
@@ -464,7 +646,7 @@ class RegistrationSystemTest {
 
         try {
             registrationSystem.register(3, 1);
-        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | SQLException e) {
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | ScheduleConflictException | SQLException e) {
             fail();
         }
 
@@ -481,7 +663,7 @@ class RegistrationSystemTest {
             for (Student student : registrationSystem.retrieveAllStudents()){
                 try {
                     registrationSystem.register(1, student.getStudentId());
-                } catch (ElementDoesNotExistException | MaxEnrollmentSurpassedException | AlreadyExistsException | MaxCreditsSurpassedException e) {
+                } catch (ElementDoesNotExistException | MaxEnrollmentSurpassedException | AlreadyExistsException | MaxCreditsSurpassedException | ScheduleConflictException e) {
                     Assertions.fail();
                 }
             }
@@ -511,7 +693,7 @@ class RegistrationSystemTest {
 
         try {
             registrationSystem.register(3, 1);
-        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | SQLException e) {
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | ScheduleConflictException | SQLException e) {
             fail();
         }
 
@@ -524,4 +706,206 @@ class RegistrationSystemTest {
         assertEquals(3, coursesWithStudents.get(0).getCourseId());
 
     }
+
+
+    @Test
+    void parallelReports() {
+        try {
+            registrationSystem.register(1, 2);
+            registrationSystem.register(3, 2);
+            registrationSystem.register(3, 5);
+
+            List<Student> studentsEnrolled = registrationSystem.filterStudentsEnrolled();
+            registrationSystem.setReportParallelism(4);
+
+            // same results, in the same order
+            assertEquals(studentsEnrolled.stream().map(Student::getStudentId).toList(),
+                    registrationSystem.filterStudentsEnrolled().stream().map(Student::getStudentId).toList());
+            assertEquals(2, registrationSystem.filterCoursesWithStudents().size());
+            assertEquals(10, registrationSystem.calculateCreditsPerStudent().get(2L));
+            assertEquals(0, registrationSystem.calculateCreditsPerStudent().get(1L));
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | ScheduleConflictException | SQLException e) {
+            fail();
+        } finally {
+            registrationSystem.setReportParallelism(1);
+        }
+    }
+
+
+    @Test
+    void enrollmentReport() {
+        try {
+            registrationSystem.register(1, 1);
+            registrationSystem.register(3, 1);
+            registrationSystem.register(3, 2);
+
+            EnrollmentReport report = registrationSystem.createEnrollmentReport();
+
+            assertEquals(3, report.getCourses().size());
+            EnrollmentReport.CourseLoad course = report.getCourses().get(2);
+            assertEquals(3, course.courseId());
+            assertEquals(2, course.students());
+            assertEquals(0.4, course.fillRate(), 1e-9);
+
+            assertEquals(List.of(new EnrollmentReport.TeacherLoad(1, 1, 2), new EnrollmentReport.TeacherLoad(2, 2, 1)), report.getTeachers());
+            assertEquals(Map.of(0, 4L, 5, 1L, 10, 1L), report.getCreditDistribution());
+            assertEquals(2, report.getEmptyCourses().get(0).courseId());
+            assertTrue(report.getOversubscribedCourses().isEmpty());
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | ScheduleConflictException | SQLException e) {
+            fail();
+        }
+    }
+
+
+    @Test
+    void events() {
+        List<RegistrationEvent> events = new ArrayList<>();
+        EventBus.Subscription subscription = registrationSystem.getEventBus().subscribe("test", batch -> {
+            synchronized (events) {
+                events.addAll(batch);
+            }
+        });
+
+        try {
+            registrationSystem.register(3, 1);
+            registrationSystem.register(3, 2);
+            registrationSystem.unregister(3, 2);
+            registrationSystem.deleteTeacher(1);
+            assertTrue(registrationSystem.getEventBus().awaitDelivery(5, TimeUnit.SECONDS));
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | ScheduleConflictException | SQLException | InterruptedException e) {
+            fail();
+        } finally {
+            subscription.close();
+        }
+
+        // in the order of the changes, the deleted teacher after the cascade
+        synchronized (events) {
+            assertEquals(List.of(new RegistrationEvent.Enrolled(3, 1),
+                    new RegistrationEvent.Enrolled(3, 2),
+                    new RegistrationEvent.Unenrolled(3, 2),
+                    new RegistrationEvent.CourseDeleted(3, 1, List.of(1L)),
+                    new RegistrationEvent.TeacherDeleted(1, List.of(3L))), events);
+        }
+    }
+
+    @Test
+    void freePlacesView() {
+        try {
+            // loading the view before the changes, which then keep it up to date
+            assertEquals(3, registrationSystem.retrieveCoursesWithFreePlaces(FreePlacesView.Order.COURSE_ID).size());
+            for (long studentId = 1; studentId <= 5; studentId++) {
+                registrationSystem.register(3, studentId);
+            }
+            assertEquals(List.of(2L, 1L), registrationSystem.retrieveCoursesWithFreePlaces(FreePlacesView.Order.MOST_REMAINING_SEATS)
+                    .stream().map(FreePlacesView.OpenCourse::courseId).toList());
+            assertEquals(List.of("Baze de date", "Unjoinable course"), registrationSystem.retrieveCoursesWithFreePlaces(FreePlacesView.Order.NAME)
+                    .stream().map(FreePlacesView.OpenCourse::name).toList());
+
+            registrationSystem.changeMaxEnrollment(3, 6);
+            List<FreePlacesView.OpenCourse> courses = registrationSystem.retrieveCoursesWithFreePlaces(FreePlacesView.Order.MOST_REMAINING_SEATS);
+            assertEquals(List.of(2L, 1L, 3L), courses.stream().map(FreePlacesView.OpenCourse::courseId).toList());
+            assertEquals(1, courses.get(2).remainingSeats());
+            assertSame(courses, registrationSystem.retrieveCoursesWithFreePlaces(FreePlacesView.Order.MOST_REMAINING_SEATS));
+            assertEquals(5, registrationSystem.retrieveCoursesWithFreePlaces().get(2).getStudentsEnrolled().size());
+
+            registrationSystem.deleteTeacherCourse(2, 2);
+            assertEquals(List.of(1L, 3L), registrationSystem.retrieveCoursesWithFreePlaces(FreePlacesView.Order.COURSE_ID)
+                    .stream().map(FreePlacesView.OpenCourse::courseId).toList());
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException | NotTeachingTheCourseException | ScheduleConflictException | SQLException e) {
+            fail();
+        }
+
+        // fewer places than students
+        assertThrows(MaxEnrollmentSurpassedException.class, () -> registrationSystem.changeMaxEnrollment(3, 4));
+    }
+
+    @Test
+    void warmUp() {
+        try {
+            assertFalse(registrationSystem.isWarmedUp());
+            RegistrationSystem.WarmUpReport report = registrationSystem.startWarmUp().get(10, TimeUnit.SECONDS);
+            assertEquals(2, report.teachers());
+            assertEquals(3, report.courses());
+            assertEquals(6, report.students());
+            assertTrue(registrationSystem.isWarmedUp());
+
+            // the loaded indexes follow the changes
+            registrationSystem.register(3, 1);
+            assertTrue(registrationSystem.isRegistered(3, 1));
+            assertEquals(List.of(1L), registrationSystem.searchStudents("goga", 5).stream().map(Student::getStudentId).toList());
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException
+                 | ScheduleConflictException | SQLException | InterruptedException | ExecutionException | TimeoutException e) {
+            fail();
+        }
+    }
+
+    @Test
+    void eligibleCourses() {
+        try {
+            // the second course has too many credits
+            assertEquals(List.of(1L, 3L), eligibleCourseIds(1));
+
+            registrationSystem.register(1, 1);
+            registrationSystem.addCourse("Algebra", 1, 10, 26, 4);
+            registrationSystem.addCourse("Geometrie", 1, 10, 5, 5, List.of(TimeSlot.parse("TUE 08:00-10:00")));
+            registrationSystem.addCourse("Logica", 1, 10, 5, 6, List.of(TimeSlot.parse("TUE 09:00-11:00")));
+            // by credits, then most remaining seats
+            assertEquals(List.of(5L, 6L, 1L, 3L, 4L), eligibleCourseIds(2));
+            assertEquals(List.of(5L, 6L, 3L), eligibleCourseIds(1));
+
+            // overlapping the time slots of a course of the student
+            registrationSystem.register(5, 1);
+            assertEquals(List.of(3L), eligibleCourseIds(1));
+
+            // full
+            for (long studentId = 2; studentId <= 6; studentId++) {
+                registrationSystem.register(3, studentId);
+            }
+            assertEquals(List.of(), eligibleCourseIds(1));
+            assertEquals(List.of(6L, 1L, 5L), eligibleCourseIds(2));
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException
+                 | ScheduleConflictException | SQLException e) {
+            fail();
+        }
+
+        assertThrows(ElementDoesNotExistException.class, () -> registrationSystem.retrieveEligibleCourses(10));
+    }
+
+    private List<Long> eligibleCourseIds(long studentId) throws ElementDoesNotExistException, SQLException {
+        return registrationSystem.retrieveEligibleCourses(studentId).stream().map(FreePlacesView.OpenCourse::courseId).toList();
+    }
+
+    @Test
+    void scheduleConflicts() {
+        try {
+            registrationSystem.addCourse("Algebra", 1, 10, 5, 4, List.of(TimeSlot.parse("MON 08:00-10:00"), TimeSlot.parse("WED 10:00-12:00")));
+            registrationSystem.addCourse("Geometrie", 1, 10, 5, 5, List.of(TimeSlot.parse("MON 09:30-11:00")));
+            registrationSystem.addCourse("Logica", 2, 10, 5, 6, List.of(TimeSlot.parse("monday 10:00-12:00")));
+            assertEquals(List.of(new TimeSlot(DayOfWeek.MONDAY, 480, 600), new TimeSlot(DayOfWeek.WEDNESDAY, 600, 720)),
+                    registrationSystem.getAllCourses().get(3).getTimeSlots());
+            assertEquals(List.of(new TimeSlot(DayOfWeek.MONDAY, 570, 660)), registrationSystem.retrieveCoursesWithFreePlaces().stream()
+                    .filter(course -> course.getCourseId() == 5).findFirst().orElseThrow().getTimeSlots());
+
+            registrationSystem.register(4, 1);
+            registrationSystem.register(3, 1);
+            // starts when the algebra course ends
+            registrationSystem.register(6, 1);
+            ScheduleConflictException conflict = assertThrows(ScheduleConflictException.class, () -> registrationSystem.register(5, 1));
+            assertTrue(conflict.getMessage().contains("[4, 6]"));
+            assertFalse(registrationSystem.isRegistered(5, 1));
+
+            // another student has no courses at that time
+            registrationSystem.register(5, 2);
+
+            registrationSystem.unregister(4, 1);
+            registrationSystem.deleteTeacherCourse(6, 2);
+            registrationSystem.register(5, 1);
+            assertTrue(registrationSystem.isRegistered(5, 1));
+        } catch (ElementDoesNotExistException | MaxCreditsSurpassedException | MaxEnrollmentSurpassedException | AlreadyExistsException
+                 | NotTeachingTheCourseException | ScheduleConflictException | SQLException e) {
+            fail();
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> TimeSlot.parse("MON 10:00-09:00"));
+    }
 }
@@ -0,0 +1,23 @@
+import Controller.RegistrationSystem;
+import Repository.ConnectionRouter;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ *
+ * Runs the registration system tests with the reads routed to replicas
+ * (the local database under two other urls, so that the replicas never lag behind)
+ *
+ */
+class ReplicaRegistrationSystemTest extends RegistrationSystemTest {
+
+    @Override
+    RegistrationSystem createRegistrationSystem() throws SQLException {
+        ConnectionRouter router = new ConnectionRouter("jdbc:mysql://localhost:3306/university",
+                List.of("jdbc:mysql://127.0.0.1:3306/university", "jdbc:mysql://127.0.0.1:3306/university?useSSL=false"),
+                "root", "password31");
+        router.setSelection(ConnectionRouter.Selection.LEAST_LOADED);
+        return new RegistrationSystem(router);
+    }
+}
@@ -0,0 +1,150 @@
+import Controller.RegistrationSystem;
+import Model.Course;
+import Model.Student;
+import Model.Teacher;
+import Repository.ICrudRepository;
+import Repository.IEnrollmentRepository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+/**
+ *
+ * Measures the reports of the registration system by number of threads (not run by the test suite).
+ * Usage : ReportBenchmark [students] [courses]
+ *
+ */
+class ReportBenchmark {
+    private static final int ROUNDS = 10;
+
+    /**
+     * Repository over a loaded list, so that only the reports are measured
+     */
+    private static class ListRepository<T> implements ICrudRepository<T> {
+        private final List<T> elements;
+        private final ToLongFunction<T> id;
+
+        ListRepository(List<T> elements, ToLongFunction<T> id) {
+            this.elements = elements;
+            this.id = id;
+        }
+
+        @Override
+        public void create(T obj) {
+            elements.add(obj);
+        }
+
+        @Override
+        public List<T> getAll() {
+            return elements;
+        }
+
+        @Override
+        public T findById(long elementId) {
+            for (T element : elements) {
+                if (id.applyAsLong(element) == elementId) {
+                    return element;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void update(T obj) {
+        }
+
+        @Override
+        public void delete(T obj) {
+            elements.remove(obj);
+        }
+    }
+
+    public static void main(String[] args) throws SQLException {
+        int nrStudents = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int nrCourses = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        Random random = new Random(42);
+
+        List<Course> courses = new LinkedList<>();
+        for (int courseId = 1; courseId <= nrCourses; courseId++) {
+            courses.add(new Course("Course " + courseId, 1, 500, 1 + random.nextInt(10), courseId, new ArrayList<>()));
+        }
+        List<Student> students = new LinkedList<>();
+        for (int studentId = 1; studentId <= nrStudents; studentId++) {
+            List<Long> enrolledCourses = new ArrayList<>();
+            for (int idx = random.nextInt(6); idx > 0; idx--) {
+                enrolledCourses.add(1L + random.nextInt(nrCourses));
+            }
+            students.add(new Student("First" + studentId, "Last" + studentId, enrolledCourses, studentId));
+        }
+
+        RegistrationSystem registrationSystem = new RegistrationSystem(
+                new ListRepository<>(courses, Course::getCourseId),
+                new ListRepository<>(students, Student::getStudentId),
+                new ListRepository<>(new LinkedList<>(List.of(new Teacher("Radu", "Dragan", new LinkedList<>(), 1))), Teacher::getTeacherId),
+                new IEnrollmentRepository() {
+                    @Override
+                    public EnrollOutcome enroll(long courseId, long studentId) {
+                        return EnrollOutcome.ENROLLED;
+                    }
+
+                    @Override
+                    public boolean unenroll(long courseId, long studentId) {
+                        return false;
+                    }
+
+                    @Override
+                    public List<Long> unenrollAll(long courseId, List<Long> studentIds) {
+                        return new ArrayList<>();
+                    }
+
+                    @Override
+                    public void forEachEnrollment(EnrollmentHandler handler) {
+                    }
+                });
+
+        System.out.printf("%d students, %d courses%n", nrStudents, nrCourses);
+        System.out.printf("%8s %12s %12s %8s%n", "threads", "filter (ms)", "credits (ms)", "speedup");
+        double sequential = 0;
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+            registrationSystem.setReportParallelism(threads);
+            double filter = measure(() -> registrationSystem.filterStudentsEnrolled().size());
+            double credits = measure(() -> registrationSystem.calculateCreditsPerStudent().size());
+            if (threads == 1) {
+                sequential = filter + credits;
+            }
+            System.out.printf("%8d %12.1f %12.1f %8.2f%n", threads, filter, credits, sequential / (filter + credits));
+        }
+        registrationSystem.setReportParallelism(1);
+
+        // the parallel results are the same as the sequential ones
+        Map<Long, Integer> expected = registrationSystem.calculateCreditsPerStudent();
+        registrationSystem.setReportParallelism(Runtime.getRuntime().availableProcessors());
+        if (!expected.equals(registrationSystem.calculateCreditsPerStudent())) {
+            throw new IllegalStateException("The parallel report differs from the sequential one !");
+        }
+        registrationSystem.setReportParallelism(1);
+    }
+
+    private interface Report {
+        int run() throws SQLException;
+    }
+
+    /**
+     * @return the average duration of a report in milliseconds, after a warm-up
+     */
+    private static double measure(Report report) throws SQLException {
+        for (int round = 0; round < 3; round++) {
+            report.run();
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            report.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / ROUNDS;
+    }
+}
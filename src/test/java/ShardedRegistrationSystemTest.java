@@ -0,0 +1,62 @@
+import Controller.RegistrationSystem;
+import Exceptions.AlreadyExistsException;
+import Model.Student;
+import Repository.ConnectionRouter;
+import Repository.IdRangeShardMap;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * Runs the registration system tests on two shards of the local database server : the ids below 1000
+ * (all the test data) on the university database, the others on a second database
+ *
+ */
+class ShardedRegistrationSystemTest extends RegistrationSystemTest {
+    private static final String SECOND_SHARD = "jdbc:mysql://localhost:3306/university_campus2?createDatabaseIfNotExist=true";
+
+    private RegistrationSystem registrationSystem;
+
+    @Override
+    RegistrationSystem createRegistrationSystem() throws SQLException {
+        registrationSystem = new RegistrationSystem(new IdRangeShardMap(1000),
+                List.of(new ConnectionRouter("jdbc:mysql://localhost:3306/university", "root", "password31"),
+                        new ConnectionRouter(SECOND_SHARD, "root", "password31")));
+        return registrationSystem;
+    }
+
+    @Override
+    void removeOldData() throws SQLException {
+        super.removeOldData();
+        Connection connection = DriverManager.getConnection(SECOND_SHARD, "root", "password31");
+        Statement statement = connection.createStatement();
+        statement.execute("DELETE FROM enrolled");
+        statement.execute("DELETE FROM student");
+        statement.execute("DELETE FROM course");
+        statement.execute("DELETE FROM teacher");
+        statement.close();
+        connection.close();
+    }
+
+    @Test
+    void crossShardRegistration() {
+        try {
+            registrationSystem.addStudent("Ioana", "Pop", 1001);
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 1001L),
+                    registrationSystem.sortStudentsById().stream().map(Student::getStudentId).toList());
+        } catch (AlreadyExistsException | SQLException e) {
+            fail();
+        }
+
+        // the course is on the first shard, the student on the second one
+        assertThrows(SQLIntegrityConstraintViolationException.class, () -> registrationSystem.register(1, 1001));
+    }
+}